@@ -28,11 +28,10 @@
  */
 package cmput301f13t10.model;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import android.content.Context;
 import cmput301f13t10.presenter.AppConstants;
@@ -40,6 +39,22 @@ import cmput301f13t10.presenter.AppConstants;
 /**
  * A store of adventures.
  * 
+ * Adventures fetched from the database are used for a while before they are
+ * checked for changes (see {@link #setTimeToLive}). The cache remembers when
+ * each of them, and the list of adventures in the database, was last fetched.
+ * An adventure that is out of date is still used right away, while the
+ * database is checked for a newer one in the background.
+ * 
+ * The copy of an adventure that is saved on the device, or was made or
+ * uploaded on it, always wins over the copy in the database. Only adventures
+ * that came from the database, and haven't been saved or uploaded since, are
+ * replaced by newer copies from it.
+ * 
+ * Adventures can be found by remote id as quickly as by local id. The remote
+ * id of a cached adventure should only be changed with {@link #setRemoteId},
+ * so that the cache can keep finding it. The cache can be used from any
+ * thread.
+ * 
  * @author Brendan Cowan
  * 
  * @author Braeden Soetaert
@@ -58,12 +73,51 @@ public class AdventureCache
 	 */
 	private Map<Integer, AdventureModel> adventures;
 
+	/**
+	 * The local id of each cached adventure that has a remote id, by remote
+	 * id
+	 */
+	private Map<Integer, Integer> mRemoteIndex;
+
+	/**
+	 * The journal that adventures are saved to locally. Null until the cache
+	 * has been initialized.
+	 */
+	private AdventureJournal mJournal = null;
+
+	/**
+	 * The local ids of adventures deleted since the last save
+	 */
+	private ArrayList<Integer> mDeletedIds;
+
+	/**
+	 * When each adventure fetched from the database was last fetched or found
+	 * to be unchanged, by local id. Adventures that didn't come from the
+	 * database, or that have been saved on the device since, aren't included.
+	 */
+	private Map<Integer, Long> mFetchTimes;
+
+	/**
+	 * When the list of adventures in the database was last fetched, or -1 if
+	 * it hasn't been
+	 */
+	private volatile long mListFetchTime = -1;
+
+	/**
+	 * How long fetched adventures are used before they are checked for
+	 * changes, in milliseconds
+	 */
+	private volatile long mTimeToLive = AppConstants.CACHE_TIME_TO_LIVE;
+
 	/**
 	 * Constructor
 	 */
 	public AdventureCache()
 	{
 		adventures = new HashMap<Integer, AdventureModel>();
+		mRemoteIndex = new HashMap<Integer, Integer>();
+		mDeletedIds = new ArrayList<Integer>();
+		mFetchTimes = new HashMap<Integer, Long>();
 	}
 
 	/**
@@ -78,45 +132,153 @@ public class AdventureCache
 		return ac;
 	}
 
-	public void initialize( Context context )
+	/**
+	 * Load a summary of the locally saved adventures into the cache. Each
+	 * adventure is read in full the first time it is asked for by id. Only
+	 * the first call does anything.
+	 * 
+	 * @param context
+	 *            The context to find the app's files with
+	 */
+	public synchronized void initialize( Context context )
 	{
-		FileInputStream fileInputStream = null;
-		try
+		if( mJournal != null )
+			return;
+
+		MediaBlobStore.initialize( context.getFileStreamPath( AppConstants.BLOB_FILE_NAME ) );
+		mJournal = new AdventureJournal( context.getFileStreamPath( AppConstants.JOURNAL_FILE_NAME ) );
+		FileInteractor.migrateAdventures( context.getFileStreamPath( AppConstants.FILE_NAME ), mJournal );
+
+		ArrayList<AdventureModel> advList = FileInteractor.loadSummaries( mJournal );
+		ArrayList<Integer> usedIds = new ArrayList<Integer>();
+		for( AdventureModel adv : advList )
 		{
-			fileInputStream = context.openFileInput( AppConstants.FILE_NAME );
+			put( adv );
+			usedIds.add( adv.getLocalId() );
 		}
-		catch( FileNotFoundException e )
+		// Make sure new adventures don't take the id of a saved one
+		IdFactory.getIdManager( AppConstants.GENERATE_ADVENTURE_ID ).setUsedIds( usedIds );
+
+		// Nothing but the saved adventures refers to blobs stored before now,
+		// so the rest can be thrown away
+		Set<String> blobIds = mJournal.getBlobIds();
+		MediaBlobStore blobStore = MediaBlobStore.getBlobStore();
+		if( blobIds != null && blobStore != null )
+			blobStore.compactInBackground( blobIds );
+
+		Outbox.initialize( context.getFileStreamPath( AppConstants.OUTBOX_FILE_NAME ), this );
+	}
+
+	/**
+	 * Save the adventures that are flagged to be saved, and forget the ones
+	 * that have been deleted. Does nothing if the cache hasn't been
+	 * initialized.
+	 */
+	public synchronized void saveAdventures()
+	{
+		if( mJournal == null )
+			return;
+		// Once saved, the device's copy is the one that is kept
+		for( AdventureModel adventure : adventures.values() )
 		{
-			e.printStackTrace();
+			if( Boolean.TRUE.equals( adventure.toSave() ) )
+				mFetchTimes.remove( adventure.getLocalId() );
 		}
-		ArrayList<AdventureModel> advList = FileInteractor.loadAdventures( fileInputStream );
-		for( AdventureModel adv : advList )
-			adventures.put( adv.getLocalId(), adv );
+		FileInteractor.saveAdventures( getAllAdventures(), mDeletedIds, mJournal );
+		mDeletedIds.clear();
+	}
+
+	/**
+	 * Remember that an adventure was uploaded. An adventure that is saved on
+	 * the device is saved again the next time adventures are saved, so that
+	 * what was uploaded is saved with it, and the next upload after the app
+	 * is restarted only sends what changed since.
+	 * 
+	 * @param adventure
+	 *            The adventure that was uploaded
+	 */
+	public synchronized void uploaded( AdventureModel adventure )
+	{
+		if( mJournal != null && mJournal.contains( adventure.getLocalId() ) )
+			adventure.setSave( true );
 	}
 
 	/**
 	 * Add an adventure to the cache.
 	 */
-	public void addAdventure( AdventureModel adventure )
+	public synchronized void addAdventure( AdventureModel adventure )
+	{
+		put( adventure );
+	}
+
+	/**
+	 * Put an adventure in the cache, in place of any adventure with the same
+	 * local id
+	 */
+	private void put( AdventureModel adventure )
 	{
-		adventures.put( adventure.getLocalId(), adventure );
+		AdventureModel replaced = adventures.put( adventure.getLocalId(), adventure );
+		if( replaced != null )
+			unindex( replaced );
+		if( adventure.getRemoteId() != -1 )
+			mRemoteIndex.put( adventure.getRemoteId(), adventure.getLocalId() );
+	}
+
+	/**
+	 * Remove an adventure from the remote id index, unless another adventure
+	 * with the same remote id has taken its place there
+	 */
+	private void unindex( AdventureModel adventure )
+	{
+		Integer localId = mRemoteIndex.get( adventure.getRemoteId() );
+		if( localId != null && localId == adventure.getLocalId() )
+			mRemoteIndex.remove( adventure.getRemoteId() );
+	}
+
+	/**
+	 * Set the remote id of an adventure, and find it by that id from now on
+	 * if it is cached
+	 * 
+	 * @param adventure
+	 *            The adventure
+	 * @param remoteId
+	 *            The remote id to set, or -1 for none
+	 */
+	public synchronized void setRemoteId( AdventureModel adventure, int remoteId )
+	{
+		boolean cached = adventures.get( adventure.getLocalId() ) == adventure;
+		if( cached )
+			unindex( adventure );
+		adventure.setRemoteId( remoteId );
+		if( cached && remoteId != -1 )
+			mRemoteIndex.put( remoteId, adventure.getLocalId() );
 	}
 
 	/**
 	 * @return the adventure with the given id or null if the key is not in the
-	 *         cache.
+	 *         cache. If only a summary of the adventure has been loaded, the
+	 *         full adventure is loaded first.
 	 */
-	public AdventureModel getAdventureById( int id )
+	public synchronized AdventureModel getAdventureById( int id )
 	{
-		return adventures.get( id );
+		AdventureModel adventure = adventures.get( id );
+		if( adventure == null || adventure.isLoaded() || mJournal == null )
+			return adventure;
+
+		AdventureModel loaded = FileInteractor.loadAdventure( mJournal, id );
+		if( loaded == null )
+			return adventure;
+		put( loaded );
+		return loaded;
 	}
 
 	/**
-	 * Return all adventures in the cache
+	 * Return all adventures in the cache. Adventures that haven't been opened
+	 * yet may only be summaries (see {@link AdventureModel#isLoaded()}).
 	 * 
 	 * @return An arraylist of all adventures in the cache
 	 */
-	public ArrayList<AdventureModel> getAllAdventures()
+	public synchronized ArrayList<AdventureModel> getAllAdventures()
 	{
 		ArrayList<AdventureModel> alladventures = new ArrayList<AdventureModel>();
 
@@ -136,7 +298,7 @@ public class AdventureCache
 	 *            The adventure to compare against
 	 * @return True if the cache contains the adventure. False otherwise.
 	 */
-	public boolean containsLocal( AdventureModel adventure )
+	public synchronized boolean containsLocal( AdventureModel adventure )
 	{
 		return adventures.containsKey( adventure.getLocalId() );
 	}
@@ -146,19 +308,195 @@ public class AdventureCache
 	 * 
 	 * @param adventure
 	 *            The adventure to compare against
-	 * @return True if the cache contains the adventure. False otherwise.
+	 * @return True if the cache contains the adventure. False otherwise, or if
+	 *         the adventure has no remote id.
 	 */
 	public boolean containsRemote( AdventureModel adventure )
 	{
 		if( adventure == null )
 			return false;
-		for( Integer id : adventures.keySet() )
+		return getAdventureByRemoteId( adventure.getRemoteId() ) != null;
+	}
+
+	/**
+	 * Find the adventure with the given remote id, without loading it if it
+	 * is only a summary. If more than one adventure has the remote id, the one
+	 * that was added last is found.
+	 * 
+	 * @param remoteId
+	 *            The remote id of the adventure
+	 * @return The adventure, or null if it isn't in the cache
+	 */
+	public synchronized AdventureModel getAdventureByRemoteId( int remoteId )
+	{
+		Integer localId = mRemoteIndex.get( remoteId );
+		if( localId == null )
+			return null;
+		return adventures.get( localId );
+	}
+
+	/**
+	 * Get the version of each cached adventure's document in the database, to
+	 * find out which adventures changed since they were fetched
+	 * 
+	 * @return The versions by remote id. Adventures that aren't in the
+	 *         database aren't included, and adventures whose version isn't
+	 *         known have a version of -1.
+	 */
+	public synchronized Map<Integer, Long> getRemoteVersions()
+	{
+		Map<Integer, Long> versions = new HashMap<Integer, Long>();
+		for( AdventureModel adventure : adventures.values() )
+		{
+			if( adventure.getRemoteId() != -1 )
+				versions.put( adventure.getRemoteId(), adventure.getRemoteVersion() );
+		}
+		return versions;
+	}
+
+	/**
+	 * Update the cache with a summary of an adventure fetched from the
+	 * database. A new adventure is added. A cached adventure that was fetched
+	 * from the database is replaced by the summary, keeping its local id, so
+	 * that it is fetched again when it is opened. An adventure that is saved
+	 * on the device or was uploaded from it keeps its own copy, and only takes
+	 * the summary's version so that it isn't fetched again.
+	 * 
+	 * @param summary
+	 *            The summary that was fetched, with its version
+	 * @return The summary if it was added to the cache, or null if the cache
+	 *         didn't change
+	 */
+	public synchronized AdventureModel refreshSummary( AdventureModel summary )
+	{
+		AdventureModel cached = getAdventureByRemoteId( summary.getRemoteId() );
+		if( cached == null )
 		{
-			if( adventures.get( id ).getRemoteId() == adventure.getRemoteId() )
-				return true;
+			IdFactory.getIdFactory().assignLocalId( summary );
+			addFetchedAdventure( summary );
+			return summary;
 		}
+		return replace( cached, summary );
+	}
+
+	/**
+	 * Update the cache with the whole of an adventure fetched from the
+	 * database, the same way as {@link #refreshSummary}. An adventure that
+	 * isn't in the cache any more isn't added.
+	 * 
+	 * @param adventure
+	 *            The adventure that was fetched, with its version
+	 * @return The adventure if it replaced the cached one, or null if the
+	 *         cache didn't change
+	 */
+	public synchronized AdventureModel refreshAdventure( AdventureModel adventure )
+	{
+		AdventureModel cached = getAdventureByRemoteId( adventure.getRemoteId() );
+		if( cached == null )
+			return null;
+		return replace( cached, adventure );
+	}
+
+	/**
+	 * Replace a cached adventure with a newer copy fetched from the database,
+	 * if the cached one was fetched from the database too
+	 * 
+	 * @return The newer copy if it replaced the cached one, or null if the
+	 *         cache didn't change
+	 */
+	private AdventureModel replace( AdventureModel cached, AdventureModel fetched )
+	{
+		if( !isFetched( cached ) )
+		{
+			cached.setRemoteVersion( fetched.getRemoteVersion() );
+			return null;
+		}
+		if( cached.getRemoteVersion() == fetched.getRemoteVersion() )
+		{
+			mFetchTimes.put( cached.getLocalId(), System.currentTimeMillis() );
+			return null;
+		}
+		fetched.setLocalId( cached.getLocalId() );
+		addFetchedAdventure( fetched );
+		return fetched;
+	}
+
+	/**
+	 * If an adventure is a copy of one in the database, rather than one that
+	 * is saved on the device or was made or uploaded on it. This depends on
+	 * where the adventure came from, not on whether it has been loaded: a
+	 * summary read from the journal is still the device's copy.
+	 */
+	private boolean isFetched( AdventureModel adventure )
+	{
+		return mFetchTimes.containsKey( adventure.getLocalId() ) && !Boolean.TRUE.equals( adventure.toSave() ) && adventure.getUploadState() == null;
+	}
+
+	/**
+	 * Add an adventure that was just fetched from the database
+	 * 
+	 * @param adventure
+	 *            The adventure to add
+	 */
+	public synchronized void addFetchedAdventure( AdventureModel adventure )
+	{
+		addAdventure( adventure );
+		mFetchTimes.put( adventure.getLocalId(), System.currentTimeMillis() );
+	}
+
+	/**
+	 * Set how long adventures fetched from the database are used before they
+	 * are checked for changes
+	 * 
+	 * @param timeToLive
+	 *            The time in milliseconds
+	 */
+	public synchronized void setTimeToLive( long timeToLive )
+	{
+		mTimeToLive = timeToLive;
+	}
 
-		return false;
+	/**
+	 * @return How long adventures fetched from the database are used before
+	 *         they are checked for changes, in milliseconds
+	 */
+	public synchronized long getTimeToLive()
+	{
+		return mTimeToLive;
+	}
+
+	/**
+	 * If an adventure should be checked for changes in the database. Only
+	 * adventures that were fetched from the database are checked, once they
+	 * have been used for longer than the time to live.
+	 * 
+	 * @param adventure
+	 *            The adventure to check
+	 * @return True if the adventure is out of date
+	 */
+	public synchronized boolean isStale( AdventureModel adventure )
+	{
+		if( adventure.getRemoteId() == -1 || !isFetched( adventure ) )
+			return false;
+		Long fetchTime = mFetchTimes.get( adventure.getLocalId() );
+		return fetchTime == null || System.currentTimeMillis() - fetchTime >= mTimeToLive;
+	}
+
+	/**
+	 * @return True if the list of adventures in the database hasn't been
+	 *         fetched, or was fetched longer than the time to live ago
+	 */
+	public synchronized boolean isListStale()
+	{
+		return mListFetchTime < 0 || System.currentTimeMillis() - mListFetchTime >= mTimeToLive;
+	}
+
+	/**
+	 * Remember that the list of adventures in the database was just fetched
+	 */
+	public synchronized void setListFetched()
+	{
+		mListFetchTime = System.currentTimeMillis();
 	}
 
 	/**
@@ -167,9 +505,14 @@ public class AdventureCache
 	 * @param adventure
 	 *            The adventure to remove
 	 */
-	public void deleteAdventure( AdventureModel adventure )
+	public synchronized void deleteAdventure( AdventureModel adventure )
 	{
-		adventures.remove( adventure.getLocalId() );
-
+		AdventureModel removed = adventures.remove( adventure.getLocalId() );
+		if( removed != null )
+		{
+			unindex( removed );
+			mDeletedIds.add( adventure.getLocalId() );
+		}
+		mFetchTimes.remove( adventure.getLocalId() );
 	}
 }
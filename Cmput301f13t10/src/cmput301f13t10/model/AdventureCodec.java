@@ -0,0 +1,550 @@
+package cmput301f13t10.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cmput301f13t10.presenter.ImageMedia;
+import cmput301f13t10.presenter.Logger;
+import cmput301f13t10.presenter.Media;
+import cmput301f13t10.presenter.SectionChoice;
+import cmput301f13t10.presenter.SectionTitle;
+import cmput301f13t10.presenter.SoundMedia;
+import cmput301f13t10.presenter.TextMedia;
+
+/**
+ * Converts adventures to and from the compact binary format that they are
+ * saved locally in. Unlike java serialization, no class descriptions are
+ * written, and images are stored as raw bytes rather than base 64.
+ *
+ * Layout: a format version byte, then the adventure (ids, version of its
+ * document in the database, title, flags, what it looked like when it was
+ * last uploaded) and
+ * each of its sections (id, name, annotation, choices, media). Each media is
+ * written as [type][codec version][length][body], where the body is written
+ * by the {@link MediaCodec} for that type of media. The length lets media of
+ * an unknown type be skipped.
+ *
+ * Adventures that were saved with java serialization or an older version of
+ * the format are still read.
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class AdventureCodec
+{
+	/**
+	 * The version of the format
+	 */
+	private static final byte FORMAT_VERSION = 3;
+
+	/**
+	 * The version of the format before the remote version was written
+	 */
+	private static final byte FORMAT_VERSION_1 = 1;
+
+	/**
+	 * The version of the format before the upload state was written
+	 */
+	private static final byte FORMAT_VERSION_2 = 2;
+
+	/**
+	 * The first byte of java serialization's stream header
+	 */
+	private static final byte SERIALIZED_MAGIC = (byte) 0xAC;
+
+	/**
+	 * Media type for media without a codec, which is written with java
+	 * serialization
+	 */
+	private static final byte MEDIA_SERIALIZED = 0;
+
+	/**
+	 * Media type of text
+	 */
+	private static final byte MEDIA_TEXT = 1;
+
+	/**
+	 * Media type of images
+	 */
+	private static final byte MEDIA_IMAGE = 2;
+
+	/**
+	 * Media type of sounds
+	 */
+	private static final byte MEDIA_SOUND = 3;
+
+	/**
+	 * The codec of each media type, indexed by type
+	 */
+	private static final MediaCodec<?>[] sCodecs = new MediaCodec<?>[] { null, new TextMedia.Codec(), new ImageMedia.Codec(), new SoundMedia.Codec() };
+
+	/**
+	 * The media type of each class of media that has a codec
+	 */
+	private static final Map<Class<?>, Byte> sMediaTypes = new HashMap<Class<?>, Byte>();
+	static
+	{
+		sMediaTypes.put( TextMedia.class, MEDIA_TEXT );
+		sMediaTypes.put( ImageMedia.class, MEDIA_IMAGE );
+		sMediaTypes.put( SoundMedia.class, MEDIA_SOUND );
+	}
+
+	/**
+	 * Convert an adventure to bytes
+	 *
+	 * @param adventure
+	 *            The adventure to convert
+	 * @return The encoded adventure
+	 * @throws IOException
+	 *             If the adventure could not be encoded
+	 */
+	public static byte[] encode( AdventureModel adventure ) throws IOException
+	{
+		return encode( adventure, null );
+	}
+
+	/**
+	 * Convert an adventure to bytes, noting the blobs that its images were
+	 * written as
+	 *
+	 * @param adventure
+	 *            The adventure to convert
+	 * @param blobIds
+	 *            The list to add the ids of the written blobs to, or null
+	 * @return The encoded adventure
+	 * @throws IOException
+	 *             If the adventure could not be encoded
+	 */
+	public static byte[] encode( AdventureModel adventure, List<String> blobIds ) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( bytes );
+		out.writeByte( FORMAT_VERSION );
+		out.writeInt( adventure.getLocalId() );
+		out.writeInt( adventure.getRemoteId() );
+		out.writeLong( adventure.getRemoteVersion() );
+		writeString( out, adventure.getTitle() );
+		out.writeBoolean( adventure.toSave() != null && adventure.toSave() );
+		out.writeBoolean( adventure.getRandomSet() );
+		UploadState uploadState = adventure.getUploadState();
+		out.writeBoolean( uploadState != null );
+		if( uploadState != null )
+			uploadState.write( out );
+
+		List<SectionModel> sections = adventure.getSections();
+		out.writeInt( sections.size() );
+		for( SectionModel section : sections )
+			writeSection( out, section, blobIds );
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Convert bytes back to an adventure. Adventures written with java
+	 * serialization are also accepted.
+	 *
+	 * @param payload
+	 *            The encoded adventure
+	 * @return The adventure
+	 * @throws IOException
+	 *             If the adventure could not be decoded
+	 * @throws ClassNotFoundException
+	 *             If an adventure written with java serialization refers to an
+	 *             unknown class
+	 */
+	public static AdventureModel decode( byte[] payload ) throws IOException, ClassNotFoundException
+	{
+		if( payload.length > 0 && payload[0] == SERIALIZED_MAGIC )
+		{
+			ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( payload ) );
+			try
+			{
+				return (AdventureModel) in.readObject();
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream( payload ) );
+		byte version = in.readByte();
+		if( version != FORMAT_VERSION && version != FORMAT_VERSION_1 && version != FORMAT_VERSION_2 )
+			throw new IOException( "Unknown adventure format version " + version );
+
+		int localId = in.readInt();
+		int remoteId = in.readInt();
+		long remoteVersion = version == FORMAT_VERSION_1 ? -1 : in.readLong();
+		String title = readString( in );
+		boolean toSave = in.readBoolean();
+		boolean random = in.readBoolean();
+		UploadState uploadState = null;
+		if( version >= FORMAT_VERSION && in.readBoolean() )
+			uploadState = UploadState.read( in );
+
+		int sectionCount = in.readInt();
+		ArrayList<SectionModel> sections = new ArrayList<SectionModel>( sectionCount );
+		for( int i = 0; i < sectionCount; i++ )
+			sections.add( readSection( in ) );
+
+		AdventureModel adventure = new AdventureModel( localId, remoteId, title, sections );
+		adventure.setSave( toSave );
+		adventure.setRandom( random );
+		adventure.setRemoteVersion( remoteVersion );
+		adventure.setUploadState( uploadState );
+		return adventure;
+	}
+
+	/**
+	 * Copy an adventure, so that the copy doesn't change when the adventure
+	 * does. Images in the blob store are shared rather than copied.
+	 * 
+	 * @param adventure
+	 *            The adventure to copy
+	 * @return The copy
+	 * @throws IOException
+	 *             If the adventure could not be copied
+	 */
+	public static AdventureModel copy( AdventureModel adventure ) throws IOException
+	{
+		try
+		{
+			return decode( encode( adventure ) );
+		}
+		catch( ClassNotFoundException e )
+		{
+			throw new IOException( "Could not copy adventure: " + e.getMessage() );
+		}
+	}
+
+	/**
+	 * Get the ids of the blobs that the images of an adventure are stored in
+	 * 
+	 * @param adventure
+	 *            The adventure to look through
+	 * @return The ids of the blobs the adventure refers to
+	 */
+	public static ArrayList<String> getBlobIds( AdventureModel adventure )
+	{
+		ArrayList<String> blobIds = new ArrayList<String>();
+		for( SectionModel section : adventure.getSections() )
+		{
+			AnnotationModel annotation = section.getAnnotation();
+			if( annotation != null )
+				addBlobIds( blobIds, annotation.getMedia() );
+			addBlobIds( blobIds, section.getMedia() );
+		}
+		return blobIds;
+	}
+
+	/**
+	 * Add the blob ids of the images in a media list
+	 */
+	private static void addBlobIds( ArrayList<String> blobIds, List<Media> mediaList )
+	{
+		for( Media media : mediaList )
+		{
+			if( media instanceof ImageMedia && ( (ImageMedia) media ).getBlobId() != null )
+				blobIds.add( ( (ImageMedia) media ).getBlobId() );
+		}
+	}
+
+	/**
+	 * Convert the parts of a section other than its media (its id, name,
+	 * choices and annotation id) to bytes, e.g. to tell if they have changed
+	 * 
+	 * @param section
+	 *            The section to convert
+	 * @return The encoded parts of the section
+	 * @throws IOException
+	 *             If the section could not be encoded
+	 */
+	static byte[] encodeSectionHeader( SectionModel section ) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( bytes );
+		writeSectionHeader( out, section );
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Convert a single media to bytes, e.g. to tell if it has changed
+	 * 
+	 * @param media
+	 *            The media to convert
+	 * @return The encoded media
+	 * @throws IOException
+	 *             If the media could not be encoded
+	 */
+	static byte[] encodeMedia( Media media ) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( bytes );
+		writeMedia( out, media, new ByteArrayOutputStream() );
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Write a string, which may be null
+	 *
+	 * @param out
+	 *            The stream to write to
+	 * @param string
+	 *            The string to write
+	 * @throws IOException
+	 */
+	public static void writeString( DataOutputStream out, String string ) throws IOException
+	{
+		writeBytes( out, string == null ? null : string.getBytes( "UTF-8" ) );
+	}
+
+	/**
+	 * Read a string written by {@link #writeString}
+	 *
+	 * @param in
+	 *            The stream to read from
+	 * @return The string, which may be null
+	 * @throws IOException
+	 */
+	public static String readString( DataInputStream in ) throws IOException
+	{
+		byte[] bytes = readBytes( in );
+		return bytes == null ? null : new String( bytes, "UTF-8" );
+	}
+
+	/**
+	 * Write an array of bytes, which may be null
+	 *
+	 * @param out
+	 *            The stream to write to
+	 * @param bytes
+	 *            The bytes to write
+	 * @throws IOException
+	 */
+	public static void writeBytes( DataOutputStream out, byte[] bytes ) throws IOException
+	{
+		if( bytes == null )
+		{
+			out.writeInt( -1 );
+			return;
+		}
+		out.writeInt( bytes.length );
+		out.write( bytes );
+	}
+
+	/**
+	 * Read an array of bytes written by {@link #writeBytes}
+	 *
+	 * @param in
+	 *            The stream to read from
+	 * @return The bytes, which may be null
+	 * @throws IOException
+	 */
+	public static byte[] readBytes( DataInputStream in ) throws IOException
+	{
+		int length = in.readInt();
+		if( length < 0 )
+			return null;
+		byte[] bytes = new byte[length];
+		in.readFully( bytes );
+		return bytes;
+	}
+
+	/**
+	 * Write a section
+	 */
+	private static void writeSection( DataOutputStream out, SectionModel section, List<String> blobIds ) throws IOException
+	{
+		out.writeInt( section.getId() );
+		writeString( out, section.getName() );
+
+		AnnotationModel annotation = section.getAnnotation();
+		out.writeBoolean( annotation != null );
+		if( annotation != null )
+		{
+			out.writeInt( annotation.getId() );
+			writeMediaList( out, annotation.getMedia(), blobIds );
+		}
+
+		writeChoices( out, section.getChoices() );
+		writeMediaList( out, section.getMedia(), blobIds );
+	}
+
+	/**
+	 * Write the parts of a section other than its media
+	 */
+	private static void writeSectionHeader( DataOutputStream out, SectionModel section ) throws IOException
+	{
+		out.writeInt( section.getId() );
+		writeString( out, section.getName() );
+
+		AnnotationModel annotation = section.getAnnotation();
+		out.writeBoolean( annotation != null );
+		if( annotation != null )
+			out.writeInt( annotation.getId() );
+
+		writeChoices( out, section.getChoices() );
+	}
+
+	/**
+	 * Write the choices of a section
+	 */
+	private static void writeChoices( DataOutputStream out, ArrayList<SectionChoice> choices ) throws IOException
+	{
+		out.writeInt( choices.size() );
+		for( SectionChoice choice : choices )
+		{
+			writeString( out, choice.getChoiceDescription() );
+			SectionTitle target = choice.getSectionTitle();
+			out.writeBoolean( target != null );
+			if( target != null )
+			{
+				writeString( out, target.getTitle() );
+				out.writeBoolean( target.getId() != null );
+				if( target.getId() != null )
+					out.writeInt( target.getId() );
+				out.writeByte( target.isStartSection() == null ? 0 : ( target.isStartSection() ? 2 : 1 ) );
+			}
+		}
+	}
+
+	/**
+	 * Read a section written by {@link #writeSection}
+	 */
+	private static SectionModel readSection( DataInputStream in ) throws IOException
+	{
+		int id = in.readInt();
+		String name = readString( in );
+
+		AnnotationModel annotation = null;
+		if( in.readBoolean() )
+		{
+			annotation = new AnnotationModel( in.readInt() );
+			readMediaList( in, annotation.getMedia() );
+		}
+		SectionModel section = new SectionModel( id, name, annotation );
+
+		int choiceCount = in.readInt();
+		for( int i = 0; i < choiceCount; i++ )
+		{
+			String description = readString( in );
+			SectionTitle target = null;
+			if( in.readBoolean() )
+			{
+				String title = readString( in );
+				Integer targetId = in.readBoolean() ? in.readInt() : null;
+				byte start = in.readByte();
+				target = new SectionTitle( title, targetId, start == 0 ? null : start == 2 );
+			}
+			section.addChoice( new SectionChoice( target, description ) );
+		}
+
+		readMediaList( in, section.getMedia() );
+		return section;
+	}
+
+	/**
+	 * Write a list of media, each with its type, codec version and length,
+	 * adding the blob ids of the images written to blobIds if it isn't null
+	 */
+	private static void writeMediaList( DataOutputStream out, ArrayList<Media> medias, List<String> blobIds ) throws IOException
+	{
+		out.writeInt( medias.size() );
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		for( Media media : medias )
+		{
+			if( blobIds != null && media instanceof ImageMedia )
+			{
+				// Locked so that the image can't be replaced between writing
+				// it and reading its blob id
+				synchronized( media )
+				{
+					writeMedia( out, media, body );
+					String blobId = ( (ImageMedia) media ).getBlobId();
+					if( blobId != null )
+						blobIds.add( blobId );
+				}
+			}
+			else
+				writeMedia( out, media, body );
+		}
+	}
+
+	/**
+	 * Write a single media with its type, codec version and length
+	 * 
+	 * @param body
+	 *            A buffer to write the body of the media into first
+	 */
+	@SuppressWarnings( "unchecked" )
+	private static void writeMedia( DataOutputStream out, Media media, ByteArrayOutputStream body ) throws IOException
+	{
+		body.reset();
+		DataOutputStream bodyOut = new DataOutputStream( body );
+		Byte type = sMediaTypes.get( media.getClass() );
+		byte version = 0;
+		if( type == null )
+		{
+			type = MEDIA_SERIALIZED;
+			ObjectOutputStream objectOut = new ObjectOutputStream( bodyOut );
+			objectOut.writeObject( media );
+			objectOut.close();
+		}
+		else
+		{
+			MediaCodec<Media> codec = (MediaCodec<Media>) sCodecs[type];
+			version = codec.getVersion();
+			codec.write( media, bodyOut );
+			bodyOut.flush();
+		}
+
+		out.writeByte( type );
+		out.writeByte( version );
+		out.writeInt( body.size() );
+		body.writeTo( out );
+	}
+
+	/**
+	 * Read a list of media written by {@link #writeMediaList} into the given
+	 * list. Media of an unknown type is skipped.
+	 */
+	private static void readMediaList( DataInputStream in, ArrayList<Media> medias ) throws IOException
+	{
+		int count = in.readInt();
+		for( int i = 0; i < count; i++ )
+		{
+			byte type = in.readByte();
+			byte version = in.readByte();
+			byte[] body = new byte[in.readInt()];
+			in.readFully( body );
+
+			DataInputStream bodyIn = new DataInputStream( new ByteArrayInputStream( body ) );
+			if( type == MEDIA_SERIALIZED )
+			{
+				try
+				{
+					medias.add( (Media) new ObjectInputStream( bodyIn ).readObject() );
+				}
+				catch( ClassNotFoundException e )
+				{
+					e.printStackTrace();
+				}
+			}
+			else if( type > 0 && type < sCodecs.length )
+				medias.add( sCodecs[type].read( version, bodyIn ) );
+			else
+				Logger.log( "Skipping media of unknown type " + type, null );
+		}
+	}
+}
@@ -0,0 +1,461 @@
+package cmput301f13t10.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import cmput301f13t10.presenter.SectionChoice;
+
+/**
+ * The sections of an adventure and the choices between them, as a graph that
+ * can tell an author which sections can't be reached from the start, which
+ * sections end the adventure, and where readers can go round in circles.
+ *
+ * The graph is a snapshot of the adventure when it was made. Each section is
+ * a node numbered by its position in the adventure, with the start section as
+ * node 0, and the choices of all sections are kept in two int arrays: the
+ * choices of node n lead to the nodes mTargets[mOffsets[n]] up to
+ * mTargets[mOffsets[n + 1] - 1]. Choices that lead to sections that aren't in
+ * the adventure are left out. Every analysis takes time in proportion to the
+ * number of sections and choices, and none of them recurse, so they work on
+ * adventures of any size.
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class AdventureGraph
+{
+	/**
+	 * The sections of the adventure, by node
+	 */
+	private ArrayList<SectionModel> mSections;
+
+	/**
+	 * Where the choices of each node start in mTargets. The choices of the
+	 * last node end at mOffsets[mSections.size()].
+	 */
+	private int[] mOffsets;
+
+	/**
+	 * The node that each choice leads to
+	 */
+	private int[] mTargets;
+
+	/**
+	 * The strongly connected component of each node, or null until the
+	 * components have been found. Components are numbered so that a choice
+	 * never leads from a component to a higher numbered one.
+	 */
+	private int[] mComponents = null;
+
+	/**
+	 * The number of strongly connected components
+	 */
+	private int mComponentCount = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param adventure
+	 *            The adventure to make a graph of
+	 */
+	public AdventureGraph( AdventureModel adventure )
+	{
+		mSections = new ArrayList<SectionModel>( adventure.getSections() );
+		int count = mSections.size();
+		HashMap<Integer, Integer> nodes = new HashMap<Integer, Integer>( count * 2 );
+		int choiceCount = 0;
+		for( int n = count - 1; n >= 0; n-- )
+		{
+			nodes.put( mSections.get( n ).getId(), n );
+			choiceCount += mSections.get( n ).getChoices().size();
+		}
+
+		mOffsets = new int[count + 1];
+		int[] targets = new int[choiceCount];
+		int edge = 0;
+		for( int n = 0; n < count; n++ )
+		{
+			mOffsets[n] = edge;
+			for( SectionChoice choice : mSections.get( n ).getChoices() )
+			{
+				Integer target = choice.getSectionTitle().getId() == null ? null : nodes.get( choice.getSectionTitle().getId() );
+				if( target != null )
+					targets[edge++] = target;
+			}
+		}
+		mOffsets[count] = edge;
+		mTargets = edge == choiceCount ? targets : Arrays.copyOf( targets, edge );
+	}
+
+	/**
+	 * @return The number of sections in the graph
+	 */
+	public int getSectionCount()
+	{
+		return mSections.size();
+	}
+
+	/**
+	 * @return The number of choices in the graph that lead to a section of the
+	 *         adventure
+	 */
+	public int getChoiceCount()
+	{
+		return mTargets.length;
+	}
+
+	/**
+	 * Find the sections that can be reached from the start section by making
+	 * choices, with a breadth first search
+	 *
+	 * @return For each node, if its section can be reached
+	 */
+	public boolean[] getReachable()
+	{
+		int count = mSections.size();
+		boolean[] reached = new boolean[count];
+		if( count == 0 )
+			return reached;
+
+		int[] queue = new int[count];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = 0;
+		reached[0] = true;
+		while( head < tail )
+		{
+			int node = queue[head++];
+			for( int e = mOffsets[node]; e < mOffsets[node + 1]; e++ )
+			{
+				int target = mTargets[e];
+				if( !reached[target] )
+				{
+					reached[target] = true;
+					queue[tail++] = target;
+				}
+			}
+		}
+		return reached;
+	}
+
+	/**
+	 * @return The sections that can't be reached from the start section, in
+	 *         the order they are in the adventure
+	 */
+	public ArrayList<SectionModel> getUnreachableSections()
+	{
+		boolean[] reached = getReachable();
+		ArrayList<SectionModel> unreachable = new ArrayList<SectionModel>();
+		for( int n = 0; n < reached.length; n++ )
+		{
+			if( !reached[n] )
+				unreachable.add( mSections.get( n ) );
+		}
+		return unreachable;
+	}
+
+	/**
+	 * @return The sections that have no choices that lead anywhere, which
+	 *         end the adventure, in the order they are in the adventure
+	 */
+	public ArrayList<SectionModel> getDeadEnds()
+	{
+		ArrayList<SectionModel> deadEnds = new ArrayList<SectionModel>();
+		for( int n = 0; n < mSections.size(); n++ )
+		{
+			if( mOffsets[n] == mOffsets[n + 1] )
+				deadEnds.add( mSections.get( n ) );
+		}
+		return deadEnds;
+	}
+
+	/**
+	 * Find the sections that a reader can get to but never leave for an
+	 * ending, because every choice from them leads back round in a circle
+	 *
+	 * @return The trapped sections, in the order they are in the adventure
+	 */
+	public ArrayList<SectionModel> getTrappedSections()
+	{
+		int count = mSections.size();
+
+		// Search backwards from the endings along reversed choices
+		int[] reverseOffsets = new int[count + 1];
+		for( int e = 0; e < mTargets.length; e++ )
+			reverseOffsets[mTargets[e] + 1]++;
+		for( int n = 0; n < count; n++ )
+			reverseOffsets[n + 1] += reverseOffsets[n];
+		int[] sources = new int[mTargets.length];
+		int[] next = new int[count];
+		System.arraycopy( reverseOffsets, 0, next, 0, count );
+		for( int n = 0; n < count; n++ )
+		{
+			for( int e = mOffsets[n]; e < mOffsets[n + 1]; e++ )
+				sources[next[mTargets[e]]++] = n;
+		}
+
+		boolean[] canEnd = new boolean[count];
+		int[] queue = new int[count];
+		int head = 0;
+		int tail = 0;
+		for( int n = 0; n < count; n++ )
+		{
+			if( mOffsets[n] == mOffsets[n + 1] )
+			{
+				canEnd[n] = true;
+				queue[tail++] = n;
+			}
+		}
+		while( head < tail )
+		{
+			int node = queue[head++];
+			for( int e = reverseOffsets[node]; e < reverseOffsets[node + 1]; e++ )
+			{
+				int source = sources[e];
+				if( !canEnd[source] )
+				{
+					canEnd[source] = true;
+					queue[tail++] = source;
+				}
+			}
+		}
+
+		boolean[] reached = getReachable();
+		ArrayList<SectionModel> trapped = new ArrayList<SectionModel>();
+		for( int n = 0; n < count; n++ )
+		{
+			if( reached[n] && !canEnd[n] )
+				trapped.add( mSections.get( n ) );
+		}
+		return trapped;
+	}
+
+	/**
+	 * Find the cycles of the adventure: groups of sections where a reader can
+	 * get from any section of the group to any other and back again
+	 *
+	 * @return The groups of sections, including a single section with a
+	 *         choice that leads back to itself
+	 */
+	public ArrayList<ArrayList<SectionModel>> getCycles()
+	{
+		findComponents();
+		int[] sizes = new int[mComponentCount];
+		for( int n = 0; n < mComponents.length; n++ )
+			sizes[mComponents[n]]++;
+
+		ArrayList<ArrayList<SectionModel>> cycles = new ArrayList<ArrayList<SectionModel>>();
+		// The position of each component's cycle in cycles, or -1 if it
+		// doesn't have one yet
+		int[] cycleOf = new int[mComponentCount];
+		Arrays.fill( cycleOf, -1 );
+		for( int n = 0; n < mComponents.length; n++ )
+		{
+			int component = mComponents[n];
+			if( sizes[component] > 1 || hasChoice( n, n ) )
+			{
+				if( cycleOf[component] < 0 )
+				{
+					cycleOf[component] = cycles.size();
+					cycles.add( new ArrayList<SectionModel>() );
+				}
+				cycles.get( cycleOf[component] ).add( mSections.get( n ) );
+			}
+		}
+		return cycles;
+	}
+
+	/**
+	 * @return True if a reader can come back to a section they have already
+	 *         read
+	 */
+	public boolean hasCycles()
+	{
+		return !getCycles().isEmpty();
+	}
+
+	/**
+	 * Find the most choices a reader can make from the start section before
+	 * reaching an ending. A cycle counts as a single section, since it could
+	 * otherwise be gone round forever.
+	 *
+	 * @return The number of choices, or 0 if the adventure has no sections
+	 */
+	public int getLongestPathLength()
+	{
+		if( mSections.isEmpty() )
+			return 0;
+		findComponents();
+
+		// A choice never leads to a higher numbered component, so the
+		// components can be done in order with everything they lead to done
+		// first
+		int[] order = sortByComponent();
+		int[] longest = new int[mComponentCount];
+		for( int i = 0; i < order.length; i++ )
+		{
+			int node = order[i];
+			int component = mComponents[node];
+			for( int e = mOffsets[node]; e < mOffsets[node + 1]; e++ )
+			{
+				int target = mComponents[mTargets[e]];
+				if( target != component && longest[target] + 1 > longest[component] )
+					longest[component] = longest[target] + 1;
+			}
+		}
+		return longest[mComponents[0]];
+	}
+
+	/**
+	 * Find the fewest choices a reader has to make from the start section to
+	 * reach an ending
+	 *
+	 * @return The number of choices, or -1 if no ending can be reached
+	 */
+	public int getShortestPathLength()
+	{
+		int count = mSections.size();
+		if( count == 0 )
+			return -1;
+
+		int[] distance = new int[count];
+		for( int n = 0; n < count; n++ )
+			distance[n] = -1;
+		int[] queue = new int[count];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = 0;
+		distance[0] = 0;
+		while( head < tail )
+		{
+			int node = queue[head++];
+			if( mOffsets[node] == mOffsets[node + 1] )
+				return distance[node];
+			for( int e = mOffsets[node]; e < mOffsets[node + 1]; e++ )
+			{
+				int target = mTargets[e];
+				if( distance[target] == -1 )
+				{
+					distance[target] = distance[node] + 1;
+					queue[tail++] = target;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * If a node has a choice that leads to another node
+	 */
+	private boolean hasChoice( int from, int to )
+	{
+		for( int e = mOffsets[from]; e < mOffsets[from + 1]; e++ )
+		{
+			if( mTargets[e] == to )
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Find the strongly connected components with Tarjan's algorithm, using
+	 * explicit stacks instead of recursion so that long chains of sections
+	 * don't overflow the thread's stack
+	 */
+	private void findComponents()
+	{
+		if( mComponents != null )
+			return;
+
+		int count = mSections.size();
+		int[] components = new int[count];
+		int[] index = new int[count];
+		int[] low = new int[count];
+		boolean[] onStack = new boolean[count];
+		int[] stack = new int[count];
+		int stackSize = 0;
+		// The nodes being searched, and the next choice of each to follow
+		int[] callNodes = new int[count];
+		int[] callEdges = new int[count];
+		int callSize = 0;
+		int nextIndex = 1;
+		int componentCount = 0;
+
+		for( int root = 0; root < count; root++ )
+		{
+			if( index[root] != 0 )
+				continue;
+
+			index[root] = low[root] = nextIndex++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			callNodes[callSize] = root;
+			callEdges[callSize++] = mOffsets[root];
+
+			while( callSize > 0 )
+			{
+				int node = callNodes[callSize - 1];
+				int edge = callEdges[callSize - 1];
+				if( edge < mOffsets[node + 1] )
+				{
+					callEdges[callSize - 1]++;
+					int target = mTargets[edge];
+					if( index[target] == 0 )
+					{
+						index[target] = low[target] = nextIndex++;
+						stack[stackSize++] = target;
+						onStack[target] = true;
+						callNodes[callSize] = target;
+						callEdges[callSize++] = mOffsets[target];
+					}
+					else if( onStack[target] && index[target] < low[node] )
+					{
+						low[node] = index[target];
+					}
+					continue;
+				}
+
+				// All of the node's choices have been followed
+				callSize--;
+				if( low[node] == index[node] )
+				{
+					int member;
+					do
+					{
+						member = stack[--stackSize];
+						onStack[member] = false;
+						components[member] = componentCount;
+					}
+					while( member != node );
+					componentCount++;
+				}
+				if( callSize > 0 )
+				{
+					int parent = callNodes[callSize - 1];
+					if( low[node] < low[parent] )
+						low[parent] = low[node];
+				}
+			}
+		}
+
+		mComponents = components;
+		mComponentCount = componentCount;
+	}
+
+	/**
+	 * @return The nodes in order of their component, lowest first
+	 */
+	private int[] sortByComponent()
+	{
+		int[] starts = new int[mComponentCount + 1];
+		for( int n = 0; n < mComponents.length; n++ )
+			starts[mComponents[n] + 1]++;
+		for( int c = 0; c < mComponentCount; c++ )
+			starts[c + 1] += starts[c];
+		int[] order = new int[mComponents.length];
+		for( int n = 0; n < mComponents.length; n++ )
+			order[starts[mComponents[n]]++] = n;
+		return order;
+	}
+}
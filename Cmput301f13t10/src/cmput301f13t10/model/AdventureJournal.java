@@ -0,0 +1,1020 @@
+package cmput301f13t10.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An append-only log of changes to the locally saved adventures. Saving an
+ * adventure appends a single record to the end of the journal rather than
+ * rewriting every adventure, and deleting one appends a small tombstone.
+ * Replaying the journal keeps the latest record for each adventure. Once the
+ * journal is mostly superseded records it is compacted in the background.
+ *
+ * Layout: a header (magic, version) followed by records of the form
+ * [type][local id][payload length][payload].
+ * 
+ * Alongside the journal is an index of the title, remote id, remote version
+ * and record location of every saved adventure, so that the library can be listed at
+ * startup without reading any adventure in full. Adventures are then loaded
+ * one at a time as they are opened.
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class AdventureJournal
+{
+	/**
+	 * Marks the start of a journal file
+	 */
+	private static final int MAGIC = 0x41444A4C;
+
+	/**
+	 * The version of the journal layout
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The version of the index layout
+	 */
+	private static final int INDEX_VERSION = 3;
+
+	/**
+	 * Marks the start of an index file
+	 */
+	private static final int INDEX_MAGIC = 0x41444958;
+
+	/**
+	 * Size of the journal header in bytes
+	 */
+	private static final int HEADER_SIZE = 8;
+
+	/**
+	 * Size of a record header (type, local id, payload length) in bytes
+	 */
+	private static final int RECORD_HEADER_SIZE = 9;
+
+	/**
+	 * Record type of a saved adventure
+	 */
+	private static final byte RECORD_PUT = 1;
+
+	/**
+	 * Record type of a deleted adventure
+	 */
+	private static final byte RECORD_DELETE = 2;
+
+	/**
+	 * Journals smaller than this are never compacted
+	 */
+	private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
+	/**
+	 * The file the journal is stored in
+	 */
+	private File mFile;
+
+	/**
+	 * The file the index of the journal is stored in
+	 */
+	private File mIndexFile;
+
+	/**
+	 * The location of the latest record of every adventure in the journal
+	 */
+	private Map<Integer, Record> mLiveRecords = new HashMap<Integer, Record>();
+
+	/**
+	 * The total size of the records in mLiveRecords
+	 */
+	private long mLiveBytes = 0;
+
+	/**
+	 * The length of the journal file
+	 */
+	private long mLength = 0;
+
+	/**
+	 * If the journal has been read since it was opened
+	 */
+	private boolean mScanned = false;
+
+	/**
+	 * If the summaries of the adventures have been read without errors
+	 */
+	private boolean mSummarized = false;
+
+	/**
+	 * If a compaction is currently running
+	 */
+	private boolean mCompacting = false;
+
+	/**
+	 * Held while compacting, so that only one compaction runs at a time
+	 */
+	private final Object mCompactionLock = new Object();
+
+	/**
+	 * Constructor
+	 *
+	 * @param file
+	 *            The file to store the journal in
+	 */
+	public AdventureJournal( File file )
+	{
+		mFile = file;
+		mIndexFile = new File( file.getPath() + ".index" );
+	}
+
+	/**
+	 * Get a summary (title, ids and remote version, but no sections) of every
+	 * adventure in the journal. This only reads the index, unless the index is
+	 * missing or out of date, in which case the journal is read in full and
+	 * the index rebuilt.
+	 * 
+	 * @return Summaries of the adventures stored in the journal
+	 * @throws IOException
+	 *             If the journal could not be read
+	 */
+	public synchronized ArrayList<AdventureModel> loadSummaries() throws IOException
+	{
+		if( !readIndex() )
+		{
+			replay();
+			writeIndexQuietly();
+		}
+
+		ArrayList<AdventureModel> summaries = new ArrayList<AdventureModel>();
+		for( Map.Entry<Integer, Record> entry : mLiveRecords.entrySet() )
+		{
+			Record record = entry.getValue();
+			if( record.mTitle != null )
+			{
+				AdventureModel summary = new AdventureModel( entry.getKey(), record.mRemoteId, record.mTitle );
+				summary.setRemoteVersion( record.mRemoteVersion );
+				summaries.add( summary );
+			}
+		}
+		mSummarized = true;
+		return summaries;
+	}
+
+	/**
+	 * If an adventure is saved in the journal
+	 * 
+	 * @param localId
+	 *            The local id of the adventure
+	 * @return True if the journal has a record of the adventure
+	 */
+	public synchronized boolean contains( int localId )
+	{
+		return mLiveRecords.containsKey( localId );
+	}
+
+	/**
+	 * Get the ids of the media blobs that the saved adventures refer to
+	 * 
+	 * @return The blob ids, or null if they aren't all known (the summaries
+	 *         haven't been read, or a record could not be read)
+	 */
+	public synchronized Set<String> getBlobIds()
+	{
+		if( !mSummarized )
+			return null;
+		Set<String> blobIds = new HashSet<String>();
+		for( Record record : mLiveRecords.values() )
+		{
+			if( record.mBlobIds == null )
+				return null;
+			for( String blobId : record.mBlobIds )
+				blobIds.add( blobId );
+		}
+		return blobIds;
+	}
+
+	/**
+	 * Load the latest saved version of a single adventure
+	 * 
+	 * @param localId
+	 *            The local id of the adventure to load
+	 * @return The adventure, or null if it isn't in the journal
+	 * @throws IOException
+	 *             If the adventure could not be read
+	 * @throws ClassNotFoundException
+	 */
+	public synchronized AdventureModel load( int localId ) throws IOException, ClassNotFoundException
+	{
+		Record record = mLiveRecords.get( localId );
+		if( record == null )
+			return null;
+
+		RandomAccessFile file = new RandomAccessFile( mFile, "r" );
+		try
+		{
+			return decode( readPayload( file, record ) );
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/**
+	 * Read the journal and return the latest saved version of every adventure
+	 * that has not been deleted. A record that was only partially written
+	 * (e.g. the app was killed mid-save) is discarded.
+	 *
+	 * @return The adventures stored in the journal
+	 * @throws IOException
+	 *             If the journal could not be read
+	 */
+	public synchronized ArrayList<AdventureModel> replay() throws IOException
+	{
+		ArrayList<AdventureModel> adventures = new ArrayList<AdventureModel>();
+		scan();
+
+		RandomAccessFile file = new RandomAccessFile( mFile, "r" );
+		try
+		{
+			for( Record record : mLiveRecords.values() )
+			{
+				try
+				{
+					AdventureModel adventure = decode( readPayload( file, record ) );
+					record.setSummary( adventure );
+					adventures.add( adventure );
+				}
+				catch( IOException e )
+				{
+					// Keep the record so compaction doesn't throw it away, but
+					// skip the adventure itself.
+					e.printStackTrace();
+				}
+				catch( ClassNotFoundException e )
+				{
+					e.printStackTrace();
+				}
+				catch( ClassCastException e )
+				{
+					e.printStackTrace();
+				}
+			}
+		}
+		finally
+		{
+			file.close();
+		}
+		return adventures;
+	}
+
+	/**
+	 * Append records for the given saved and deleted adventures to the end of
+	 * the journal.
+	 *
+	 * @param saved
+	 *            The adventures to save
+	 * @param deletedIds
+	 *            The local ids of the adventures that have been deleted
+	 * @throws IOException
+	 *             If the journal could not be written
+	 */
+	public synchronized void append( List<AdventureModel> saved, List<Integer> deletedIds ) throws IOException
+	{
+		if( saved.isEmpty() && deletedIds.isEmpty() )
+			return;
+
+		if( !mScanned )
+			scan();
+		if( mLength < HEADER_SIZE )
+			writeHeader();
+
+		// The records are only kept track of once they are safely written,
+		// in the order they were written. A delete is kept as a null record.
+		Map<Integer, Record> written = new LinkedHashMap<Integer, Record>();
+		long offset = mLength;
+		FileOutputStream fileOutputStream = new FileOutputStream( mFile, true );
+		try
+		{
+			DataOutputStream out = new DataOutputStream( new BufferedOutputStream( fileOutputStream ) );
+			for( AdventureModel adventure : saved )
+			{
+				byte[] payload;
+				ArrayList<String> blobIds = new ArrayList<String>();
+				try
+				{
+					payload = encode( adventure, blobIds );
+				}
+				catch( IOException e )
+				{
+					// One adventure that can't be written shouldn't stop the
+					// rest from being saved.
+					e.printStackTrace();
+					continue;
+				}
+				writeRecord( out, RECORD_PUT, adventure.getLocalId(), payload );
+				Record record = new Record( offset, RECORD_HEADER_SIZE + payload.length );
+				record.setSummary( adventure, blobIds );
+				written.put( adventure.getLocalId(), record );
+				offset += record.mLength;
+			}
+			for( Integer id : deletedIds )
+			{
+				if( mLiveRecords.containsKey( id ) || written.get( id ) != null )
+				{
+					writeRecord( out, RECORD_DELETE, id, new byte[0] );
+					written.put( id, null );
+					offset += RECORD_HEADER_SIZE;
+				}
+			}
+			out.flush();
+			fileOutputStream.getFD().sync();
+		}
+		catch( IOException e )
+		{
+			// Cut off whatever part of the records reached the file, so that
+			// the journal ends where it is known to
+			fileOutputStream.close();
+			try
+			{
+				truncate( mLength );
+			}
+			catch( IOException truncateException )
+			{
+				// Read the journal again before the next append
+				truncateException.printStackTrace();
+				mScanned = false;
+			}
+			throw e;
+		}
+		finally
+		{
+			fileOutputStream.close();
+		}
+
+		for( Map.Entry<Integer, Record> entry : written.entrySet() )
+		{
+			Record previous = mLiveRecords.remove( entry.getKey() );
+			if( previous != null )
+				mLiveBytes -= previous.mLength;
+			Record record = entry.getValue();
+			if( record != null )
+			{
+				mLiveRecords.put( entry.getKey(), record );
+				mLiveBytes += record.mLength;
+			}
+		}
+		mLength = offset;
+		writeIndexQuietly();
+	}
+
+	/**
+	 * If enough of the journal is made up of superseded records that it is
+	 * worth compacting.
+	 *
+	 * @return True if the journal should be compacted
+	 */
+	public synchronized boolean needsCompaction()
+	{
+		return !mCompacting && mLength > MIN_COMPACTION_SIZE && mLength > 2 * ( HEADER_SIZE + mLiveBytes );
+	}
+
+	/**
+	 * Compact the journal on a background thread if it needs it.
+	 */
+	public void compactInBackground()
+	{
+		synchronized( this )
+		{
+			if( !needsCompaction() )
+				return;
+			mCompacting = true;
+		}
+
+		Thread thread = new Thread( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					compact();
+				}
+				catch( IOException e )
+				{
+					e.printStackTrace();
+				}
+				finally
+				{
+					synchronized( AdventureJournal.this )
+					{
+						mCompacting = false;
+					}
+				}
+			}
+		}, "AdventureJournal compaction" );
+		thread.setPriority( Thread.MIN_PRIORITY );
+		thread.start();
+	}
+
+	/**
+	 * Rewrite the journal so that it only contains the latest record of each
+	 * adventure. The records are copied as they are, so nothing is
+	 * re-serialized. The new journal replaces the old one only once it has
+	 * been completely written.
+	 * 
+	 * The records are copied without holding the journal's lock, so the
+	 * journal can still be read and appended to meanwhile. Records appended
+	 * during the copy are copied across as they are once it is done.
+	 *
+	 * @throws IOException
+	 *             If the journal could not be compacted
+	 */
+	public void compact() throws IOException
+	{
+		synchronized( mCompactionLock )
+		{
+			Map<Integer, Record> records;
+			long copiedLength;
+			synchronized( this )
+			{
+				records = new HashMap<Integer, Record>( mLiveRecords );
+				copiedLength = mLength;
+			}
+
+			// Records never change once written, so they can be copied
+			// while more are appended
+			File compacted = new File( mFile.getPath() + ".tmp" );
+			Map<Long, Long> newOffsets = new HashMap<Long, Long>();
+			long offset = HEADER_SIZE;
+			RandomAccessFile in = new RandomAccessFile( mFile, "r" );
+			FileOutputStream fileOutputStream = new FileOutputStream( compacted );
+			try
+			{
+				DataOutputStream out = new DataOutputStream( new BufferedOutputStream( fileOutputStream ) );
+				out.writeInt( MAGIC );
+				out.writeInt( VERSION );
+				for( Record record : records.values() )
+				{
+					copy( in, record.mOffset, record.mLength, out );
+					newOffsets.put( record.mOffset, offset );
+					offset += record.mLength;
+				}
+				out.flush();
+			}
+			catch( IOException e )
+			{
+				fileOutputStream.close();
+				compacted.delete();
+				throw e;
+			}
+			finally
+			{
+				in.close();
+			}
+
+			synchronized( this )
+			{
+				finishCompaction( compacted, fileOutputStream, copiedLength, offset, newOffsets );
+			}
+		}
+	}
+
+	/**
+	 * Copy the records appended since the compacted journal was started onto
+	 * its end, and replace the journal with it. Must be called with the
+	 * journal's lock held.
+	 * 
+	 * @param compacted
+	 *            The compacted journal
+	 * @param fileOutputStream
+	 *            The open stream at the end of the compacted journal
+	 * @param copiedLength
+	 *            The length of the journal when the copy was started
+	 * @param copiedEnd
+	 *            The length of the compacted journal
+	 * @param newOffsets
+	 *            The offset of each copied record in the compacted journal,
+	 *            by its offset in the journal
+	 * @throws IOException
+	 *             If the journal could not be replaced
+	 */
+	private void finishCompaction( File compacted, FileOutputStream fileOutputStream, long copiedLength, long copiedEnd, Map<Long, Long> newOffsets ) throws IOException
+	{
+		Map<Integer, Record> newRecords = new HashMap<Integer, Record>();
+		RandomAccessFile in = new RandomAccessFile( mFile, "r" );
+		try
+		{
+			if( mLength < copiedLength )
+				throw new IOException( "The journal was rewritten while it was being compacted" );
+			DataOutputStream out = new DataOutputStream( new BufferedOutputStream( fileOutputStream ) );
+			// Deletes are in the appended part too, so it is copied whole
+			copy( in, copiedLength, mLength - copiedLength, out );
+			out.flush();
+			fileOutputStream.getFD().sync();
+
+			for( Map.Entry<Integer, Record> entry : mLiveRecords.entrySet() )
+			{
+				Record record = entry.getValue();
+				Long newOffset;
+				if( record.mOffset >= copiedLength )
+					newOffset = copiedEnd + record.mOffset - copiedLength;
+				else
+					newOffset = newOffsets.get( record.mOffset );
+				if( newOffset == null )
+					throw new IOException( "The journal was rewritten while it was being compacted" );
+				newRecords.put( entry.getKey(), record.moveTo( newOffset ) );
+			}
+		}
+		catch( IOException e )
+		{
+			fileOutputStream.close();
+			compacted.delete();
+			throw e;
+		}
+		finally
+		{
+			fileOutputStream.close();
+			in.close();
+		}
+
+		if( !compacted.renameTo( mFile ) )
+		{
+			compacted.delete();
+			throw new IOException( "Could not replace " + mFile + " with its compacted version" );
+		}
+		mLiveRecords = newRecords;
+		mLength = copiedEnd + mLength - copiedLength;
+		writeIndexQuietly();
+	}
+
+	/**
+	 * Copy part of a file to a stream
+	 * 
+	 * @param in
+	 *            The file to copy from
+	 * @param offset
+	 *            The offset of the part to copy
+	 * @param length
+	 *            The length of the part to copy
+	 * @param out
+	 *            The stream to copy to
+	 * @throws IOException
+	 *             If the part could not be copied
+	 */
+	protected void copy( RandomAccessFile in, long offset, long length, DataOutputStream out ) throws IOException
+	{
+		FileInteractor.copy( in, offset, length, out );
+	}
+
+	/**
+	 * Read the index of the journal, if it matches the journal.
+	 * 
+	 * @return True if the index was read, false if it is missing or out of
+	 *         date
+	 */
+	private boolean readIndex()
+	{
+		if( !mIndexFile.exists() || !mFile.exists() )
+			return false;
+
+		DataInputStream in = null;
+		try
+		{
+			in = new DataInputStream( new BufferedInputStream( new FileInputStream( mIndexFile ) ) );
+			if( in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION )
+				return false;
+			// Every change to the journal changes its length, so a matching
+			// length means the index is up to date
+			long length = in.readLong();
+			if( length != mFile.length() )
+				return false;
+
+			Map<Integer, Record> records = new HashMap<Integer, Record>();
+			long liveBytes = 0;
+			int count = in.readInt();
+			for( int i = 0; i < count; i++ )
+			{
+				int localId = in.readInt();
+				Record record = new Record( in.readLong(), in.readInt() );
+				record.mRemoteId = in.readInt();
+				record.mRemoteVersion = in.readLong();
+				if( in.readBoolean() )
+					record.mTitle = in.readUTF();
+				if( in.readBoolean() )
+				{
+					record.mBlobIds = new String[in.readInt()];
+					for( int j = 0; j < record.mBlobIds.length; j++ )
+						record.mBlobIds[j] = in.readUTF();
+				}
+				records.put( localId, record );
+				liveBytes += record.mLength;
+			}
+
+			mLiveRecords = records;
+			mLiveBytes = liveBytes;
+			mLength = length;
+			mScanned = true;
+			return true;
+		}
+		catch( IOException e )
+		{
+			return false;
+		}
+		finally
+		{
+			try
+			{
+				if( in != null )
+					in.close();
+			}
+			catch( IOException e )
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Write out the index of the journal. The old index is replaced only once
+	 * the new one has been completely written.
+	 * 
+	 * @throws IOException
+	 *             If the index could not be written
+	 */
+	private void writeIndex() throws IOException
+	{
+		File newIndex = new File( mIndexFile.getPath() + ".tmp" );
+		DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( newIndex ) ) );
+		try
+		{
+			out.writeInt( INDEX_MAGIC );
+			out.writeInt( INDEX_VERSION );
+			out.writeLong( mLength );
+			out.writeInt( mLiveRecords.size() );
+			for( Map.Entry<Integer, Record> entry : mLiveRecords.entrySet() )
+			{
+				Record record = entry.getValue();
+				out.writeInt( entry.getKey() );
+				out.writeLong( record.mOffset );
+				out.writeInt( record.mLength );
+				out.writeInt( record.mRemoteId );
+				out.writeLong( record.mRemoteVersion );
+				out.writeBoolean( record.mTitle != null );
+				if( record.mTitle != null )
+					out.writeUTF( record.mTitle );
+				out.writeBoolean( record.mBlobIds != null );
+				if( record.mBlobIds != null )
+				{
+					out.writeInt( record.mBlobIds.length );
+					for( String blobId : record.mBlobIds )
+						out.writeUTF( blobId );
+				}
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+
+		if( !newIndex.renameTo( mIndexFile ) )
+		{
+			newIndex.delete();
+			throw new IOException( "Could not replace " + mIndexFile );
+		}
+	}
+
+	/**
+	 * Write out the index of the journal. If that fails, remove the old index
+	 * so that it gets rebuilt from the journal next time.
+	 */
+	private void writeIndexQuietly()
+	{
+		try
+		{
+			writeIndex();
+		}
+		catch( IOException e )
+		{
+			e.printStackTrace();
+			mIndexFile.delete();
+		}
+	}
+
+	/**
+	 * Read the record headers of the journal to find the latest record of each
+	 * adventure. Payloads are skipped over rather than read.
+	 *
+	 * @throws IOException
+	 *             If the journal could not be read
+	 */
+	private void scan() throws IOException
+	{
+		mLiveRecords.clear();
+		mLiveBytes = 0;
+		mLength = 0;
+		mScanned = true;
+		if( !mFile.exists() )
+			return;
+
+		long fileLength = mFile.length();
+		long offset = 0;
+		DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( mFile ) ) );
+		try
+		{
+			if( in.readInt() != MAGIC || in.readInt() != VERSION )
+				throw new IOException( mFile + " is not an adventure journal" );
+			offset = HEADER_SIZE;
+
+			while( offset < fileLength )
+			{
+				byte type = in.readByte();
+				int localId = in.readInt();
+				int length = in.readInt();
+				if( length < 0 || offset + RECORD_HEADER_SIZE + length > fileLength )
+					break;
+				skipFully( in, length );
+
+				Record previous = mLiveRecords.remove( localId );
+				if( previous != null )
+					mLiveBytes -= previous.mLength;
+				if( type == RECORD_PUT )
+				{
+					Record record = new Record( offset, RECORD_HEADER_SIZE + length );
+					mLiveRecords.put( localId, record );
+					mLiveBytes += record.mLength;
+				}
+				offset += RECORD_HEADER_SIZE + length;
+			}
+		}
+		catch( EOFException e )
+		{
+			// A partially written record at the end; it is dropped below.
+		}
+		finally
+		{
+			in.close();
+		}
+
+		if( offset < fileLength )
+			truncate( offset );
+		mLength = offset;
+	}
+
+	/**
+	 * Skip over bytes in the stream, failing if the stream ends first
+	 *
+	 * @param in
+	 *            The stream to skip through
+	 * @param count
+	 *            The number of bytes to skip
+	 * @throws IOException
+	 *             If the stream ends before the bytes were skipped
+	 */
+	private void skipFully( DataInputStream in, int count ) throws IOException
+	{
+		while( count > 0 )
+		{
+			int skipped = in.skipBytes( count );
+			if( skipped <= 0 )
+			{
+				if( in.read() < 0 )
+					throw new EOFException();
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
+
+	/**
+	 * Cut off the end of the journal
+	 *
+	 * @param length
+	 *            The new length of the journal
+	 * @throws IOException
+	 *             If the journal could not be truncated
+	 */
+	private void truncate( long length ) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile( mFile, "rw" );
+		try
+		{
+			file.setLength( length );
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/**
+	 * Start a new, empty journal
+	 *
+	 * @throws IOException
+	 *             If the journal could not be written
+	 */
+	private void writeHeader() throws IOException
+	{
+		DataOutputStream out = new DataOutputStream( new FileOutputStream( mFile ) );
+		try
+		{
+			out.writeInt( MAGIC );
+			out.writeInt( VERSION );
+		}
+		finally
+		{
+			out.close();
+		}
+		mLiveRecords.clear();
+		mLiveBytes = 0;
+		mLength = HEADER_SIZE;
+	}
+
+	/**
+	 * Write one record to the end of the journal
+	 *
+	 * @param out
+	 *            The stream at the end of the journal
+	 * @param type
+	 *            The type of the record
+	 * @param localId
+	 *            The local id of the adventure the record is for
+	 * @param payload
+	 *            The contents of the record
+	 * @throws IOException
+	 *             If the record could not be written
+	 */
+	private void writeRecord( DataOutputStream out, byte type, int localId, byte[] payload ) throws IOException
+	{
+		out.writeByte( type );
+		out.writeInt( localId );
+		out.writeInt( payload.length );
+		out.write( payload );
+	}
+
+	/**
+	 * Read the payload of a record
+	 *
+	 * @param file
+	 *            The journal file
+	 * @param record
+	 *            The record to read
+	 * @return The payload of the record
+	 * @throws IOException
+	 *             If the record could not be read
+	 */
+	private byte[] readPayload( RandomAccessFile file, Record record ) throws IOException
+	{
+		byte[] payload = new byte[record.mLength - RECORD_HEADER_SIZE];
+		file.seek( record.mOffset + RECORD_HEADER_SIZE );
+		file.readFully( payload );
+		return payload;
+	}
+
+	/**
+	 * Convert an adventure into the payload of a record
+	 *
+	 * @param adventure
+	 *            The adventure to convert
+	 * @param blobIds
+	 *            The list to add the ids of the media blobs written to
+	 * @return The payload
+	 * @throws IOException
+	 *             If the adventure could not be encoded
+	 */
+	private byte[] encode( AdventureModel adventure, List<String> blobIds ) throws IOException
+	{
+		return AdventureCodec.encode( adventure, blobIds );
+	}
+
+	/**
+	 * Convert the payload of a record back into an adventure
+	 *
+	 * @param payload
+	 *            The payload to convert
+	 * @return The adventure
+	 * @throws IOException
+	 *             If the payload could not be read
+	 * @throws ClassNotFoundException
+	 */
+	private AdventureModel decode( byte[] payload ) throws IOException, ClassNotFoundException
+	{
+		return AdventureCodec.decode( payload );
+	}
+
+	/**
+	 * The location of a record in the journal
+	 *
+	 * @author Brendan Cowan
+	 *
+	 */
+	private static class Record
+	{
+		/**
+		 * The offset of the start of the record
+		 */
+		long mOffset;
+
+		/**
+		 * The length of the record, including its header
+		 */
+		int mLength;
+
+		/**
+		 * The remote id of the adventure in the record
+		 */
+		int mRemoteId = -1;
+
+		/**
+		 * The version of the adventure's document in the database, or -1 if
+		 * it isn't known
+		 */
+		long mRemoteVersion = -1;
+
+		/**
+		 * The title of the adventure in the record, or null if the record
+		 * could not be read
+		 */
+		String mTitle = null;
+
+		/**
+		 * The ids of the media blobs the adventure in the record refers to,
+		 * or null if the record could not be read
+		 */
+		String[] mBlobIds = null;
+
+		/**
+		 * Constructor
+		 *
+		 * @param offset
+		 *            The offset of the start of the record
+		 * @param length
+		 *            The length of the record, including its header
+		 */
+		Record( long offset, int length )
+		{
+			mOffset = offset;
+			mLength = length;
+		}
+
+		/**
+		 * Get a copy of the record at a new offset, e.g. once the journal has
+		 * been compacted
+		 * 
+		 * @param offset
+		 *            The new offset of the start of the record
+		 * @return The moved record
+		 */
+		Record moveTo( long offset )
+		{
+			Record record = new Record( offset, mLength );
+			record.mRemoteId = mRemoteId;
+			record.mRemoteVersion = mRemoteVersion;
+			record.mTitle = mTitle;
+			record.mBlobIds = mBlobIds;
+			return record;
+		}
+
+		/**
+		 * Remember the title, remote id, remote version and media blobs of
+		 * the adventure in the record
+		 * 
+		 * @param adventure
+		 *            The adventure in the record
+		 */
+		void setSummary( AdventureModel adventure )
+		{
+			setSummary( adventure, AdventureCodec.getBlobIds( adventure ) );
+		}
+
+		/**
+		 * Remember the title, remote id and remote version of the adventure
+		 * in the record, and the media blobs it was written with
+		 * 
+		 * @param adventure
+		 *            The adventure in the record
+		 * @param blobIds
+		 *            The ids of the blobs the record refers to
+		 */
+		void setSummary( AdventureModel adventure, List<String> blobIds )
+		{
+			mRemoteId = adventure.getRemoteId();
+			mRemoteVersion = adventure.getRemoteVersion();
+			mTitle = adventure.getTitle();
+			mBlobIds = blobIds.toArray( new String[blobIds.size()] );
+		}
+	}
+}
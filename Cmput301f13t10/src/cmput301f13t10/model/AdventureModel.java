@@ -31,8 +31,11 @@ package cmput301f13t10.model;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import cmput301f13t10.presenter.AppConstants;
+import cmput301f13t10.presenter.SectionChoice;
 
 /**
  * Contains information about an adventure that the user can read, navigate
@@ -72,6 +75,24 @@ public class AdventureModel implements Serializable, Comparable<AdventureModel>
 
 	private boolean mIsRandomAvailable;
 
+	/**
+	 * If the adventure's sections have been loaded, or if this is only a
+	 * summary of the adventure
+	 */
+	private transient boolean mIsLoaded;
+
+	/**
+	 * What the adventure looked like when it was last uploaded, or null if it
+	 * hasn't been uploaded. Set by the outbox's thread.
+	 */
+	private transient volatile UploadState mUploadState = null;
+
+	/**
+	 * The version of the adventure's document in the database that this copy
+	 * matches, or -1 if it isn't known
+	 */
+	private transient volatile long mRemoteVersion = -1;
+
 	/**
 	 * Constructor
 	 */
@@ -80,6 +101,47 @@ public class AdventureModel implements Serializable, Comparable<AdventureModel>
 		this( "" );
 	}
 
+	/**
+	 * Constructor for a summary of an adventure whose sections have not been
+	 * loaded. Summaries are enough to list adventures by title; the full
+	 * adventure has to be loaded before it can be read or edited.
+	 * 
+	 * @param localId
+	 *            The local id of the adventure
+	 * @param remoteId
+	 *            The remote id of the adventure
+	 * @param title
+	 *            The adventure's title
+	 */
+	public AdventureModel( int localId, int remoteId, String title )
+	{
+		mLocalId = localId;
+		mRemoteId = remoteId;
+		mTitle = title;
+		mIsRandomAvailable = false;
+		mToSave = false;
+		mIsLoaded = false;
+	}
+
+	/**
+	 * Constructor for an adventure that has already been given ids
+	 * 
+	 * @param localId
+	 *            The local id of the adventure
+	 * @param remoteId
+	 *            The remote id of the adventure
+	 * @param title
+	 *            The adventure's title
+	 * @param sections
+	 *            The sections of the adventure
+	 */
+	AdventureModel( int localId, int remoteId, String title, ArrayList<SectionModel> sections )
+	{
+		this( localId, remoteId, title );
+		mSectionArray.setSections( sections );
+		mIsLoaded = true;
+	}
+
 	/**
 	 * Constructor
 	 * 
@@ -93,20 +155,100 @@ public class AdventureModel implements Serializable, Comparable<AdventureModel>
 		mTitle = title;
 		SectionModel startSection = new SectionModel( AppConstants.START );
 		mSectionArray.setSections( new ArrayList<SectionModel>() );
-		mSectionArray.getSections().add( startSection );
+		mSectionArray.addSection( startSection, this );
 		mIsRandomAvailable = false;
 		mToSave = false;
+		mIsLoaded = true;
+	}
+
+	/**
+	 * If the adventure's sections have been loaded. If not, the adventure is
+	 * only a summary and only its ids and title can be used.
+	 * 
+	 * @return True if the sections have been loaded, false if this is a
+	 *         summary
+	 */
+	public boolean isLoaded()
+	{
+		return mIsLoaded;
+	}
+
+	/**
+	 * @return What the adventure looked like when it was last uploaded, or
+	 *         null if it hasn't been uploaded
+	 */
+	UploadState getUploadState()
+	{
+		return mUploadState;
+	}
+
+	/**
+	 * Remember what the adventure looked like when it was uploaded
+	 * 
+	 * @param state
+	 *            The uploaded state of the adventure
+	 */
+	void setUploadState( UploadState state )
+	{
+		mUploadState = state;
 	}
 
 	/**
 	 * Deletes the section corresponding to the given section id. If the section
-	 * id is not in the list of sections, it is not deleted.
+	 * id is not in the list of sections, it is not deleted. Choices that led
+	 * to the section are removed too.
 	 * 
 	 * @param sectionId
 	 */
 	public void deleteSection( Integer sectionId )
 	{
 		mSectionArray.deleteSection( sectionId );
+		for( SectionModel section : mSectionArray.getSections() )
+		{
+			Iterator<SectionChoice> choices = section.getChoices().iterator();
+			while( choices.hasNext() )
+			{
+				if( sectionId.equals( choices.next().getSectionTitle().getId() ) )
+					choices.remove();
+			}
+		}
+	}
+
+	/**
+	 * Get the section that a choice leads to
+	 * 
+	 * @param choice
+	 *            The choice
+	 * @return The section, or null if it isn't in the adventure
+	 */
+	public SectionModel getChoiceTarget( SectionChoice choice )
+	{
+		Integer id = choice.getSectionTitle().getId();
+		return id == null ? null : mSectionArray.getSection( id );
+	}
+
+	/**
+	 * Get the choices of a section, with the title of each choice brought up
+	 * to date with the section it leads to. Choices that lead to a section
+	 * that isn't in the adventure are removed from the section.
+	 * 
+	 * @param section
+	 *            The section whose choices to get
+	 * @return The section's choices
+	 */
+	public ArrayList<SectionChoice> resolveChoices( SectionModel section )
+	{
+		Iterator<SectionChoice> choices = section.getChoices().iterator();
+		while( choices.hasNext() )
+		{
+			SectionChoice choice = choices.next();
+			SectionModel target = getChoiceTarget( choice );
+			if( target == null )
+				choices.remove();
+			else
+				choice.getSectionTitle().setTitle( target.getName() );
+		}
+		return section.getChoices();
 	}
 
 	/**
@@ -162,7 +304,9 @@ public class AdventureModel implements Serializable, Comparable<AdventureModel>
 	}
 
 	/**
-	 * Set the remote id of the adventure
+	 * Set the remote id of the adventure. The remote id of a cached adventure
+	 * is set with {@link AdventureCache#setRemoteId}, so that the cache can
+	 * find it by the new id.
 	 * 
 	 * @param id
 	 *            the id to set.
@@ -172,6 +316,29 @@ public class AdventureModel implements Serializable, Comparable<AdventureModel>
 		mRemoteId = id;
 	}
 
+	/**
+	 * Get the version of the adventure's document in the database that this
+	 * copy matches
+	 * 
+	 * @return The version, or -1 if it isn't known
+	 */
+	public long getRemoteVersion()
+	{
+		return mRemoteVersion;
+	}
+
+	/**
+	 * Set the version of the adventure's document in the database that this
+	 * copy matches
+	 * 
+	 * @param version
+	 *            The version, or -1 if it isn't known
+	 */
+	public void setRemoteVersion( long version )
+	{
+		mRemoteVersion = version;
+	}
+
 	/**
 	 * Set all of the sections contained within the adventure
 	 * 
@@ -259,9 +426,10 @@ public class AdventureModel implements Serializable, Comparable<AdventureModel>
 	/**
 	 * Get all of the sections contained within the adventure
 	 * 
-	 * @return The sections contained within the adventure
+	 * @return The sections contained within the adventure, which can't be
+	 *         changed through this list
 	 */
-	public ArrayList<SectionModel> getSections()
+	public List<SectionModel> getSections()
 	{
 		return mSectionArray.getSections();
 	}
@@ -277,7 +445,7 @@ public class AdventureModel implements Serializable, Comparable<AdventureModel>
 	private void writeObject( java.io.ObjectOutputStream out ) throws IOException
 	{
 		out.writeObject( mTitle );
-		out.writeObject( mSectionArray.getSections() );
+		out.writeObject( new ArrayList<SectionModel>( mSectionArray.getSections() ) );
 		out.writeInt( mRemoteId );
 		out.writeInt( mLocalId );
 		out.writeBoolean( mToSave );
@@ -296,11 +464,13 @@ public class AdventureModel implements Serializable, Comparable<AdventureModel>
 	private void readObject( java.io.ObjectInputStream in ) throws IOException, ClassNotFoundException
 	{
 		mTitle = (String) in.readObject();
+		mSectionArray = new SectionArray();
 		mSectionArray.setSections( (ArrayList<SectionModel>) in.readObject() );
 		mRemoteId = in.readInt();
 		mLocalId = in.readInt();
 		mToSave = in.readBoolean();
 		mIsRandomAvailable = in.readBoolean();
+		mIsLoaded = true;
 	}
 
 	/**
@@ -62,6 +62,19 @@ public class AnnotationModel implements Serializable
 		mId = IdFactory.getIdManager( AppConstants.GENERATE_ANNOTATION_ID ).getNewId();
 	}
 
+	/**
+	 * Constructor for an annotation that has already been given an id, with
+	 * no media
+	 * 
+	 * @param id
+	 *            The id of the annotation
+	 */
+	AnnotationModel( int id )
+	{
+		mMedias = new ArrayList<Media>();
+		mId = id;
+	}
+
 	/**
 	 * Insert a media at the end of the list of media.
 	 * 
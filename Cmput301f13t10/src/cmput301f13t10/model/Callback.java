@@ -5,8 +5,10 @@ package cmput301f13t10.model;
  * 
  * @author Brendan Cowan
  * 
+ * @param <T>
+ *            The type of the result that the callback is called with
  */
-public abstract class Callback
+public abstract class Callback<T>
 {
 	/**
 	 * Argument that is passed into the callback
@@ -37,8 +39,8 @@ public abstract class Callback
 	 * The function to be called when the callback is executed.
 	 * 
 	 * @param arg
-	 *            Arbitrary argument that can be passed to the callback when it
-	 *            is executed
+	 *            The result that is passed to the callback when it is
+	 *            executed
 	 */
-	public abstract void callBack( Object arg );
+	public abstract void callBack( T arg );
 }
@@ -0,0 +1,78 @@
+package cmput301f13t10.model;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.os.Process;
+
+/**
+ * Creates numbered background threads, which don't keep the app alive
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class DaemonThreadFactory implements ThreadFactory
+{
+	/**
+	 * The start of the name of each thread
+	 */
+	private String mName;
+
+	/**
+	 * The priority the threads run at (see {@link Process#setThreadPriority})
+	 */
+	private int mPriority;
+
+	/**
+	 * The number of threads that have been created
+	 */
+	private final AtomicInteger mCount = new AtomicInteger();
+
+	/**
+	 * Constructor for threads that run at the default priority
+	 *
+	 * @param name
+	 *            The start of the name of each thread
+	 */
+	public DaemonThreadFactory( String name )
+	{
+		this( name, Process.THREAD_PRIORITY_DEFAULT );
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param name
+	 *            The start of the name of each thread
+	 * @param priority
+	 *            The priority the threads run at, e.g.
+	 *            {@link Process#THREAD_PRIORITY_BACKGROUND} so that they
+	 *            don't slow down the UI
+	 */
+	public DaemonThreadFactory( String name, int priority )
+	{
+		mName = name;
+		mPriority = priority;
+	}
+
+	@Override
+	public Thread newThread( final Runnable runnable )
+	{
+		Runnable task = runnable;
+		if( mPriority != Process.THREAD_PRIORITY_DEFAULT )
+		{
+			task = new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					Process.setThreadPriority( mPriority );
+					runnable.run();
+				}
+			};
+		}
+		Thread thread = new Thread( task, mName + "-" + mCount.incrementAndGet() );
+		thread.setDaemon( true );
+		return thread;
+	}
+}
@@ -1,6 +1,9 @@
 package cmput301f13t10.model;
 
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
 
 /**
  * Singleton class that interacts with the online database. Can upload,
@@ -36,165 +39,222 @@ public class DatabaseInteractor
 		return mDatabaseInteractor;
 	}
 
+	/**
+	 * Get the outbox that publishes and deletes are queued in
+	 * 
+	 * @return The outbox
+	 * @throws IllegalStateException
+	 *             If the adventure cache hasn't been initialized, since the
+	 *             change would be lost
+	 */
+	private Outbox getOutbox()
+	{
+		Outbox outbox = Outbox.getOutbox();
+		if( outbox == null )
+			throw new IllegalStateException( "The outbox isn't open until the adventure cache is initialized" );
+		return outbox;
+	}
+
 	/**
 	 * Add a new adventure to the database. If the adventure is already on the
-	 * database (as indicated by the remoteId), it will be overwritten.
+	 * database (as indicated by the remoteId), it will be updated with
+	 * whatever has changed since it was last uploaded. The adventure is
+	 * queued in the outbox and sent in the background, and is retried until
+	 * it gets there.
 	 * 
 	 * @param adventure
 	 *            The adventure to upload
 	 */
 	public void addAdventure( AdventureModel adventure )
 	{
-		// Assign the adventure a remote id if it doesn't have one
-		if( adventure.getRemoteId() == -1 )
+		getOutbox().publish( adventure );
+	}
+
+	/**
+	 * Return summaries of all adventures from the database. Only the title and
+	 * remote id of each adventure are fetched; the rest of an adventure is
+	 * fetched with {@link #getAdventure} when it is opened. The summaries are
+	 * fetched a page at a time, and each page is added to the cache as it
+	 * arrives.
+	 * 
+	 * Only the adventures that are new or whose version changed since they
+	 * were cached are fetched (see {@link AdventureCache#refreshSummary}), so
+	 * when nothing changed, refreshing only lists the ids and versions.
+	 * 
+	 * @param callback
+	 *            The callback to call with the adventures fetched so far that
+	 *            were added to the cache, after each page arrives and once all
+	 *            of them have been fetched
+	 * @return The running request, which can be cancelled to stop fetching
+	 *         pages
+	 */
+	public RequestFuture<ArrayList<AdventureModel>> getAllAdventures( final Callback<ArrayList<AdventureModel>> callback )
+	{
+		final ArrayList<AdventureModel> adventures = new ArrayList<AdventureModel>();
+		final Callback<ArrayList<AdventureModel>> pageCallback = new Callback<ArrayList<AdventureModel>>()
 		{
-			Callback callback = new Callback( adventure )
+			@Override
+			public void callBack( ArrayList<AdventureModel> page )
 			{
-
-				@Override
-				public void callBack( Object arg )
+				for( AdventureModel adventure : page )
 				{
-					ArrayList<Integer> usedIds = (ArrayList<Integer>) arg;
-					AdventureModel adventure = (AdventureModel) mCallbackArg;
-					for( int i = 0;; i++ )
-					{
-						if( !usedIds.contains( i ) )
-						{
-							adventure.setRemoteId( i );
-							break;
-						}
-					}
-
-					deleteThenInsert( adventure );
-
+					if( AdventureCache.getAdventureCache().refreshSummary( adventure ) != null )
+						adventures.add( adventure );
 				}
+				callback.callBack( adventures );
+			}
+		};
 
-			};
+		// Copy what the cache knows before the request starts, so the request
+		// compares the database against one consistent view of the cache
+		// rather than one that changes as pages are added to it
+		final Map<Integer, Long> known = AdventureCache.getAdventureCache().getRemoteVersions();
+		Callable<ArrayList<AdventureModel>> request = new Callable<ArrayList<AdventureModel>>()
+		{
+			@Override
+			public ArrayList<AdventureModel> call()
+			{
+				// Get all the ids first, so we know what adventures are actually
+				// in the database and which of them changed
+				Map<Integer, Long> versions = new ESGetIdsCommand().call();
+				if( versions == null )
+					return null;
+				return new ESMultiGetCommand( getChangedIds( versions, known ), true, pageCallback ).call();
+			}
+		};
 
-			ESGetIdsCommand getIds = new ESGetIdsCommand( callback );
-			getIds.execute( null, null );
-		}
-		else
+		Callback<ArrayList<AdventureModel>> doneCallback = new Callback<ArrayList<AdventureModel>>()
 		{
-			deleteThenInsert( adventure );
-		}
+			@Override
+			public void callBack( ArrayList<AdventureModel> all )
+			{
+				if( all != null )
+					AdventureCache.getAdventureCache().setListFetched();
+				callback.callBack( adventures );
+			}
+		};
 
+		return NetworkExecutor.getExecutor().submit( request, doneCallback, 0 );
 	}
 
 	/**
-	 * Delete an adventure from the database (if it exists), then reinsert it
-	 * (i.e., update it).
+	 * Check the database for changes to the adventures, like
+	 * {@link #getAllAdventures}, but only if the list of adventures was
+	 * fetched longer than the cache's time to live ago. Until then, the cached
+	 * adventures are used as they are.
 	 * 
-	 * @param adventure
+	 * @param callback
+	 *            The callback to call with the adventures that were added to
+	 *            the cache, if the database is checked
+	 * @return The running request, or null if the cached adventures are up to
+	 *         date
 	 */
-	private void deleteThenInsert( AdventureModel adventure )
+	public RequestFuture<ArrayList<AdventureModel>> refreshAdventures( Callback<ArrayList<AdventureModel>> callback )
 	{
-		ESInsertCommand insert = new ESInsertCommand( adventure, null );
-		ESDeleteCommand delete = new ESDeleteCommand( adventure.getRemoteId(), null );
-		delete.execute();
-		insert.execute();
+		if( !AdventureCache.getAdventureCache().isListStale() )
+			return null;
+		return getAllAdventures( callback );
 	}
 
 	/**
-	 * Return all adventures from the database
+	 * Check the database for a newer copy of an adventure that was fetched
+	 * from it, if the cached copy is older than the cache's time to live. The
+	 * newer copy takes the cached one's place for the next time it is opened.
 	 * 
+	 * @param adventure
+	 *            The cached adventure
 	 * @param callback
-	 *            The callback to call when the function completes
+	 *            The callback to call with the newer copy, or with null if
+	 *            the adventure didn't change or couldn't be fetched. May be
+	 *            null.
+	 * @return The running request, or null if the cached adventure is up to
+	 *         date
 	 */
-	public void getAllAdventures( Callback callback )
+	public RequestFuture<AdventureModel> refreshAdventure( AdventureModel adventure, final Callback<AdventureModel> callback )
 	{
+		if( !AdventureCache.getAdventureCache().isStale( adventure ) )
+			return null;
 
-		Callback getIdsCallback = new Callback( callback )
+		Callback<AdventureModel> refreshCallback = new Callback<AdventureModel>()
 		{
 			@Override
-			public void callBack( Object arg )
+			public void callBack( AdventureModel fetched )
 			{
-				ArrayList<Integer> ids = (ArrayList<Integer>) arg;
-
-				GetCallback getCallback = new GetCallback( ids.size(), (Callback) mCallbackArg )
-				{
-
-					ArrayList<AdventureModel> mAdventures = new ArrayList<AdventureModel>();
-					int mCount = 0;
-
-					@Override
-					public void callBack( Object arg )
-					{
-						AdventureModel adventure = (AdventureModel) arg;
-						mCount++;
-						if( adventure != null && !AdventureCache.getAdventureCache().containsRemote( adventure ) )
-						{
-							IdFactory.getIdFactory().assignLocalId( adventure );
-							AdventureCache.getAdventureCache().addAdventure( adventure );
-							mAdventures.add( adventure );
-						}
-						if( mCount >= mNumber )
-						{
-							mCallback.callBack( mAdventures );
-						}
-					}
-
-				};
-
-				// For each of the ids that were found, get the adventures
-				for( int i : ids )
-				{
-					ESGetCommand getCommand = new ESGetCommand( i, getCallback );
-					getCommand.execute( null, null );
-				}
+				AdventureModel replaced = null;
+				if( fetched != null )
+					replaced = AdventureCache.getAdventureCache().refreshAdventure( fetched );
+				if( callback != null )
+					callback.callBack( replaced );
 			}
 		};
 
-		// Get all the ids first, so we know what adventures are actually in the
-		// database
-		ESGetIdsCommand getIdsCommand = new ESGetIdsCommand( getIdsCallback );
-		getIdsCommand.execute( null, null );
+		return NetworkExecutor.getExecutor().submit( new ESGetCommand( adventure.getRemoteId() ), refreshCallback );
 	}
 
 	/**
-	 * Remove an adventure from the database
+	 * Find the adventures in the database that aren't cached, or whose cached
+	 * copy has a different version
 	 * 
-	 * @param adventure
-	 *            The adventure to delete
+	 * @param versions
+	 *            The version of each adventure in the database, by remote id
+	 * @param known
+	 *            The version of each cached adventure, by remote id, where -1
+	 *            means it isn't known
+	 * @return The remote ids of the adventures to fetch, in the order of the
+	 *         database's versions
 	 */
-	public void deleteAdventure( AdventureModel adventure )
+	public static ArrayList<Integer> getChangedIds( Map<Integer, Long> versions, Map<Integer, Long> known )
 	{
-		ESDeleteCommand deleteCommand = new ESDeleteCommand( adventure.getRemoteId(), null );
-		deleteCommand.execute( null, null );
+		ArrayList<Integer> changed = new ArrayList<Integer>();
+		for( Map.Entry<Integer, Long> entry : versions.entrySet() )
+		{
+			Long knownVersion = known.get( entry.getKey() );
+			if( knownVersion == null || knownVersion < 0 || !knownVersion.equals( entry.getValue() ) )
+				changed.add( entry.getKey() );
+		}
+		return changed;
 	}
 
 	/**
-	 * A callback that takes two arguments
-	 * 
-	 * @author user
+	 * Fetch the whole of an adventure that has only been loaded as a summary.
+	 * The fetched adventure takes the summary's place in the cache.
 	 * 
+	 * @param summary
+	 *            The summary of the adventure to fetch
+	 * @param callback
+	 *            The callback to call with the fetched adventure, or with null
+	 *            if it could not be fetched
+	 * @return The running request
 	 */
-	private abstract class GetCallback extends Callback
+	public RequestFuture<AdventureModel> getAdventure( final AdventureModel summary, final Callback<AdventureModel> callback )
 	{
-
-		/**
-		 * the callback to call when this callback is done
-		 */
-		protected Callback mCallback;
-		/**
-		 * The number of ids to get adventures for
-		 */
-		protected int mNumber;
-
-		/**
-		 * Constructor
-		 * 
-		 * @param number
-		 *            The number of ids to get adventures for
-		 * @param callback
-		 *            the callback to call when this callback is done
-		 */
-		public GetCallback( int number, Callback callback )
+		Callback<AdventureModel> getCallback = new Callback<AdventureModel>()
 		{
-			mCallback = callback;
-			mNumber = number;
-		}
+			@Override
+			public void callBack( AdventureModel adventure )
+			{
+				if( adventure != null )
+				{
+					adventure.setLocalId( summary.getLocalId() );
+					AdventureCache.getAdventureCache().addFetchedAdventure( adventure );
+				}
+				callback.callBack( adventure );
+			}
+		};
+
+		return NetworkExecutor.getExecutor().submit( new ESGetCommand( summary.getRemoteId() ), getCallback );
+	}
 
+	/**
+	 * Remove an adventure from the database. The delete is queued in the
+	 * outbox and sent in the background.
+	 * 
+	 * @param adventure
+	 *            The adventure to delete
+	 */
+	public void deleteAdventure( AdventureModel adventure )
+	{
+		getOutbox().delete( adventure );
 	}
 
 }
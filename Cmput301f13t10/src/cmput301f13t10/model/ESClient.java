@@ -0,0 +1,534 @@
+package cmput301f13t10.model;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import cmput301f13t10.presenter.Media;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * The connection to the database that is shared by all of the database
+ * commands. Connections are pooled and kept alive between requests, so a
+ * series of requests reuses a few sockets rather than opening one each.
+ *
+ * Every response has to be read to the end or consumed, otherwise its
+ * connection is never returned to the pool.
+ *
+ * Responses are requested gzipped. Once a server has sent a gzipped response,
+ * large request bodies sent to it are gzipped as well. This assumes that a
+ * server that compresses its responses also reads compressed requests, which
+ * holds for Elasticsearch, where both are turned on by http.compression. For
+ * other servers the assumption is checked: a compressed request that is
+ * refused with 415 is resent uncompressed, and one refused with 400 is resent
+ * uncompressed once to tell a server that can't read it from a bad request.
+ * Only if the uncompressed request is accepted is that server not sent
+ * compressed bodies again.
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class ESClient
+{
+	/**
+	 * The most connections open to the database at once
+	 */
+	private static final int MAX_CONNECTIONS = 4;
+
+	/**
+	 * How long an idle connection is kept alive if the server doesn't say, in
+	 * milliseconds
+	 */
+	private static final long KEEP_ALIVE = 30 * 1000;
+
+	/**
+	 * Timeout for connecting and for reading responses, in milliseconds
+	 */
+	private static final int TIMEOUT = 20 * 1000;
+
+	/**
+	 * Request bodies smaller than this, in bytes, aren't worth compressing
+	 */
+	private static final int MIN_COMPRESSED_SIZE = 1024;
+
+	/**
+	 * The name of gzip content encoding
+	 */
+	private static final String GZIP = "gzip";
+
+	/**
+	 * The shared instance of the client
+	 */
+	private static ESClient sClient = null;
+
+	/**
+	 * The pooled http client
+	 */
+	private HttpClient mHttpClient;
+
+	/**
+	 * The Gson instance that all commands use. Gson is thread safe.
+	 */
+	private Gson mGson;
+
+	/**
+	 * If each server (by host and port) accepts gzipped request bodies. A
+	 * server that isn't in the map hasn't shown that it supports gzip yet.
+	 */
+	private Map<String, Boolean> mGzipRequests = new HashMap<String, Boolean>();
+
+	/**
+	 * The http request that each running request is waiting on, so that it
+	 * can be aborted
+	 */
+	private Map<Object, HttpUriRequest> mRunning = new HashMap<Object, HttpUriRequest>();
+
+	/**
+	 * The request that the http requests of each thread belong to, or null
+	 * if they belong to the thread itself
+	 */
+	private static final ThreadLocal<Object> sOwner = new ThreadLocal<Object>();
+
+	/**
+	 * Get the shared instance of the client
+	 *
+	 * @return The client
+	 */
+	public static synchronized ESClient getClient()
+	{
+		if( sClient == null )
+			sClient = new ESClient();
+		return sClient;
+	}
+
+	/**
+	 * Constructor
+	 */
+	private ESClient()
+	{
+		HttpParams params = new BasicHttpParams();
+		HttpConnectionParams.setConnectionTimeout( params, TIMEOUT );
+		HttpConnectionParams.setSoTimeout( params, TIMEOUT );
+		HttpConnectionParams.setStaleCheckingEnabled( params, true );
+		ConnManagerParams.setMaxTotalConnections( params, MAX_CONNECTIONS );
+		ConnManagerParams.setMaxConnectionsPerRoute( params, new ConnPerRouteBean( MAX_CONNECTIONS ) );
+
+		SchemeRegistry schemeRegistry = new SchemeRegistry();
+		schemeRegistry.register( new Scheme( "http", PlainSocketFactory.getSocketFactory(), 80 ) );
+		schemeRegistry.register( new Scheme( "https", SSLSocketFactory.getSocketFactory(), 443 ) );
+
+		DefaultHttpClient httpClient = new DefaultHttpClient( new ThreadSafeClientConnManager( params, schemeRegistry ), params );
+		httpClient.setKeepAliveStrategy( new ConnectionKeepAliveStrategy()
+		{
+			@Override
+			public long getKeepAliveDuration( HttpResponse response, HttpContext context )
+			{
+				// Use the server's keep-alive timeout if it gives one
+				HeaderElementIterator it = new BasicHeaderElementIterator( response.headerIterator( HTTP.CONN_KEEP_ALIVE ) );
+				while( it.hasNext() )
+				{
+					HeaderElement element = it.nextElement();
+					if( "timeout".equalsIgnoreCase( element.getName() ) && element.getValue() != null )
+					{
+						try
+						{
+							return Long.parseLong( element.getValue() ) * 1000;
+						}
+						catch( NumberFormatException e )
+						{
+						}
+					}
+				}
+				return KEEP_ALIVE;
+			}
+		} );
+		httpClient.addRequestInterceptor( new HttpRequestInterceptor()
+		{
+			@Override
+			public void process( HttpRequest request, HttpContext context )
+			{
+				if( !request.containsHeader( "Accept-Encoding" ) )
+					request.addHeader( "Accept-Encoding", GZIP );
+			}
+		} );
+		httpClient.addResponseInterceptor( new HttpResponseInterceptor()
+		{
+			@Override
+			public void process( HttpResponse response, HttpContext context )
+			{
+				HttpEntity entity = response.getEntity();
+				if( entity != null && isGzip( entity.getContentEncoding() ) )
+					response.setEntity( new GzipDecompressingEntity( entity ) );
+			}
+		} );
+		mHttpClient = httpClient;
+
+		mGson = new GsonBuilder().registerTypeAdapter( Media.class, new MediaSerializer<Media>() ).create();
+	}
+
+	/**
+	 * Get the shared http client
+	 *
+	 * @return The http client
+	 */
+	public HttpClient getHttpClient()
+	{
+		return mHttpClient;
+	}
+
+	/**
+	 * Get the shared Gson instance
+	 *
+	 * @return The Gson instance
+	 */
+	public Gson getGson()
+	{
+		return mGson;
+	}
+
+	/**
+	 * Execute a request. The response must be read with {@link #parse} or
+	 * {@link #getEntityContent}, or released with {@link #consume}.
+	 *
+	 * @param request
+	 *            The request to execute
+	 * @return The response
+	 * @throws IOException
+	 *             If the request failed
+	 */
+	public HttpResponse execute( HttpUriRequest request ) throws IOException
+	{
+		String server = request.getURI().getHost() + ":" + request.getURI().getPort();
+		HttpEntity entity = null;
+		if( request instanceof HttpEntityEnclosingRequest )
+			entity = ( (HttpEntityEnclosingRequest) request ).getEntity();
+
+		boolean compressed = false;
+		if( entity != null && entity.isRepeatable() && entity.getContentLength() >= MIN_COMPRESSED_SIZE && Boolean.TRUE.equals( getGzipRequests( server ) ) )
+		{
+			( (HttpEntityEnclosingRequest) request ).setEntity( compress( entity ) );
+			compressed = true;
+		}
+
+		HttpResponse response = executeAbortably( request );
+		int status = response.getStatusLine().getStatusCode();
+		if( compressed && status == HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE )
+		{
+			// The server doesn't understand compressed bodies after all
+			consume( response );
+			setGzipRequests( server, false );
+			( (HttpEntityEnclosingRequest) request ).setEntity( entity );
+			response = executeAbortably( request );
+		}
+		else if( compressed && status == HttpStatus.SC_BAD_REQUEST )
+		{
+			// Either the server can't read compressed bodies or the request
+			// is bad; only the first is fixed by sending it uncompressed
+			consume( response );
+			( (HttpEntityEnclosingRequest) request ).setEntity( entity );
+			response = executeAbortably( request );
+			if( response.getStatusLine().getStatusCode() < HttpStatus.SC_BAD_REQUEST )
+				setGzipRequests( server, false );
+		}
+		else if( isGzip( response.getFirstHeader( "Content-Encoding" ) ) && getGzipRequests( server ) == null )
+		{
+			setGzipRequests( server, true );
+		}
+		return response;
+	}
+
+	/**
+	 * Set the request that the http requests of the current thread belong
+	 * to, so that they can be aborted through it
+	 *
+	 * @param owner
+	 *            The request, or null when it is done
+	 */
+	static void setOwner( Object owner )
+	{
+		if( owner == null )
+			sOwner.remove();
+		else
+			sOwner.set( owner );
+	}
+
+	/**
+	 * Execute a request, keeping track of it so that it can be aborted from
+	 * another thread
+	 */
+	private HttpResponse executeAbortably( HttpUriRequest request ) throws IOException
+	{
+		Object owner = sOwner.get();
+		if( owner == null )
+			owner = Thread.currentThread();
+		synchronized( mRunning )
+		{
+			if( ( owner instanceof Future && ( (Future<?>) owner ).isCancelled() ) || Thread.currentThread().isInterrupted() )
+				throw new InterruptedIOException( "Request was cancelled" );
+			mRunning.put( owner, request );
+		}
+		try
+		{
+			return mHttpClient.execute( request );
+		}
+		finally
+		{
+			synchronized( mRunning )
+			{
+				mRunning.remove( owner );
+			}
+		}
+	}
+
+	/**
+	 * Abort the http request that a request is waiting on, if there is one
+	 *
+	 * @param owner
+	 *            The request whose http request is aborted, or the thread
+	 *            it was run on if it wasn't run as a request
+	 */
+	public void abort( Object owner )
+	{
+		synchronized( mRunning )
+		{
+			HttpUriRequest request = mRunning.get( owner );
+			if( request != null )
+				request.abort();
+		}
+	}
+
+	/**
+	 * Execute a request whose response isn't needed, and release its
+	 * connection
+	 *
+	 * @param request
+	 *            The request to execute
+	 * @throws IOException
+	 *             If the request failed
+	 */
+	public void executeAndConsume( HttpUriRequest request ) throws IOException
+	{
+		consume( execute( request ) );
+	}
+
+	/**
+	 * Get the Json string from the HttpResponse. The connection is released
+	 * once it has been read.
+	 *
+	 * @param response
+	 *            The response to decode
+	 * @return The Json string, or an empty string if the response had no body
+	 * @throws IOException
+	 *             If reading the response fails
+	 */
+	public String getEntityContent( HttpResponse response ) throws IOException
+	{
+		HttpEntity entity = response.getEntity();
+		if( entity == null )
+			return "";
+
+		StringBuilder json = new StringBuilder();
+		BufferedReader br = new BufferedReader( new InputStreamReader( entity.getContent(), "UTF-8" ) );
+		try
+		{
+			char[] buffer = new char[4096];
+			int read;
+			while( ( read = br.read( buffer ) ) != -1 )
+				json.append( buffer, 0, read );
+		}
+		finally
+		{
+			br.close();
+		}
+		return json.toString();
+	}
+
+	/**
+	 * Parse a Json response straight from its stream, without reading the
+	 * whole body into a string first. The connection is released once it has
+	 * been read.
+	 *
+	 * @param response
+	 *            The response to parse
+	 * @param type
+	 *            The type to parse the response as
+	 * @return The parsed response, or null if the response had no body
+	 * @throws IOException
+	 *             If reading the response fails
+	 */
+	public <T> T parse( HttpResponse response, Type type ) throws IOException
+	{
+		HttpEntity entity = response.getEntity();
+		if( entity == null )
+			return null;
+
+		JsonReader reader = new JsonReader( new InputStreamReader( entity.getContent(), "UTF-8" ) );
+		try
+		{
+			return mGson.fromJson( reader, type );
+		}
+		catch( JsonParseException e )
+		{
+			throw new IOException( "Bad response: " + e.getMessage() );
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * Release the connection of a response without reading it
+	 *
+	 * @param response
+	 *            The response to release
+	 */
+	public void consume( HttpResponse response )
+	{
+		if( response == null || response.getEntity() == null )
+			return;
+		try
+		{
+			response.getEntity().consumeContent();
+		}
+		catch( IOException e )
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * If a server accepts gzipped request bodies
+	 *
+	 * @param server
+	 *            The host and port of the server
+	 * @return True if it does, false if it doesn't, or null if it isn't known
+	 */
+	private synchronized Boolean getGzipRequests( String server )
+	{
+		return mGzipRequests.get( server );
+	}
+
+	/**
+	 * Record if a server accepts gzipped request bodies
+	 */
+	private synchronized void setGzipRequests( String server, boolean accepted )
+	{
+		mGzipRequests.put( server, accepted );
+	}
+
+	/**
+	 * Gzip a request body
+	 *
+	 * @param entity
+	 *            The request body to compress
+	 * @return The compressed request body
+	 * @throws IOException
+	 *             If the body could not be read
+	 */
+	private static HttpEntity compress( HttpEntity entity ) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream( (int) entity.getContentLength() / 2 );
+		GZIPOutputStream out = new GZIPOutputStream( bytes );
+		entity.writeTo( out );
+		out.close();
+
+		ByteArrayEntity compressed = new ByteArrayEntity( bytes.toByteArray() );
+		compressed.setContentType( entity.getContentType() );
+		compressed.setContentEncoding( GZIP );
+		return compressed;
+	}
+
+	/**
+	 * If a content encoding header is gzip
+	 */
+	private static boolean isGzip( Header encoding )
+	{
+		if( encoding == null )
+			return false;
+		for( HeaderElement element : encoding.getElements() )
+		{
+			if( GZIP.equalsIgnoreCase( element.getName() ) )
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * A response body that is decompressed as it is read
+	 */
+	private static class GzipDecompressingEntity extends HttpEntityWrapper
+	{
+		/**
+		 * Constructor
+		 *
+		 * @param entity
+		 *            The gzipped response body
+		 */
+		public GzipDecompressingEntity( HttpEntity entity )
+		{
+			super( entity );
+		}
+
+		@Override
+		public InputStream getContent() throws IOException
+		{
+			return new GZIPInputStream( wrappedEntity.getContent() );
+		}
+
+		@Override
+		public long getContentLength()
+		{
+			return -1;
+		}
+
+		@Override
+		public Header getContentEncoding()
+		{
+			return null;
+		}
+	}
+}
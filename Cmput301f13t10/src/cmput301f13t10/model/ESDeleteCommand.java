@@ -1,25 +1,14 @@
 package cmput301f13t10.model;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
+import java.util.concurrent.Callable;
 
-import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpDelete;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
 
-import android.os.AsyncTask;
 import cmput301f13t10.presenter.AppConstants;
-import cmput301f13t10.presenter.Media;
-
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 /**
  * A command to delete an adventure from the database
@@ -27,108 +16,51 @@ import com.google.gson.GsonBuilder;
  * @author Brendan Cowan
  * 
  */
-public class ESDeleteCommand extends AsyncTask<Void, Void, Void>
+public class ESDeleteCommand implements Callable<Boolean>
 {
-	/**
-	 * The HttpClient that this command will use
-	 */
-	private HttpClient mHttpClient = new DefaultHttpClient();
-
-	/**
-	 * The Gson constructor that this class will use
-	 */
-	private Gson mGson = new GsonBuilder().registerTypeAdapter( Media.class, new MediaSerializer<Media>() ).create();
-
 	/**
 	 * The remote adventure Id that the command will delete
 	 */
 	private int mId;
 
 	/**
-	 * Callback to be called after the command has been completed
+	 * If the last delete was refused by the database
 	 */
-	private Callback mCallback;
+	private boolean mRejected = false;
 
 	/**
 	 * Constructor
 	 * 
 	 * @param id
 	 *            The remote id of the adventure to delete
-	 * @param callback
-	 *            The callback to call after the command has been executed
 	 */
-	public ESDeleteCommand( int id, Callback callback )
+	public ESDeleteCommand( int id )
 	{
 		mId = id;
-		mCallback = callback;
 	}
 
+	/**
+	 * Delete the adventure
+	 * 
+	 * @return True if the adventure is no longer on the database
+	 */
 	@Override
-	protected Void doInBackground( Void... params )
+	public Boolean call()
 	{
-
-		// Delete the adventure
+		mRejected = false;
 		HttpDelete httpDelete = new HttpDelete( AppConstants.ES_URL + AppConstants.ES_ADVENTURE + mId );
 		httpDelete.addHeader( "Accept", "application/json" );
 
-		HttpResponse response = null;
-		try
-		{
-			response = mHttpClient.execute( httpDelete );
-		}
-		catch( ClientProtocolException e )
-		{
-			e.printStackTrace();
-		}
-		catch( IOException e )
-		{
-			e.printStackTrace();
-		}
-
-		HttpEntity entity = response.getEntity();
-		BufferedReader br = null;
-		try
-		{
-			br = new BufferedReader( new InputStreamReader( entity.getContent() ) );
-		}
-		catch( IllegalStateException e2 )
-		{
-			e2.printStackTrace();
-		}
-		catch( IOException e2 )
-		{
-			e2.printStackTrace();
-		}
-		String output;
-
+		ESClient client = ESClient.getClient();
 		try
 		{
-			while( ( output = br.readLine() ) != null )
-				; // just keep reading until we're done
-		}
-		catch( IOException e )
-		{
-			e.printStackTrace();
-		}
-
-		// then delete the id
-		HttpPost updateRequest = new HttpPost( AppConstants.ES_URL + AppConstants.ES_IDS + "/_update" );
-		String query = "{\"script\" : \"ctx._source.mIds.remove(tag)\", \"params\":{\"tag\":\"" + mId + "\"} }";
-		StringEntity stringentity = null;
-		try
-		{
-			stringentity = new StringEntity( query );
-		}
-		catch( UnsupportedEncodingException e )
-		{
-			e.printStackTrace();
-		}
-		updateRequest.setHeader( "Accept", "application/json" );
-
-		updateRequest.setEntity( stringentity );
-		try
-		{
-			response = mHttpClient.execute( updateRequest );
+			HttpResponse response = client.execute( httpDelete );
+			int status = response.getStatusLine().getStatusCode();
+			client.consume( response );
+			if( status == HttpStatus.SC_OK || status == HttpStatus.SC_NOT_FOUND )
+				return true;
+			mRejected = status >= 400 && status < 500;
+			return false;
 		}
 		catch( ClientProtocolException e )
 		{
@@ -138,14 +70,18 @@ public class ESDeleteCommand extends AsyncTask<Void, Void, Void>
 		{
 			e.printStackTrace();
 		}
-		return null;
+		return false;
 	}
 
-	@Override
-	protected void onPostExecute( Void result )
+	/**
+	 * Check if the last delete failed because the database refused it.
+	 * Sending the same delete again won't help.
+	 * 
+	 * @return True if the delete was refused
+	 */
+	public boolean isRejected()
 	{
-		if( mCallback != null )
-			mCallback.callBack( null );
+		return mRejected;
 	}
 
 }
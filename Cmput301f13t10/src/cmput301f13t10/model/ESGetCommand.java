@@ -1,22 +1,15 @@
 package cmput301f13t10.model;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.lang.reflect.Type;
+import java.util.concurrent.Callable;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
 
-import android.os.AsyncTask;
 import cmput301f13t10.presenter.AppConstants;
-import cmput301f13t10.presenter.Media;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 
 /**
@@ -25,88 +18,53 @@ import com.google.gson.reflect.TypeToken;
  * @author Brendan Cowan
  * 
  */
-public class ESGetCommand extends AsyncTask<Void, Void, Void>
+public class ESGetCommand implements Callable<AdventureModel>
 {
 
-	/**
-	 * the httpClient to be used in the request
-	 */
-	private HttpClient mHttpClient = new DefaultHttpClient();
-
-	/**
-	 * The Gson constructor that this class will use
-	 */
-	private Gson mGson = new GsonBuilder().registerTypeAdapter( Media.class, new MediaSerializer<Media>() ).create();
-
 	/**
 	 * The remote id of the adventure to get
 	 */
 	private int mId;
 
-	/**
-	 * The callback to call after the command has been executed
-	 */
-	private Callback mCallback;
-
-	/**
-	 * The adventure that has been retrieved
-	 */
-	private AdventureModel mAdventure;
-
 	/**
 	 * Constructor
 	 * 
 	 * @param id
 	 *            The remote id of the adventure to get
-	 * @param callback
-	 *            The callback to call after the command has been executed
 	 */
-	public ESGetCommand( int id, Callback callback )
+	public ESGetCommand( int id )
 	{
 		mId = id;
-		mCallback = callback;
 	}
 
 	/**
-	 * Get the Json string from the HttpResponse
+	 * Get the adventure
 	 * 
-	 * @param response
-	 *            The response to decode
-	 * @return The Json string
-	 * @throws IOException
-	 *             If reading the response fails
+	 * @return The adventure, or null if it could not be retrieved
 	 */
-	private String getEntityContent( HttpResponse response ) throws IOException
-	{
-		BufferedReader br = new BufferedReader( new InputStreamReader( ( response.getEntity().getContent() ) ) );
-		String output;
-		String json = "";
-		while( ( output = br.readLine() ) != null )
-		{
-			json += output;
-		}
-		return json;
-	}
-
 	@Override
-	protected Void doInBackground( Void... params )
+	public AdventureModel call()
 	{
 
 		try
 		{
-			HttpGet getRequest = new HttpGet( AppConstants.ES_URL + AppConstants.ES_ADVENTURE + mId + "?pretty=1" );
+			HttpGet getRequest = new HttpGet( AppConstants.ES_URL + AppConstants.ES_ADVENTURE + mId );
 
 			getRequest.addHeader( "Accept", "application/json" );
 
-			HttpResponse response = mHttpClient.execute( getRequest );
-
-			String json = getEntityContent( response );
+			ESClient client = ESClient.getClient();
+			HttpResponse response = client.execute( getRequest );
 
 			Type elasticSearchResponseType = new TypeToken<ElasticSearchResponse<AdventureModel>>()
 			{
 			}.getType();
-			ElasticSearchResponse<AdventureModel> esResponse = mGson.fromJson( json, elasticSearchResponseType );
-			mAdventure = esResponse.getSource();
+			ElasticSearchResponse<AdventureModel> esResponse = client.parse( response, elasticSearchResponseType );
+			if( esResponse != null && esResponse.getSource() != null )
+			{
+				AdventureModel adventure = esResponse.getSource();
+				adventure.setRemoteVersion( esResponse.getVersion() );
+				return adventure;
+			}
 
 		}
 		catch( ClientProtocolException e )
@@ -124,11 +82,4 @@ public class ESGetCommand extends AsyncTask<Void, Void, Void>
 		return null;
 	}
 
-	@Override
-	protected void onPostExecute( Void result )
-	{
-		if( mCallback != null )
-			mCallback.callBack( mAdventure );
-	}
-
 }
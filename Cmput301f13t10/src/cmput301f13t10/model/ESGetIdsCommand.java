@@ -1,178 +1,135 @@
 package cmput301f13t10.model;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.apache.http.HttpResponse;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpGet;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
 
-import android.os.AsyncTask;
 import cmput301f13t10.presenter.AppConstants;
-import cmput301f13t10.presenter.Media;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 
 /**
- * Command for getting all remote ids of adventures stored in the database
+ * Command for getting all remote ids of adventures stored in the database,
+ * along with the version of each adventure's document. The ids are read from
+ * the adventures themselves with a search that returns only their ids and
+ * versions, a page at a time. Comparing the versions with those of the cached
+ * adventures shows which adventures changed without fetching any of them.
+ * 
+ * The search is sorted by id, since paging through unsorted results can skip
+ * or repeat documents when the order of the matches changes between pages.
  * 
  * @author Brendan Cowan
  * 
  */
-public class ESGetIdsCommand extends AsyncTask<Void, Void, Void>
+public class ESGetIdsCommand implements Callable<Map<Integer, Long>>
 {
 	/**
-	 * the httpClient to be used in the request
-	 */
-	private HttpClient mHttpClient = new DefaultHttpClient();
-
-	/**
-	 * The Gson constructor that this class will use
-	 */
-	private Gson mGson = new GsonBuilder().registerTypeAdapter( Media.class, new MediaSerializer<Media>() ).create();
-
-	/**
-	 * The callback to call once this command has been completed
-	 */
-	private Callback mCallback;
-
-	/**
-	 * The returned list of ids
+	 * The number of ids requested at a time
 	 */
-	private ArrayList<Integer> mIds = new ArrayList<Integer>();
+	public static final int PAGE_SIZE = 500;
 
 	/**
-	 * Constructor
+	 * Get the ids and versions
 	 * 
-	 * @param callback
-	 *            The callback to call once this command has been executed
+	 * @return The version of each adventure by remote id, in the order they
+	 *         were found, or null if a request failed
 	 */
-	public ESGetIdsCommand( Callback callback )
-	{
-		mCallback = callback;
-	}
-
-	/**
-	 * Get the Json string from the HttpResponse
-	 * 
-	 * @param response
-	 *            The response to decode
-	 * @return The Json string
-	 * @throws IOException
-	 *             If reading the response fails
-	 */
-	private String getEntityContent( HttpResponse response ) throws IOException
-	{
-		BufferedReader br = new BufferedReader( new InputStreamReader( ( response.getEntity().getContent() ) ) );
-		String output;
-		String json = "";
-		while( ( output = br.readLine() ) != null )
-		{
-			json += output;
-		}
-		return json;
-	}
-
 	@Override
-	protected Void doInBackground( Void... params )
+	public Map<Integer, Long> call()
 	{
-
+		Map<Integer, Long> versions = new LinkedHashMap<Integer, Long>();
 		try
 		{
-			HttpGet getRequest = new HttpGet( AppConstants.ES_URL + AppConstants.ES_IDS + "?pretty=1" );
-
-			getRequest.addHeader( "Accept", "application/json" );
-			HttpResponse response = mHttpClient.execute( getRequest );
-
-			String json = getEntityContent( response );
-
-			Type elasticSearchResponseType = new TypeToken<ElasticSearchResponse<IdList>>()
-			{
-			}.getType();
-			ElasticSearchResponse<IdList> esResponse = null;
-			try
-			{
-				esResponse = mGson.fromJson( json, elasticSearchResponseType );
-			}
-			catch( Exception e )
-			{
-				e.printStackTrace();
-			}
-			for( int i : esResponse.getSource().getIds() )
+			int from = 0;
+			int total;
+			do
 			{
-				if( mIds.contains( i ) )
-				{
-					deleteId( i ); // Workaround for when the database gets too
-									// many of one id.
-				}
-				else
+				ElasticSearchSearchResponse<Object> esResponse = getPage( from );
+				if( esResponse.getHits().isEmpty() )
+					break;
+
+				for( ElasticSearchResponse<Object> hit : esResponse.getHits() )
 				{
-					mIds.add( i );
+					try
+					{
+						// An adventure can show up in two pages if adventures are
+						// added while paging
+						int id = Integer.parseInt( hit.getId() );
+						if( !versions.containsKey( id ) )
+							versions.put( id, hit.getVersion() );
+					}
+					catch( NumberFormatException e )
+					{
+						// Not an adventure that this app uploaded
+					}
 				}
+				from += esResponse.getHits().size();
+				total = esResponse.getTotal();
 			}
-
+			while( from < total );
 		}
-		catch( ClientProtocolException e )
+		catch( IOException e )
 		{
 			e.printStackTrace();
+			return null;
 		}
-		catch( IOException e )
+		catch( RuntimeException e )
 		{
 			e.printStackTrace();
+			return null;
 		}
-		return null;
+		return versions;
 	}
 
 	/**
-	 * Delete an id from the database
+	 * Get the search that finds a page of ids
 	 * 
-	 * @param id
-	 *            the id to remove
+	 * @param from
+	 *            The number of ids before the page
+	 * @return The body of the search request
 	 */
-	private void deleteId( int id )
+	protected String getQuery( int from )
 	{
-		HttpPost updateRequest = new HttpPost( AppConstants.ES_URL + AppConstants.ES_IDS + "/_update" );
-		String query = "{\"script\" : \"ctx._source.mIds.remove(tag)\", \"params\":{\"tag\":\"" + id + "\"}";
-		StringEntity stringentity = null;
-		try
-		{
-			stringentity = new StringEntity( query );
-		}
-		catch( UnsupportedEncodingException e )
-		{
-			e.printStackTrace();
-		}
-		updateRequest.setHeader( "Accept", "application/json" );
+		return "{\"query\": {\"match_all\": {}}, \"sort\": [\"_uid\"], \"fields\": [], \"version\": true, \"from\": " + from + ", \"size\": " + PAGE_SIZE + "}";
+	}
 
-		updateRequest.setEntity( stringentity );
-		try
-		{
-			mHttpClient.execute( updateRequest );
-		}
-		catch( ClientProtocolException e )
-		{
-			e.printStackTrace();
-		}
-		catch( IOException e )
+	/**
+	 * Get a page of ids and versions
+	 * 
+	 * @param from
+	 *            The number of ids before the page
+	 * @return The search response with the page
+	 * @throws IOException
+	 *             If the request failed or the database couldn't answer it
+	 */
+	protected ElasticSearchSearchResponse<Object> getPage( int from ) throws IOException
+	{
+		HttpPost searchRequest = new HttpPost( AppConstants.ES_URL + AppConstants.ES_ADVENTURE + "_search" );
+		searchRequest.setHeader( "Accept", "application/json" );
+		searchRequest.setEntity( new StringEntity( getQuery( from ), "UTF-8" ) );
+
+		ESClient client = ESClient.getClient();
+		HttpResponse response = client.execute( searchRequest );
+		int status = response.getStatusLine().getStatusCode();
+		if( status != HttpStatus.SC_OK )
 		{
-			e.printStackTrace();
+			client.consume( response );
+			throw new IOException( "Search failed with status " + status );
 		}
-	}
 
-	@Override
-	protected void onPostExecute( Void result )
-	{
-		if( mCallback != null )
-			mCallback.callBack( mIds );
+		Type searchResponseType = new TypeToken<ElasticSearchSearchResponse<Object>>()
+		{
+		}.getType();
+		ElasticSearchSearchResponse<Object> esResponse = client.parse( response, searchResponseType );
+		if( esResponse == null )
+			throw new IOException( "Empty search response" );
+		return esResponse;
 	}
 }
@@ -0,0 +1,71 @@
+package cmput301f13t10.model;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+
+import cmput301f13t10.presenter.AppConstants;
+import cmput301f13t10.presenter.Logger;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Command for leasing a block of remote ids from the database. The counter
+ * document is reindexed, and elasticsearch gives every write of a document a
+ * new version, so the version that comes back is a block number that no other
+ * device will get.
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class ESLeaseIdsCommand implements Callable<Long>
+{
+	/**
+	 * Lease a block
+	 * 
+	 * @return The leased block number, or null if no block could be leased
+	 */
+	@Override
+	public Long call()
+	{
+		try
+		{
+			HttpPost indexRequest = new HttpPost( AppConstants.ES_URL + AppConstants.ES_ID_COUNTER );
+			indexRequest.setHeader( "Accept", "application/json" );
+			indexRequest.setEntity( new StringEntity( "{}", "UTF-8" ) );
+
+			ESClient client = ESClient.getClient();
+			HttpResponse response = client.execute( indexRequest );
+			int status = response.getStatusLine().getStatusCode();
+			String json = client.getEntityContent( response );
+			if( status != HttpStatus.SC_OK && status != HttpStatus.SC_CREATED )
+			{
+				Logger.log( "Could not lease remote ids: " + json, null );
+				return null;
+			}
+
+			JsonElement result = new JsonParser().parse( json );
+			if( result.isJsonObject() )
+			{
+				JsonElement version = ( (JsonObject) result ).get( "_version" );
+				if( version != null )
+					return version.getAsLong();
+			}
+		}
+		catch( IOException e )
+		{
+			Logger.log( "", e );
+		}
+		catch( RuntimeException e )
+		{
+			Logger.log( "", e );
+		}
+		return null;
+	}
+}
@@ -0,0 +1,211 @@
+package cmput301f13t10.model;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+
+import cmput301f13t10.presenter.AppConstants;
+import cmput301f13t10.presenter.Logger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Command for retrieving many adventures from the database at once. The
+ * adventures are requested a page at a time with elasticsearch's multi-get,
+ * and each page is passed on as soon as it arrives. If a page can't be
+ * fetched, or the command is cancelled, it stops there and the pages that
+ * arrived before are all that is passed on.
+ * 
+ * The command can fetch only summaries of the adventures (their titles and
+ * remote ids), which is all the library needs to list them. The summaries
+ * are unloaded adventures (see {@link AdventureModel#isLoaded()}) with no
+ * local id.
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class ESMultiGetCommand implements Callable<ArrayList<AdventureModel>>
+{
+	/**
+	 * The number of adventures to request at once
+	 */
+	public static final int PAGE_SIZE = 50;
+
+	/**
+	 * The fields of an adventure that are fetched for a summary
+	 */
+	private static final String SUMMARY_FIELDS = "mTitle,mRemoteId";
+
+	/**
+	 * The remote ids of the adventures to get
+	 */
+	private List<Integer> mIds;
+
+	/**
+	 * If only summaries of the adventures are fetched
+	 */
+	private boolean mSummariesOnly;
+
+	/**
+	 * The callback to call with each page of adventures, or null
+	 */
+	private Callback<ArrayList<AdventureModel>> mPageCallback;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param ids
+	 *            The remote ids of the adventures to get
+	 * @param summariesOnly
+	 *            True to fetch only the title and remote id of each adventure
+	 * @param pageCallback
+	 *            The callback to call with each page of adventures as it
+	 *            arrives, where the {@link NetworkExecutor} runs its callbacks,
+	 *            or null
+	 */
+	public ESMultiGetCommand( List<Integer> ids, boolean summariesOnly, Callback<ArrayList<AdventureModel>> pageCallback )
+	{
+		mIds = ids;
+		mSummariesOnly = summariesOnly;
+		mPageCallback = pageCallback;
+	}
+
+	/**
+	 * Get the adventures
+	 * 
+	 * @return All of the adventures that were retrieved, or null if any page
+	 *         of them could not be, or the command was cancelled
+	 */
+	@Override
+	public ArrayList<AdventureModel> call()
+	{
+		ArrayList<AdventureModel> all = new ArrayList<AdventureModel>();
+		for( int start = 0; start < mIds.size(); start += PAGE_SIZE )
+		{
+			if( Thread.currentThread().isInterrupted() )
+				return null;
+			List<Integer> page = mIds.subList( start, Math.min( start + PAGE_SIZE, mIds.size() ) );
+			final ArrayList<AdventureModel> adventures;
+			try
+			{
+				adventures = getPage( page );
+			}
+			catch( IOException e )
+			{
+				Logger.log( "Could not get adventures " + page, e );
+				return null;
+			}
+			all.addAll( adventures );
+			if( mPageCallback != null )
+			{
+				NetworkExecutor.getExecutor().post( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						mPageCallback.callBack( adventures );
+					}
+				} );
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * Get a page of adventures
+	 * 
+	 * @param ids
+	 *            The remote ids of the adventures on the page
+	 * @return The adventures that exist
+	 * @throws IOException
+	 *             If the request failed or the database couldn't answer it
+	 */
+	protected ArrayList<AdventureModel> getPage( List<Integer> ids ) throws IOException
+	{
+		JsonArray idArray = new JsonArray();
+		for( Integer id : ids )
+			idArray.add( new JsonPrimitive( String.valueOf( id ) ) );
+		JsonObject query = new JsonObject();
+		query.add( "ids", idArray );
+
+		String url = AppConstants.ES_URL + AppConstants.ES_ADVENTURE + "_mget";
+		if( mSummariesOnly )
+			url += "?_source=" + SUMMARY_FIELDS;
+		HttpPost postRequest = new HttpPost( url );
+		postRequest.addHeader( "Accept", "application/json" );
+		postRequest.setEntity( new StringEntity( query.toString(), "UTF-8" ) );
+
+		ESClient client = ESClient.getClient();
+		HttpResponse response = client.execute( postRequest );
+		int status = response.getStatusLine().getStatusCode();
+		if( status != HttpStatus.SC_OK )
+		{
+			client.consume( response );
+			throw new IOException( "Multi-get failed with status " + status );
+		}
+		ArrayList<AdventureModel> adventures = new ArrayList<AdventureModel>();
+		if( mSummariesOnly )
+		{
+			Type multiGetResponseType = new TypeToken<ElasticSearchMultiGetResponse<Summary>>()
+			{
+			}.getType();
+			ElasticSearchMultiGetResponse<Summary> esResponse = client.parse( response, multiGetResponseType );
+			if( esResponse == null )
+				throw new IOException( "Empty multi-get response" );
+			for( ElasticSearchResponse<Summary> doc : esResponse.getDocs() )
+			{
+				Summary summary = doc.getSource();
+				if( summary != null )
+				{
+					AdventureModel adventure = new AdventureModel( -1, summary.mRemoteId, summary.mTitle );
+					adventure.setRemoteVersion( doc.getVersion() );
+					adventures.add( adventure );
+				}
+			}
+		}
+		else
+		{
+			Type multiGetResponseType = new TypeToken<ElasticSearchMultiGetResponse<AdventureModel>>()
+			{
+			}.getType();
+			ElasticSearchMultiGetResponse<AdventureModel> esResponse = client.parse( response, multiGetResponseType );
+			if( esResponse == null )
+				throw new IOException( "Empty multi-get response" );
+			for( ElasticSearchResponse<AdventureModel> doc : esResponse.getDocs() )
+			{
+				if( doc.getSource() != null )
+				{
+					doc.getSource().setRemoteVersion( doc.getVersion() );
+					adventures.add( doc.getSource() );
+				}
+			}
+		}
+		return adventures;
+	}
+
+	/**
+	 * The fields of an adventure that are fetched for a summary
+	 */
+	private static class Summary
+	{
+		/**
+		 * The adventure's title
+		 */
+		String mTitle;
+
+		/**
+		 * The remote id of the adventure
+		 */
+		int mRemoteId;
+	}
+}
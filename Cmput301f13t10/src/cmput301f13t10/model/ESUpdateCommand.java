@@ -0,0 +1,219 @@
+package cmput301f13t10.model;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+
+import cmput301f13t10.presenter.AppConstants;
+import cmput301f13t10.presenter.Logger;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Command to upload an adventure to the database. Only the parts of the
+ * adventure that changed since it was last uploaded are sent (see
+ * {@link UploadState}), in a single update request.
+ *
+ * What is sent is a snapshot of the adventure, taken when it was queued to be
+ * uploaded, so that the adventure can keep being edited while the upload is
+ * running. What was uploaded is remembered in the adventure itself.
+ *
+ * Updates of part of an adventure are checked against the version of the
+ * document that was last uploaded. If the document was changed or removed by
+ * someone else since then, the whole adventure is sent instead.
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class ESUpdateCommand implements Callable<Boolean>
+{
+	/**
+	 * How many times elasticsearch retries an update that conflicts with
+	 * another update of the same document
+	 */
+	private static final int RETRY_ON_CONFLICT = 3;
+
+	/**
+	 * The adventure to upload
+	 */
+	private AdventureModel mAdventure;
+
+	/**
+	 * The copy of the adventure that is sent
+	 */
+	private AdventureModel mSnapshot;
+
+	/**
+	 * If the last upload was refused by the database
+	 */
+	private boolean mRejected = false;
+
+	/**
+	 * Constructor
+	 *
+	 * @param adventure
+	 *            The adventure to upload, which must have a remote id
+	 * @param snapshot
+	 *            A copy of the adventure that isn't changed while it is
+	 *            uploaded (see {@link AdventureCodec#copy}). This is what is
+	 *            sent.
+	 */
+	public ESUpdateCommand( AdventureModel adventure, AdventureModel snapshot )
+	{
+		mAdventure = adventure;
+		mSnapshot = snapshot;
+	}
+
+	/**
+	 * Upload the adventure
+	 * 
+	 * @return True if the adventure is up to date on the database
+	 */
+	@Override
+	public Boolean call()
+	{
+		mRejected = false;
+		try
+		{
+			// The snapshot may have been taken before the adventure was given
+			// its remote id
+			mSnapshot.setRemoteId( mAdventure.getRemoteId() );
+			UploadState previous = mAdventure.getUploadState();
+			UploadState state = new UploadState( mSnapshot );
+			if( !state.isChangedFrom( previous ) )
+				return true;
+
+			if( previous != null && previous.getVersion() >= 0 )
+			{
+				Long version = update( state.getUpdate( previous, mSnapshot, ESClient.getClient().getGson() ), previous.getVersion() );
+				if( version != null )
+				{
+					uploaded( state, version );
+					return true;
+				}
+			}
+
+			// Send the whole adventure. Only its response decides if the
+			// adventure is refused.
+			mRejected = false;
+			Long version = update( state.getUpdate( null, mSnapshot, ESClient.getClient().getGson() ), -1 );
+			if( version != null )
+			{
+				uploaded( state, version );
+				return true;
+			}
+		}
+		catch( IOException e )
+		{
+			Logger.log( "", e );
+		}
+		return false;
+	}
+
+	/**
+	 * Check if the last upload failed because the database refused it, e.g.
+	 * because the adventure doesn't fit its mapping. Sending the same
+	 * adventure again won't help.
+	 * 
+	 * @return True if the upload was refused
+	 */
+	public boolean isRejected()
+	{
+		return mRejected;
+	}
+
+	/**
+	 * Remember what was uploaded, so that the next upload only sends what
+	 * changes after this, and refreshing the library doesn't fetch it again
+	 * 
+	 * @param state
+	 *            What the adventure looked like when it was uploaded
+	 * @param version
+	 *            The version of the document after the upload, or -1 if it
+	 *            isn't known
+	 */
+	private void uploaded( UploadState state, long version )
+	{
+		state.setVersion( version );
+		mAdventure.setUploadState( state );
+		mAdventure.setRemoteVersion( version );
+	}
+
+	/**
+	 * Send a request to the database
+	 * 
+	 * @param request
+	 *            The request to send
+	 * @return The response
+	 * @throws IOException
+	 *             If the request failed
+	 */
+	protected HttpResponse send( HttpPost request ) throws IOException
+	{
+		return ESClient.getClient().execute( request );
+	}
+
+	/**
+	 * Send an update of the adventure
+	 *
+	 * @param body
+	 *            The body of the update request
+	 * @param version
+	 *            The version that the document must have for the update to
+	 *            be applied, or -1 to apply it regardless
+	 * @return The version of the document after the update (-1 if it wasn't
+	 *         returned), or null if the update failed
+	 * @throws IOException
+	 *             If the request failed
+	 */
+	private Long update( String body, long version ) throws IOException
+	{
+		String url = AppConstants.ES_URL + AppConstants.ES_ADVENTURE + mAdventure.getRemoteId() + "/_update";
+		if( version >= 0 )
+			url += "?version=" + version;
+		else
+			url += "?retry_on_conflict=" + RETRY_ON_CONFLICT;
+
+		HttpPost updateRequest = new HttpPost( url );
+		updateRequest.setHeader( "Accept", "application/json" );
+		updateRequest.setEntity( new StringEntity( body, "UTF-8" ) );
+
+		ESClient client = ESClient.getClient();
+		HttpResponse response = send( updateRequest );
+		int status = response.getStatusLine().getStatusCode();
+		String json = client.getEntityContent( response );
+		if( status != HttpStatus.SC_OK && status != HttpStatus.SC_CREATED )
+		{
+			// A conflict or missing document is expected when someone else has
+			// changed the adventure
+			if( status != HttpStatus.SC_CONFLICT && status != HttpStatus.SC_NOT_FOUND )
+			{
+				Logger.log( "Update of adventure " + mAdventure.getRemoteId() + " failed: " + json, null );
+				mRejected = status >= 400 && status < 500;
+			}
+			return null;
+		}
+
+		try
+		{
+			JsonElement result = new JsonParser().parse( json );
+			if( result.isJsonObject() )
+			{
+				JsonElement resultVersion = ( (JsonObject) result ).get( "_version" );
+				if( resultVersion != null )
+					return resultVersion.getAsLong();
+			}
+		}
+		catch( RuntimeException e )
+		{
+			Logger.log( "", e );
+		}
+		return -1L;
+	}
+}
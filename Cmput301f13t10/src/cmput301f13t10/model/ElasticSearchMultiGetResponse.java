@@ -0,0 +1,31 @@
+package cmput301f13t10.model;
+
+import java.util.ArrayList;
+
+/**
+ * The response to an elasticsearch multi-get (_mget) request
+ * 
+ * @author Brendan Cowan
+ * 
+ * @param <T>
+ *            The type of the documents that were requested
+ */
+public class ElasticSearchMultiGetResponse<T>
+{
+	/**
+	 * The documents that were requested, in the order they were requested
+	 */
+	ArrayList<ElasticSearchResponse<T>> docs;
+
+	/**
+	 * Get the documents that were requested
+	 * 
+	 * @return The documents, including ones that didn't exist
+	 */
+	public ArrayList<ElasticSearchResponse<T>> getDocs()
+	{
+		if( docs == null )
+			return new ArrayList<ElasticSearchResponse<T>>();
+		return docs;
+	}
+}
@@ -9,7 +9,7 @@ public class ElasticSearchResponse<T>
 	String _index;
 	String _type;
 	String _id;
-	int _version;
+	long _version;
 	boolean exists;
 	T _source;
 	double max_score;
@@ -18,4 +18,14 @@ public class ElasticSearchResponse<T>
 	{
 		return _source;
 	}
+
+	public String getId()
+	{
+		return _id;
+	}
+
+	public long getVersion()
+	{
+		return _version;
+	}
 }
@@ -0,0 +1,60 @@
+package cmput301f13t10.model;
+
+import java.util.ArrayList;
+
+/**
+ * The response to an elasticsearch search (_search) request
+ * 
+ * @author Brendan Cowan
+ * 
+ * @param <T>
+ *            The type of the documents that were searched
+ */
+public class ElasticSearchSearchResponse<T>
+{
+	/**
+	 * The documents that matched
+	 */
+	Hits<T> hits;
+
+	/**
+	 * Get the number of documents that matched, including ones that weren't
+	 * returned in this page of results
+	 * 
+	 * @return The number of matches
+	 */
+	public int getTotal()
+	{
+		if( hits == null )
+			return 0;
+		return hits.total;
+	}
+
+	/**
+	 * Get the documents that were returned
+	 * 
+	 * @return This page of matching documents
+	 */
+	public ArrayList<ElasticSearchResponse<T>> getHits()
+	{
+		if( hits == null || hits.hits == null )
+			return new ArrayList<ElasticSearchResponse<T>>();
+		return hits.hits;
+	}
+
+	/**
+	 * The matching documents of a search
+	 */
+	static class Hits<T>
+	{
+		/**
+		 * The number of documents that matched
+		 */
+		int total;
+
+		/**
+		 * This page of matching documents
+		 */
+		ArrayList<ElasticSearchResponse<T>> hits;
+	}
+}
@@ -1,15 +1,18 @@
 package cmput301f13t10.model;
 
+import java.io.EOFException;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
 
 /**
- * Helper class used to assist with saving and loading from file
+ * Helper class used to assist with saving and loading from file. Adventures
+ * are saved locally in an {@link AdventureJournal}.
  * 
  * @author Brendan Cowan
  * 
@@ -17,46 +20,154 @@ import java.util.ArrayList;
 public class FileInteractor
 {
 	/**
-	 * Save the given adventures to file. This method overwrites what is in the
-	 * file with the new data.
+	 * Save the given adventures to the journal. Only the adventures that are
+	 * flagged to be saved are written, and they are appended to the journal
+	 * rather than replacing the adventures that are already saved. Summaries
+	 * are never written, since the full adventure is already in the journal.
 	 * 
 	 * @param adventures
 	 *            The list of adventures to save to file
-	 * @param fileOutputStream
-	 *            The file output stream for the data
+	 * @param deletedIds
+	 *            The local ids of adventures that have been deleted since the
+	 *            last save
+	 * @param journal
+	 *            The journal to save the adventures to
 	 */
-	public static void saveAdventures( ArrayList<AdventureModel> adventures, FileOutputStream fileOutputStream )
+	public static void saveAdventures( ArrayList<AdventureModel> adventures, ArrayList<Integer> deletedIds, AdventureJournal journal )
 	{
-		try
+		ArrayList<AdventureModel> toSave = new ArrayList<AdventureModel>();
+		for( AdventureModel adv : adventures )
 		{
-			ObjectOutputStream objectOutputStream = new ObjectOutputStream( fileOutputStream );
-
-			for( AdventureModel adv : adventures )
+			if( adv.toSave() && adv.isLoaded() )
 			{
-				if( adv.toSave() )
-				{
-					objectOutputStream.writeObject( adv );
-					adv.setSave( false );
-				}
+				adv.setSave( false );
+				toSave.add( adv );
 			}
-			fileOutputStream.close();
 		}
-		catch( FileNotFoundException e )
+
+		try
 		{
+			journal.append( toSave, deletedIds );
+		}
+		catch( IOException e )
+		{
+			// Flag them again so the next save retries them
+			for( AdventureModel adv : toSave )
+				adv.setSave( true );
 			e.printStackTrace();
+			return;
+		}
+		journal.compactInBackground();
+	}
+
+	/**
+	 * Load the adventures from the journal
+	 * 
+	 * @param journal
+	 *            The journal to read from
+	 * @return A list of all adventures in the journal
+	 */
+	public static ArrayList<AdventureModel> loadAdventures( AdventureJournal journal )
+	{
+		try
+		{
+			return journal.replay();
 		}
 		catch( IOException e )
 		{
 			e.printStackTrace();
 		}
-		catch( NullPointerException e )
+		return new ArrayList<AdventureModel>();
+	}
+
+	/**
+	 * Load a summary (ids and title) of each adventure in the journal
+	 * 
+	 * @param journal
+	 *            The journal to read from
+	 * @return A summary of every adventure in the journal
+	 */
+	public static ArrayList<AdventureModel> loadSummaries( AdventureJournal journal )
+	{
+		try
+		{
+			return journal.loadSummaries();
+		}
+		catch( IOException e )
 		{
 			e.printStackTrace();
 		}
+		return new ArrayList<AdventureModel>();
 	}
 
 	/**
-	 * Load the adventures from the given file
+	 * Load a single adventure from the journal
+	 * 
+	 * @param journal
+	 *            The journal to read from
+	 * @param localId
+	 *            The local id of the adventure to load
+	 * @return The adventure, or null if it couldn't be loaded
+	 */
+	public static AdventureModel loadAdventure( AdventureJournal journal, int localId )
+	{
+		try
+		{
+			return journal.load( localId );
+		}
+		catch( IOException e )
+		{
+			e.printStackTrace();
+		}
+		catch( ClassNotFoundException e )
+		{
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Move the adventures saved by older versions of the app (one
+	 * ObjectOutputStream holding every adventure) into the journal, then
+	 * delete the old file.
+	 * 
+	 * @param legacyFile
+	 *            The file written by older versions of the app
+	 * @param journal
+	 *            The journal to move the adventures into
+	 */
+	public static void migrateAdventures( File legacyFile, AdventureJournal journal )
+	{
+		if( !legacyFile.exists() )
+			return;
+
+		ArrayList<AdventureModel> adventures;
+		try
+		{
+			adventures = loadAdventures( new FileInputStream( legacyFile ) );
+		}
+		catch( FileNotFoundException e )
+		{
+			e.printStackTrace();
+			return;
+		}
+
+		for( AdventureModel adv : adventures )
+			adv.setSave( false );
+		try
+		{
+			journal.append( adventures, new ArrayList<Integer>() );
+			legacyFile.delete();
+		}
+		catch( IOException e )
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Load the adventures from a file written by older versions of the app,
+	 * which stored every adventure in a single ObjectOutputStream.
 	 * 
 	 * @param fileInputStream
 	 *            The input stream to read from
@@ -74,9 +185,9 @@ public class FileInteractor
 				cache.add( adv );
 			}
 		}
-		catch( FileNotFoundException e )
+		catch( EOFException e )
 		{
-			e.printStackTrace();
+			// Reached the end of the file
 		}
 		catch( IOException e )
 		{
@@ -94,6 +205,45 @@ public class FileInteractor
 		{
 			e.printStackTrace();
 		}
+		finally
+		{
+			try
+			{
+				if( fileInputStream != null )
+					fileInputStream.close();
+			}
+			catch( IOException e )
+			{
+				e.printStackTrace();
+			}
+		}
 		return cache;
 	}
+
+	/**
+	 * Copy part of a file to a stream
+	 * 
+	 * @param in
+	 *            The file to copy from
+	 * @param offset
+	 *            The offset of the part to copy
+	 * @param length
+	 *            The length of the part to copy
+	 * @param out
+	 *            The stream to copy to
+	 * @throws IOException
+	 *             If the part could not be copied
+	 */
+	static void copy( RandomAccessFile in, long offset, long length, OutputStream out ) throws IOException
+	{
+		byte[] buffer = new byte[(int) Math.max( 0, Math.min( length, 64 * 1024 ) )];
+		in.seek( offset );
+		while( length > 0 )
+		{
+			int count = (int) Math.min( length, buffer.length );
+			in.readFully( buffer, 0, count );
+			out.write( buffer, 0, count );
+			length -= count;
+		}
+	}
 }
@@ -61,23 +61,29 @@ public class IdManager
 
 	/**
 	 * Set the ids in the id manager to be considered "used" (so that they won't
-	 * be used again until they are removed)
+	 * be used again until they are removed). Unused ids below the largest used
+	 * id can still be handed out.
 	 * 
 	 * @param ids
 	 *            The ids to set as used
 	 */
 	public void setUsedIds( ArrayList<Integer> ids )
 	{
+		Set<Integer> usedIds = new HashSet<Integer>( ids );
+		mReusableIds.removeAll( usedIds );
+
 		Integer max = max( ids );
-		for( Integer i = 0; i < ids.size(); i++ )
+		for( int i = mNextId; i < max; i++ )
 		{
-			mReusableIds.add( i );
+			if( !usedIds.contains( i ) )
+				mReusableIds.add( i );
 		}
 		mNextId = max + 1;
 	}
 
 	/**
-	 * Return the max id in the list of ids.
+	 * Return the max id in the list of ids, or the largest id that has been
+	 * handed out if that is larger.
 	 * 
 	 * @param ids
 	 *            the list of ids to find the max of,
@@ -85,7 +91,7 @@ public class IdManager
 	 */
 	private Integer max( ArrayList<Integer> ids )
 	{
-		Integer max = mNextId;
+		Integer max = mNextId - 1;
 		for( Integer id : ids )
 		{
 			if( id > max )
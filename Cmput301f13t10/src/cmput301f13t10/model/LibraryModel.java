@@ -28,7 +28,6 @@ either expressed or implied, of the FreeBSD Project.
  */
 package cmput301f13t10.model;
 
-import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.Random;
 
@@ -125,9 +124,9 @@ public class LibraryModel
 		}
 	}
 
-	public void saveData( FileOutputStream fileOutputStream )
+	public void saveData()
 	{
-		FileInteractor.saveAdventures( AdventureCache.getAdventureCache().getAllAdventures(), fileOutputStream );
+		mCache.saveAdventures();
 	}
 
 	public boolean setRandomCurrentAdventure()
@@ -157,6 +156,32 @@ public class LibraryModel
 		return false;
 	}
 
+	/**
+	 * Make sure the whole of an adventure is loaded before it is opened. The
+	 * library only lists summaries of the adventures that were fetched from
+	 * the database, so their sections are fetched first. An adventure that is
+	 * already loaded is opened right away; if it is out of date, a newer copy
+	 * is fetched in the background for the next time it is opened.
+	 * 
+	 * @param localId
+	 *            The local id of the adventure to open
+	 * @param callback
+	 *            The callback to call with the loaded adventure, or with null
+	 *            if it could not be loaded
+	 */
+	public void openAdventure( int localId, Callback<AdventureModel> callback )
+	{
+		AdventureModel adventure = mCache.getAdventureById( localId );
+		if( adventure == null || adventure.isLoaded() )
+		{
+			callback.callBack( adventure );
+			if( adventure != null )
+				DatabaseInteractor.getDatabaseInteractor().refreshAdventure( adventure, null );
+		}
+		else
+			DatabaseInteractor.getDatabaseInteractor().getAdventure( adventure, callback );
+	}
+
 	public AdventureModel getCurrentAdventure()
 	{
 		for( int i = 0; i < mAdventureList.size(); i++ )
@@ -0,0 +1,43 @@
+package cmput301f13t10.model;
+
+import java.util.concurrent.Executor;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Runs tasks on the UI thread, e.g. the callbacks of background work
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class MainThreadExecutor implements Executor
+{
+	/**
+	 * The executor of the app, or null if it hasn't been created yet
+	 */
+	private static MainThreadExecutor sExecutor = null;
+
+	/**
+	 * Handler of the UI thread
+	 */
+	private Handler mHandler = new Handler( Looper.getMainLooper() );
+
+	/**
+	 * Get the executor of the app
+	 *
+	 * @return The executor
+	 */
+	public static synchronized MainThreadExecutor getExecutor()
+	{
+		if( sExecutor == null )
+			sExecutor = new MainThreadExecutor();
+		return sExecutor;
+	}
+
+	@Override
+	public void execute( Runnable runnable )
+	{
+		mHandler.post( runnable );
+	}
+}
@@ -0,0 +1,611 @@
+package cmput301f13t10.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An append-only file of media contents (e.g. compressed images), so that
+ * they don't have to be kept on the heap. Each blob is identified by the
+ * SHA-1 hash of its contents, so storing the same contents twice only writes
+ * them once. Blobs are read through a memory mapping of the file. Blobs that
+ * nothing refers to any more are only removed when the file is compacted.
+ *
+ * Layout: a header (magic, version) followed by blobs of the form
+ * [length][SHA-1 hash][contents].
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class MediaBlobStore
+{
+	/**
+	 * Marks the start of a blob file
+	 */
+	private static final int MAGIC = 0x4D424C42;
+
+	/**
+	 * The version of the blob file layout
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Size of the file header in bytes
+	 */
+	private static final int HEADER_SIZE = 8;
+
+	/**
+	 * Size of a SHA-1 hash in bytes
+	 */
+	private static final int HASH_SIZE = 20;
+
+	/**
+	 * Files with less unreferenced contents than this are never compacted
+	 */
+	private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+	/**
+	 * The blob store of the app, or null if it hasn't been initialized
+	 */
+	private static MediaBlobStore sBlobStore = null;
+
+	/**
+	 * The file the blobs are stored in
+	 */
+	private File mFile;
+
+	/**
+	 * The offset and length of the contents of each blob, by id
+	 */
+	private Map<String, long[]> mBlobs = new HashMap<String, long[]>();
+
+	/**
+	 * The length of the file
+	 */
+	private long mLength = 0;
+
+	/**
+	 * A read-only mapping of the file, or null if it hasn't been mapped yet.
+	 * Blobs appended since the file was mapped are not covered by it.
+	 */
+	private MappedByteBuffer mMap = null;
+
+	/**
+	 * The ids of the blobs stored (or found to be stored already) since the
+	 * store was opened. These are always kept by compaction.
+	 */
+	private Set<String> mPutIds = Collections.synchronizedSet( new HashSet<String>() );
+
+	/**
+	 * If a compaction is currently running
+	 */
+	private boolean mCompacting = false;
+
+	/**
+	 * Held while compacting, so that only one compaction runs at a time
+	 */
+	private final Object mCompactionLock = new Object();
+
+	/**
+	 * Open the blob store of the app. Only the first call does anything.
+	 *
+	 * @param file
+	 *            The file to store the blobs in
+	 */
+	public static synchronized void initialize( File file )
+	{
+		if( sBlobStore != null )
+			return;
+		try
+		{
+			sBlobStore = new MediaBlobStore( file );
+		}
+		catch( IOException e )
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Get the blob store of the app
+	 *
+	 * @return The blob store, or null if it hasn't been initialized (in which
+	 *         case media keeps its contents on the heap)
+	 */
+	public static synchronized MediaBlobStore getBlobStore()
+	{
+		return sBlobStore;
+	}
+
+	/**
+	 * Constructor. Reads the ids of the blobs already in the file.
+	 *
+	 * @param file
+	 *            The file to store the blobs in
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	public MediaBlobStore( File file ) throws IOException
+	{
+		mFile = file;
+		scan();
+	}
+
+	/**
+	 * Store the given contents, if they aren't already stored
+	 *
+	 * @param contents
+	 *            The contents to store
+	 * @return The id of the blob
+	 * @throws IOException
+	 *             If the contents could not be written
+	 */
+	public synchronized String put( byte[] contents ) throws IOException
+	{
+		byte[] hash = hash( contents );
+		String id = toHex( hash );
+		mPutIds.add( id );
+		if( mBlobs.containsKey( id ) )
+			return id;
+
+		RandomAccessFile file = new RandomAccessFile( mFile, "rw" );
+		try
+		{
+			if( mLength < HEADER_SIZE )
+			{
+				file.setLength( 0 );
+				file.writeInt( MAGIC );
+				file.writeInt( VERSION );
+				mLength = HEADER_SIZE;
+			}
+			file.seek( mLength );
+			file.writeInt( contents.length );
+			file.write( hash );
+			file.write( contents );
+			file.getFD().sync();
+		}
+		finally
+		{
+			file.close();
+		}
+
+		mBlobs.put( id, new long[] { mLength + 4 + HASH_SIZE, contents.length } );
+		mLength += 4 + HASH_SIZE + contents.length;
+		return id;
+	}
+
+	/**
+	 * If a blob is in the store
+	 *
+	 * @param id
+	 *            The id of the blob
+	 * @return True if the blob is stored
+	 */
+	public synchronized boolean contains( String id )
+	{
+		return mBlobs.containsKey( id );
+	}
+
+	/**
+	 * Get a read-only view of a blob's contents, backed by the mapped file
+	 *
+	 * @param id
+	 *            The id of the blob
+	 * @return The contents of the blob, or null if it isn't stored
+	 * @throws IOException
+	 *             If the file could not be mapped
+	 */
+	public synchronized ByteBuffer get( String id ) throws IOException
+	{
+		long[] location = mBlobs.get( id );
+		if( location == null )
+			return null;
+
+		long end = location[0] + location[1];
+		// A buffer can't reach past Integer.MAX_VALUE, so blobs beyond that
+		// are mapped on their own
+		if( end > Integer.MAX_VALUE )
+			return map( location[0], location[1] );
+		if( mMap == null || mMap.capacity() < end )
+			mMap = map( 0, Math.min( mLength, Integer.MAX_VALUE ) );
+
+		ByteBuffer blob = mMap.duplicate();
+		blob.position( (int) location[0] );
+		blob.limit( (int) end );
+		return blob.slice();
+	}
+
+	/**
+	 * Copy a blob's contents onto the heap
+	 *
+	 * @param id
+	 *            The id of the blob
+	 * @return The contents of the blob, or null if it isn't stored
+	 * @throws IOException
+	 *             If the file could not be mapped
+	 */
+	public byte[] getBytes( String id ) throws IOException
+	{
+		ByteBuffer blob = get( id );
+		if( blob == null )
+			return null;
+		byte[] bytes = new byte[blob.remaining()];
+		blob.get( bytes );
+		return bytes;
+	}
+
+	/**
+	 * Compact the file on a background thread, if it needs it.
+	 *
+	 * @param referencedIds
+	 *            The ids of the blobs that are still referred to
+	 * @see #compact(Set)
+	 */
+	public void compactInBackground( final Set<String> referencedIds )
+	{
+		synchronized( this )
+		{
+			if( mCompacting )
+				return;
+			mCompacting = true;
+		}
+
+		Thread thread = new Thread( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					compact( referencedIds );
+				}
+				catch( IOException e )
+				{
+					e.printStackTrace();
+				}
+				finally
+				{
+					synchronized( MediaBlobStore.this )
+					{
+						mCompacting = false;
+					}
+				}
+			}
+		}, "MediaBlobStore compaction" );
+		thread.setPriority( Thread.MIN_PRIORITY );
+		thread.start();
+	}
+
+	/**
+	 * Rewrite the file without the blobs that are no longer referred to, if
+	 * enough of it is made up of them that it is worth it. Blobs stored since
+	 * the store was opened are always kept, so the referenced ids only need to
+	 * cover what was saved before then. The new file replaces the old one only
+	 * once it has been completely written. Buffers returned by get() before
+	 * the compaction stay valid.
+	 * 
+	 * The blobs are copied without holding the store's lock, so blobs can
+	 * still be stored and read meanwhile. Blobs stored during the copy are
+	 * copied across once it is done.
+	 *
+	 * @param referencedIds
+	 *            The ids of the blobs that are still referred to
+	 * @return True if the file was compacted
+	 * @throws IOException
+	 *             If the file could not be compacted
+	 */
+	public boolean compact( Set<String> referencedIds ) throws IOException
+	{
+		synchronized( mCompactionLock )
+		{
+			Map<String, long[]> blobs;
+			long copiedLength;
+			synchronized( this )
+			{
+				blobs = new HashMap<String, long[]>( mBlobs );
+				copiedLength = mLength;
+			}
+
+			long garbage = 0;
+			for( Map.Entry<String, long[]> entry : blobs.entrySet() )
+			{
+				if( !isKept( entry.getKey(), referencedIds ) )
+					garbage += 4 + HASH_SIZE + entry.getValue()[1];
+			}
+			if( garbage < MIN_COMPACTION_SIZE || garbage * 2 < copiedLength )
+				return false;
+
+			// Blobs never change once written, so they can be copied while
+			// more are appended
+			File compacted = new File( mFile.getPath() + ".tmp" );
+			Map<String, long[]> newBlobs = new HashMap<String, long[]>();
+			long offset = HEADER_SIZE;
+			RandomAccessFile in = new RandomAccessFile( mFile, "r" );
+			FileOutputStream fileOutputStream = new FileOutputStream( compacted );
+			try
+			{
+				DataOutputStream out = new DataOutputStream( new BufferedOutputStream( fileOutputStream ) );
+				out.writeInt( MAGIC );
+				out.writeInt( VERSION );
+				for( Map.Entry<String, long[]> entry : blobs.entrySet() )
+				{
+					if( isKept( entry.getKey(), referencedIds ) )
+						offset = copyBlob( in, entry.getKey(), entry.getValue(), out, offset, newBlobs );
+				}
+				out.flush();
+			}
+			catch( IOException e )
+			{
+				fileOutputStream.close();
+				compacted.delete();
+				throw e;
+			}
+			finally
+			{
+				in.close();
+			}
+
+			synchronized( this )
+			{
+				finishCompaction( compacted, fileOutputStream, referencedIds, copiedLength, offset, newBlobs );
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Copy the blobs stored since the compacted file was started onto its
+	 * end, and replace the file with it. Must be called with the store's lock
+	 * held.
+	 * 
+	 * @param compacted
+	 *            The compacted file
+	 * @param fileOutputStream
+	 *            The open stream at the end of the compacted file
+	 * @param referencedIds
+	 *            The ids of the blobs that are still referred to
+	 * @param copiedLength
+	 *            The length of the file when the copy was started
+	 * @param copiedEnd
+	 *            The length of the compacted file
+	 * @param newBlobs
+	 *            The location of each copied blob in the compacted file
+	 * @throws IOException
+	 *             If the file could not be replaced
+	 */
+	private void finishCompaction( File compacted, FileOutputStream fileOutputStream, Set<String> referencedIds, long copiedLength, long copiedEnd, Map<String, long[]> newBlobs ) throws IOException
+	{
+		long end = copiedEnd + mLength - copiedLength;
+		RandomAccessFile in = new RandomAccessFile( mFile, "r" );
+		try
+		{
+			DataOutputStream out = new DataOutputStream( new BufferedOutputStream( fileOutputStream ) );
+			FileInteractor.copy( in, copiedLength, mLength - copiedLength, out );
+			for( Map.Entry<String, long[]> entry : mBlobs.entrySet() )
+			{
+				long[] location = entry.getValue();
+				if( location[0] >= copiedLength )
+					newBlobs.put( entry.getKey(), new long[] { copiedEnd + location[0] - copiedLength, location[1] } );
+				// A dropped blob that was stored again during the copy
+				else if( !newBlobs.containsKey( entry.getKey() ) && isKept( entry.getKey(), referencedIds ) )
+					end = copyBlob( in, entry.getKey(), location, out, end, newBlobs );
+			}
+			out.flush();
+			fileOutputStream.getFD().sync();
+		}
+		catch( IOException e )
+		{
+			fileOutputStream.close();
+			compacted.delete();
+			throw e;
+		}
+		finally
+		{
+			fileOutputStream.close();
+			in.close();
+		}
+
+		if( !compacted.renameTo( mFile ) )
+		{
+			compacted.delete();
+			throw new IOException( "Could not replace " + mFile + " with its compacted version" );
+		}
+		mBlobs = newBlobs;
+		mLength = end;
+		mMap = null;
+	}
+
+	/**
+	 * Copy a blob with its length and hash
+	 * 
+	 * @param in
+	 *            The file to copy from
+	 * @param id
+	 *            The id of the blob
+	 * @param location
+	 *            The offset and length of the blob's contents in the file
+	 * @param out
+	 *            The stream to copy to
+	 * @param offset
+	 *            The offset the blob is copied to
+	 * @param newBlobs
+	 *            The locations to add the copied blob's location to
+	 * @return The offset after the copied blob
+	 * @throws IOException
+	 *             If the blob could not be copied
+	 */
+	private long copyBlob( RandomAccessFile in, String id, long[] location, DataOutputStream out, long offset, Map<String, long[]> newBlobs ) throws IOException
+	{
+		copy( in, location[0] - 4 - HASH_SIZE, 4 + HASH_SIZE + location[1], out );
+		newBlobs.put( id, new long[] { offset + 4 + HASH_SIZE, location[1] } );
+		return offset + 4 + HASH_SIZE + location[1];
+	}
+
+	/**
+	 * Copy part of a file to a stream
+	 * 
+	 * @param in
+	 *            The file to copy from
+	 * @param offset
+	 *            The offset of the part to copy
+	 * @param length
+	 *            The length of the part to copy
+	 * @param out
+	 *            The stream to copy to
+	 * @throws IOException
+	 *             If the part could not be copied
+	 */
+	protected void copy( RandomAccessFile in, long offset, long length, DataOutputStream out ) throws IOException
+	{
+		FileInteractor.copy( in, offset, length, out );
+	}
+
+	/**
+	 * If compaction keeps a blob
+	 *
+	 * @param id
+	 *            The id of the blob
+	 * @param referencedIds
+	 *            The ids of the blobs that are still referred to
+	 * @return True if the blob is referred to, or was stored since the store
+	 *         was opened
+	 */
+	private boolean isKept( String id, Set<String> referencedIds )
+	{
+		return referencedIds.contains( id ) || mPutIds.contains( id );
+	}
+
+	/**
+	 * Map part of the file into memory
+	 *
+	 * @param offset
+	 *            The offset of the start of the part
+	 * @param length
+	 *            The length of the part
+	 * @return The mapping
+	 * @throws IOException
+	 */
+	private MappedByteBuffer map( long offset, long length ) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile( mFile, "r" );
+		try
+		{
+			return file.getChannel().map( FileChannel.MapMode.READ_ONLY, offset, length );
+		}
+		finally
+		{
+			// The mapping stays valid after the file is closed
+			file.close();
+		}
+	}
+
+	/**
+	 * Find the blobs in the file. A blob that was only partially written is
+	 * cut off the end of the file.
+	 *
+	 * @throws IOException
+	 */
+	private void scan() throws IOException
+	{
+		if( !mFile.exists() || mFile.length() < HEADER_SIZE )
+			return;
+
+		long fileLength = mFile.length();
+		long offset = HEADER_SIZE;
+		DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( mFile ) ) );
+		try
+		{
+			if( in.readInt() != MAGIC || in.readInt() != VERSION )
+				throw new IOException( mFile + " is not a media blob file" );
+
+			byte[] hash = new byte[HASH_SIZE];
+			while( offset < fileLength )
+			{
+				int length = in.readInt();
+				in.readFully( hash );
+				long contentsOffset = offset + 4 + HASH_SIZE;
+				if( length < 0 || contentsOffset + length > fileLength )
+					break;
+				long skipped = 0;
+				while( skipped < length )
+				{
+					long n = in.skip( length - skipped );
+					if( n <= 0 )
+						throw new EOFException();
+					skipped += n;
+				}
+				mBlobs.put( toHex( hash ), new long[] { contentsOffset, length } );
+				offset = contentsOffset + length;
+			}
+		}
+		catch( EOFException e )
+		{
+			// A partial blob at the end of the file
+		}
+		finally
+		{
+			in.close();
+		}
+
+		mLength = offset;
+		if( mLength < fileLength )
+		{
+			RandomAccessFile file = new RandomAccessFile( mFile, "rw" );
+			try
+			{
+				file.setLength( mLength );
+			}
+			finally
+			{
+				file.close();
+			}
+		}
+	}
+
+	/**
+	 * Get the SHA-1 hash of some contents
+	 */
+	private static byte[] hash( byte[] contents )
+	{
+		try
+		{
+			return MessageDigest.getInstance( "SHA-1" ).digest( contents );
+		}
+		catch( NoSuchAlgorithmException e )
+		{
+			// Every java platform is required to support SHA-1
+			throw new RuntimeException( e );
+		}
+	}
+
+	/**
+	 * Convert bytes to a hex string
+	 */
+	private static String toHex( byte[] bytes )
+	{
+		StringBuilder hex = new StringBuilder( bytes.length * 2 );
+		for( byte b : bytes )
+		{
+			hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) );
+			hex.append( Character.forDigit( b & 0xF, 16 ) );
+		}
+		return hex.toString();
+	}
+}
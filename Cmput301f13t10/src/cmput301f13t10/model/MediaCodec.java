@@ -0,0 +1,53 @@
+package cmput301f13t10.model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import cmput301f13t10.presenter.Media;
+
+/**
+ * Writes and reads one type of media in the binary format used by
+ * {@link AdventureCodec}. Each codec has its own version, so the layout of one
+ * type of media can change without affecting the others.
+ *
+ * @author Brendan Cowan
+ *
+ * @param <T>
+ *            The type of media
+ */
+public interface MediaCodec<T extends Media>
+{
+	/**
+	 * Get the version of the layout that {@link #write} produces
+	 *
+	 * @return The current version of the codec
+	 */
+	public byte getVersion();
+
+	/**
+	 * Write the media
+	 *
+	 * @param media
+	 *            The media to write
+	 * @param out
+	 *            The stream to write to
+	 * @throws IOException
+	 *             If the media could not be written
+	 */
+	public void write( T media, DataOutputStream out ) throws IOException;
+
+	/**
+	 * Read media that was written by this codec
+	 *
+	 * @param version
+	 *            The version of the codec that wrote the media
+	 * @param in
+	 *            The stream to read from
+	 * @return The media
+	 * @throws IOException
+	 *             If the media could not be read, or was written by an
+	 *             unknown version
+	 */
+	public T read( byte version, DataInputStream in ) throws IOException;
+}
@@ -14,6 +14,8 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 
+import cmput301f13t10.presenter.ImageMedia;
+
 /**
  * 
  * @author Maciek Makowski
@@ -39,10 +41,30 @@ public class MediaSerializer<Media> implements JsonSerializer<Media>, JsonDeseri
 	{
 		JsonObject jsonObject = new JsonObject();
 		jsonObject.addProperty( "type", src.getClass().getName() );
-		jsonObject.add( "data", context.serialize( src ) );
+		if( src instanceof ImageMedia )
+			jsonObject.add( "data", serializeImage( (ImageMedia) src ) );
+		else
+			jsonObject.add( "data", context.serialize( src ) );
 		return jsonObject;
 	}
 
+	/**
+	 * Images are kept as raw bytes locally, and are only converted to base 64
+	 * when they are sent to the server
+	 * 
+	 * @param image
+	 *            The image to serialize
+	 * @return The image as it is sent to the server
+	 */
+	private JsonElement serializeImage( ImageMedia image )
+	{
+		JsonObject data = new JsonObject();
+		data.addProperty( "mId", image.getId() );
+		data.addProperty( "mDisplaySize", image.getDisplaySize() );
+		data.addProperty( "mBase64String", image.getBase64() );
+		return data;
+	}
+
 	/**
 	 * Turn a parameter from a json object into a json element
 	 * 
@@ -0,0 +1,194 @@
+package cmput301f13t10.model;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import cmput301f13t10.presenter.Logger;
+
+/**
+ * Runs requests to the database on a fixed number of background threads, so
+ * that how many run at once doesn't depend on the platform. Requests are run
+ * in the order they were submitted, and a limited number can wait to run.
+ *
+ * Each request returns a {@link RequestFuture}, which can be cancelled, and
+ * whose callback is run on the UI thread.
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class NetworkExecutor
+{
+	/**
+	 * The number of requests that run at once by default. This matches the
+	 * number of connections to the database.
+	 */
+	public static final int DEFAULT_CONCURRENCY = 4;
+
+	/**
+	 * The most requests that can wait to run
+	 */
+	public static final int QUEUE_CAPACITY = 64;
+
+	/**
+	 * How long a request may take by default before it is stopped, in
+	 * milliseconds
+	 */
+	public static final long DEFAULT_TIMEOUT = 60 * 1000;
+
+	/**
+	 * The executor of the app
+	 */
+	private static NetworkExecutor sExecutor = null;
+
+	/**
+	 * The threads that run the requests
+	 */
+	private ThreadPoolExecutor mPool;
+
+	/**
+	 * Stops requests that time out. Cancelled timeouts are purged by the
+	 * requests, since removing them on cancel isn't available on every
+	 * platform version.
+	 */
+	private ScheduledThreadPoolExecutor mTimer;
+
+	/**
+	 * Runs the callbacks of the requests
+	 */
+	private Executor mCallbackExecutor;
+
+	/**
+	 * Get the executor of the app, whose callbacks run on the UI thread
+	 *
+	 * @return The executor
+	 */
+	public static synchronized NetworkExecutor getExecutor()
+	{
+		if( sExecutor == null )
+			sExecutor = new NetworkExecutor( DEFAULT_CONCURRENCY, MainThreadExecutor.getExecutor() );
+		return sExecutor;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param concurrency
+	 *            The number of requests that run at once
+	 * @param callbackExecutor
+	 *            Runs the callbacks of the requests
+	 */
+	public NetworkExecutor( int concurrency, Executor callbackExecutor )
+	{
+		ThreadFactory threadFactory = new DaemonThreadFactory( "network" );
+		mPool = new ThreadPoolExecutor( concurrency, concurrency, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>( QUEUE_CAPACITY ), threadFactory );
+		mPool.allowCoreThreadTimeOut( true );
+		mTimer = new ScheduledThreadPoolExecutor( 1, threadFactory );
+		mCallbackExecutor = callbackExecutor;
+	}
+
+	/**
+	 * Change the number of requests that run at once
+	 *
+	 * @param concurrency
+	 *            The number of requests that run at once
+	 */
+	public synchronized void setConcurrency( int concurrency )
+	{
+		if( concurrency > mPool.getMaximumPoolSize() )
+		{
+			mPool.setMaximumPoolSize( concurrency );
+			mPool.setCorePoolSize( concurrency );
+		}
+		else
+		{
+			mPool.setCorePoolSize( concurrency );
+			mPool.setMaximumPoolSize( concurrency );
+		}
+	}
+
+	/**
+	 * @return The number of requests that run at once
+	 */
+	public int getConcurrency()
+	{
+		return mPool.getMaximumPoolSize();
+	}
+
+	/**
+	 * Run a request, stopping it if it takes longer than the default timeout
+	 *
+	 * @param request
+	 *            The request to run
+	 * @param callback
+	 *            The callback to call with the result, or null
+	 * @return The running request
+	 */
+	public <T> RequestFuture<T> submit( Callable<T> request, Callback<T> callback )
+	{
+		return submit( request, callback, DEFAULT_TIMEOUT );
+	}
+
+	/**
+	 * Run a request
+	 *
+	 * @param request
+	 *            The request to run
+	 * @param callback
+	 *            The callback to call with the result, or null
+	 * @param timeout
+	 *            How long the request may run before it is stopped, in
+	 *            milliseconds, or 0 for no limit. This doesn't include the
+	 *            time it waits to run.
+	 * @return The running request
+	 */
+	public <T> RequestFuture<T> submit( Callable<T> request, Callback<T> callback, long timeout )
+	{
+		RequestFuture<T> future = new RequestFuture<T>( request, callback, mCallbackExecutor, mTimer, timeout );
+		try
+		{
+			mPool.execute( future );
+		}
+		catch( RejectedExecutionException e )
+		{
+			Logger.log( "Too many requests to the database", e );
+			future.fail();
+		}
+		return future;
+	}
+
+	/**
+	 * Run something where the callbacks are run, e.g. to pass on part of a
+	 * result before the request is done
+	 *
+	 * @param runnable
+	 *            What to run
+	 */
+	public void post( Runnable runnable )
+	{
+		mCallbackExecutor.execute( runnable );
+	}
+
+	/**
+	 * @return The number of timeouts waiting in the timer, which is the
+	 *         number of running requests that have a timeout
+	 */
+	public int getPendingTimeouts()
+	{
+		return mTimer.getQueue().size();
+	}
+
+	/**
+	 * Stop running requests
+	 */
+	public void shutdown()
+	{
+		mPool.shutdownNow();
+		mTimer.shutdownNow();
+	}
+}
@@ -0,0 +1,726 @@
+package cmput301f13t10.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import cmput301f13t10.presenter.Logger;
+
+/**
+ * A queue of adventures waiting to be published to or deleted from the
+ * database. The queue is sent in the background, in order, and is kept in a
+ * file so that nothing is lost if the app is closed before it is sent. When
+ * sending a change fails (e.g. there is no network), it is retried later,
+ * waiting longer after each failure. Changes of other adventures are sent in
+ * the meantime, so one failing change doesn't hold up the rest.
+ *
+ * A change that the database refuses, or that keeps failing, is parked: it
+ * stays in the file, but isn't sent again until the adventure is published
+ * again. Changes that were parked because they kept failing are also retried
+ * the next time the outbox is opened.
+ *
+ * Publishing an adventure that is already waiting to be published doesn't add
+ * it again, since sending it once sends all of its changes. Deleting an
+ * adventure that is waiting to be published cancels the publish.
+ *
+ * A copy of the adventure is taken when it is published, on the thread that
+ * publishes it, and that copy is what is sent. The adventure can then keep
+ * being edited without the upload seeing half of an edit.
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class Outbox
+{
+	/**
+	 * Sender result when the change was sent, or doesn't need to be
+	 */
+	public static final int SENT = 0;
+
+	/**
+	 * Sender result when sending failed, but may work later
+	 */
+	public static final int RETRY = 1;
+
+	/**
+	 * Sender result when the database refused the change, so sending it again
+	 * won't help
+	 */
+	public static final int REJECTED = 2;
+
+	/**
+	 * Sends the queued changes to the database
+	 */
+	public interface Sender
+	{
+		/**
+		 * Publish an adventure, giving it a remote id if it doesn't have one
+		 *
+		 * @param adventure
+		 *            The adventure to publish
+		 * @param snapshot
+		 *            The copy of the adventure taken when it was published,
+		 *            which is what is sent
+		 * @return {@link #SENT}, {@link #RETRY} or {@link #REJECTED}
+		 */
+		public int publish( AdventureModel adventure, AdventureModel snapshot );
+
+		/**
+		 * Delete an adventure from the database
+		 *
+		 * @param remoteId
+		 *            The remote id of the adventure
+		 * @return {@link #SENT} if the adventure is no longer on the
+		 *         database, {@link #RETRY} or {@link #REJECTED}
+		 */
+		public int delete( int remoteId );
+	}
+
+	/**
+	 * Marks the start of an outbox file
+	 */
+	private static final int MAGIC = 0x4F555458;
+
+	/**
+	 * The version of the outbox file layout. Version 1 had no flags.
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * Entry type of an adventure to publish
+	 */
+	private static final byte PUBLISH = 1;
+
+	/**
+	 * Entry type of an adventure to delete
+	 */
+	private static final byte DELETE = 2;
+
+	/**
+	 * Entry flag of a change that the database refused
+	 */
+	private static final byte FLAG_REJECTED = 1;
+
+	/**
+	 * How long to wait after the first failure, in milliseconds
+	 */
+	private static final long FIRST_RETRY_DELAY = 2 * 1000;
+
+	/**
+	 * The longest to wait between retries, in milliseconds
+	 */
+	private static final long MAX_RETRY_DELAY = 10 * 60 * 1000;
+
+	/**
+	 * The number of times a change is tried before it is parked
+	 */
+	public static final int MAX_ATTEMPTS = 10;
+
+	/**
+	 * The outbox of the app, or null if it hasn't been initialized
+	 */
+	private static Outbox sOutbox = null;
+
+	/**
+	 * The file the queue is kept in
+	 */
+	private File mFile;
+
+	/**
+	 * Sends the queued changes
+	 */
+	private Sender mSender;
+
+	/**
+	 * How long to wait after the first failure, in milliseconds
+	 */
+	private long mFirstRetryDelay;
+
+	/**
+	 * The queued changes, in the order they are sent
+	 */
+	private LinkedList<Entry> mEntries = new LinkedList<Entry>();
+
+	/**
+	 * The thread the queue is sent on
+	 */
+	private ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+
+	/**
+	 * If the queue is being sent
+	 */
+	private boolean mDraining = false;
+
+	/**
+	 * The next retry, or null if none is scheduled
+	 */
+	private ScheduledFuture<?> mRetry = null;
+
+	/**
+	 * Open the outbox of the app and start sending whatever was left in it.
+	 * Only the first call does anything.
+	 *
+	 * @param file
+	 *            The file to keep the queue in
+	 * @param cache
+	 *            The cache to find the adventures waiting to be published in
+	 */
+	public static synchronized void initialize( File file, AdventureCache cache )
+	{
+		if( sOutbox != null )
+			return;
+		sOutbox = new Outbox( file, new CommandSender(), FIRST_RETRY_DELAY );
+		sOutbox.load( cache );
+	}
+
+	/**
+	 * Get the outbox of the app
+	 *
+	 * @return The outbox, or null if it hasn't been initialized
+	 */
+	public static synchronized Outbox getOutbox()
+	{
+		return sOutbox;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param file
+	 *            The file to keep the queue in
+	 * @param sender
+	 *            Sends the queued changes to the database
+	 * @param firstRetryDelay
+	 *            How long to wait after the first failure, in milliseconds.
+	 *            The wait doubles after each failure.
+	 */
+	public Outbox( File file, Sender sender, long firstRetryDelay )
+	{
+		mFile = file;
+		mSender = sender;
+		mFirstRetryDelay = firstRetryDelay;
+	}
+
+	/**
+	 * Queue an adventure to be published, as it is now. If its publish was
+	 * parked, it is tried again.
+	 *
+	 * @param adventure
+	 *            The adventure to publish
+	 */
+	public void publish( AdventureModel adventure )
+	{
+		AdventureModel snapshot = snapshot( adventure );
+		synchronized( this )
+		{
+			Entry publish = find( PUBLISH, adventure.getLocalId() );
+			if( publish == null )
+			{
+				publish = new Entry( PUBLISH, adventure );
+				mEntries.add( publish );
+			}
+			else if( publish.mSending )
+				publish.mChangedWhileSending = true;
+			else
+				publish.reset();
+			publish.mSnapshot = snapshot;
+			save();
+			drain();
+		}
+	}
+
+	/**
+	 * Take a copy of an adventure to send
+	 *
+	 * @param adventure
+	 *            The adventure to copy
+	 * @return The copy, or the adventure itself if it could not be copied
+	 */
+	private static AdventureModel snapshot( AdventureModel adventure )
+	{
+		try
+		{
+			return AdventureCodec.copy( adventure );
+		}
+		catch( IOException e )
+		{
+			// It can still be sent, just not while it is being edited
+			Logger.log( "Could not copy adventure " + adventure.getLocalId(), e );
+			return adventure;
+		}
+	}
+
+	/**
+	 * Queue an adventure to be deleted. If it is waiting to be published, it
+	 * isn't published.
+	 *
+	 * @param adventure
+	 *            The adventure to delete
+	 */
+	public synchronized void delete( AdventureModel adventure )
+	{
+		Entry publish = find( PUBLISH, adventure.getLocalId() );
+		if( publish != null )
+			mEntries.remove( publish );
+		// An adventure that is being published right now may get its remote
+		// id after this, so the delete is kept even without one
+		if( ( adventure.getRemoteId() != -1 || publish != null ) && find( DELETE, adventure.getLocalId() ) == null )
+			mEntries.add( new Entry( DELETE, adventure ) );
+		save();
+		drain();
+	}
+
+	/**
+	 * @return The number of changes waiting to be sent, not counting parked
+	 *         ones
+	 */
+	public synchronized int size()
+	{
+		int size = 0;
+		for( Entry entry : mEntries )
+		{
+			if( !entry.isParked() )
+				size++;
+		}
+		return size;
+	}
+
+	/**
+	 * @return The number of changes that are parked because the database
+	 *         refused them or they kept failing
+	 */
+	public synchronized int getParkedCount()
+	{
+		return mEntries.size() - size();
+	}
+
+	/**
+	 * Stop sending the queue. Whatever is left is sent the next time the
+	 * outbox is opened.
+	 */
+	public void shutdown()
+	{
+		mExecutor.shutdownNow();
+	}
+
+	/**
+	 * Start sending the queue, unless it is already being sent. A retry that
+	 * is waiting is brought forward, so that new changes aren't held up.
+	 */
+	private void drain()
+	{
+		if( mDraining || mExecutor.isShutdown() )
+			return;
+		if( mRetry != null )
+		{
+			mRetry.cancel( false );
+			mRetry = null;
+		}
+		mDraining = true;
+		mExecutor.execute( new Drain() );
+	}
+
+	/**
+	 * Schedule the next retry, for when the first change that is waiting to
+	 * be retried is due
+	 */
+	private void scheduleRetry()
+	{
+		long now = System.nanoTime();
+		long wait = Long.MAX_VALUE;
+		for( Entry entry : mEntries )
+		{
+			if( !entry.isParked() && entry.mAttempts > 0 )
+				wait = Math.min( wait, entry.mRetryAt - now );
+		}
+		if( wait == Long.MAX_VALUE || mExecutor.isShutdown() )
+			return;
+		mRetry = mExecutor.schedule( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				synchronized( Outbox.this )
+				{
+					mRetry = null;
+					drain();
+				}
+			}
+		}, Math.max( wait, 0 ), TimeUnit.NANOSECONDS );
+	}
+
+	/**
+	 * Sends the changes that are due, until none are left
+	 */
+	private class Drain implements Runnable
+	{
+		@Override
+		public void run()
+		{
+			while( true )
+			{
+				Entry entry;
+				AdventureModel snapshot;
+				synchronized( Outbox.this )
+				{
+					entry = nextDue();
+					if( entry == null )
+					{
+						mDraining = false;
+						scheduleRetry();
+						return;
+					}
+					entry.mSending = true;
+					snapshot = entry.mSnapshot;
+				}
+
+				int result = send( entry, snapshot );
+				synchronized( Outbox.this )
+				{
+					entry.mSending = false;
+					boolean changed = entry.mChangedWhileSending;
+					entry.mChangedWhileSending = false;
+					if( changed )
+					{
+						// The changes made while it was being sent still have
+						// to be sent
+						entry.reset();
+					}
+					else if( result == SENT )
+					{
+						mEntries.remove( entry );
+					}
+					else if( result == REJECTED )
+					{
+						Logger.log( "The database refused a change of adventure " + entry.mLocalId, null );
+						// A refused delete will never work, and isn't kept
+						if( entry.mType == DELETE )
+							mEntries.remove( entry );
+						else
+							entry.mRejected = true;
+					}
+					else
+					{
+						entry.mAttempts++;
+						long delay = Math.min( mFirstRetryDelay << Math.min( entry.mAttempts - 1, 30 ), MAX_RETRY_DELAY );
+						entry.mRetryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( delay );
+					}
+					save();
+					if( mExecutor.isShutdown() )
+					{
+						mDraining = false;
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the first change that can be sent now. A change isn't sent while
+	 * an earlier change of the same adventure is waiting.
+	 *
+	 * @return The change, or null if there isn't one
+	 */
+	private Entry nextDue()
+	{
+		long now = System.nanoTime();
+		HashSet<Integer> waiting = new HashSet<Integer>();
+		for( Entry entry : mEntries )
+		{
+			if( entry.isParked() || waiting.contains( entry.mLocalId ) )
+				continue;
+			if( entry.mAttempts > 0 && entry.mRetryAt - now > 0 )
+				waiting.add( entry.mLocalId );
+			else
+				return entry;
+		}
+		return null;
+	}
+
+	/**
+	 * Send a queued change
+	 *
+	 * @param snapshot
+	 *            The copy of the adventure to publish, if it is a publish
+	 * @return {@link #SENT}, {@link #RETRY} or {@link #REJECTED}
+	 */
+	private int send( Entry entry, AdventureModel snapshot )
+	{
+		try
+		{
+			if( entry.mType == PUBLISH )
+				return entry.mAdventure == null ? SENT : mSender.publish( entry.mAdventure, snapshot );
+
+			int remoteId = entry.mAdventure != null ? entry.mAdventure.getRemoteId() : entry.mRemoteId;
+			return remoteId == -1 ? SENT : mSender.delete( remoteId );
+		}
+		catch( RuntimeException e )
+		{
+			Logger.log( "", e );
+			return RETRY;
+		}
+	}
+
+	/**
+	 * Find a queued change of an adventure
+	 *
+	 * @return The change, or null if there isn't one
+	 */
+	private Entry find( byte type, int localId )
+	{
+		for( Entry entry : mEntries )
+		{
+			if( entry.mType == type && entry.mLocalId == localId )
+				return entry;
+		}
+		return null;
+	}
+
+	/**
+	 * Write the queue to its file. It is written to a new file that then
+	 * replaces the old one, so the queue isn't lost if the app is stopped
+	 * while it is being written.
+	 */
+	private void save()
+	{
+		File newFile = new File( mFile.getPath() + ".tmp" );
+		try
+		{
+			FileOutputStream fileOutputStream = new FileOutputStream( newFile );
+			try
+			{
+				DataOutputStream out = new DataOutputStream( new BufferedOutputStream( fileOutputStream ) );
+				out.writeInt( MAGIC );
+				out.writeInt( VERSION );
+				out.writeInt( mEntries.size() );
+				for( Entry entry : mEntries )
+				{
+					out.writeByte( entry.mType );
+					out.writeInt( entry.mLocalId );
+					out.writeInt( entry.mAdventure != null ? entry.mAdventure.getRemoteId() : entry.mRemoteId );
+					out.writeByte( entry.mRejected ? FLAG_REJECTED : 0 );
+				}
+				out.flush();
+				fileOutputStream.getFD().sync();
+			}
+			finally
+			{
+				fileOutputStream.close();
+			}
+			if( !newFile.renameTo( mFile ) )
+				throw new IOException( "Could not replace " + mFile );
+		}
+		catch( IOException e )
+		{
+			newFile.delete();
+			Logger.log( "", e );
+		}
+	}
+
+	/**
+	 * Read the queue from its file, and start sending it
+	 *
+	 * @param cache
+	 *            The cache to find the adventures waiting to be published in.
+	 *            Adventures that aren't in it any more aren't published.
+	 */
+	public synchronized void load( AdventureCache cache )
+	{
+		mEntries.clear();
+		if( mFile.exists() )
+		{
+			try
+			{
+				DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( mFile ) ) );
+				try
+				{
+					if( in.readInt() != MAGIC )
+						throw new IOException( mFile + " is not an outbox file" );
+					int version = in.readInt();
+					if( version < 1 || version > VERSION )
+						throw new IOException( "Unknown outbox version " + version );
+					int count = in.readInt();
+					for( int i = 0; i < count; i++ )
+					{
+						byte type = in.readByte();
+						int localId = in.readInt();
+						int remoteId = in.readInt();
+						byte flags = version >= 2 ? in.readByte() : 0;
+						Entry entry = null;
+						if( type == PUBLISH )
+						{
+							AdventureModel adventure = cache.getAdventureById( localId );
+							if( adventure != null )
+							{
+								entry = new Entry( PUBLISH, adventure );
+								entry.mSnapshot = snapshot( adventure );
+							}
+						}
+						else if( type == DELETE && remoteId != -1 )
+						{
+							entry = new Entry( localId, remoteId );
+						}
+						if( entry != null )
+						{
+							entry.mRejected = ( flags & FLAG_REJECTED ) != 0;
+							mEntries.add( entry );
+						}
+					}
+				}
+				finally
+				{
+					in.close();
+				}
+			}
+			catch( IOException e )
+			{
+				Logger.log( "", e );
+			}
+		}
+		drain();
+	}
+
+	/**
+	 * A queued change of an adventure
+	 */
+	private static class Entry
+	{
+		/**
+		 * What to do with the adventure
+		 */
+		byte mType;
+
+		/**
+		 * The local id of the adventure
+		 */
+		int mLocalId;
+
+		/**
+		 * The remote id of the adventure, if it isn't in memory
+		 */
+		int mRemoteId = -1;
+
+		/**
+		 * The adventure, or null if it isn't in memory
+		 */
+		AdventureModel mAdventure = null;
+
+		/**
+		 * The copy of the adventure to publish, taken when it was last
+		 * published
+		 */
+		AdventureModel mSnapshot = null;
+
+		/**
+		 * If the change is being sent
+		 */
+		boolean mSending = false;
+
+		/**
+		 * If the adventure was published again while it was being sent
+		 */
+		boolean mChangedWhileSending = false;
+
+		/**
+		 * The number of times in a row that sending failed
+		 */
+		int mAttempts = 0;
+
+		/**
+		 * When the change may be sent again, from {@link System#nanoTime()}.
+		 * Only used once sending has failed.
+		 */
+		long mRetryAt = 0;
+
+		/**
+		 * If the database refused the change
+		 */
+		boolean mRejected = false;
+
+		/**
+		 * Constructor for a change of an adventure in memory
+		 */
+		Entry( byte type, AdventureModel adventure )
+		{
+			mType = type;
+			mLocalId = adventure.getLocalId();
+			mAdventure = adventure;
+		}
+
+		/**
+		 * Constructor for deleting an adventure that isn't in memory
+		 */
+		Entry( int localId, int remoteId )
+		{
+			mType = DELETE;
+			mLocalId = localId;
+			mRemoteId = remoteId;
+		}
+
+		/**
+		 * @return True if the change isn't sent until the adventure is
+		 *         published again
+		 */
+		boolean isParked()
+		{
+			return mRejected || mAttempts >= MAX_ATTEMPTS;
+		}
+
+		/**
+		 * Send the change again as soon as possible
+		 */
+		void reset()
+		{
+			mRejected = false;
+			mAttempts = 0;
+			mRetryAt = 0;
+		}
+	}
+
+	/**
+	 * Sends the queued changes with the database commands
+	 */
+	private static class CommandSender implements Sender
+	{
+		@Override
+		public int publish( AdventureModel adventure, AdventureModel snapshot )
+		{
+			if( adventure.getRemoteId() == -1 )
+			{
+				Integer remoteId = RemoteIdAllocator.getAllocator().allocate();
+				if( remoteId == null )
+					return RETRY;
+				// The cache has to know the new id to find the adventure by it
+				AdventureCache.getAdventureCache().setRemoteId( adventure, remoteId );
+			}
+			ESUpdateCommand command = new ESUpdateCommand( adventure, snapshot );
+			if( command.call() )
+			{
+				AdventureCache.getAdventureCache().uploaded( adventure );
+				return SENT;
+			}
+			return command.isRejected() ? REJECTED : RETRY;
+		}
+
+		@Override
+		public int delete( int remoteId )
+		{
+			ESDeleteCommand command = new ESDeleteCommand( remoteId );
+			if( command.call() )
+				return SENT;
+			return command.isRejected() ? REJECTED : RETRY;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package cmput301f13t10.model;
+
+import cmput301f13t10.presenter.Logger;
+
+/**
+ * Hands out remote ids for adventures that are about to be published. Ids are
+ * leased from the database in blocks (see {@link ESLeaseIdsCommand}), so most
+ * adventures get an id without a round trip, and two devices never get the
+ * same id. It is safe to use from any thread.
+ * 
+ * Leased ids start well above the ids that were handed out before leasing
+ * existed, which were the lowest ids that weren't taken yet.
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class RemoteIdAllocator
+{
+	/**
+	 * The number of ids in each leased block
+	 */
+	public static final int BLOCK_SIZE = 16;
+
+	/**
+	 * The first id of the first block
+	 */
+	public static final int FIRST_ID = 100000;
+
+	/**
+	 * The shared instance of the allocator
+	 */
+	private static RemoteIdAllocator sAllocator = null;
+
+	/**
+	 * The next id of the current lease
+	 */
+	private int mNext = 0;
+
+	/**
+	 * The end of the current lease (exclusive)
+	 */
+	private int mEnd = 0;
+
+	/**
+	 * Get the shared instance of the allocator
+	 * 
+	 * @return The allocator
+	 */
+	public static synchronized RemoteIdAllocator getAllocator()
+	{
+		if( sAllocator == null )
+			sAllocator = new RemoteIdAllocator();
+		return sAllocator;
+	}
+
+	/**
+	 * Get a remote id. If there are no leased ids left, a new block is leased
+	 * first, so this must not be called on the UI thread.
+	 * 
+	 * @return The id, or null if no block could be leased
+	 */
+	public synchronized Integer allocate()
+	{
+		Integer id = nextId();
+		if( id != null )
+			return id;
+
+		Long block = new ESLeaseIdsCommand().call();
+		if( block == null )
+			return null;
+		try
+		{
+			lease( block );
+		}
+		catch( IllegalArgumentException e )
+		{
+			Logger.log( "", e );
+			return null;
+		}
+		return nextId();
+	}
+
+	/**
+	 * Take the next id of the current lease
+	 * 
+	 * @return The id, or null if the lease has run out
+	 */
+	public synchronized Integer nextId()
+	{
+		if( mNext >= mEnd )
+			return null;
+		return mNext++;
+	}
+
+	/**
+	 * Replace the current lease with a leased block. The ids left in the
+	 * current lease are given up.
+	 * 
+	 * @param block
+	 *            The number of the block, starting at 1
+	 */
+	public synchronized void lease( long block )
+	{
+		if( block < 1 || block > ( Integer.MAX_VALUE - FIRST_ID ) / BLOCK_SIZE )
+			throw new IllegalArgumentException( "No remote ids left in block " + block );
+		mNext = (int) ( FIRST_ID + ( block - 1 ) * BLOCK_SIZE );
+		mEnd = mNext + BLOCK_SIZE;
+	}
+}
@@ -0,0 +1,222 @@
+package cmput301f13t10.model;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import cmput301f13t10.presenter.Logger;
+
+/**
+ * A request to the database that is running on the {@link NetworkExecutor}.
+ * Its result can be waited for like any future, and is also passed to a
+ * callback once the request is done.
+ *
+ * The callback is called with the result, or with null if the request failed
+ * or timed out. It isn't called if the request was cancelled. The timeout
+ * starts when the request starts running, not when it is submitted.
+ *
+ * @author Brendan Cowan
+ *
+ * @param <T>
+ *            The type of the result of the request
+ */
+public class RequestFuture<T> extends FutureTask<T>
+{
+	/**
+	 * The callback to call with the result, or null
+	 */
+	private Callback<T> mCallback;
+
+	/**
+	 * Runs the callback, e.g. on the UI thread
+	 */
+	private Executor mCallbackExecutor;
+
+	/**
+	 * Stops requests that time out, or null if the request has no timeout
+	 */
+	private ScheduledThreadPoolExecutor mTimer;
+
+	/**
+	 * How long the request may run before it is stopped, in milliseconds
+	 */
+	private long mTimeout;
+
+	/**
+	 * The task that stops the request once it times out, or null if it
+	 * hasn't been scheduled
+	 */
+	private volatile ScheduledFuture<?> mTimeoutTask = null;
+
+	/**
+	 * If the request was stopped because it timed out or couldn't be run.
+	 * Only set while the request is being cancelled.
+	 */
+	private volatile boolean mFailed = false;
+
+	/**
+	 * Constructor
+	 *
+	 * @param request
+	 *            The request to run
+	 * @param callback
+	 *            The callback to call with the result, or null
+	 * @param callbackExecutor
+	 *            Runs the callback
+	 * @param timer
+	 *            Stops the request if it times out
+	 * @param timeout
+	 *            How long the request may run before it is stopped, in
+	 *            milliseconds, or 0 for no limit
+	 */
+	RequestFuture( Callable<T> request, Callback<T> callback, Executor callbackExecutor, ScheduledThreadPoolExecutor timer, long timeout )
+	{
+		super( request );
+		mCallback = callback;
+		mCallbackExecutor = callbackExecutor;
+		mTimer = timer;
+		mTimeout = timeout;
+	}
+
+	@Override
+	public void run()
+	{
+		if( isDone() )
+			return;
+		if( mTimeout > 0 )
+			mTimeoutTask = mTimer.schedule( new Timeout( this ), mTimeout, TimeUnit.MILLISECONDS );
+		ESClient.setOwner( this );
+		try
+		{
+			super.run();
+		}
+		finally
+		{
+			ESClient.setOwner( null );
+		}
+	}
+
+	@Override
+	public boolean cancel( boolean mayInterruptIfRunning )
+	{
+		return cancel( mayInterruptIfRunning, false );
+	}
+
+	/**
+	 * Cancel the request. Cancelling and failing are done one at a time, so
+	 * that only the first of them takes effect.
+	 *
+	 * @param mayInterruptIfRunning
+	 *            If a running request is stopped
+	 * @param failed
+	 *            If the request is stopped because it timed out or couldn't
+	 *            be run
+	 * @return True if the request was cancelled
+	 */
+	private synchronized boolean cancel( boolean mayInterruptIfRunning, boolean failed )
+	{
+		if( isDone() )
+			return false;
+		// done() is called from super.cancel, so this has to be set first
+		mFailed = failed;
+		boolean cancelled = super.cancel( mayInterruptIfRunning );
+		if( !cancelled )
+			mFailed = false;
+		// Blocking network reads can't be interrupted, so the http request
+		// that belongs to this request is aborted
+		else if( mayInterruptIfRunning )
+			ESClient.getClient().abort( this );
+		return cancelled;
+	}
+
+	/**
+	 * @return True if the request was stopped because it timed out or
+	 *         couldn't be run
+	 */
+	public boolean isFailed()
+	{
+		return mFailed && isCancelled();
+	}
+
+	/**
+	 * Stop the request because it took too long or couldn't be run. Unlike
+	 * {@link #cancel}, the callback is still called.
+	 */
+	void fail()
+	{
+		cancel( true, true );
+	}
+
+	@Override
+	protected void done()
+	{
+		// Don't keep the request, and its result, in the timer until it
+		// would have timed out
+		ScheduledFuture<?> timeoutTask = mTimeoutTask;
+		if( timeoutTask != null && timeoutTask.cancel( false ) )
+			mTimer.purge();
+
+		if( mCallback == null || ( isCancelled() && !mFailed ) )
+			return;
+
+		T result = null;
+		if( !isCancelled() )
+		{
+			try
+			{
+				result = get();
+			}
+			catch( ExecutionException e )
+			{
+				Logger.log( "", e );
+			}
+			catch( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		final T finalResult = result;
+		mCallbackExecutor.execute( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				mCallback.callBack( finalResult );
+			}
+		} );
+	}
+
+	/**
+	 * Stops a request that timed out. The request is only weakly held, so
+	 * that a cancelled timeout that is still in the timer doesn't keep it.
+	 */
+	private static class Timeout implements Runnable
+	{
+		/**
+		 * The request to stop
+		 */
+		private WeakReference<RequestFuture<?>> mRequest;
+
+		/**
+		 * Constructor
+		 */
+		Timeout( RequestFuture<?> request )
+		{
+			mRequest = new WeakReference<RequestFuture<?>>( request );
+		}
+
+		@Override
+		public void run()
+		{
+			RequestFuture<?> request = mRequest.get();
+			if( request != null )
+				request.fail();
+		}
+	}
+}
@@ -29,13 +29,19 @@ either expressed or implied, of the FreeBSD Project.
 package cmput301f13t10.model;
 
 import java.util.ArrayList;
-
-import com.google.gson.Gson;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * This class is an array of sections and contains methods to manipulate that
  * array either through section ids or the sections themselves.
  * 
+ * Sections are found by id through an index of their positions, so finding a
+ * section doesn't depend on how many sections there are. The sections can
+ * only be changed through the array, which keeps the index up to date, so
+ * the list returned by {@link #getSections()} can't be changed.
+ * 
  * @author Braeden Soetaert
  * 
  */
@@ -43,19 +49,38 @@ public class SectionArray
 {
 	private ArrayList<SectionModel> mSections;
 
+	/**
+	 * The position of each section in mSections, by section id. Null until it
+	 * is first needed, e.g. after the sections are read from the database.
+	 */
+	private transient HashMap<Integer, Integer> mIndex = null;
+
 	public SectionArray()
 	{
 		this.mSections = new ArrayList<SectionModel>();
 	}
 
-	public ArrayList<SectionModel> getSections()
+	/**
+	 * Get the sections, in order
+	 * 
+	 * @return The sections, which can't be changed through this list
+	 */
+	public List<SectionModel> getSections()
 	{
-		return mSections;
+		return Collections.unmodifiableList( mSections );
 	}
 
-	public void setSections( ArrayList<SectionModel> mSections )
+	/**
+	 * Replace the sections
+	 * 
+	 * @param sections
+	 *            The new sections. They are copied, so later changes to the
+	 *            list don't change the array.
+	 */
+	public void setSections( List<SectionModel> sections )
 	{
-		this.mSections = mSections;
+		this.mSections = new ArrayList<SectionModel>( sections );
+		mIndex = null;
 	}
 
 	/**
@@ -66,12 +91,30 @@ public class SectionArray
 	 */
 	public void deleteSection( Integer sectionId )
 	{
-		for( int i = 0; i < mSections.size(); i++ )
+		int first = find( sectionId );
+		if( first == -1 )
+			return;
+
+		// Remove every section with the id in one pass
+		int kept = first;
+		for( int i = first; i < mSections.size(); i++ )
+		{
+			SectionModel section = mSections.get( i );
+			if( section.getId() != sectionId )
+				mSections.set( kept++, section );
+		}
+		while( mSections.size() > kept )
+			mSections.remove( mSections.size() - 1 );
+		mIndex.remove( sectionId );
+
+		// The sections after it moved back. A section is indexed at its first
+		// position, so a later section with the same id doesn't replace it.
+		for( int j = first; j < mSections.size(); j++ )
 		{
-			if( mSections.get( i ).getId() == sectionId )
-			{
-				mSections.remove( i );
-			}
+			int id = mSections.get( j ).getId();
+			Integer old = mIndex.get( id );
+			if( old == null || old >= j )
+				mIndex.put( id, j );
 		}
 	}
 
@@ -86,14 +129,36 @@ public class SectionArray
 	 */
 	public int indexOf( int id ) throws SectionNotFoundException
 	{
-		int i = 0;
-		for( SectionModel checkSection : mSections )
-		{
-			if( checkSection.getId() == id )
-				return i;
-			i++;
-		}
-		throw new SectionNotFoundException();
+		int i = find( id );
+		if( i == -1 )
+			throw new SectionNotFoundException();
+		return i;
+	}
+
+	/**
+	 * Find the position of a section
+	 * 
+	 * @param id
+	 *            The id of the section to find
+	 * @return The position of the section, or -1 if it isn't in the list
+	 */
+	private int find( int id )
+	{
+		if( mIndex == null )
+			rebuildIndex();
+		Integer i = mIndex.get( id );
+		return i == null ? -1 : i;
+	}
+
+	/**
+	 * Index the positions of the sections. If two sections have the same id,
+	 * the first one is found.
+	 */
+	private void rebuildIndex()
+	{
+		mIndex = new HashMap<Integer, Integer>( mSections.size() * 2 );
+		for( int i = mSections.size() - 1; i >= 0; i-- )
+			mIndex.put( mSections.get( i ).getId(), i );
 	}
 
 	/**
@@ -105,14 +170,8 @@ public class SectionArray
 	 */
 	public SectionModel getSection( Integer sectionId )
 	{
-		try
-		{
-			return mSections.get( indexOf( sectionId ) );
-		}
-		catch( SectionNotFoundException e )
-		{
-			return null;
-		}
+		int i = find( sectionId );
+		return i == -1 ? null : mSections.get( i );
 	}
 
 	/**
@@ -139,7 +198,8 @@ public class SectionArray
 	public void addSection( SectionModel section, AdventureModel adventureModel )
 	{
 		mSections.add( section );
-		Gson gson = new Gson();
+		if( mIndex != null && !mIndex.containsKey( section.getId() ) )
+			mIndex.put( section.getId(), mSections.size() - 1 );
 	}
 
 	/**
@@ -161,13 +221,10 @@ public class SectionArray
 	 */
 	public void setSection( SectionModel section )
 	{
-		try
-		{
-			mSections.set( indexOf( section ), section );
-		}
-		catch( SectionNotFoundException e )
-		{
-			mSections.add( section );
-		}
+		int i = find( section.getId() );
+		if( i != -1 )
+			mSections.set( i, section );
+		else
+			addSection( section, null );
 	}
-}
\ No newline at end of file
+}
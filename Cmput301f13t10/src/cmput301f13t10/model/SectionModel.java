@@ -83,6 +83,26 @@ public class SectionModel extends Observable implements Serializable
 		mAnnotation = new AnnotationModel();
 	}
 
+	/**
+	 * Constructor for a section that has already been given an id, with no
+	 * media or choices
+	 * 
+	 * @param id
+	 *            The id of the section
+	 * @param name
+	 *            The title of the section
+	 * @param annotation
+	 *            The annotation of the section
+	 */
+	SectionModel( int id, String name, AnnotationModel annotation )
+	{
+		mName = name;
+		mMedias = new ArrayList<Media>();
+		mChoices = new ArrayList<SectionChoice>();
+		mId = id;
+		mAnnotation = annotation;
+	}
+
 	/**
 	 * Insert a media at the end of the list of media.
 	 * 
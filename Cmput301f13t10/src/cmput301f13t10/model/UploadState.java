@@ -0,0 +1,371 @@
+package cmput301f13t10.model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import cmput301f13t10.presenter.Media;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * What an adventure looked like when it was uploaded: its title and flags, and
+ * a fingerprint of each of its sections and of each of their media. Comparing
+ * the state of an adventure with the state it was last uploaded in tells
+ * which parts of it have to be sent to the database again. The state is saved
+ * with the adventure, so that this still works after the app is restarted.
+ *
+ * Updates are sent with elasticsearch's update api, so each upload is a single
+ * atomic request:
+ * <ul>
+ * <li>An adventure that hasn't been uploaded is sent whole, and is inserted if
+ * it isn't on the database yet.</li>
+ * <li>If sections were added, removed or reordered, the title, flags and
+ * sections are sent as a partial document.</li>
+ * <li>Otherwise a script updates the sections that changed in place. If only
+ * media of a section (or of its annotation) were changed or added, just those
+ * media are sent. If its name, choices or annotation changed, or media were
+ * removed or reordered, the whole section is sent.</li>
+ * </ul>
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class UploadState
+{
+	/**
+	 * The adventure's title
+	 */
+	private String mTitle;
+
+	/**
+	 * If the adventure could be played randomly
+	 */
+	private boolean mRandom;
+
+	/**
+	 * The ids of the adventure's sections, in order
+	 */
+	private int[] mSectionIds;
+
+	/**
+	 * The fingerprint of everything but the media of each section, in the
+	 * same order as the ids
+	 */
+	private long[] mHeaderFingerprints;
+
+	/**
+	 * The fingerprint of each media of each section
+	 */
+	private long[][] mMediaFingerprints;
+
+	/**
+	 * The fingerprint of each media of each section's annotation
+	 */
+	private long[][] mAnnotationFingerprints;
+
+	/**
+	 * The version of the document on the database after the upload, or -1 if
+	 * it isn't known
+	 */
+	private long mVersion = -1;
+
+	/**
+	 * Constructor. Takes the fingerprints of the adventure as it is now.
+	 *
+	 * @param adventure
+	 *            The adventure to take the state of
+	 * @throws IOException
+	 *             If a section could not be encoded
+	 */
+	public UploadState( AdventureModel adventure ) throws IOException
+	{
+		mTitle = adventure.getTitle();
+		mRandom = adventure.getRandomSet();
+
+		List<SectionModel> sections = adventure.getSections();
+		int count = sections.size();
+		mSectionIds = new int[count];
+		mHeaderFingerprints = new long[count];
+		mMediaFingerprints = new long[count][];
+		mAnnotationFingerprints = new long[count][];
+		CRC32 crc = new CRC32();
+		for( int i = 0; i < count; i++ )
+		{
+			SectionModel section = sections.get( i );
+			mSectionIds[i] = section.getId();
+			crc.reset();
+			crc.update( AdventureCodec.encodeSectionHeader( section ) );
+			mHeaderFingerprints[i] = crc.getValue();
+			mMediaFingerprints[i] = fingerprint( section.getMedia(), crc );
+			AnnotationModel annotation = section.getAnnotation();
+			mAnnotationFingerprints[i] = fingerprint( annotation == null ? new ArrayList<Media>() : annotation.getMedia(), crc );
+		}
+	}
+
+	/**
+	 * Constructor for a state that is read back with {@link #read}
+	 */
+	private UploadState()
+	{
+	}
+
+	/**
+	 * Take the fingerprint of each of a list of media
+	 */
+	private static long[] fingerprint( List<Media> medias, CRC32 crc ) throws IOException
+	{
+		long[] fingerprints = new long[medias.size()];
+		for( int i = 0; i < fingerprints.length; i++ )
+		{
+			crc.reset();
+			crc.update( AdventureCodec.encodeMedia( medias.get( i ) ) );
+			fingerprints[i] = crc.getValue();
+		}
+		return fingerprints;
+	}
+
+	/**
+	 * @return The version of the document on the database after the upload,
+	 *         or -1 if it isn't known
+	 */
+	public long getVersion()
+	{
+		return mVersion;
+	}
+
+	/**
+	 * Set the version of the document on the database after the upload
+	 *
+	 * @param version
+	 *            The version of the document
+	 */
+	public void setVersion( long version )
+	{
+		mVersion = version;
+	}
+
+	/**
+	 * If anything differs from an earlier state
+	 *
+	 * @param previous
+	 *            The earlier state, or null if there isn't one
+	 * @return True if the adventure has to be uploaded again
+	 */
+	public boolean isChangedFrom( UploadState previous )
+	{
+		if( previous == null || !headerEquals( previous ) || !Arrays.equals( mSectionIds, previous.mSectionIds ) )
+			return true;
+		for( int i = 0; i < mSectionIds.length; i++ )
+		{
+			if( !sectionEquals( previous, i ) )
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Build the body of the update request that brings the database from an
+	 * earlier state of the adventure to this one
+	 *
+	 * @param previous
+	 *            The state the adventure was last uploaded in, or null to send
+	 *            the whole adventure
+	 * @param adventure
+	 *            The adventure, in this state
+	 * @param gson
+	 *            The Gson instance to convert the adventure with
+	 * @return The body of the update request, or null if nothing has changed
+	 */
+	public String getUpdate( UploadState previous, AdventureModel adventure, Gson gson )
+	{
+		JsonObject update = new JsonObject();
+		if( previous == null )
+		{
+			update.add( "doc", gson.toJsonTree( adventure ) );
+			update.addProperty( "doc_as_upsert", true );
+			return gson.toJson( update );
+		}
+		if( !isChangedFrom( previous ) )
+			return null;
+
+		List<SectionModel> sections = adventure.getSections();
+		if( !Arrays.equals( mSectionIds, previous.mSectionIds ) )
+		{
+			JsonArray sectionsJson = new JsonArray();
+			for( SectionModel section : sections )
+				sectionsJson.add( gson.toJsonTree( section ) );
+			JsonObject sectionArray = new JsonObject();
+			sectionArray.add( "mSections", sectionsJson );
+
+			JsonObject doc = new JsonObject();
+			doc.addProperty( "mTitle", mTitle );
+			doc.addProperty( "mIsRandomAvailable", mRandom );
+			doc.add( "mSectionArray", sectionArray );
+			update.add( "doc", doc );
+			return gson.toJson( update );
+		}
+
+		StringBuilder script = new StringBuilder();
+		JsonObject params = new JsonObject();
+		if( !headerEquals( previous ) )
+		{
+			script.append( "ctx._source.mTitle = title; ctx._source.mIsRandomAvailable = random; " );
+			params.addProperty( "title", mTitle );
+			params.addProperty( "random", mRandom );
+		}
+		for( int i = 0; i < mSectionIds.length; i++ )
+		{
+			if( sectionEquals( previous, i ) )
+				continue;
+			String path = "ctx._source.mSectionArray.mSections[" + i + "]";
+			SectionModel section = sections.get( i );
+			if( mHeaderFingerprints[i] != previous.mHeaderFingerprints[i] || mMediaFingerprints[i].length < previous.mMediaFingerprints[i].length || mAnnotationFingerprints[i].length < previous.mAnnotationFingerprints[i].length )
+			{
+				script.append( path ).append( " = s" ).append( i ).append( "; " );
+				params.add( "s" + i, gson.toJsonTree( section ) );
+				continue;
+			}
+			addMediaUpdates( script, params, path + ".mMedias", "s" + i + "m", mMediaFingerprints[i], previous.mMediaFingerprints[i], section.getMedia(), gson );
+			if( section.getAnnotation() != null )
+				addMediaUpdates( script, params, path + ".mAnnotation.mMedias", "s" + i + "a", mAnnotationFingerprints[i], previous.mAnnotationFingerprints[i], section.getAnnotation().getMedia(), gson );
+		}
+		update.addProperty( "script", script.toString().trim() );
+		update.add( "params", params );
+		return gson.toJson( update );
+	}
+
+	/**
+	 * Add the media of a list that changed, or were added to its end, to an
+	 * update script
+	 *
+	 * @param script
+	 *            The script to add to
+	 * @param params
+	 *            The parameters of the script, which the media are added to
+	 * @param path
+	 *            The path of the list in the document
+	 * @param prefix
+	 *            The prefix of the names of the media's parameters
+	 * @param fingerprints
+	 *            The fingerprints of the media now
+	 * @param previous
+	 *            The fingerprints of the media when they were uploaded, which
+	 *            aren't more than there are now
+	 * @param medias
+	 *            The media now
+	 * @param gson
+	 *            The Gson instance to convert the media with
+	 */
+	private static void addMediaUpdates( StringBuilder script, JsonObject params, String path, String prefix, long[] fingerprints, long[] previous, List<Media> medias, Gson gson )
+	{
+		for( int j = 0; j < fingerprints.length; j++ )
+		{
+			if( j < previous.length && fingerprints[j] == previous[j] )
+				continue;
+			String name = prefix + j;
+			if( j < previous.length )
+				script.append( path ).append( "[" ).append( j ).append( "] = " ).append( name ).append( "; " );
+			else
+				script.append( path ).append( " += " ).append( name ).append( "; " );
+			params.add( name, gson.toJsonTree( medias.get( j ), Media.class ) );
+		}
+	}
+
+	/**
+	 * Write the state, to be saved with the adventure
+	 *
+	 * @param out
+	 *            The stream to write to
+	 * @throws IOException
+	 *             If the state could not be written
+	 */
+	public void write( DataOutputStream out ) throws IOException
+	{
+		AdventureCodec.writeString( out, mTitle );
+		out.writeBoolean( mRandom );
+		out.writeLong( mVersion );
+		out.writeInt( mSectionIds.length );
+		for( int i = 0; i < mSectionIds.length; i++ )
+		{
+			out.writeInt( mSectionIds[i] );
+			out.writeLong( mHeaderFingerprints[i] );
+			writeFingerprints( out, mMediaFingerprints[i] );
+			writeFingerprints( out, mAnnotationFingerprints[i] );
+		}
+	}
+
+	/**
+	 * Read a state written by {@link #write}
+	 *
+	 * @param in
+	 *            The stream to read from
+	 * @return The state
+	 * @throws IOException
+	 *             If the state could not be read
+	 */
+	public static UploadState read( DataInputStream in ) throws IOException
+	{
+		UploadState state = new UploadState();
+		state.mTitle = AdventureCodec.readString( in );
+		state.mRandom = in.readBoolean();
+		state.mVersion = in.readLong();
+		int count = in.readInt();
+		state.mSectionIds = new int[count];
+		state.mHeaderFingerprints = new long[count];
+		state.mMediaFingerprints = new long[count][];
+		state.mAnnotationFingerprints = new long[count][];
+		for( int i = 0; i < count; i++ )
+		{
+			state.mSectionIds[i] = in.readInt();
+			state.mHeaderFingerprints[i] = in.readLong();
+			state.mMediaFingerprints[i] = readFingerprints( in );
+			state.mAnnotationFingerprints[i] = readFingerprints( in );
+		}
+		return state;
+	}
+
+	/**
+	 * Write a list of fingerprints
+	 */
+	private static void writeFingerprints( DataOutputStream out, long[] fingerprints ) throws IOException
+	{
+		out.writeInt( fingerprints.length );
+		for( long fingerprint : fingerprints )
+			out.writeLong( fingerprint );
+	}
+
+	/**
+	 * Read a list of fingerprints written by {@link #writeFingerprints}
+	 */
+	private static long[] readFingerprints( DataInputStream in ) throws IOException
+	{
+		long[] fingerprints = new long[in.readInt()];
+		for( int i = 0; i < fingerprints.length; i++ )
+			fingerprints[i] = in.readLong();
+		return fingerprints;
+	}
+
+	/**
+	 * If a section is the same as the one at the same position in another
+	 * state
+	 */
+	private boolean sectionEquals( UploadState other, int i )
+	{
+		return mHeaderFingerprints[i] == other.mHeaderFingerprints[i] && Arrays.equals( mMediaFingerprints[i], other.mMediaFingerprints[i] ) && Arrays.equals( mAnnotationFingerprints[i], other.mAnnotationFingerprints[i] );
+	}
+
+	/**
+	 * If the title and flags are the same as in another state
+	 */
+	private boolean headerEquals( UploadState other )
+	{
+		return mRandom == other.mRandom && ( mTitle == null ? other.mTitle == null : mTitle.equals( other.mTitle ) );
+	}
+}
@@ -35,6 +35,7 @@ import cmput301f13t10.model.AdventureModel;
 import cmput301f13t10.model.Callback;
 import cmput301f13t10.model.DatabaseInteractor;
 import cmput301f13t10.model.ESGetCommand;
+import cmput301f13t10.model.NetworkExecutor;
 import cmput301f13t10.model.SectionModel;
 import cmput301f13t10.view.AdventureEditView;
 
@@ -146,7 +147,7 @@ public class AdventurePresenter
 	{
 		SectionModel aSection;
 		Integer startSectionId = mModel.getStartSection().getId();
-		ArrayList<SectionModel> sections = mModel.getSections();
+		List<SectionModel> sections = mModel.getSections();
 		List<SectionTitle> sectionTitles = new ArrayList<SectionTitle>();
 
 		for( int i = 0; i < sections.size(); i++ )
@@ -175,27 +176,29 @@ public class AdventurePresenter
 		mModel.setSave( true );
 	}
 
-	public void getOnlineAdventure( Callback externalCallback )
+	public void getOnlineAdventure( final Callback<AdventureModel> externalCallback )
 	{
-		Callback presenterCallback = new Callback( externalCallback )
+		Callback<AdventureModel> presenterCallback = new Callback<AdventureModel>()
 		{
 
 			@Override
-			public void callBack( Object arg )
+			public void callBack( AdventureModel adventure )
 			{
-				Callback c = (Callback) mCallbackArg;
-				AdventureCache.getAdventureCache().deleteAdventure( mModel );
-				mModel = (AdventureModel) arg;
-				AdventureCache.getAdventureCache().addAdventure( mModel );
-				if( c != null )
-					c.callBack( null );
+				// Keep the adventure we have if the online one couldn't be fetched
+				if( adventure != null )
+				{
+					adventure.setLocalId( mModel.getLocalId() );
+					AdventureCache.getAdventureCache().deleteAdventure( mModel );
+					mModel = adventure;
+					AdventureCache.getAdventureCache().addAdventure( mModel );
+				}
+				if( externalCallback != null )
+					externalCallback.callBack( adventure );
 			}
 
 		};
 
-		ESGetCommand getCommand = new ESGetCommand( mModel.getRemoteId(), presenterCallback );
-		getCommand.execute( null, null );
-
+		NetworkExecutor.getExecutor().submit( new ESGetCommand( mModel.getRemoteId() ), presenterCallback );
 	}
 
 	public boolean isAdventureOnline()
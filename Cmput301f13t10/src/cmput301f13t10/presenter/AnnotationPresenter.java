@@ -31,7 +31,6 @@ package cmput301f13t10.presenter;
 import java.util.ArrayList;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
 import cmput301f13t10.model.AdventureCache;
 import cmput301f13t10.model.AdventureModel;
 import cmput301f13t10.model.AnnotationModel;
@@ -144,17 +143,17 @@ public class AnnotationPresenter
 	}
 
 	/**
-	 * This takes a new bitmap and the position of the media in the current
-	 * annotations media list and sets the new bitmap
+	 * This takes a new size and the position of the media in the current
+	 * annotations media list and sets the size the image is shown at
 	 * 
-	 * @param newBitmap
-	 *            New bitmap to get set
+	 * @param size
+	 *            The new width and height of the image
 	 * @param mediaPos
 	 *            Position in media array list
 	 */
-	public void resizeBitmap( Bitmap newBitmap, int mediaPos )
+	public void resizeImage( int size, int mediaPos )
 	{
-		ImageCreator.resizeBitmap( newBitmap, mediaPos, mCurrentAnnotation.getMedia() );
+		ImageCreator.resizeImage( size, mediaPos, mCurrentAnnotation.getMedia() );
 	}
 
 	/**
@@ -124,13 +124,36 @@ public class AppConstants
 	public static final String ES_ADVENTURE = "adventures/";
 
 	/**
-	 * The url extention for the list of all ids
+	 * The url extention for the counter that remote ids are leased from
 	 */
-	public static final String ES_IDS = "ids/1";
+	public static final String ES_ID_COUNTER = "counters/adventure";
 
 	/**
-	 * Name of the file where adventures are saved locally
+	 * Name of the file where older versions of the app saved adventures
+	 * locally
 	 */
 	public static final String FILE_NAME = "Adventures.sav";
 
+	/**
+	 * Name of the journal where adventures are saved locally
+	 */
+	public static final String JOURNAL_FILE_NAME = "Adventures.journal";
+
+	/**
+	 * Name of the file where the contents of images are saved locally
+	 */
+	public static final String BLOB_FILE_NAME = "Media.blobs";
+
+	/**
+	 * Name of the file where adventures waiting to be published or deleted
+	 * are kept
+	 */
+	public static final String OUTBOX_FILE_NAME = "Outbox.dat";
+
+	/**
+	 * How long adventures fetched from the database are used before they are
+	 * checked for changes, in milliseconds
+	 */
+	public static final long CACHE_TIME_TO_LIVE = 5 * 60 * 1000;
+
 }
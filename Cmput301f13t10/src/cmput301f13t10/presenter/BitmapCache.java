@@ -0,0 +1,219 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.presenter;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * A cache of decoded images, shared by the whole app. Once the total size of
+ * the cached bitmaps goes over the budget, the least recently used ones are
+ * dropped, and are decoded again the next time they are needed.
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class BitmapCache
+{
+	/**
+	 * The fraction of the app's maximum heap that the shared cache may use
+	 */
+	private static final int HEAP_FRACTION = 8;
+
+	/**
+	 * The cache shared by the app
+	 */
+	private static BitmapCache sBitmapCache = null;
+
+	/**
+	 * The cached bitmaps, sized in bytes
+	 */
+	private LruCache<String, Bitmap> mCache;
+
+	/**
+	 * The keys of the cached bitmaps, to tell if a bitmap is cached without
+	 * counting it as used
+	 */
+	private Set<String> mKeys = Collections.synchronizedSet( new HashSet<String>() );
+
+	/**
+	 * Get the cache shared by the app
+	 *
+	 * @return The shared bitmap cache
+	 */
+	public static synchronized BitmapCache getBitmapCache()
+	{
+		if( sBitmapCache == null )
+			sBitmapCache = new BitmapCache( (int) Math.min( Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / HEAP_FRACTION ) );
+		return sBitmapCache;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxBytes
+	 *            The most memory that the cached bitmaps can take up
+	 */
+	public BitmapCache( int maxBytes )
+	{
+		mCache = new LruCache<String, Bitmap>( maxBytes )
+		{
+			@Override
+			protected int sizeOf( String key, Bitmap bitmap )
+			{
+				return BitmapCache.this.sizeOf( bitmap );
+			}
+
+			@Override
+			protected void entryRemoved( boolean evicted, String key, Bitmap oldBitmap, Bitmap newBitmap )
+			{
+				if( newBitmap == null )
+					mKeys.remove( key );
+			}
+		};
+	}
+
+	/**
+	 * Get a cached bitmap
+	 *
+	 * @param key
+	 *            The key of the bitmap
+	 * @return The bitmap, or null if it isn't cached
+	 */
+	public Bitmap get( String key )
+	{
+		return mCache.get( key );
+	}
+
+	/**
+	 * Check if a bitmap is cached. Unlike {@link #get}, this doesn't count as
+	 * a hit or a miss, and doesn't keep the bitmap in the cache for longer.
+	 *
+	 * @param key
+	 *            The key of the bitmap
+	 * @return True if the bitmap is cached
+	 */
+	public boolean contains( String key )
+	{
+		return mKeys.contains( key );
+	}
+
+	/**
+	 * Cache a bitmap, replacing any bitmap already cached with the same key
+	 *
+	 * @param key
+	 *            The key of the bitmap
+	 * @param bitmap
+	 *            The bitmap to cache
+	 */
+	public void put( String key, Bitmap bitmap )
+	{
+		if( key != null && bitmap != null )
+		{
+			// Added first, so that a bitmap too big to be kept is removed again
+			mKeys.add( key );
+			mCache.put( key, bitmap );
+		}
+	}
+
+	/**
+	 * Drop a cached bitmap
+	 *
+	 * @param key
+	 *            The key of the bitmap
+	 */
+	public void remove( String key )
+	{
+		mCache.remove( key );
+	}
+
+	/**
+	 * Drop every cached bitmap, e.g. when the system is low on memory
+	 */
+	public void clear()
+	{
+		mCache.evictAll();
+	}
+
+	/**
+	 * @return The number of times a requested bitmap was cached
+	 */
+	public int getHitCount()
+	{
+		return mCache.hitCount();
+	}
+
+	/**
+	 * @return The number of times a requested bitmap wasn't cached
+	 */
+	public int getMissCount()
+	{
+		return mCache.missCount();
+	}
+
+	/**
+	 * @return The number of bitmaps dropped to stay within the budget
+	 */
+	public int getEvictionCount()
+	{
+		return mCache.evictionCount();
+	}
+
+	/**
+	 * @return The total size of the cached bitmaps in bytes
+	 */
+	public int getSize()
+	{
+		return mCache.size();
+	}
+
+	/**
+	 * @return The most memory that the cached bitmaps can take up
+	 */
+	public int getMaxSize()
+	{
+		return mCache.maxSize();
+	}
+
+	/**
+	 * Get the memory taken up by a bitmap
+	 *
+	 * @param bitmap
+	 *            The bitmap to measure
+	 * @return The size of the bitmap in bytes
+	 */
+	protected int sizeOf( Bitmap bitmap )
+	{
+		return bitmap.getRowBytes() * bitmap.getHeight();
+	}
+}
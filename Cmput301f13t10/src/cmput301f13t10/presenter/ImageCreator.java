@@ -44,6 +44,15 @@ import android.support.v4.app.FragmentActivity;
  */
 public class ImageCreator
 {
+	/**
+	 * The width and height that stored images are scaled to
+	 */
+	public static final int IMAGE_SIZE = 670;
+
+	/**
+	 * Bytes per pixel of a decoded ARGB_8888 bitmap
+	 */
+	private static final int BYTES_PER_PIXEL = 4;
 
 	private ImageCreator()
 	{
@@ -68,9 +77,19 @@ public class ImageCreator
 			try
 			{
 				// TODO Decouple the editView from the data.
+				// Read only the size of the image first, so that a large photo
+				// can be decoded at close to the size it will be stored at
+				// rather than at full resolution.
+				BitmapFactory.Options options = new BitmapFactory.Options();
+				options.inJustDecodeBounds = true;
 				InputStream stream = view.getContentResolver().openInputStream( data.getData() );
+				BitmapFactory.decodeStream( stream, null, options );
+				stream.close();
 
-				tempBitmap = BitmapFactory.decodeStream( stream );
+				options.inSampleSize = calculateSampleSize( options.outWidth, options.outHeight, IMAGE_SIZE, IMAGE_SIZE );
+				options.inJustDecodeBounds = false;
+				stream = view.getContentResolver().openInputStream( data.getData() );
+				tempBitmap = BitmapFactory.decodeStream( stream, null, options );
 				stream.close();
 			}
 			catch( Exception e )
@@ -84,7 +103,7 @@ public class ImageCreator
 		}
 		if( tempBitmap != null )
 		{
-			tempBitmap = Bitmap.createScaledBitmap( tempBitmap, 670, 670, true );
+			tempBitmap = Bitmap.createScaledBitmap( tempBitmap, IMAGE_SIZE, IMAGE_SIZE, true );
 
 			ImageMedia newImageMedia = new ImageMedia();
 			newImageMedia.setImageBitmap( tempBitmap );
@@ -94,18 +113,59 @@ public class ImageCreator
 	}
 
 	/**
-	 * This takes a new bitmap and the position of the media in the media list
-	 * and sets the new bitmap
+	 * Find the largest power of two that an image can be subsampled by while
+	 * staying at least as large as the target size, so that it only has to be
+	 * scaled down afterwards.
+	 * 
+	 * @param width
+	 *            The width of the full image
+	 * @param height
+	 *            The height of the full image
+	 * @param targetWidth
+	 *            The width the image will be scaled to
+	 * @param targetHeight
+	 *            The height the image will be scaled to
+	 * @return The sample size to decode the image with
+	 */
+	public static int calculateSampleSize( int width, int height, int targetWidth, int targetHeight )
+	{
+		int sampleSize = 1;
+		while( width / ( sampleSize * 2 ) >= targetWidth && height / ( sampleSize * 2 ) >= targetHeight )
+			sampleSize *= 2;
+		return sampleSize;
+	}
+
+	/**
+	 * Estimate the memory taken by an image decoded with the given sample
+	 * size
+	 * 
+	 * @param width
+	 *            The width of the full image
+	 * @param height
+	 *            The height of the full image
+	 * @param sampleSize
+	 *            The sample size the image is decoded with
+	 * @return The size of the decoded bitmap in bytes
+	 */
+	public static long estimateDecodedBytes( int width, int height, int sampleSize )
+	{
+		return (long) ( width / sampleSize ) * ( height / sampleSize ) * BYTES_PER_PIXEL;
+	}
+
+	/**
+	 * This takes a new size and the position of the media in the media list
+	 * and sets the size the image is shown at. The stored image is left as it
+	 * is, so resizing doesn't re-encode it.
 	 * 
-	 * @param newBitmap
-	 *            New bitmap to get set
+	 * @param size
+	 *            The new width and height of the image
 	 * @param mediaPos
 	 *            Position in media array list
 	 * @param media
 	 *            The media array list that the image media is in.
 	 */
-	public static void resizeBitmap( Bitmap newBitmap, int mediaPos, ArrayList<Media> media )
+	public static void resizeImage( int size, int mediaPos, ArrayList<Media> media )
 	{
-		( (ImageMedia) media.get( mediaPos ) ).setImageBitmap( newBitmap );
+		( (ImageMedia) media.get( mediaPos ) ).setDisplaySize( size );
 	}
 }
@@ -0,0 +1,140 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.presenter;
+
+import java.io.ByteArrayOutputStream;
+
+import android.graphics.Bitmap;
+
+/**
+ * Compresses new images before they are stored. The format and quality can
+ * be chosen from the presets, or a subclass can compress images differently.
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class ImageEncoder
+{
+	/**
+	 * JPEG at high quality, for when image detail matters most
+	 */
+	public static final ImageEncoder HIGH = new ImageEncoder( Bitmap.CompressFormat.JPEG, 90 );
+
+	/**
+	 * JPEG at a quality that is hard to tell apart from the original at the
+	 * size images are shown at
+	 */
+	public static final ImageEncoder STANDARD = new ImageEncoder( Bitmap.CompressFormat.JPEG, 80 );
+
+	/**
+	 * WebP, which is noticeably smaller than JPEG at the same quality
+	 */
+	public static final ImageEncoder COMPACT = new ImageEncoder( Bitmap.CompressFormat.WEBP, 75 );
+
+	/**
+	 * The encoder used for new images
+	 */
+	private static ImageEncoder sEncoder = STANDARD;
+
+	/**
+	 * The format images are compressed to
+	 */
+	private Bitmap.CompressFormat mFormat;
+
+	/**
+	 * The quality images are compressed at, from 0 to 100
+	 */
+	private int mQuality;
+
+	/**
+	 * Get the encoder used for new images
+	 * 
+	 * @return The current encoder
+	 */
+	public static synchronized ImageEncoder getEncoder()
+	{
+		return sEncoder;
+	}
+
+	/**
+	 * Set the encoder used for new images. Images that are already stored are
+	 * not re-encoded.
+	 * 
+	 * @param encoder
+	 *            The encoder to use
+	 */
+	public static synchronized void setEncoder( ImageEncoder encoder )
+	{
+		sEncoder = encoder;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param format
+	 *            The format to compress images to
+	 * @param quality
+	 *            The quality to compress images at, from 0 to 100
+	 */
+	public ImageEncoder( Bitmap.CompressFormat format, int quality )
+	{
+		mFormat = format;
+		mQuality = quality;
+	}
+
+	/**
+	 * Compress an image
+	 * 
+	 * @param image
+	 *            The image to compress
+	 * @return The compressed bytes of the image
+	 */
+	public byte[] encode( Bitmap image )
+	{
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		image.compress( mFormat, mQuality, outputStream );
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * @return The format images are compressed to
+	 */
+	public Bitmap.CompressFormat getFormat()
+	{
+		return mFormat;
+	}
+
+	/**
+	 * @return The quality images are compressed at
+	 */
+	public int getQuality()
+	{
+		return mQuality;
+	}
+}
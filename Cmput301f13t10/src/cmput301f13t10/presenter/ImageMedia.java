@@ -28,17 +28,26 @@
  */
 package cmput301f13t10.presenter;
 
-import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.util.Base64;
-import android.util.Log;
 import android.view.View;
+import android.view.ViewGroup.LayoutParams;
 import android.widget.ImageView;
+import cmput301f13t10.model.AdventureCodec;
 import cmput301f13t10.model.IdFactory;
+import cmput301f13t10.model.MediaBlobStore;
+import cmput301f13t10.model.MediaCodec;
 
 /**
  * Media for pictures that can be added and viewed in a section of an adventure.
@@ -55,14 +64,40 @@ public class ImageMedia implements Media
 	private int mId;
 
 	/**
-	 * The bitmap object associated with the media object
+	 * The id of the compressed image in the {@link MediaBlobStore}, or null if
+	 * it isn't stored there
 	 */
-	private transient Bitmap mImageBitmap = null;
+	private transient volatile String mBlobId = null;
 
 	/**
-	 * The base 64 representation of the bitmap object
+	 * The compressed bytes of the image, if there is no blob store to keep
+	 * them in
 	 */
-	private String mBase64String;
+	private transient byte[] mImageBytes = null;
+
+	/**
+	 * The width and height the image is shown at, or 0 to show it at its own
+	 * size
+	 */
+	private int mDisplaySize = 0;
+
+	/**
+	 * The base 64 representation of the image, as received from the server.
+	 * It is moved into the blob store the first time the image is used.
+	 */
+	private volatile String mBase64String;
+
+	/**
+	 * The number of times the image has been replaced, so that an image that
+	 * was decoded before it was replaced isn't cached
+	 */
+	private transient int mReplacedCount = 0;
+
+	/**
+	 * The decodes that are running, by the key the image is decoded for, so
+	 * that an image being decoded isn't decoded again at the same time
+	 */
+	private static final Map<String, FutureTask<Bitmap>> sDecodes = new HashMap<String, FutureTask<Bitmap>>();
 
 	/**
 	 * Constructor
@@ -75,17 +110,155 @@ public class ImageMedia implements Media
 		mId = IdFactory.getIdManager( AppConstants.GENERATE_MEDIA_ID ).getNewId();
 	}
 
+	/**
+	 * Constructor for an image that has already been given an id
+	 * 
+	 * @param id
+	 *            The image's id.
+	 * @param imageBytes
+	 *            The compressed bytes of the image
+	 */
+	public ImageMedia( int id, byte[] imageBytes )
+	{
+		mId = id;
+		store( imageBytes );
+	}
+
+	/**
+	 * Constructor for an image whose contents are in the blob store
+	 * 
+	 * @param id
+	 *            The image's id.
+	 * @param blobId
+	 *            The id of the compressed image in the blob store
+	 */
+	public ImageMedia( int id, String blobId )
+	{
+		mId = id;
+		mBlobId = blobId;
+	}
+
 	/**
 	 * Set the image associated with the media object
 	 * 
 	 * @param bm
 	 *            The bitmap file to use
 	 */
-	public void setImageBitmap( Bitmap bm )
+	public synchronized void setImageBitmap( Bitmap bm )
+	{
+		byte[] bytes = ImageEncoder.getEncoder().encode( bm );
+		mReplacedCount++;
+		mBase64String = null;
+		store( bytes );
+		BitmapCache.getBitmapCache().put( getCacheKey(), bm );
+	}
+
+	/**
+	 * Set the size the image is shown at. The stored image isn't changed, so
+	 * resizing an image doesn't re-encode it or lose any quality.
+	 * 
+	 * @param size
+	 *            The width and height to show the image at, or 0 to show it at
+	 *            its own size
+	 */
+	public void setDisplaySize( int size )
+	{
+		mDisplaySize = size;
+	}
+
+	/**
+	 * Get the size the image is shown at
+	 * 
+	 * @return The width and height the image is shown at, or 0 if it is shown
+	 *         at its own size
+	 */
+	public int getDisplaySize()
 	{
-		mImageBitmap = bm;
-		mBase64String = toBase64( bm );
-		Log.d( "debug", mBase64String );
+		return mDisplaySize;
+	}
+
+	/**
+	 * Get the compressed bytes of the image. If the image is in the blob
+	 * store, this is a new copy of it.
+	 * 
+	 * @return The compressed image, or null if there is no image
+	 */
+	public synchronized byte[] getImageBytes()
+	{
+		if( mImageBytes != null )
+			return mImageBytes;
+
+		if( mBase64String != null )
+		{
+			byte[] bytes = Base64.decode( mBase64String, Base64.DEFAULT );
+			mBase64String = null;
+			store( bytes );
+			return bytes;
+		}
+
+		MediaBlobStore blobStore = MediaBlobStore.getBlobStore();
+		if( mBlobId == null || blobStore == null )
+			return null;
+		try
+		{
+			return blobStore.getBytes( mBlobId );
+		}
+		catch( IOException e )
+		{
+			Logger.log( "Could not read image " + mBlobId, e );
+			return null;
+		}
+	}
+
+	/**
+	 * Get the id of the image in the blob store
+	 * 
+	 * @return The blob id, or null if the image isn't in the blob store
+	 */
+	public String getBlobId()
+	{
+		return mBlobId;
+	}
+
+	/**
+	 * Get the base 64 representation of the image, as it is sent to the
+	 * server. This isn't kept, since it is only needed while uploading.
+	 * 
+	 * @return The base 64 string representation of the image
+	 */
+	public String getBase64()
+	{
+		if( mBase64String != null )
+			return mBase64String;
+		byte[] bytes = getImageBytes();
+		return bytes == null ? null : Base64.encodeToString( bytes, Base64.DEFAULT );
+	}
+
+	/**
+	 * Keep the compressed image in the blob store, or on the heap if there is
+	 * no blob store
+	 * 
+	 * @param bytes
+	 *            The compressed image
+	 */
+	private void store( byte[] bytes )
+	{
+		MediaBlobStore blobStore = MediaBlobStore.getBlobStore();
+		if( blobStore != null && bytes != null )
+		{
+			try
+			{
+				mBlobId = blobStore.put( bytes );
+				mImageBytes = null;
+				return;
+			}
+			catch( IOException e )
+			{
+				Logger.log( "Could not store image", e );
+			}
+		}
+		mBlobId = null;
+		mImageBytes = bytes;
 	}
 
 	@Override
@@ -96,22 +269,216 @@ public class ImageMedia implements Media
 
 	@Override
 	public View toView( Context c )
+	{
+		View view = createView( c );
+		bindView( view );
+		return view;
+	}
+
+	/**
+	 * Check if the image is decoded in the {@link BitmapCache}. Checking
+	 * doesn't count as using the image, and doesn't wait for an image that is
+	 * being decoded.
+	 */
+	@Override
+	public boolean isPrepared()
+	{
+		// Images from the server still have to be moved into the blob store
+		if( mBase64String != null )
+			return false;
+		return BitmapCache.getBitmapCache().contains( getStoredCacheKey() );
+	}
+
+	/**
+	 * Decode the image into the {@link BitmapCache}
+	 */
+	@Override
+	public void prepare()
+	{
+		getImageBitmap();
+	}
+
+	@Override
+	public View createView( Context c )
 	{
 		ImageView iv = new ImageView( c );
 		iv.setClickable( true );
-		iv.setImageBitmap( getImageBitmap() );
 		return iv;
 	}
 
+	@Override
+	public void bindView( View view )
+	{
+		ImageView iv = (ImageView) view;
+		iv.setImageBitmap( getImageBitmap() );
+		if( mDisplaySize > 0 )
+		{
+			iv.setLayoutParams( new LayoutParams( mDisplaySize, mDisplaySize ) );
+			iv.setScaleType( ImageView.ScaleType.FIT_XY );
+		}
+		else
+		{
+			// The size an image is laid out at by default in the section's
+			// list of media, in case the view showed a resized image before
+			iv.setLayoutParams( new LayoutParams( LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT ) );
+			iv.setScaleType( ImageView.ScaleType.FIT_CENTER );
+		}
+	}
+
 	/**
-	 * Returns the image associated with the media object
+	 * Returns the image associated with the media object. Decoded images are
+	 * kept in the {@link BitmapCache}, so the image is only decoded again if
+	 * it has been dropped from the cache. The image is decoded without
+	 * holding the media's lock, so the UI thread never waits for the
+	 * {@link MediaPrefetcher} to finish decoding on a background thread just
+	 * to use the media. If the image is already being decoded, this waits for
+	 * that decode instead of decoding it again.
 	 */
 
 	public Bitmap getImageBitmap()
 	{
-		if( mImageBitmap == null )
-			mImageBitmap = toBitmap( mBase64String );
-		return mImageBitmap;
+		BitmapCache cache = BitmapCache.getBitmapCache();
+		String key;
+		String decodeKey;
+		final byte[] bytes;
+		int replacedCount;
+		synchronized( this )
+		{
+			key = getCacheKey();
+			Bitmap bitmap = cache.get( key );
+			if( bitmap != null )
+				return bitmap;
+			bytes = getImageBytes();
+			replacedCount = mReplacedCount;
+			// Images outside the blob store are keyed by the media, so a
+			// decode of a replaced image mustn't be shared
+			decodeKey = mBlobId != null ? key : key + ":" + replacedCount;
+		}
+		if( bytes == null )
+			return null;
+
+		FutureTask<Bitmap> task;
+		boolean decoding = false;
+		synchronized( sDecodes )
+		{
+			task = sDecodes.get( decodeKey );
+			if( task == null )
+			{
+				task = new FutureTask<Bitmap>( new Callable<Bitmap>()
+				{
+					@Override
+					public Bitmap call()
+					{
+						return decode( bytes );
+					}
+				} );
+				sDecodes.put( decodeKey, task );
+				decoding = true;
+			}
+		}
+
+		if( decoding )
+		{
+			try
+			{
+				task.run();
+				Bitmap bitmap = task.get();
+				synchronized( this )
+				{
+					if( replacedCount == mReplacedCount )
+						cache.put( key, bitmap );
+				}
+			}
+			catch( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch( ExecutionException e )
+			{
+				Logger.log( "Could not decode image " + key, e );
+			}
+			finally
+			{
+				// Only once the image is cached, so that it is always either
+				// cached or being decoded
+				synchronized( sDecodes )
+				{
+					sDecodes.remove( decodeKey );
+				}
+			}
+		}
+
+		try
+		{
+			return task.get();
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch( ExecutionException e )
+		{
+			if( !decoding )
+				Logger.log( "Could not decode image " + key, e );
+		}
+		return null;
+	}
+
+	/**
+	 * Decode the compressed bytes of the image
+	 * 
+	 * @param bytes
+	 *            The compressed image
+	 * @return The decoded image, or null if it couldn't be decoded
+	 */
+	protected Bitmap decode( byte[] bytes )
+	{
+		return BitmapFactory.decodeByteArray( bytes, 0, bytes.length );
+	}
+
+	/**
+	 * Get how much memory the image takes up once it is decoded, without
+	 * decoding it
+	 * 
+	 * @return The size of the decoded image in bytes, or 0 if there is no
+	 *         image
+	 */
+	public long getDecodedSize()
+	{
+		byte[] bytes = getImageBytes();
+		if( bytes == null )
+			return 0;
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeByteArray( bytes, 0, bytes.length, options );
+		return ImageCreator.estimateDecodedBytes( Math.max( options.outWidth, 0 ), Math.max( options.outHeight, 0 ), 1 );
+	}
+
+	/**
+	 * Get the key of the image in the {@link BitmapCache}. Images in the blob
+	 * store are keyed by their contents, so identical images share a bitmap.
+	 * 
+	 * @return The key of the image
+	 */
+	private String getCacheKey()
+	{
+		if( mBlobId == null && mBase64String != null )
+			getImageBytes();
+		return getStoredCacheKey();
+	}
+
+	/**
+	 * Get the key of the image in the {@link BitmapCache}, without moving an
+	 * image from the server into the blob store first
+	 * 
+	 * @return The key of the image
+	 */
+	private String getStoredCacheKey()
+	{
+		String blobId = mBlobId;
+		if( blobId != null )
+			return blobId;
+		return "media:" + mId;
 	}
 
 	/**
@@ -124,7 +491,7 @@ public class ImageMedia implements Media
 	private void writeObject( java.io.ObjectOutputStream out ) throws IOException
 	{
 		out.writeInt( mId );
-		out.writeObject( mBase64String );
+		out.writeObject( getBase64() );
 	}
 
 	/**
@@ -139,36 +506,66 @@ public class ImageMedia implements Media
 	{
 		mId = (int) in.readInt();
 		mBase64String = (String) in.readObject();
-		mImageBitmap = toBitmap( mBase64String );
 	}
 
 	/**
-	 * Convert the bitmap image into a base 64 string
-	 * 
-	 * @param image
-	 *            The image to convert
-	 * @return The base 64 string representation of the string
+	 * Writes and reads image media for the {@link AdventureCodec}. Images in
+	 * the blob store are written as their blob id; other images are written
+	 * as raw bytes. Version 1 always wrote raw bytes, and versions before 3
+	 * had no display size.
 	 */
-	private String toBase64( Bitmap image )
+	public static class Codec implements MediaCodec<ImageMedia>
 	{
-		Bitmap imageCopy = Bitmap.createBitmap( image );
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-		imageCopy.compress( Bitmap.CompressFormat.JPEG, 100, outputStream );
-		byte[] bytes = outputStream.toByteArray();
+		/**
+		 * Marks an image written as raw bytes
+		 */
+		private static final byte BYTES = 0;
 
-		return Base64.encodeToString( bytes, Base64.DEFAULT );
-	}
+		/**
+		 * Marks an image written as a blob id
+		 */
+		private static final byte BLOB = 1;
 
-	/**
-	 * Convert the Base 64 string into a bitmap image
-	 * 
-	 * @param base64String
-	 *            The string to convert
-	 * @return The converted Bitmap image
-	 */
-	private Bitmap toBitmap( String base64String )
-	{
-		byte[] decodedByte = Base64.decode( base64String, Base64.DEFAULT );
-		return BitmapFactory.decodeByteArray( decodedByte, 0, decodedByte.length );
+		@Override
+		public byte getVersion()
+		{
+			return 3;
+		}
+
+		@Override
+		public void write( ImageMedia media, DataOutputStream out ) throws IOException
+		{
+			out.writeInt( media.mId );
+			out.writeInt( media.mDisplaySize );
+			// Make sure images from the server are in the blob store first
+			if( media.mBase64String != null )
+				media.getImageBytes();
+			if( media.mBlobId != null )
+			{
+				out.writeByte( BLOB );
+				AdventureCodec.writeString( out, media.mBlobId );
+			}
+			else
+			{
+				out.writeByte( BYTES );
+				AdventureCodec.writeBytes( out, media.mImageBytes );
+			}
+		}
+
+		@Override
+		public ImageMedia read( byte version, DataInputStream in ) throws IOException
+		{
+			if( version < 1 || version > 3 )
+				throw new IOException( "Unknown image media version " + version );
+			int id = in.readInt();
+			int displaySize = version >= 3 ? in.readInt() : 0;
+			ImageMedia media;
+			if( version >= 2 && in.readByte() == BLOB )
+				media = new ImageMedia( id, AdventureCodec.readString( in ) );
+			else
+				media = new ImageMedia( id, AdventureCodec.readBytes( in ) );
+			media.mDisplaySize = displaySize;
+			return media;
+		}
 	}
 }
@@ -1,18 +1,19 @@
 package cmput301f13t10.presenter;
 
-import java.io.FileOutputStream;
 import java.util.ArrayList;
 
 import cmput301f13t10.model.AdventureModel;
 import cmput301f13t10.model.Callback;
 import cmput301f13t10.model.DatabaseInteractor;
 import cmput301f13t10.model.LibraryModel;
+import cmput301f13t10.model.RequestFuture;
 import cmput301f13t10.view.UpdatableView;
 
 public class LibraryPresenter
 {
 	private LibraryModel mLibraryModel;
 	private UpdatableView mView;
+	private RequestFuture<ArrayList<AdventureModel>> mListRequest = null;
 
 	public LibraryPresenter( UpdatableView view )
 	{
@@ -25,9 +26,9 @@ public class LibraryPresenter
 		mLibraryModel.loadData();
 	}
 
-	public void saveData( FileOutputStream fileOutputStream )
+	public void saveData()
 	{
-		mLibraryModel.saveData( fileOutputStream );
+		mLibraryModel.saveData();
 	}
 
 	public void updateAdventures()
@@ -37,24 +38,25 @@ public class LibraryPresenter
 
 	public void populateList()
 	{
-		Callback getAdventureCallback = new Callback()
+		Callback<ArrayList<AdventureModel>> getAdventureCallback = new Callback<ArrayList<AdventureModel>>()
 		{
 			@Override
-			public void callBack( Object adventureList )
+			public void callBack( ArrayList<AdventureModel> adventureList )
 			{
-				try
-				{
-					mLibraryModel.setAdventureList( (ArrayList<AdventureModel>) adventureList );
-					mView.updateView();
-				}
-				catch( ClassCastException e )
-				{
-					Logger.log( "bad!", e );
-				}
+				mLibraryModel.setAdventureList( adventureList );
+				mView.updateView();
 			}
 		};
-		mLibraryModel.getAdventureList().clear();
-		DatabaseInteractor.getDatabaseInteractor().getAllAdventures( getAdventureCallback );
+		// The cached adventures are shown right away, and the database is only
+		// checked once they are out of date
+		if( mListRequest != null && !mListRequest.isDone() )
+			return;
+		RequestFuture<ArrayList<AdventureModel>> request = DatabaseInteractor.getDatabaseInteractor().refreshAdventures( getAdventureCallback );
+		if( request != null )
+		{
+			mLibraryModel.getAdventureList().clear();
+			mListRequest = request;
+		}
 
 	}
 
@@ -83,6 +85,11 @@ public class LibraryPresenter
 		mLibraryModel.setCurrentAdventure( localId );
 	}
 
+	public void openAdventure( int localId, Callback<AdventureModel> callback )
+	{
+		mLibraryModel.openAdventure( localId, callback );
+	}
+
 	public AdventureModel getCurrentAdventure()
 	{
 		return mLibraryModel.getCurrentAdventure();
@@ -37,6 +37,12 @@ import android.view.View;
  * This class is implemented for medias that can be represented by an android
  * view
  * 
+ * Media is shown in two steps, so that slow work like decoding an image
+ * doesn't happen on the UI thread: {@link #prepare()} does the slow work on
+ * a background thread, then {@link #bindView(View)} shows the media in a
+ * view on the UI thread. Views made by {@link #createView(Context)} can be
+ * bound again to other media of the same class. See {@link MediaLoader}.
+ * 
  * @author Brendan Cowan
  * 
  */
@@ -51,11 +57,44 @@ public interface Media extends Serializable
 	public int getId();
 
 	/**
-	 * Convert the media to a view that android can represent
+	 * Convert the media to a view that android can represent. The media is
+	 * prepared on the calling thread if it isn't already.
 	 * 
 	 * @param c
 	 *            The context of the view that will be returned
 	 * @return The media in the form of a View
 	 */
 	public View toView( Context c );
+
+	/**
+	 * Check if the media can be shown without any slow work. This must be
+	 * quick, since it is called on the UI thread.
+	 * 
+	 * @return True if the media is prepared
+	 */
+	public boolean isPrepared();
+
+	/**
+	 * Do the slow work of showing the media, e.g. decoding it. This may be
+	 * called on a background thread.
+	 */
+	public void prepare();
+
+	/**
+	 * Make an empty view that the media can be shown in
+	 * 
+	 * @param c
+	 *            The context of the view that will be returned
+	 * @return The view, which shows nothing until it is bound
+	 */
+	public View createView( Context c );
+
+	/**
+	 * Show the media in a view, replacing whatever the view showed before.
+	 * This is called on the UI thread, after the media is prepared.
+	 * 
+	 * @param view
+	 *            A view made by createView of media of the same class
+	 */
+	public void bindView( View view );
 }
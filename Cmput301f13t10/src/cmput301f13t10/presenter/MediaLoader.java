@@ -0,0 +1,200 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.presenter;
+
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import android.content.Context;
+import android.view.View;
+import cmput301f13t10.model.DaemonThreadFactory;
+import cmput301f13t10.model.MainThreadExecutor;
+
+/**
+ * Shows media in views without doing slow work on the UI thread. Media that
+ * isn't prepared yet is prepared on a background thread, and its view is
+ * left invisible until the media is bound to it on the UI thread. The hidden
+ * view keeps whatever size its layout gives it: a reused view keeps the size
+ * of what it showed before, but a new view that is sized by its contents
+ * takes up no space until then.
+ *
+ * Views can be reused for other media of the same class, e.g. when the
+ * reader moves to the next section. If a view is reused before its old
+ * media is prepared, the old media is never bound to it.
+ *
+ * All methods must be called on the UI thread.
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class MediaLoader
+{
+	/**
+	 * The number of media prepared at once
+	 */
+	private static final int THREAD_COUNT = 2;
+
+	/**
+	 * The loader of the app
+	 */
+	private static MediaLoader sLoader = null;
+
+	/**
+	 * Prepares the media
+	 */
+	private Executor mWorker;
+
+	/**
+	 * Binds the prepared media, on the UI thread
+	 */
+	private Executor mBinder;
+
+	/**
+	 * The media that each view shows, or will show once it is prepared
+	 */
+	private WeakHashMap<View, Media> mBindings = new WeakHashMap<View, Media>();
+
+	/**
+	 * Get the loader of the app, which binds media on the UI thread
+	 *
+	 * @return The loader
+	 */
+	public static synchronized MediaLoader getLoader()
+	{
+		if( sLoader == null )
+			sLoader = new MediaLoader( Executors.newFixedThreadPool( THREAD_COUNT, new DaemonThreadFactory( "media" ) ), MainThreadExecutor.getExecutor() );
+		return sLoader;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param worker
+	 *            Prepares the media
+	 * @param binder
+	 *            Binds the prepared media on the UI thread
+	 */
+	public MediaLoader( Executor worker, Executor binder )
+	{
+		mWorker = worker;
+		mBinder = binder;
+	}
+
+	/**
+	 * Get a view that shows the media, reusing the given view if it was made
+	 * for media of the same class
+	 *
+	 * @param media
+	 *            The media to show
+	 * @param recycled
+	 *            A view to reuse, or null
+	 * @param c
+	 *            The context of a new view
+	 * @return The view, which may be a placeholder until the media is
+	 *         prepared
+	 */
+	public View getView( Media media, View recycled, Context c )
+	{
+		View view = recycled;
+		Media old = recycled == null ? null : mBindings.get( recycled );
+		if( old == null || old.getClass() != media.getClass() )
+			view = media.createView( c );
+		bind( media, view );
+		return view;
+	}
+
+	/**
+	 * Show media in a view that was made by media of the same class. If the
+	 * media isn't prepared, the view is hidden until it is.
+	 *
+	 * @param media
+	 *            The media to show
+	 * @param view
+	 *            The view to show it in
+	 */
+	public void bind( final Media media, final View view )
+	{
+		mBindings.put( view, media );
+		if( media.isPrepared() )
+		{
+			show( media, view );
+			return;
+		}
+
+		view.setVisibility( View.INVISIBLE );
+		mWorker.execute( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					media.prepare();
+				}
+				catch( RuntimeException e )
+				{
+					Logger.log( "Could not prepare media " + media.getId(), e );
+				}
+				mBinder.execute( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						// The view may have been reused while the media was
+						// being prepared
+						if( mBindings.get( view ) == media )
+							show( media, view );
+					}
+				} );
+			}
+		} );
+	}
+
+	/**
+	 * Get the media that a view shows
+	 *
+	 * @param view
+	 *            The view
+	 * @return The media, or null if the view wasn't bound by the loader
+	 */
+	public Media getMedia( View view )
+	{
+		return mBindings.get( view );
+	}
+
+	/**
+	 * Bind media to a view and show the view
+	 */
+	private void show( Media media, View view )
+	{
+		media.bindView( view );
+		view.setVisibility( View.VISIBLE );
+	}
+}
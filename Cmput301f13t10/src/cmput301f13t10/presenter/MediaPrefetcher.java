@@ -0,0 +1,227 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.presenter;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import android.os.Process;
+import cmput301f13t10.model.DaemonThreadFactory;
+import cmput301f13t10.model.SectionModel;
+
+/**
+ * Decodes the images of the sections the reader can go to next, while the
+ * current section is shown, so that they are already in the
+ * {@link BitmapCache} when the reader continues. Images are decoded on low
+ * priority background threads, and only until they take up the budget, so
+ * that they don't push the images of the current section out of the cache.
+ *
+ * Prefetching for a new section replaces whatever was still waiting to be
+ * decoded for the previous one.
+ *
+ * @author Brendan Cowan
+ *
+ */
+public class MediaPrefetcher
+{
+	/**
+	 * The fraction of the bitmap cache that prefetched images may take up
+	 */
+	private static final int CACHE_FRACTION = 4;
+
+	/**
+	 * The number of images decoded at once
+	 */
+	private static final int THREAD_COUNT = 2;
+
+	/**
+	 * The prefetcher of the app
+	 */
+	private static MediaPrefetcher sPrefetcher = null;
+
+	/**
+	 * Runs the decoding
+	 */
+	private Executor mExecutor;
+
+	/**
+	 * The most memory that the images prefetched for a section may take up
+	 */
+	private long mBudget;
+
+	/**
+	 * The latest prefetch. Images queued by earlier ones aren't decoded.
+	 */
+	private volatile Prefetch mPrefetch = null;
+
+	/**
+	 * Get the prefetcher of the app, which may use a quarter of the shared
+	 * bitmap cache
+	 *
+	 * @return The prefetcher
+	 */
+	public static synchronized MediaPrefetcher getPrefetcher()
+	{
+		if( sPrefetcher == null )
+			sPrefetcher = new MediaPrefetcher( Executors.newFixedThreadPool( THREAD_COUNT, new DaemonThreadFactory( "prefetch", Process.THREAD_PRIORITY_BACKGROUND ) ), BitmapCache.getBitmapCache().getMaxSize() / CACHE_FRACTION );
+		return sPrefetcher;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param executor
+	 *            Runs the decoding
+	 * @param budget
+	 *            The most memory that the images prefetched for a section may
+	 *            take up, in bytes
+	 */
+	public MediaPrefetcher( Executor executor, long budget )
+	{
+		mExecutor = executor;
+		mBudget = budget;
+	}
+
+	/**
+	 * Decode the images of the given sections that aren't decoded yet, in
+	 * order, until they take up the budget. Images that are waiting to be
+	 * decoded from an earlier call are dropped.
+	 *
+	 * @param sections
+	 *            The sections the reader can go to next
+	 */
+	public void prefetch( List<SectionModel> sections )
+	{
+		Prefetch prefetch = new Prefetch( mBudget );
+		mPrefetch = prefetch;
+
+		HashSet<Integer> seen = new HashSet<Integer>();
+		for( SectionModel section : sections )
+		{
+			if( !seen.add( section.getId() ) )
+				continue;
+			for( Media media : section.getMedia() )
+			{
+				if( media instanceof ImageMedia )
+					mExecutor.execute( new Decode( prefetch, (ImageMedia) media ) );
+			}
+		}
+	}
+
+	/**
+	 * Drop the images that are waiting to be decoded
+	 */
+	public void cancel()
+	{
+		mPrefetch = null;
+	}
+
+	/**
+	 * @return The most memory that the images prefetched for a section may
+	 *         take up
+	 */
+	public long getBudget()
+	{
+		return mBudget;
+	}
+
+	/**
+	 * The images prefetched for one section, and how much of the budget they
+	 * have left
+	 */
+	private static class Prefetch
+	{
+		/**
+		 * The memory left for more images, in bytes
+		 */
+		private long mRemaining;
+
+		/**
+		 * Constructor
+		 *
+		 * @param budget
+		 *            The memory the images may take up
+		 */
+		Prefetch( long budget )
+		{
+			mRemaining = budget;
+		}
+
+		/**
+		 * Take memory for an image out of the budget
+		 *
+		 * @param bytes
+		 *            The size of the decoded image
+		 * @return True if there was enough left for it
+		 */
+		synchronized boolean reserve( long bytes )
+		{
+			if( bytes > mRemaining )
+				return false;
+			mRemaining -= bytes;
+			return true;
+		}
+	}
+
+	/**
+	 * Decodes an image, unless its prefetch was replaced or is out of budget
+	 */
+	private class Decode implements Runnable
+	{
+		/**
+		 * The prefetch the image belongs to
+		 */
+		private Prefetch mOwner;
+
+		/**
+		 * The image to decode
+		 */
+		private ImageMedia mImage;
+
+		/**
+		 * Constructor
+		 */
+		Decode( Prefetch owner, ImageMedia image )
+		{
+			mOwner = owner;
+			mImage = image;
+		}
+
+		@Override
+		public void run()
+		{
+			if( mPrefetch != mOwner || mImage.isPrepared() )
+				return;
+			if( mOwner.reserve( mImage.getDecodedSize() ) && mPrefetch == mOwner )
+				mImage.prepare();
+		}
+	}
+}
@@ -28,13 +28,15 @@ either expressed or implied, of the FreeBSD Project.
  */
 package cmput301f13t10.presenter;
 
+import java.io.Serializable;
+
 /**
  * Maps a Choice Description to a section title
  * 
  * @author Steven Gerdes
  * 
  */
-public class SectionChoice
+public class SectionChoice implements Serializable
 {
 	/**
 	 * The section title.
@@ -29,10 +29,10 @@ either expressed or implied, of the FreeBSD Project.
 package cmput301f13t10.presenter;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
 import cmput301f13t10.model.AdventureCache;
 import cmput301f13t10.model.AdventureModel;
 import cmput301f13t10.model.SectionModel;
@@ -84,6 +84,7 @@ public class SectionPresenter
 		mCurrentSection = section;
 		mCurrentAdventure.setSection( mCurrentSection );
 		mView.updateView();
+		MediaPrefetcher.getPrefetcher().prefetch( getNextSections() );
 	}
 
 	/**
@@ -113,29 +114,31 @@ public class SectionPresenter
 	}
 
 	/**
-	 * Get the possible choices for the current section
+	 * Get the possible choices for the current section, with their titles up
+	 * to date. Choices that lead to deleted sections are removed.
 	 * 
 	 * @return An ArrayList of strings indicating possible choices
 	 */
 	public ArrayList<SectionChoice> getChoices()
-	{// TODO: change this hack to something nicer
-		ArrayList<SectionChoice> choices = mCurrentSection.getChoices();
-		ArrayList<SectionModel> sections = mCurrentAdventure.getSections();
-		for( SectionChoice choice : choices )
+	{
+		return mCurrentAdventure.resolveChoices( mCurrentSection );
+	}
+
+	/**
+	 * Get the sections that the choices of the current section lead to
+	 * 
+	 * @return The next sections, in the order of the choices
+	 */
+	private ArrayList<SectionModel> getNextSections()
+	{
+		ArrayList<SectionModel> sections = new ArrayList<SectionModel>();
+		for( SectionChoice choice : getChoices() )
 		{
-			boolean sectionExists = false;
-			for( SectionModel section : sections )
-			{
-				if( choice.getSectionTitle().getId() == section.getId() )
-				{
-					choice.getSectionTitle().setTitle( section.getName() );
-					sectionExists = true;
-				}
-			}
-			if( !sectionExists )
-				choices.remove( choice );
+			SectionModel target = mCurrentAdventure.getChoiceTarget( choice );
+			if( target != null )
+				sections.add( target );
 		}
-		return choices;
+		return sections;
 	}
 
 	/**
@@ -145,7 +148,7 @@ public class SectionPresenter
 	 */
 	public ArrayList<SectionTitle> getSectionTitles()
 	{
-		ArrayList<SectionModel> sectionChoices = mCurrentAdventure.getSections();
+		List<SectionModel> sectionChoices = mCurrentAdventure.getSections();
 		ArrayList<SectionTitle> sectionTitles = new ArrayList<SectionTitle>();
 
 		for( SectionModel s : sectionChoices )
@@ -211,17 +214,17 @@ public class SectionPresenter
 	}
 
 	/**
-	 * This takes a new bitmap and the position of the media in the current
-	 * sections media list and sets the new bitmap
+	 * This takes a new size and the position of the media in the current
+	 * sections media list and sets the size the image is shown at
 	 * 
-	 * @param newBitmap
-	 *            New bitmap to get set
+	 * @param size
+	 *            The new width and height of the image
 	 * @param mediaPos
 	 *            Position in media array list
 	 */
-	public void resizeBitmap( Bitmap newBitmap, int mediaPos )
+	public void resizeImage( int size, int mediaPos )
 	{
-		ImageCreator.resizeBitmap( newBitmap, mediaPos, mCurrentSection.getMedia() );
+		ImageCreator.resizeImage( size, mediaPos, mCurrentSection.getMedia() );
 	}
 
 	public ArrayList<Media> getMedia()
@@ -292,7 +295,7 @@ public class SectionPresenter
 	{
 		if( mCurrentSection == null )
 			return;
-		setCurrentSection( mCurrentAdventure.getSection( mCurrentSection.getChoices().get( index ).getSectionTitle().getId() ) );
+		setCurrentSection( mCurrentAdventure.getChoiceTarget( mCurrentSection.getChoices().get( index ) ) );
 	}
 
 	public void setRandomAdventure()
@@ -28,6 +28,8 @@ either expressed or implied, of the FreeBSD Project.
  */
 package cmput301f13t10.presenter;
 
+import java.io.Serializable;
+
 /**
  * A data container that holds the id, and title of a section. As well as an
  * identifier of whether it is that start section for an adventure.
@@ -35,7 +37,7 @@ package cmput301f13t10.presenter;
  * @author Braeden Soetaert
  * 
  */
-public class SectionTitle
+public class SectionTitle implements Serializable
 {
 	/**
 	 * The title of the section.
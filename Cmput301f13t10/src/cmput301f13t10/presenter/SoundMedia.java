@@ -28,13 +28,17 @@ either expressed or implied, of the FreeBSD Project.
  */
 package cmput301f13t10.presenter;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectStreamException;
 
 import android.content.Context;
 import android.view.View;
 import android.widget.VideoView;
+import cmput301f13t10.model.AdventureCodec;
 import cmput301f13t10.model.IdFactory;
+import cmput301f13t10.model.MediaCodec;
 
 /**
  * Media for sound that can be added and listened to in a section of an
@@ -66,6 +70,20 @@ public class SoundMedia implements Media
 		mId = IdFactory.getIdManager( AppConstants.GENERATE_MEDIA_ID ).getNewId();
 	}
 
+	/**
+	 * Constructor for sound that has already been given an id
+	 * 
+	 * @param id
+	 *            The id of the media
+	 * @param path
+	 *            The file path of the sound
+	 */
+	public SoundMedia( int id, String path )
+	{
+		mId = id;
+		mPath = path;
+	}
+
 	/**
 	 * Set the file path of the sound
 	 * 
@@ -77,6 +95,16 @@ public class SoundMedia implements Media
 		mPath = path;
 	}
 
+	/**
+	 * Get the file path of the sound
+	 * 
+	 * @return The file path of the sound
+	 */
+	public String getSound()
+	{
+		return mPath;
+	}
+
 	@Override
 	public int getId()
 	{
@@ -86,9 +114,36 @@ public class SoundMedia implements Media
 	@Override
 	public View toView( Context c )
 	{
-		VideoView sound = new VideoView( c );
-		sound.setVideoPath( mPath );
-		return sound;
+		View view = createView( c );
+		bindView( view );
+		return view;
+	}
+
+	/**
+	 * The sound is only loaded once it is played, so it is always ready to
+	 * be shown
+	 */
+	@Override
+	public boolean isPrepared()
+	{
+		return true;
+	}
+
+	@Override
+	public void prepare()
+	{
+	}
+
+	@Override
+	public View createView( Context c )
+	{
+		return new VideoView( c );
+	}
+
+	@Override
+	public void bindView( View view )
+	{
+		( (VideoView) view ).setVideoPath( mPath );
 	}
 
 	private void writeObject( java.io.ObjectOutputStream out ) throws IOException
@@ -107,4 +162,32 @@ public class SoundMedia implements Media
 	{
 	}
 
+	/**
+	 * Writes and reads sound media for the {@link AdventureCodec}
+	 */
+	public static class Codec implements MediaCodec<SoundMedia>
+	{
+		@Override
+		public byte getVersion()
+		{
+			return 1;
+		}
+
+		@Override
+		public void write( SoundMedia media, DataOutputStream out ) throws IOException
+		{
+			out.writeInt( media.mId );
+			AdventureCodec.writeString( out, media.mPath );
+		}
+
+		@Override
+		public SoundMedia read( byte version, DataInputStream in ) throws IOException
+		{
+			if( version != 1 )
+				throw new IOException( "Unknown sound media version " + version );
+			int id = in.readInt();
+			return new SoundMedia( id, AdventureCodec.readString( in ) );
+		}
+	}
+
 }
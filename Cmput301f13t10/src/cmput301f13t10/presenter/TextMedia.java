@@ -28,6 +28,8 @@ either expressed or implied, of the FreeBSD Project.
  */
 package cmput301f13t10.presenter;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectStreamException;
 
@@ -38,7 +40,9 @@ import android.text.InputType;
 import android.text.TextWatcher;
 import android.view.View;
 import android.widget.EditText;
+import cmput301f13t10.model.AdventureCodec;
 import cmput301f13t10.model.IdFactory;
+import cmput301f13t10.model.MediaCodec;
 
 /**
  * Media for text that can be added and view in a section of an adventure.
@@ -70,6 +74,20 @@ public class TextMedia implements Media
 		mId = IdFactory.getIdManager( AppConstants.GENERATE_MEDIA_ID ).getNewId();
 	}
 
+	/**
+	 * Constructor for text that has already been given an id
+	 * 
+	 * @param id
+	 *            The id of the media
+	 * @param text
+	 *            The text to be displayed
+	 */
+	public TextMedia( int id, String text )
+	{
+		mId = id;
+		mText = text;
+	}
+
 	/**
 	 * Set the text to be displayed for the media
 	 * 
@@ -94,14 +112,50 @@ public class TextMedia implements Media
 
 	@Override
 	public View toView( Context c )
+	{
+		View view = createView( c );
+		bindView( view );
+		return view;
+	}
+
+	/**
+	 * Text is always ready to be shown
+	 */
+	@Override
+	public boolean isPrepared()
+	{
+		return true;
+	}
+
+	@Override
+	public void prepare()
+	{
+	}
+
+	@Override
+	public View createView( Context c )
 	{
 		EditText addText = new EditText( c );
-		addText.setId( getId() );
 		LayoutParams params = new LayoutParams( LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT, 1 );
 		addText.setLayoutParams( params );
-		addText.setText( getText() );
 		addText.setInputType( InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_CAP_SENTENCES | InputType.TYPE_TEXT_FLAG_MULTI_LINE );
-		addText.addTextChangedListener( new TextWatcher()
+		return addText;
+	}
+
+	/**
+	 * Show the text in an edit text, so that changes to it change the media.
+	 * The listener for the media the view showed before is kept in the
+	 * view's tag, and is removed.
+	 */
+	@Override
+	public void bindView( View view )
+	{
+		EditText addText = (EditText) view;
+		if( addText.getTag() instanceof TextWatcher )
+			addText.removeTextChangedListener( (TextWatcher) addText.getTag() );
+		addText.setId( getId() );
+		addText.setText( getText() );
+		TextWatcher watcher = new TextWatcher()
 		{
 			public void afterTextChanged( Editable s )
 			{
@@ -115,9 +169,9 @@ public class TextMedia implements Media
 			public void onTextChanged( CharSequence s, int start, int before, int count )
 			{
 			}
-		} );
-
-		return addText;
+		};
+		addText.addTextChangedListener( watcher );
+		addText.setTag( watcher );
 	}
 
 	private void writeObject( java.io.ObjectOutputStream out ) throws IOException
@@ -136,4 +190,32 @@ public class TextMedia implements Media
 	{
 	}
 
+	/**
+	 * Writes and reads text media for the {@link AdventureCodec}
+	 */
+	public static class Codec implements MediaCodec<TextMedia>
+	{
+		@Override
+		public byte getVersion()
+		{
+			return 1;
+		}
+
+		@Override
+		public void write( TextMedia media, DataOutputStream out ) throws IOException
+		{
+			out.writeInt( media.mId );
+			AdventureCodec.writeString( out, media.mText );
+		}
+
+		@Override
+		public TextMedia read( byte version, DataInputStream in ) throws IOException
+		{
+			if( version != 1 )
+				throw new IOException( "Unknown text media version " + version );
+			int id = in.readInt();
+			return new TextMedia( id, AdventureCodec.readString( in ) );
+		}
+	}
+
 }
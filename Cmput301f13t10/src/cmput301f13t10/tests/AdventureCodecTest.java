@@ -0,0 +1,214 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import cmput301f13t10.model.AdventureCodec;
+import cmput301f13t10.model.AdventureModel;
+import cmput301f13t10.model.SectionModel;
+import cmput301f13t10.presenter.ImageMedia;
+import cmput301f13t10.presenter.SectionChoice;
+import cmput301f13t10.presenter.SectionTitle;
+import cmput301f13t10.presenter.SoundMedia;
+import cmput301f13t10.presenter.TextMedia;
+
+/**
+ * Test the AdventureCodec
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class AdventureCodecTest
+{
+	@Test
+	public void testRoundTrip() throws IOException, ClassNotFoundException
+	{
+		AdventureModel adventure = new AdventureModel( "adventure" );
+		adventure.setRemoteId( 3 );
+		adventure.setRandom( true );
+		SectionModel section = new SectionModel( "next" );
+		adventure.addSection( section );
+		adventure.getStartSection().addChoice( new SectionChoice( new SectionTitle( section.getName(), section.getId() ), "go" ) );
+
+		TextMedia text = new TextMedia();
+		text.setText( "once upon a time" );
+		section.add( text );
+		ImageMedia image = new ImageMedia( 7, new byte[] { 1, 2, 3 } );
+		image.setDisplaySize( 300 );
+		section.add( image );
+		SoundMedia sound = new SoundMedia();
+		sound.setSound( "/sdcard/sound.mp3" );
+		section.getAnnotation().add( sound );
+		section.add( new MockMedia() );
+
+		AdventureModel decoded = AdventureCodec.decode( AdventureCodec.encode( adventure ) );
+		assertTrue( decoded.isLoaded() );
+		assertEquals( decoded.getTitle(), "adventure" );
+		assertEquals( decoded.getLocalId(), adventure.getLocalId() );
+		assertEquals( decoded.getRemoteId(), 3 );
+		assertTrue( decoded.getRandomSet() );
+		assertEquals( decoded.getSections().size(), 2 );
+
+		SectionChoice choice = decoded.getStartSection().getChoices().get( 0 );
+		assertEquals( choice.getChoiceDescription(), "go" );
+		assertEquals( choice.getSectionTitle().getId(), Integer.valueOf( section.getId() ) );
+		assertEquals( choice.getSectionTitle().getTitle(), "next" );
+
+		SectionModel decodedSection = decoded.getSections().get( 1 );
+		assertEquals( decodedSection.getId(), section.getId() );
+		assertEquals( decodedSection.getMedia().size(), 3 );
+		assertEquals( ( (TextMedia) decodedSection.getMedia().get( 0 ) ).getText(), "once upon a time" );
+		assertArrayEquals( ( (ImageMedia) decodedSection.getMedia().get( 1 ) ).getImageBytes(), new byte[] { 1, 2, 3 } );
+		assertEquals( ( (ImageMedia) decodedSection.getMedia().get( 1 ) ).getDisplaySize(), 300 );
+		assertTrue( decodedSection.getMedia().get( 2 ) instanceof MockMedia );
+		assertEquals( decodedSection.getAnnotation().getId(), section.getAnnotation().getId() );
+		assertEquals( ( (SoundMedia) decodedSection.getAnnotation().getMedia().get( 0 ) ).getSound(), "/sdcard/sound.mp3" );
+	}
+
+	@Test
+	public void testDecodeSerialized() throws IOException, ClassNotFoundException
+	{
+		AdventureModel adventure = new AdventureModel( "old" );
+		TextMedia text = new TextMedia();
+		text.setText( "saved by an older version" );
+		adventure.getStartSection().add( text );
+
+		AdventureModel decoded = AdventureCodec.decode( serialize( adventure ) );
+		assertEquals( decoded.getTitle(), "old" );
+		assertEquals( ( (TextMedia) decoded.getStartSection().getMedia().get( 0 ) ).getText(), "saved by an older version" );
+	}
+
+	@Test
+	public void testSmallerThanSerialized() throws IOException
+	{
+		AdventureModel adventure = createStory( 10 );
+		int encoded = AdventureCodec.encode( adventure ).length;
+		int serialized = serialize( adventure ).length;
+		assertTrue( encoded < serialized * 0.7 );
+	}
+
+	@Test
+	public void testImagesStoredRaw() throws IOException
+	{
+		byte[] image = new byte[20000];
+		new Random( 0 ).nextBytes( image );
+		AdventureModel adventure = new AdventureModel( "pictures" );
+		adventure.getStartSection().add( new ImageMedia( 1, image ) );
+
+		int encoded = AdventureCodec.encode( adventure ).length;
+		assertTrue( encoded < image.length + 200 );
+		assertTrue( encoded < serialize( adventure ).length * 0.8 );
+	}
+
+	@Test
+	public void testNoClassDescriptors() throws IOException
+	{
+		// Serialization spends most of its decoding time looking up the
+		// classes it names, so none should be named
+		String encoded = new String( AdventureCodec.encode( createStory( 10 ) ), "ISO-8859-1" );
+		assertFalse( encoded.contains( "cmput301f13t10" ) );
+		assertFalse( encoded.contains( "java." ) );
+	}
+
+	@Test
+	public void testDecodesFasterThanSerialized() throws IOException, ClassNotFoundException
+	{
+		AdventureModel adventure = createStory( 30 );
+		byte[] encoded = AdventureCodec.encode( adventure );
+		byte[] serialized = serialize( adventure );
+
+		// Compare the best of several rounds, so that warming up and other
+		// work on the machine don't decide the result
+		long encodedTime = Long.MAX_VALUE;
+		long serializedTime = Long.MAX_VALUE;
+		for( int round = 0; round < 5; round++ )
+		{
+			long start = System.nanoTime();
+			for( int i = 0; i < 100; i++ )
+				AdventureCodec.decode( encoded );
+			encodedTime = Math.min( encodedTime, System.nanoTime() - start );
+
+			start = System.nanoTime();
+			for( int i = 0; i < 100; i++ )
+				deserialize( serialized );
+			serializedTime = Math.min( serializedTime, System.nanoTime() - start );
+		}
+		assertTrue( encodedTime < serializedTime );
+	}
+
+	private AdventureModel createStory( int sectionCount )
+	{
+		AdventureModel adventure = new AdventureModel( "story" );
+		for( int i = 0; i < sectionCount; i++ )
+		{
+			SectionModel section = new SectionModel( "section " + i );
+			TextMedia text = new TextMedia();
+			text.setText( "The path splits in two. Which way do you go?" );
+			section.add( text );
+			adventure.addSection( section );
+			adventure.getStartSection().addChoice( new SectionChoice( new SectionTitle( section.getName(), section.getId() ), "go " + i ) );
+		}
+		return adventure;
+	}
+
+	private AdventureModel deserialize( byte[] serialized ) throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( serialized ) );
+		try
+		{
+			return (AdventureModel) in.readObject();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	private byte[] serialize( AdventureModel adventure ) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream( bytes );
+		out.writeObject( adventure );
+		out.close();
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,235 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cmput301f13t10.model.AdventureGraph;
+import cmput301f13t10.model.AdventureModel;
+import cmput301f13t10.model.SectionModel;
+import cmput301f13t10.presenter.SectionChoice;
+import cmput301f13t10.presenter.SectionTitle;
+
+/**
+ * Test finding unreachable sections, endings and cycles of an adventure
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class AdventureGraphTest
+{
+	private AdventureModel mAdventure;
+	private SectionModel mStart;
+
+	@Before
+	public void setUp()
+	{
+		mAdventure = new AdventureModel( "graph" );
+		mStart = mAdventure.getStartSection();
+	}
+
+	private SectionModel addSection( String name )
+	{
+		SectionModel section = new SectionModel( name );
+		mAdventure.addSection( section );
+		return section;
+	}
+
+	private static void addChoice( SectionModel from, SectionModel to )
+	{
+		from.addChoice( new SectionChoice( new SectionTitle( to.getName(), to.getId() ), "go to " + to.getName() ) );
+	}
+
+	/**
+	 * start -> a -> b -> end, with a circle b -> c -> b, a circle d -> e -> d
+	 * that can't be left, and an orphan that can't be reached
+	 */
+	private void createStory()
+	{
+		SectionModel a = addSection( "a" );
+		SectionModel b = addSection( "b" );
+		SectionModel c = addSection( "c" );
+		SectionModel end = addSection( "end" );
+		SectionModel d = addSection( "d" );
+		SectionModel e = addSection( "e" );
+		SectionModel orphan = addSection( "orphan" );
+		addChoice( mStart, a );
+		addChoice( mStart, d );
+		addChoice( a, b );
+		addChoice( b, c );
+		addChoice( c, b );
+		addChoice( b, end );
+		addChoice( d, e );
+		addChoice( e, d );
+		addChoice( orphan, end );
+		// A choice to a deleted section is left out
+		addChoice( a, new SectionModel( "deleted" ) );
+	}
+
+	private static ArrayList<String> names( ArrayList<SectionModel> sections )
+	{
+		ArrayList<String> names = new ArrayList<String>();
+		for( SectionModel section : sections )
+			names.add( section.getName() );
+		return names;
+	}
+
+	@Test
+	public void testStory()
+	{
+		createStory();
+		AdventureGraph graph = new AdventureGraph( mAdventure );
+		assertEquals( graph.getSectionCount(), 8 );
+		assertEquals( graph.getChoiceCount(), 9 );
+
+		assertEquals( names( graph.getUnreachableSections() ).toString(), "[orphan]" );
+		assertEquals( names( graph.getDeadEnds() ).toString(), "[end]" );
+		assertEquals( names( graph.getTrappedSections() ).toString(), "[d, e]" );
+
+		ArrayList<ArrayList<SectionModel>> cycles = graph.getCycles();
+		assertEquals( cycles.size(), 2 );
+		ArrayList<String> cycleNames = new ArrayList<String>();
+		for( ArrayList<SectionModel> cycle : cycles )
+			cycleNames.add( names( cycle ).toString() );
+		assertTrue( cycleNames.contains( "[b, c]" ) );
+		assertTrue( cycleNames.contains( "[d, e]" ) );
+		assertTrue( graph.hasCycles() );
+
+		// start -> a -> (b c) -> end
+		assertEquals( graph.getLongestPathLength(), 3 );
+		assertEquals( graph.getShortestPathLength(), 3 );
+	}
+
+	@Test
+	public void testSelfLoop()
+	{
+		SectionModel end = addSection( "end" );
+		addChoice( mStart, mStart );
+		addChoice( mStart, end );
+		AdventureGraph graph = new AdventureGraph( mAdventure );
+		assertEquals( graph.getCycles().size(), 1 );
+		assertEquals( names( graph.getCycles().get( 0 ) ).toString(), "[Start]" );
+		assertTrue( graph.getTrappedSections().isEmpty() );
+		assertEquals( graph.getLongestPathLength(), 1 );
+	}
+
+	@Test
+	public void testSingleSection()
+	{
+		AdventureGraph graph = new AdventureGraph( mAdventure );
+		assertTrue( graph.getUnreachableSections().isEmpty() );
+		assertEquals( graph.getDeadEnds().size(), 1 );
+		assertFalse( graph.hasCycles() );
+		assertEquals( graph.getLongestPathLength(), 0 );
+		assertEquals( graph.getShortestPathLength(), 0 );
+	}
+
+	/**
+	 * Test a generated adventure of 100,000 sections: a chain from the start
+	 * to the ending that is too long to search recursively, with random
+	 * choices back and forth along it
+	 */
+	@Test
+	public void testLargeAdventure()
+	{
+		int count = 100000;
+		createLargeAdventure( count );
+		AdventureGraph graph = new AdventureGraph( mAdventure );
+		assertTrue( graph.getUnreachableSections().isEmpty() );
+		assertEquals( graph.getDeadEnds().size(), 1 );
+		assertTrue( graph.getTrappedSections().isEmpty() );
+		assertEquals( graph.getCycles().size(), count / 1000 - 1 );
+		int shortest = graph.getShortestPathLength();
+		assertTrue( graph.getLongestPathLength() > shortest );
+		assertTrue( shortest < count / 5 );
+	}
+
+	/**
+	 * Test that analysing an adventure takes time in proportion to its number
+	 * of sections, not its square, as a search from every section would
+	 */
+	@Test
+	public void testAnalysisScalesLinearly()
+	{
+		Scaling.assertLinear( "sections", 10000, new Scaling.Workload()
+		{
+			@Override
+			protected void setUp( int count )
+			{
+				createLargeAdventure( count );
+			}
+
+			/**
+			 * Run every analysis of the adventure
+			 */
+			@Override
+			protected void run( int count )
+			{
+				AdventureGraph graph = new AdventureGraph( mAdventure );
+				graph.getUnreachableSections();
+				graph.getDeadEnds();
+				graph.getTrappedSections();
+				graph.getCycles();
+				graph.getLongestPathLength();
+				graph.getShortestPathLength();
+			}
+		} );
+	}
+
+	/**
+	 * Replace the adventure with a chain of sections from the start to the
+	 * ending, with random choices back and forth along it
+	 */
+	private void createLargeAdventure( int count )
+	{
+		mAdventure = new AdventureModel( "large" );
+		mStart = mAdventure.getStartSection();
+		Random random = new Random( 301 );
+		SectionModel[] sections = new SectionModel[count];
+		sections[0] = mStart;
+		for( int i = 1; i < count; i++ )
+			sections[i] = addSection( "section " + i );
+		for( int i = 0; i < count - 1; i++ )
+		{
+			addChoice( sections[i], sections[i + 1] );
+			// Forward jumps, and some choices back to the start of a circle
+			addChoice( sections[i], sections[Math.min( count - 1, i + 1 + random.nextInt( 10 ) )] );
+			if( i % 1000 == 999 )
+				addChoice( sections[i], sections[i - 500] );
+		}
+	}
+}
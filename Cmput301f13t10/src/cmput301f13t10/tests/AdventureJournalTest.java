@@ -0,0 +1,351 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cmput301f13t10.model.AdventureJournal;
+import cmput301f13t10.model.AdventureModel;
+import cmput301f13t10.model.SectionModel;
+import cmput301f13t10.presenter.ImageMedia;
+import cmput301f13t10.presenter.SectionChoice;
+import cmput301f13t10.presenter.SectionTitle;
+import cmput301f13t10.presenter.TextMedia;
+
+/**
+ * Test the AdventureJournal
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class AdventureJournalTest
+{
+	private File mFile;
+	private AdventureJournal mJournal;
+	private ArrayList<Integer> mNoDeletes;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		mFile = File.createTempFile( "journal", null );
+		mFile.delete();
+		mJournal = new AdventureJournal( mFile );
+		mNoDeletes = new ArrayList<Integer>();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		mFile.delete();
+		new File( mFile.getPath() + ".index" ).delete();
+	}
+
+	@Test
+	public void testReplaySavedAdventures() throws IOException
+	{
+		AdventureModel adventure1 = new AdventureModel( "one" );
+		AdventureModel adventure2 = new AdventureModel( "two" );
+		mJournal.append( list( adventure1, adventure2 ), mNoDeletes );
+
+		List<AdventureModel> replayed = new AdventureJournal( mFile ).replay();
+		assertEquals( replayed.size(), 2 );
+		assertTrue( titles( replayed ).contains( "one" ) );
+		assertTrue( titles( replayed ).contains( "two" ) );
+	}
+
+	@Test
+	public void testReplaySectionsAndChoices() throws IOException
+	{
+		AdventureModel adventure = new AdventureModel( "adventure" );
+		SectionModel section = new SectionModel( "next" );
+		adventure.addSection( section );
+		adventure.getStartSection().addChoice( new SectionChoice( new SectionTitle( section.getName(), section.getId() ), "go" ) );
+		mJournal.append( list( adventure ), mNoDeletes );
+
+		AdventureModel replayed = new AdventureJournal( mFile ).replay().get( 0 );
+		assertEquals( replayed.getSections().size(), 2 );
+		SectionChoice choice = replayed.getStartSection().getChoices().get( 0 );
+		assertEquals( choice.getChoiceDescription(), "go" );
+		assertEquals( choice.getSectionTitle().getId(), Integer.valueOf( section.getId() ) );
+	}
+
+	@Test
+	public void testLatestRecordWins() throws IOException
+	{
+		AdventureModel adventure = new AdventureModel( "old title" );
+		mJournal.append( list( adventure ), mNoDeletes );
+		adventure.setTitle( "new title" );
+		mJournal.append( list( adventure ), mNoDeletes );
+
+		List<AdventureModel> replayed = new AdventureJournal( mFile ).replay();
+		assertEquals( replayed.size(), 1 );
+		assertEquals( replayed.get( 0 ).getTitle(), "new title" );
+	}
+
+	@Test
+	public void testDelete() throws IOException
+	{
+		AdventureModel adventure1 = new AdventureModel( "one" );
+		AdventureModel adventure2 = new AdventureModel( "two" );
+		mJournal.append( list( adventure1, adventure2 ), mNoDeletes );
+		ArrayList<Integer> deletes = new ArrayList<Integer>();
+		deletes.add( adventure1.getLocalId() );
+		mJournal.append( new ArrayList<AdventureModel>(), deletes );
+
+		List<AdventureModel> replayed = new AdventureJournal( mFile ).replay();
+		assertEquals( replayed.size(), 1 );
+		assertEquals( replayed.get( 0 ).getTitle(), "two" );
+	}
+
+	@Test
+	public void testPartialRecordIsDropped() throws IOException
+	{
+		AdventureModel adventure1 = new AdventureModel( "one" );
+		mJournal.append( list( adventure1 ), mNoDeletes );
+		long goodLength = mFile.length();
+		AdventureModel adventure2 = new AdventureModel( "two" );
+		mJournal.append( list( adventure2 ), mNoDeletes );
+
+		// Simulate being killed half way through writing the second record
+		RandomAccessFile file = new RandomAccessFile( mFile, "rw" );
+		file.setLength( mFile.length() - 5 );
+		file.close();
+
+		List<AdventureModel> replayed = new AdventureJournal( mFile ).replay();
+		assertEquals( replayed.size(), 1 );
+		assertEquals( replayed.get( 0 ).getTitle(), "one" );
+		assertEquals( mFile.length(), goodLength );
+	}
+
+	@Test
+	public void testCompaction() throws IOException
+	{
+		AdventureModel adventure = new AdventureModel( "" );
+		TextMedia text = new TextMedia();
+		text.setText( new String( new char[1000] ).replace( '\0', 'a' ) );
+		adventure.getSections().get( 0 ).add( text );
+		for( int i = 0; i < 200; i++ )
+		{
+			adventure.setTitle( "title " + i );
+			mJournal.append( list( adventure ), mNoDeletes );
+		}
+		long before = mFile.length();
+		assertTrue( mJournal.needsCompaction() );
+
+		mJournal.compact();
+		assertTrue( mFile.length() < before );
+		assertFalse( mJournal.needsCompaction() );
+
+		List<AdventureModel> replayed = new AdventureJournal( mFile ).replay();
+		assertEquals( replayed.size(), 1 );
+		assertEquals( replayed.get( 0 ).getTitle(), "title 199" );
+	}
+
+	@Test
+	public void testAppendDuringCompaction() throws Exception
+	{
+		final CountDownLatch copying = new CountDownLatch( 1 );
+		final CountDownLatch resume = new CountDownLatch( 1 );
+		final AdventureJournal journal = new AdventureJournal( mFile )
+		{
+			@Override
+			protected void copy( RandomAccessFile in, long offset, long length, DataOutputStream out ) throws IOException
+			{
+				// Hold up the copy of the first record
+				if( copying.getCount() > 0 )
+				{
+					copying.countDown();
+					try
+					{
+						resume.await();
+					}
+					catch( InterruptedException e )
+					{
+						throw new IOException( "Interrupted" );
+					}
+				}
+				super.copy( in, offset, length, out );
+			}
+		};
+		AdventureModel deleted = new AdventureModel( "deleted" );
+		AdventureModel changed = new AdventureModel( "unchanged" );
+		AdventureModel kept = new AdventureModel( "kept" );
+		journal.append( list( deleted, changed, kept ), mNoDeletes );
+
+		Thread compaction = new Thread( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					journal.compact();
+				}
+				catch( IOException e )
+				{
+					throw new RuntimeException( e );
+				}
+			}
+		} );
+		compaction.start();
+		assertTrue( copying.await( 5, TimeUnit.SECONDS ) );
+
+		// The journal can be used while the records are being copied
+		changed.setTitle( "changed" );
+		journal.append( list( changed ), Arrays.asList( deleted.getLocalId() ) );
+		assertEquals( journal.load( changed.getLocalId() ).getTitle(), "changed" );
+		resume.countDown();
+		compaction.join();
+
+		assertEquals( journal.load( changed.getLocalId() ).getTitle(), "changed" );
+		assertEquals( journal.load( kept.getLocalId() ).getTitle(), "kept" );
+		List<AdventureModel> replayed = new AdventureJournal( mFile ).replay();
+		assertEquals( replayed.size(), 2 );
+		for( AdventureModel adventure : replayed )
+		{
+			assertFalse( adventure.getLocalId() == deleted.getLocalId() );
+			if( adventure.getLocalId() == changed.getLocalId() )
+				assertEquals( adventure.getTitle(), "changed" );
+		}
+	}
+
+	@Test
+	public void testSummariesFromIndex() throws IOException, ClassNotFoundException
+	{
+		AdventureModel adventure = new AdventureModel( "one" );
+		adventure.setRemoteId( 5 );
+		adventure.setRemoteVersion( 3 );
+		adventure.addSection( new SectionModel( "second" ) );
+		mJournal.append( list( adventure ), mNoDeletes );
+
+		AdventureJournal reopened = new AdventureJournal( mFile );
+		List<AdventureModel> summaries = reopened.loadSummaries();
+		assertEquals( summaries.size(), 1 );
+		AdventureModel summary = summaries.get( 0 );
+		assertFalse( summary.isLoaded() );
+		assertEquals( summary.getTitle(), "one" );
+		assertEquals( summary.getRemoteId(), 5 );
+		assertEquals( summary.getRemoteVersion(), 3 );
+		assertEquals( summary.getLocalId(), adventure.getLocalId() );
+
+		AdventureModel loaded = reopened.load( adventure.getLocalId() );
+		assertTrue( loaded.isLoaded() );
+		assertEquals( loaded.getSections().size(), 2 );
+		assertEquals( loaded.getRemoteVersion(), 3 );
+	}
+
+	@Test
+	public void testStaleIndexIsRebuilt() throws IOException
+	{
+		AdventureModel adventure = new AdventureModel( "one" );
+		adventure.setRemoteId( 5 );
+		adventure.setRemoteVersion( 3 );
+		mJournal.append( list( adventure ), mNoDeletes );
+		File index = new File( mFile.getPath() + ".index" );
+		File staleIndex = new File( mFile.getPath() + ".stale" );
+		copy( index, staleIndex );
+
+		adventure.setTitle( "two" );
+		mJournal.append( list( adventure ), mNoDeletes );
+		assertTrue( staleIndex.renameTo( index ) );
+
+		List<AdventureModel> summaries = new AdventureJournal( mFile ).loadSummaries();
+		assertEquals( summaries.size(), 1 );
+		assertEquals( summaries.get( 0 ).getTitle(), "two" );
+		assertEquals( summaries.get( 0 ).getRemoteVersion(), 3 );
+	}
+
+	@Test
+	public void testBlobIds() throws IOException
+	{
+		AdventureModel kept = new AdventureModel( "kept" );
+		kept.getSections().get( 0 ).getMedia().add( new ImageMedia( 1, "aaaa" ) );
+		AdventureModel deleted = new AdventureModel( "deleted" );
+		deleted.getSections().get( 0 ).getMedia().add( new ImageMedia( 2, "bbbb" ) );
+		mJournal.append( list( kept, deleted ), mNoDeletes );
+		mJournal.append( new ArrayList<AdventureModel>(), Arrays.asList( deleted.getLocalId() ) );
+
+		AdventureJournal reopened = new AdventureJournal( mFile );
+		// Not known until the journal has been read
+		assertNull( reopened.getBlobIds() );
+		reopened.loadSummaries();
+		assertEquals( reopened.getBlobIds(), new HashSet<String>( Arrays.asList( "aaaa" ) ) );
+
+		// Also known when the index has to be rebuilt
+		new File( mFile.getPath() + ".index" ).delete();
+		reopened = new AdventureJournal( mFile );
+		reopened.loadSummaries();
+		assertEquals( reopened.getBlobIds(), new HashSet<String>( Arrays.asList( "aaaa" ) ) );
+	}
+
+	private void copy( File from, File to ) throws IOException
+	{
+		RandomAccessFile in = new RandomAccessFile( from, "r" );
+		byte[] bytes = new byte[(int) in.length()];
+		in.readFully( bytes );
+		in.close();
+		RandomAccessFile out = new RandomAccessFile( to, "rw" );
+		out.write( bytes );
+		out.close();
+	}
+
+	private ArrayList<AdventureModel> list( AdventureModel... adventures )
+	{
+		ArrayList<AdventureModel> list = new ArrayList<AdventureModel>();
+		for( AdventureModel adventure : adventures )
+			list.add( adventure );
+		return list;
+	}
+
+	private ArrayList<String> titles( List<AdventureModel> adventures )
+	{
+		ArrayList<String> titles = new ArrayList<String>();
+		for( AdventureModel adventure : adventures )
+			titles.add( adventure.getTitle() );
+		return titles;
+	}
+}
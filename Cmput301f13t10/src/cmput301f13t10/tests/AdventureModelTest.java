@@ -30,13 +30,19 @@ package cmput301f13t10.tests;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+
 import org.junit.Before;
 import org.junit.Test;
 
 import cmput301f13t10.model.AdventureModel;
 import cmput301f13t10.model.SectionModel;
+import cmput301f13t10.presenter.SectionChoice;
+import cmput301f13t10.presenter.SectionTitle;
 
 /**
  * Test the AdventureModel
@@ -81,4 +87,41 @@ public class AdventureModelTest
 		assertFalse( mAdventure.getSections().contains( mSection2 ) );
 	}
 
+	private SectionChoice addChoice( SectionModel from, SectionModel to )
+	{
+		SectionChoice choice = new SectionChoice( new SectionTitle( to.getName(), to.getId() ), "go to " + to.getName() );
+		from.addChoice( choice );
+		return choice;
+	}
+
+	@Test
+	public void testDeleteSectionRemovesChoices()
+	{
+		SectionChoice toSection2 = addChoice( mSection1, mSection2 );
+		SectionChoice toSection3 = addChoice( mSection1, mSection3 );
+		addChoice( mSection3, mSection2 );
+
+		mAdventure.deleteSection( mSection2.getId() );
+		assertEquals( mSection1.getChoices().size(), 1 );
+		assertFalse( mSection1.getChoices().contains( toSection2 ) );
+		assertTrue( mSection1.getChoices().contains( toSection3 ) );
+		assertTrue( mSection3.getChoices().isEmpty() );
+	}
+
+	@Test
+	public void testResolveChoices()
+	{
+		SectionChoice toSection2 = addChoice( mSection1, mSection2 );
+		SectionChoice toSection3 = addChoice( mSection1, mSection3 );
+		SectionChoice toMissing = addChoice( mSection1, new SectionModel( "missing" ) );
+
+		mSection2.setName( "renamed" );
+		ArrayList<SectionChoice> choices = mAdventure.resolveChoices( mSection1 );
+		assertEquals( choices.size(), 2 );
+		assertFalse( choices.contains( toMissing ) );
+		assertEquals( toSection2.getSectionTitle().getTitle(), "renamed" );
+		assertSame( mAdventure.getChoiceTarget( toSection2 ), mSection2 );
+		assertSame( mAdventure.getChoiceTarget( toSection3 ), mSection3 );
+		assertNull( mAdventure.getChoiceTarget( toMissing ) );
+	}
 }
@@ -0,0 +1,138 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import cmput301f13t10.presenter.BitmapCache;
+
+/**
+ * Test the BitmapCache
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class BitmapCacheTest
+{
+	/**
+	 * Counts every bitmap as 100 bytes
+	 */
+	private static class FixedSizeCache extends BitmapCache
+	{
+		public FixedSizeCache( int maxBytes )
+		{
+			super( maxBytes );
+		}
+
+		@Override
+		protected int sizeOf( Bitmap bitmap )
+		{
+			return 100;
+		}
+	}
+
+	private BitmapCache mCache;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		mCache = new FixedSizeCache( 250 );
+	}
+
+	@Test
+	public void testHitsAndMisses()
+	{
+		Bitmap bitmap = newBitmap();
+		assertNull( mCache.get( "a" ) );
+		mCache.put( "a", bitmap );
+		assertSame( mCache.get( "a" ), bitmap );
+		assertEquals( mCache.getHitCount(), 1 );
+		assertEquals( mCache.getMissCount(), 1 );
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted()
+	{
+		mCache.put( "a", newBitmap() );
+		mCache.put( "b", newBitmap() );
+		mCache.get( "a" );
+		mCache.put( "c", newBitmap() );
+
+		assertNull( mCache.get( "b" ) );
+		assertEquals( mCache.getEvictionCount(), 1 );
+		assertEquals( mCache.getSize(), 200 );
+		mCache.get( "a" );
+		mCache.get( "c" );
+		assertEquals( mCache.getHitCount(), 3 );
+	}
+
+	@Test
+	public void testReplace()
+	{
+		Bitmap newer = newBitmap();
+		mCache.put( "a", newBitmap() );
+		mCache.put( "a", newer );
+		assertSame( mCache.get( "a" ), newer );
+		assertEquals( mCache.getSize(), 100 );
+	}
+
+	@Test
+	public void testContainsDoesNotCountAsUse()
+	{
+		mCache.put( "a", newBitmap() );
+		mCache.put( "b", newBitmap() );
+		assertTrue( mCache.contains( "a" ) );
+		assertFalse( mCache.contains( "c" ) );
+		assertEquals( mCache.getHitCount(), 0 );
+		assertEquals( mCache.getMissCount(), 0 );
+
+		// Checking "a" didn't make it more recently used than "b"
+		mCache.put( "c", newBitmap() );
+		assertFalse( mCache.contains( "a" ) );
+		assertTrue( mCache.contains( "b" ) );
+
+		mCache.remove( "b" );
+		assertFalse( mCache.contains( "b" ) );
+		mCache.clear();
+		assertFalse( mCache.contains( "c" ) );
+	}
+
+	private Bitmap newBitmap()
+	{
+		return Bitmap.createBitmap( 1, 1, Bitmap.Config.ARGB_8888 );
+	}
+}
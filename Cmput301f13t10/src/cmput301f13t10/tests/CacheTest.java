@@ -2,13 +2,21 @@ package cmput301f13t10.tests;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.junit.Before;
 import org.junit.Test;
 
 import cmput301f13t10.model.AdventureCache;
 import cmput301f13t10.model.AdventureModel;
+import cmput301f13t10.model.DatabaseInteractor;
 
 /**
  * Test the AdventureCache
@@ -69,4 +77,278 @@ public class CacheTest
 		assertEquals( loadedAdventure.getTitle(), "yeah" );
 	}
 
+	private AdventureModel createSummary( int remoteId, String title, long version )
+	{
+		AdventureModel summary = new AdventureModel( -1, remoteId, title );
+		summary.setRemoteVersion( version );
+		return summary;
+	}
+
+	/**
+	 * Test that a summary of a new adventure is added with a local id
+	 */
+	@Test
+	public void testRefreshNewSummary()
+	{
+		AdventureModel summary = createSummary( 5, "new", 1 );
+		assertSame( mCache.refreshSummary( summary ), summary );
+		assertSame( mCache.getAdventureByRemoteId( 5 ), summary );
+		assertTrue( summary.getLocalId() != -1 );
+		assertEquals( mCache.getRemoteVersions().get( 5 ), Long.valueOf( 1 ) );
+	}
+
+	/**
+	 * Test that a summary with the same version doesn't change the cache, and
+	 * one with a new version replaces the old one under the same local id
+	 */
+	@Test
+	public void testRefreshChangedSummary()
+	{
+		AdventureModel first = createSummary( 6, "old title", 1 );
+		mCache.refreshSummary( first );
+		assertNull( mCache.refreshSummary( createSummary( 6, "old title", 1 ) ) );
+		assertSame( mCache.getAdventureByRemoteId( 6 ), first );
+
+		AdventureModel second = createSummary( 6, "new title", 2 );
+		assertSame( mCache.refreshSummary( second ), second );
+		assertEquals( second.getLocalId(), first.getLocalId() );
+		assertEquals( mCache.getAdventureByRemoteId( 6 ).getTitle(), "new title" );
+		assertEquals( mCache.getAllAdventures().size(), 1 );
+	}
+
+	/**
+	 * Test that an adventure saved on the device isn't replaced by a summary,
+	 * but takes its version so it isn't fetched again
+	 */
+	@Test
+	public void testRefreshSavedAdventure()
+	{
+		AdventureModel saved = new AdventureModel( "saved" );
+		saved.setRemoteId( 7 );
+		saved.setSave( true );
+		mCache.addAdventure( saved );
+
+		assertNull( mCache.refreshSummary( createSummary( 7, "someone else's", 3 ) ) );
+		assertSame( mCache.getAdventureByRemoteId( 7 ), saved );
+		assertEquals( saved.getTitle(), "saved" );
+		assertEquals( saved.getRemoteVersion(), 3 );
+	}
+
+	/**
+	 * Test that a summary of a saved adventure, whose sections haven't been
+	 * read from the journal yet, isn't replaced by a newer summary either
+	 */
+	@Test
+	public void testRefreshSavedSummary()
+	{
+		AdventureModel saved = createSummary( 10, "saved", 1 );
+		mCache.addAdventure( saved );
+
+		assertNull( mCache.refreshSummary( createSummary( 10, "someone else's", 2 ) ) );
+		assertSame( mCache.getAdventureByRemoteId( 10 ), saved );
+		assertEquals( saved.getTitle(), "saved" );
+		assertEquals( saved.getRemoteVersion(), 2 );
+		assertFalse( mCache.isStale( saved ) );
+	}
+
+	/**
+	 * Test that a fetched adventure that is saved on the device stops being
+	 * replaced by the copy in the database
+	 */
+	@Test
+	public void testFetchedAdventureSaved()
+	{
+		AdventureModel fetched = createSummary( 11, "fetched", 1 );
+		mCache.refreshSummary( fetched );
+		fetched.setSave( true );
+
+		assertNull( mCache.refreshSummary( createSummary( 11, "changed", 2 ) ) );
+		assertSame( mCache.getAdventureByRemoteId( 11 ), fetched );
+	}
+
+	/**
+	 * Test that only adventures that are new or changed are fetched
+	 */
+	@Test
+	public void testChangedIds()
+	{
+		Map<Integer, Long> versions = new LinkedHashMap<Integer, Long>();
+		versions.put( 1, 1L );
+		versions.put( 2, 4L );
+		versions.put( 3, 1L );
+		versions.put( 4, 2L );
+		Map<Integer, Long> known = new HashMap<Integer, Long>();
+		known.put( 1, 1L );
+		known.put( 2, 3L );
+		known.put( 4, -1L );
+		known.put( 9, 1L );
+
+		ArrayList<Integer> changed = DatabaseInteractor.getChangedIds( versions, known );
+		assertEquals( changed.size(), 3 );
+		assertEquals( changed.get( 0 ), Integer.valueOf( 2 ) );
+		assertEquals( changed.get( 1 ), Integer.valueOf( 3 ) );
+		assertEquals( changed.get( 2 ), Integer.valueOf( 4 ) );
+
+		// Nothing is fetched when nothing changed
+		known.put( 2, 4L );
+		known.put( 3, 1L );
+		known.put( 4, 2L );
+		assertTrue( DatabaseInteractor.getChangedIds( versions, known ).isEmpty() );
+	}
+
+	/**
+	 * Test that fetched adventures are fresh until the time to live passes,
+	 * and that adventures made on the device are never stale
+	 */
+	@Test
+	public void testStale()
+	{
+		AdventureModel fetched = createSummary( 8, "fetched", 1 );
+		mCache.refreshSummary( fetched );
+		AdventureModel local = new AdventureModel( "local" );
+		mCache.addAdventure( local );
+
+		mCache.setTimeToLive( 60 * 1000 );
+		assertFalse( mCache.isStale( fetched ) );
+		assertFalse( mCache.isStale( local ) );
+
+		mCache.setTimeToLive( 0 );
+		assertTrue( mCache.isStale( fetched ) );
+		assertFalse( mCache.isStale( local ) );
+	}
+
+	/**
+	 * Test that the list of adventures is stale until it is fetched, and
+	 * again once the time to live passes
+	 */
+	@Test
+	public void testListStale()
+	{
+		mCache.setTimeToLive( 60 * 1000 );
+		assertTrue( mCache.isListStale() );
+		mCache.setListFetched();
+		assertFalse( mCache.isListStale() );
+
+		mCache.setTimeToLive( 0 );
+		assertTrue( mCache.isListStale() );
+	}
+
+	/**
+	 * Test that revalidating a fetched adventure replaces it if it changed,
+	 * and makes it fresh again if it didn't
+	 */
+	@Test
+	public void testRefreshAdventure()
+	{
+		AdventureModel fetched = new AdventureModel( "fetched" );
+		fetched.setRemoteId( 9 );
+		fetched.setRemoteVersion( 1 );
+		mCache.addFetchedAdventure( fetched );
+		mCache.setTimeToLive( 0 );
+		assertTrue( mCache.isStale( fetched ) );
+
+		mCache.setTimeToLive( 60 * 1000 );
+		AdventureModel unchanged = new AdventureModel( "fetched" );
+		unchanged.setRemoteId( 9 );
+		unchanged.setRemoteVersion( 1 );
+		assertNull( mCache.refreshAdventure( unchanged ) );
+		assertSame( mCache.getAdventureByRemoteId( 9 ), fetched );
+		assertFalse( mCache.isStale( fetched ) );
+
+		AdventureModel changed = new AdventureModel( "changed" );
+		changed.setRemoteId( 9 );
+		changed.setRemoteVersion( 2 );
+		assertSame( mCache.refreshAdventure( changed ), changed );
+		assertEquals( changed.getLocalId(), fetched.getLocalId() );
+		assertSame( mCache.getAdventureById( fetched.getLocalId() ), changed );
+
+		// An adventure that was deleted from the cache isn't brought back
+		mCache.deleteAdventure( changed );
+		assertNull( mCache.refreshAdventure( changed ) );
+		assertNull( mCache.getAdventureByRemoteId( 9 ) );
+	}
+
+	/**
+	 * Test that adventures can be found by remote id after they are added,
+	 * given a new remote id, replaced and deleted
+	 */
+	@Test
+	public void testRemoteIndex()
+	{
+		AdventureModel adventure = new AdventureModel( "indexed" );
+		mCache.addAdventure( adventure );
+		assertNull( mCache.getAdventureByRemoteId( -1 ) );
+		assertFalse( mCache.containsRemote( adventure ) );
+
+		mCache.setRemoteId( adventure, 10 );
+		assertEquals( adventure.getRemoteId(), 10 );
+		assertSame( mCache.getAdventureByRemoteId( 10 ), adventure );
+		assertTrue( mCache.containsRemote( adventure ) );
+
+		mCache.setRemoteId( adventure, 11 );
+		assertNull( mCache.getAdventureByRemoteId( 10 ) );
+		assertSame( mCache.getAdventureByRemoteId( 11 ), adventure );
+
+		// Replacing the adventure under the same local id replaces it in the
+		// index too
+		AdventureModel replacement = createSummary( 12, "replacement", 1 );
+		replacement.setLocalId( adventure.getLocalId() );
+		mCache.addAdventure( replacement );
+		assertNull( mCache.getAdventureByRemoteId( 11 ) );
+		assertSame( mCache.getAdventureByRemoteId( 12 ), replacement );
+
+		mCache.deleteAdventure( replacement );
+		assertNull( mCache.getAdventureByRemoteId( 12 ) );
+
+		// An adventure that isn't cached still gets its id, but isn't indexed
+		AdventureModel uncached = new AdventureModel( "uncached" );
+		mCache.setRemoteId( uncached, 13 );
+		assertEquals( uncached.getRemoteId(), 13 );
+		assertNull( mCache.getAdventureByRemoteId( 13 ) );
+	}
+
+	/**
+	 * Test that syncing many adventures from the database takes time in
+	 * proportion to the number of adventures, not its square, as it would if
+	 * the whole cache was scanned for each adventure
+	 */
+	@Test
+	public void testRemoteLookupScales()
+	{
+		Scaling.assertLinear( "adventures", 5000, new Scaling.Workload()
+		{
+			private AdventureModel[] mNew;
+			private AdventureModel[] mUnchanged;
+
+			@Override
+			protected void setUp( int count )
+			{
+				mCache = new AdventureCache();
+				mNew = new AdventureModel[count];
+				mUnchanged = new AdventureModel[count];
+				for( int i = 0; i < count; i++ )
+				{
+					mNew[i] = createSummary( 100000 + i, "adventure " + i, 1 );
+					mUnchanged[i] = createSummary( 100000 + i, "adventure " + i, 1 );
+				}
+			}
+
+			/**
+			 * Sync the adventures into an empty cache twice, the second time
+			 * finding every adventure already cached
+			 */
+			@Override
+			protected void run( int count )
+			{
+				for( AdventureModel summary : mNew )
+					mCache.refreshSummary( summary );
+				for( AdventureModel summary : mUnchanged )
+					assertNull( mCache.refreshSummary( summary ) );
+			}
+		} );
+
+		assertEquals( mCache.getAllAdventures().size(), 20000 );
+		for( int i = 0; i < 20000; i++ )
+			assertEquals( mCache.getAdventureByRemoteId( 100000 + i ).getTitle(), "adventure " + i );
+	}
 }
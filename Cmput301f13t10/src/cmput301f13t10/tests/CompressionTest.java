@@ -0,0 +1,404 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import cmput301f13t10.model.AdventureModel;
+import cmput301f13t10.model.ESClient;
+import cmput301f13t10.presenter.ImageMedia;
+import cmput301f13t10.presenter.TextMedia;
+
+/**
+ * Test that adventures are compressed on their way to and from the database,
+ * using a stub server on the local machine
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class CompressionTest
+{
+	/**
+	 * A server that answers every request with the same body, and counts the
+	 * bytes of the bodies that go each way
+	 */
+	private static class StubServer extends Thread
+	{
+		ServerSocket mSocket;
+		boolean mGzip;
+		boolean mAcceptsGzipBodies = true;
+		int mRefusedStatus = 415;
+		int mRequests;
+		int mStatus = 200;
+		byte[] mResponse = new byte[0];
+		int mBytesSent;
+		int mBytesReceived;
+		boolean mRequestGzipped;
+		String mRequestBody;
+
+		StubServer( boolean gzip ) throws IOException
+		{
+			mGzip = gzip;
+			mSocket = new ServerSocket( 0 );
+			setDaemon( true );
+			start();
+		}
+
+		String getUrl()
+		{
+			return "http://127.0.0.1:" + mSocket.getLocalPort() + "/cmput301f13t10/adventures/1";
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				while( true )
+				{
+					Socket socket = mSocket.accept();
+					try
+					{
+						handle( socket );
+					}
+					finally
+					{
+						socket.close();
+					}
+				}
+			}
+			catch( IOException e )
+			{
+				// closed
+			}
+		}
+
+		private String readLine( InputStream in ) throws IOException
+		{
+			StringBuilder line = new StringBuilder();
+			int c;
+			while( ( c = in.read() ) != -1 && c != '\n' )
+			{
+				if( c != '\r' )
+					line.append( (char) c );
+			}
+			return line.toString();
+		}
+
+		private synchronized void handle( Socket socket ) throws IOException
+		{
+			InputStream in = socket.getInputStream();
+			readLine( in );
+			int length = 0;
+			boolean acceptsGzip = false;
+			boolean gzipped = false;
+			String line;
+			while( ( line = readLine( in ) ).length() > 0 )
+			{
+				String name = line.substring( 0, line.indexOf( ':' ) ).trim();
+				String value = line.substring( line.indexOf( ':' ) + 1 ).trim();
+				if( name.equalsIgnoreCase( "Content-Length" ) )
+					length = Integer.parseInt( value );
+				else if( name.equalsIgnoreCase( "Accept-Encoding" ) )
+					acceptsGzip = value.contains( "gzip" );
+				else if( name.equalsIgnoreCase( "Content-Encoding" ) )
+					gzipped = value.contains( "gzip" );
+			}
+
+			byte[] body = new byte[length];
+			int read = 0;
+			while( read < length )
+				read += in.read( body, read, length - read );
+			mBytesReceived += length;
+			mRequests++;
+			mRequestGzipped = gzipped;
+			mRequestBody = new String( gzipped ? gunzip( body ) : body, "UTF-8" );
+
+			int status = mStatus;
+			byte[] response = mResponse;
+			boolean gzipResponse = mGzip && acceptsGzip;
+			if( gzipped && !mAcceptsGzipBodies )
+			{
+				status = mRefusedStatus;
+				response = new byte[0];
+			}
+			else if( gzipResponse )
+				response = gzip( response );
+			mBytesSent += response.length;
+
+			OutputStream out = socket.getOutputStream();
+			StringBuilder headers = new StringBuilder();
+			headers.append( "HTTP/1.1 " ).append( status ).append( " OK\r\n" );
+			headers.append( "Content-Type: application/json; charset=UTF-8\r\n" );
+			headers.append( "Content-Length: " ).append( response.length ).append( "\r\n" );
+			if( gzipResponse )
+				headers.append( "Content-Encoding: gzip\r\n" );
+			headers.append( "Connection: close\r\n\r\n" );
+			out.write( headers.toString().getBytes( "UTF-8" ) );
+			out.write( response );
+			out.flush();
+		}
+
+		void close() throws IOException
+		{
+			mSocket.close();
+		}
+	}
+
+	/**
+	 * The servers are only closed once all of the tests are done, so that each
+	 * test gets a server on a new port that the client knows nothing about
+	 */
+	private static ArrayList<StubServer> sServers = new ArrayList<StubServer>();
+
+	private StubServer mServer;
+
+	private StubServer createServer( boolean gzip ) throws IOException
+	{
+		StubServer server = new StubServer( gzip );
+		sServers.add( server );
+		return server;
+	}
+
+	@AfterClass
+	public static void closeServers() throws IOException
+	{
+		for( StubServer server : sServers )
+			server.close();
+		sServers.clear();
+	}
+
+	private static byte[] gzip( byte[] bytes ) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream( out );
+		gzip.write( bytes );
+		gzip.close();
+		return out.toByteArray();
+	}
+
+	private static byte[] gunzip( byte[] bytes ) throws IOException
+	{
+		InputStream in = new GZIPInputStream( new ByteArrayInputStream( bytes ) );
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while( ( read = in.read( buffer ) ) != -1 )
+			out.write( buffer, 0, read );
+		return out.toByteArray();
+	}
+
+	/**
+	 * An adventure with a few images, as it is sent to the database
+	 */
+	private String createImageAdventureJson()
+	{
+		Random random = new Random( 301 );
+		AdventureModel adventure = new AdventureModel( "images" );
+		for( int i = 0; i < 4; i++ )
+		{
+			byte[] image = new byte[20000];
+			random.nextBytes( image );
+			adventure.getStartSection().add( new ImageMedia( i, image ) );
+			TextMedia text = new TextMedia();
+			text.setText( "A caption for image " + i );
+			adventure.getStartSection().add( text );
+		}
+		return ESClient.getClient().getGson().toJson( adventure );
+	}
+
+	@Test
+	public void testCompressedResponse() throws IOException
+	{
+		mServer = createServer( true );
+		String json = createImageAdventureJson();
+		byte[] raw = json.getBytes( "UTF-8" );
+		mServer.mResponse = raw;
+
+		String received = ESClient.getClient().getEntityContent( ESClient.getClient().execute( new HttpGet( mServer.getUrl() ) ) );
+		assertEquals( received, json );
+		// Gzip takes back the base 64 overhead of the images
+		assertTrue( mServer.mBytesSent < raw.length * 0.8 );
+	}
+
+	@Test
+	public void testCompressedRequestOnceNegotiated() throws IOException
+	{
+		mServer = createServer( true );
+		String json = createImageAdventureJson();
+		int raw = json.getBytes( "UTF-8" ).length;
+
+		// The server hasn't shown that it supports gzip yet
+		HttpPost post = new HttpPost( mServer.getUrl() );
+		post.setEntity( new StringEntity( json, "UTF-8" ) );
+		ESClient.getClient().executeAndConsume( post );
+		assertFalse( mServer.mRequestGzipped );
+		assertEquals( mServer.mBytesReceived, raw );
+
+		// Now it has
+		mServer.mResponse = "{\"ok\":true}".getBytes( "UTF-8" );
+		mServer.mBytesReceived = 0;
+		post = new HttpPost( mServer.getUrl() );
+		post.setEntity( new StringEntity( json, "UTF-8" ) );
+		ESClient.getClient().executeAndConsume( post );
+		assertTrue( mServer.mRequestGzipped );
+		assertEquals( mServer.mRequestBody, json );
+		assertTrue( mServer.mBytesReceived < raw * 0.8 );
+	}
+
+	@Test
+	public void testSmallRequestNotCompressed() throws IOException
+	{
+		mServer = createServer( true );
+		mServer.mResponse = "{\"ok\":true}".getBytes( "UTF-8" );
+		ESClient.getClient().executeAndConsume( new HttpGet( mServer.getUrl() ) );
+
+		HttpPost post = new HttpPost( mServer.getUrl() );
+		post.setEntity( new StringEntity( "{\"small\":true}", "UTF-8" ) );
+		ESClient.getClient().executeAndConsume( post );
+		assertFalse( mServer.mRequestGzipped );
+	}
+
+	@Test
+	public void testUncompressedServer() throws IOException
+	{
+		mServer = createServer( false );
+		mServer.mResponse = "{\"ok\":true}".getBytes( "UTF-8" );
+		ESClient.getClient().executeAndConsume( new HttpGet( mServer.getUrl() ) );
+
+		String json = createImageAdventureJson();
+		HttpPost post = new HttpPost( mServer.getUrl() );
+		post.setEntity( new StringEntity( json, "UTF-8" ) );
+		ESClient.getClient().executeAndConsume( post );
+		assertFalse( mServer.mRequestGzipped );
+		assertEquals( mServer.mRequestBody, json );
+	}
+
+	@Test
+	public void testRejectedCompressedRequest() throws IOException
+	{
+		mServer = createServer( true );
+		mServer.mAcceptsGzipBodies = false;
+		mServer.mResponse = "{\"ok\":true}".getBytes( "UTF-8" );
+		ESClient.getClient().executeAndConsume( new HttpGet( mServer.getUrl() ) );
+
+		// The compressed request is rejected, and resent uncompressed
+		String json = createImageAdventureJson();
+		HttpPost post = new HttpPost( mServer.getUrl() );
+		post.setEntity( new StringEntity( json, "UTF-8" ) );
+		mServer.mRequests = 0;
+		ESClient.getClient().executeAndConsume( post );
+		assertEquals( mServer.mRequests, 2 );
+		assertFalse( mServer.mRequestGzipped );
+		assertEquals( mServer.mRequestBody, json );
+
+		// and the server isn't sent compressed requests again
+		post = new HttpPost( mServer.getUrl() );
+		post.setEntity( new StringEntity( json, "UTF-8" ) );
+		mServer.mRequests = 0;
+		ESClient.getClient().executeAndConsume( post );
+		assertEquals( mServer.mRequests, 1 );
+		assertFalse( mServer.mRequestGzipped );
+	}
+
+	@Test
+	public void testCompressedRequestRefusedAsBad() throws IOException
+	{
+		mServer = createServer( true );
+		mServer.mAcceptsGzipBodies = false;
+		mServer.mRefusedStatus = 400;
+		mServer.mResponse = "{\"ok\":true}".getBytes( "UTF-8" );
+		ESClient.getClient().executeAndConsume( new HttpGet( mServer.getUrl() ) );
+
+		// The uncompressed request is accepted, so it was the gzip that was bad
+		String json = createImageAdventureJson();
+		HttpPost post = new HttpPost( mServer.getUrl() );
+		post.setEntity( new StringEntity( json, "UTF-8" ) );
+		mServer.mRequests = 0;
+		ESClient.getClient().executeAndConsume( post );
+		assertEquals( mServer.mRequests, 2 );
+		assertFalse( mServer.mRequestGzipped );
+
+		post = new HttpPost( mServer.getUrl() );
+		post.setEntity( new StringEntity( json, "UTF-8" ) );
+		mServer.mRequests = 0;
+		ESClient.getClient().executeAndConsume( post );
+		assertEquals( mServer.mRequests, 1 );
+		assertFalse( mServer.mRequestGzipped );
+	}
+
+	@Test
+	public void testBadRequestKeepsCompression() throws IOException
+	{
+		mServer = createServer( true );
+		mServer.mResponse = "{\"ok\":true}".getBytes( "UTF-8" );
+		ESClient.getClient().executeAndConsume( new HttpGet( mServer.getUrl() ) );
+
+		// A bad request is refused whether it is compressed or not
+		mServer.mStatus = 400;
+		String json = createImageAdventureJson();
+		HttpPost post = new HttpPost( mServer.getUrl() );
+		post.setEntity( new StringEntity( json, "UTF-8" ) );
+		mServer.mRequests = 0;
+		HttpResponse response = ESClient.getClient().execute( post );
+		assertEquals( response.getStatusLine().getStatusCode(), 400 );
+		ESClient.getClient().consume( response );
+		assertEquals( mServer.mRequests, 2 );
+
+		// so the server is still sent compressed requests
+		mServer.mStatus = 200;
+		post = new HttpPost( mServer.getUrl() );
+		post.setEntity( new StringEntity( json, "UTF-8" ) );
+		mServer.mRequests = 0;
+		ESClient.getClient().executeAndConsume( post );
+		assertEquals( mServer.mRequests, 1 );
+		assertTrue( mServer.mRequestGzipped );
+	}
+}
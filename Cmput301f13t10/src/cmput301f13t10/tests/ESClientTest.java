@@ -0,0 +1,106 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import cmput301f13t10.model.ESClient;
+import cmput301f13t10.model.ElasticSearchSearchResponse;
+
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Test parsing responses from the database
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class ESClientTest
+{
+	private HttpResponse createResponse( String body ) throws IOException
+	{
+		HttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+		if( body != null )
+		{
+			byte[] bytes = body.getBytes( "UTF-8" );
+			response.setEntity( new InputStreamEntity( new ByteArrayInputStream( bytes ), bytes.length ) );
+		}
+		return response;
+	}
+
+	@Test
+	public void testParseSearch() throws IOException
+	{
+		StringBuilder body = new StringBuilder( "{\"took\":1,\"hits\":{\"total\":10000,\"hits\":[" );
+		for( int i = 0; i < 10000; i++ )
+		{
+			if( i > 0 )
+				body.append( ',' );
+			body.append( "{\"_index\":\"cmput301f13t10\",\"_type\":\"adventures\",\"_id\":\"" ).append( i ).append( "\",\"_score\":1.0}" );
+		}
+		body.append( "]}}" );
+
+		Type type = new TypeToken<ElasticSearchSearchResponse<Object>>()
+		{
+		}.getType();
+		ElasticSearchSearchResponse<Object> response = ESClient.getClient().parse( createResponse( body.toString() ), type );
+		assertEquals( response.getTotal(), 10000 );
+		assertEquals( response.getHits().size(), 10000 );
+		assertEquals( response.getHits().get( 9999 ).getId(), "9999" );
+	}
+
+	@Test
+	public void testParseNoBody() throws IOException
+	{
+		Type type = new TypeToken<ElasticSearchSearchResponse<Object>>()
+		{
+		}.getType();
+		assertNull( ESClient.getClient().parse( createResponse( null ), type ) );
+	}
+
+	@Test( expected = IOException.class )
+	public void testParseBadBody() throws IOException
+	{
+		Type type = new TypeToken<ElasticSearchSearchResponse<Object>>()
+		{
+		}.getType();
+		ESClient.getClient().parse( createResponse( "{\"hits\": [" ), type );
+	}
+}
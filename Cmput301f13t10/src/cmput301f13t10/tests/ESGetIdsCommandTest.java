@@ -0,0 +1,203 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import cmput301f13t10.model.ESClient;
+import cmput301f13t10.model.ESGetIdsCommand;
+import cmput301f13t10.model.ElasticSearchSearchResponse;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Test listing the ids and versions of the adventures in the database, using
+ * a command whose search responses come from memory rather than the database
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class ESGetIdsCommandTest
+{
+	/**
+	 * Answers each search with the next of the given responses, or fails
+	 * once they run out
+	 */
+	private static class MockGetIdsCommand extends ESGetIdsCommand
+	{
+		List<String> mPages = new ArrayList<String>();
+		List<Integer> mFroms = new ArrayList<Integer>();
+
+		@Override
+		protected ElasticSearchSearchResponse<Object> getPage( int from ) throws IOException
+		{
+			mFroms.add( from );
+			if( mFroms.size() > mPages.size() )
+				throw new IOException( "search failed" );
+			return parse( mPages.get( mFroms.size() - 1 ) );
+		}
+
+		String query( int from )
+		{
+			return getQuery( from );
+		}
+	}
+
+	private static ElasticSearchSearchResponse<Object> parse( String json ) throws IOException
+	{
+		byte[] bytes = json.getBytes( "UTF-8" );
+		HttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+		response.setEntity( new InputStreamEntity( new ByteArrayInputStream( bytes ), bytes.length ) );
+		Type type = new TypeToken<ElasticSearchSearchResponse<Object>>()
+		{
+		}.getType();
+		return ESClient.getClient().parse( response, type );
+	}
+
+	/**
+	 * A page of search results with the given ids, each with a version one
+	 * higher than its position
+	 */
+	private static String page( int total, String... ids )
+	{
+		StringBuilder json = new StringBuilder( "{\"took\":1,\"hits\":{\"total\":" ).append( total ).append( ",\"hits\":[" );
+		for( int i = 0; i < ids.length; i++ )
+		{
+			if( i > 0 )
+				json.append( ',' );
+			json.append( "{\"_index\":\"cmput301f13t10\",\"_type\":\"adventures\",\"_id\":\"" ).append( ids[i] );
+			json.append( "\",\"_version\":" ).append( i + 1 ).append( ",\"_score\":null}" );
+		}
+		return json.append( "]}}" ).toString();
+	}
+
+	private static String[] range( int from, int to )
+	{
+		String[] ids = new String[to - from];
+		for( int i = from; i < to; i++ )
+			ids[i - from] = String.valueOf( i );
+		return ids;
+	}
+
+	@Test
+	public void testParseVersions() throws IOException
+	{
+		ElasticSearchSearchResponse<Object> response = parse( page( 7, "3", "5" ) );
+		assertEquals( response.getTotal(), 7 );
+		assertEquals( response.getHits().size(), 2 );
+		assertEquals( response.getHits().get( 1 ).getId(), "5" );
+		assertEquals( response.getHits().get( 1 ).getVersion(), 2 );
+	}
+
+	@Test
+	public void testParseNoHits() throws IOException
+	{
+		ElasticSearchSearchResponse<Object> response = parse( "{\"took\":1}" );
+		assertEquals( response.getTotal(), 0 );
+		assertTrue( response.getHits().isEmpty() );
+	}
+
+	@Test
+	public void testListsEveryPage()
+	{
+		int size = ESGetIdsCommand.PAGE_SIZE;
+		int total = 2 * size + 10;
+		MockGetIdsCommand command = new MockGetIdsCommand();
+		command.mPages.add( page( total, range( 0, size ) ) );
+		command.mPages.add( page( total, range( size, 2 * size ) ) );
+		command.mPages.add( page( total, range( 2 * size, total ) ) );
+
+		Map<Integer, Long> versions = command.call();
+		assertEquals( versions.size(), total );
+		assertEquals( command.mFroms.size(), 3 );
+		assertEquals( command.mFroms.get( 1 ), Integer.valueOf( size ) );
+		assertEquals( command.mFroms.get( 2 ), Integer.valueOf( 2 * size ) );
+
+		// In the order they were found
+		Iterator<Integer> ids = versions.keySet().iterator();
+		for( int i = 0; i < total; i++ )
+			assertEquals( ids.next(), Integer.valueOf( i ) );
+		assertEquals( versions.get( size + 4 ), Long.valueOf( 5 ) );
+	}
+
+	@Test
+	public void testSkipsRepeatedAndForeignIds()
+	{
+		MockGetIdsCommand command = new MockGetIdsCommand();
+		command.mPages.add( page( 4, "1", "not an adventure" ) );
+		command.mPages.add( page( 4, "2", "1" ) );
+
+		Map<Integer, Long> versions = command.call();
+		assertEquals( versions.size(), 2 );
+		assertEquals( versions.get( 1 ), Long.valueOf( 1 ) );
+		assertEquals( versions.get( 2 ), Long.valueOf( 1 ) );
+	}
+
+	@Test
+	public void testFailedPage()
+	{
+		MockGetIdsCommand command = new MockGetIdsCommand();
+		command.mPages.add( page( 2 * ESGetIdsCommand.PAGE_SIZE, range( 0, ESGetIdsCommand.PAGE_SIZE ) ) );
+
+		// A partial list would make the missing adventures look deleted
+		assertNull( command.call() );
+		assertEquals( command.mFroms.size(), 2 );
+	}
+
+	@Test
+	public void testQueryIsSorted()
+	{
+		JsonObject query = new JsonParser().parse( new MockGetIdsCommand().query( 500 ) ).getAsJsonObject();
+		JsonArray sort = query.getAsJsonArray( "sort" );
+		assertEquals( sort.size(), 1 );
+		assertEquals( sort.get( 0 ).getAsString(), "_uid" );
+		assertEquals( query.get( "from" ).getAsInt(), 500 );
+		assertEquals( query.get( "size" ).getAsInt(), ESGetIdsCommand.PAGE_SIZE );
+		assertTrue( query.get( "version" ).getAsBoolean() );
+	}
+}
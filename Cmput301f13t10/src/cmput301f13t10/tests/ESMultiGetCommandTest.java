@@ -0,0 +1,177 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import cmput301f13t10.model.AdventureModel;
+import cmput301f13t10.model.Callback;
+import cmput301f13t10.model.ESMultiGetCommand;
+
+/**
+ * Test getting adventures from the database a page at a time, using a
+ * command whose pages come from memory rather than the database
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class ESMultiGetCommandTest
+{
+	/**
+	 * Answers each page with the adventures that were asked for, except the
+	 * page that starts at the failing index
+	 */
+	private static class MockMultiGetCommand extends ESMultiGetCommand
+	{
+		List<List<Integer>> mRequested = new ArrayList<List<Integer>>();
+		int mFailingPage = -1;
+
+		MockMultiGetCommand( List<Integer> ids, Callback<ArrayList<AdventureModel>> pageCallback )
+		{
+			super( ids, true, pageCallback );
+		}
+
+		@Override
+		protected ArrayList<AdventureModel> getPage( List<Integer> ids ) throws IOException
+		{
+			mRequested.add( new ArrayList<Integer>( ids ) );
+			if( mRequested.size() - 1 == mFailingPage )
+				throw new IOException( "page failed" );
+			ArrayList<AdventureModel> adventures = new ArrayList<AdventureModel>();
+			for( Integer id : ids )
+				adventures.add( new AdventureModel( -1, id, "adventure " + id ) );
+			return adventures;
+		}
+	}
+
+	/**
+	 * Collects the pages passed to it, which may arrive on another thread
+	 */
+	private static class PageCollector extends Callback<ArrayList<AdventureModel>>
+	{
+		List<ArrayList<AdventureModel>> mPages = Collections.synchronizedList( new ArrayList<ArrayList<AdventureModel>>() );
+		CountDownLatch mLatch;
+
+		PageCollector( int expected )
+		{
+			mLatch = new CountDownLatch( expected );
+		}
+
+		@Override
+		public void callBack( ArrayList<AdventureModel> page )
+		{
+			mPages.add( page );
+			mLatch.countDown();
+		}
+
+		void await() throws InterruptedException
+		{
+			assertTrue( mLatch.await( 5, TimeUnit.SECONDS ) );
+		}
+	}
+
+	private List<Integer> ids( int count )
+	{
+		List<Integer> ids = new ArrayList<Integer>();
+		for( int i = 0; i < count; i++ )
+			ids.add( i );
+		return ids;
+	}
+
+	@Test
+	public void testPages() throws InterruptedException
+	{
+		int count = 2 * ESMultiGetCommand.PAGE_SIZE + 20;
+		PageCollector collector = new PageCollector( 3 );
+		MockMultiGetCommand command = new MockMultiGetCommand( ids( count ), collector );
+		ArrayList<AdventureModel> all = command.call();
+
+		assertEquals( all.size(), count );
+		assertEquals( command.mRequested.size(), 3 );
+		assertEquals( command.mRequested.get( 0 ).size(), ESMultiGetCommand.PAGE_SIZE );
+		assertEquals( command.mRequested.get( 1 ).get( 0 ), Integer.valueOf( ESMultiGetCommand.PAGE_SIZE ) );
+		assertEquals( command.mRequested.get( 2 ).size(), 20 );
+
+		// Each page is passed on by itself, in order
+		collector.await();
+		assertEquals( collector.mPages.size(), 3 );
+		assertEquals( collector.mPages.get( 0 ).get( 0 ).getRemoteId(), 0 );
+		assertEquals( collector.mPages.get( 2 ).size(), 20 );
+		assertEquals( collector.mPages.get( 2 ).get( 19 ).getRemoteId(), count - 1 );
+	}
+
+	@Test
+	public void testFailedPage() throws InterruptedException
+	{
+		PageCollector collector = new PageCollector( 1 );
+		MockMultiGetCommand command = new MockMultiGetCommand( ids( 3 * ESMultiGetCommand.PAGE_SIZE ), collector );
+		command.mFailingPage = 1;
+
+		// The list isn't complete, so it must not look like it is
+		assertNull( command.call() );
+		assertEquals( command.mRequested.size(), 2 );
+		collector.await();
+		assertEquals( collector.mPages.size(), 1 );
+	}
+
+	@Test
+	public void testCancelled()
+	{
+		MockMultiGetCommand command = new MockMultiGetCommand( ids( 10 ), null );
+		Thread.currentThread().interrupt();
+		try
+		{
+			assertNull( command.call() );
+		}
+		finally
+		{
+			Thread.interrupted();
+		}
+		assertTrue( command.mRequested.isEmpty() );
+	}
+
+	@Test
+	public void testNothingToGet()
+	{
+		MockMultiGetCommand command = new MockMultiGetCommand( new ArrayList<Integer>(), null );
+		assertTrue( command.call().isEmpty() );
+		assertTrue( command.mRequested.isEmpty() );
+	}
+}
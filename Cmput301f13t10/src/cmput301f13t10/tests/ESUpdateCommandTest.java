@@ -0,0 +1,135 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import cmput301f13t10.model.AdventureCodec;
+import cmput301f13t10.model.AdventureModel;
+import cmput301f13t10.model.ESUpdateCommand;
+
+/**
+ * Test deciding if an upload was refused by the database, using a command
+ * whose responses come from memory rather than the database
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class ESUpdateCommandTest
+{
+	/**
+	 * Answers each request with the next of the given statuses, or fails
+	 * once they run out
+	 */
+	private static class MockUpdateCommand extends ESUpdateCommand
+	{
+		List<Integer> mStatuses = new ArrayList<Integer>();
+		List<String> mUrls = new ArrayList<String>();
+
+		MockUpdateCommand( AdventureModel adventure ) throws IOException
+		{
+			super( adventure, AdventureCodec.copy( adventure ) );
+		}
+
+		@Override
+		protected HttpResponse send( HttpPost request ) throws IOException
+		{
+			mUrls.add( request.getURI().toString() );
+			if( mUrls.size() > mStatuses.size() )
+				throw new IOException( "update failed" );
+			HttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, mStatuses.get( mUrls.size() - 1 ), "" );
+			response.setEntity( new StringEntity( "{\"_version\":2}", "UTF-8" ) );
+			return response;
+		}
+	}
+
+	/**
+	 * Make an adventure that was uploaded before, and changed since then, so
+	 * that only the change is sent first
+	 */
+	private static AdventureModel changedAdventure() throws IOException
+	{
+		AdventureModel adventure = new AdventureModel( 1, 5, "uploaded" );
+		MockUpdateCommand command = new MockUpdateCommand( adventure );
+		command.mStatuses.add( 200 );
+		assertTrue( command.call() );
+		adventure.setTitle( "changed" );
+		return adventure;
+	}
+
+	@Test
+	public void testRefusedUpdate() throws IOException
+	{
+		MockUpdateCommand command = new MockUpdateCommand( changedAdventure() );
+		command.mStatuses.add( 400 );
+		command.mStatuses.add( 400 );
+		assertFalse( command.call() );
+		assertTrue( command.mUrls.size() == 2 );
+		assertTrue( command.isRejected() );
+	}
+
+	@Test
+	public void testRefusedPartialUpdateIsRetried() throws IOException
+	{
+		// The whole adventure failed for another reason, so it is worth
+		// sending again
+		MockUpdateCommand command = new MockUpdateCommand( changedAdventure() );
+		command.mStatuses.add( 400 );
+		command.mStatuses.add( 503 );
+		assertFalse( command.call() );
+		assertFalse( command.isRejected() );
+
+		command = new MockUpdateCommand( changedAdventure() );
+		command.mStatuses.add( 400 );
+		assertFalse( command.call() );
+		assertFalse( command.isRejected() );
+	}
+
+	@Test
+	public void testRefusedPartialUpdateThenSent() throws IOException
+	{
+		MockUpdateCommand command = new MockUpdateCommand( changedAdventure() );
+		command.mStatuses.add( 400 );
+		command.mStatuses.add( 200 );
+		assertTrue( command.call() );
+		assertFalse( command.isRejected() );
+	}
+}
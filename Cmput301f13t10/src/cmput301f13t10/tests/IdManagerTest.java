@@ -4,6 +4,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.util.ArrayList;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -120,4 +122,15 @@ public class IdManagerTest
 		assertNotNull( mThrown );
 		assertEquals( mManager.getNewId(), 1 );
 	}
+
+	@Test
+	public void testSetUsedIds()
+	{
+		ArrayList<Integer> usedIds = new ArrayList<Integer>();
+		usedIds.add( 0 );
+		usedIds.add( 2 );
+		mManager.setUsedIds( usedIds );
+		assertEquals( mManager.getNewId(), 1 );
+		assertEquals( mManager.getNewId(), 3 );
+	}
 }
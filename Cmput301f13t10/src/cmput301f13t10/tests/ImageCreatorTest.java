@@ -0,0 +1,77 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import cmput301f13t10.presenter.ImageCreator;
+
+/**
+ * Test the sizing math used when decoding new images
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class ImageCreatorTest
+{
+	@Test
+	public void testSampleSize()
+	{
+		assertEquals( ImageCreator.calculateSampleSize( 4000, 3000, 670, 670 ), 4 );
+		assertEquals( ImageCreator.calculateSampleSize( 1340, 1340, 670, 670 ), 2 );
+		assertEquals( ImageCreator.calculateSampleSize( 1339, 5000, 670, 670 ), 1 );
+		assertEquals( ImageCreator.calculateSampleSize( 500, 500, 670, 670 ), 1 );
+	}
+
+	@Test
+	public void testSampledImageIsAtLeastTargetSize()
+	{
+		for( int width = 670; width < 8000; width += 97 )
+		{
+			int sampleSize = ImageCreator.calculateSampleSize( width, width, 670, 670 );
+			assertTrue( width / sampleSize >= 670 );
+			assertTrue( width / ( sampleSize * 2 ) < 670 );
+		}
+	}
+
+	@Test
+	public void testEstimatedBytesOfTwelveMegapixelPhoto()
+	{
+		// Decoding a 12 MP photo in full would take 48 MB before it was scaled
+		// down; sampling it while decoding only takes 3 MB
+		long full = ImageCreator.estimateDecodedBytes( 4000, 3000, 1 );
+		int sampleSize = ImageCreator.calculateSampleSize( 4000, 3000, ImageCreator.IMAGE_SIZE, ImageCreator.IMAGE_SIZE );
+		long sampled = ImageCreator.estimateDecodedBytes( 4000, 3000, sampleSize );
+		assertEquals( full, 48000000 );
+		assertEquals( sampled, 3000000 );
+	}
+}
@@ -0,0 +1,124 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import cmput301f13t10.presenter.ImageCreator;
+import cmput301f13t10.presenter.ImageEncoder;
+import cmput301f13t10.presenter.ImageMedia;
+import cmput301f13t10.presenter.Media;
+
+/**
+ * Test the choice of how new images are compressed
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class ImageEncoderTest
+{
+	/**
+	 * Counts the images it compresses
+	 */
+	private static class CountingEncoder extends ImageEncoder
+	{
+		int mEncoded = 0;
+
+		CountingEncoder()
+		{
+			super( Bitmap.CompressFormat.PNG, 100 );
+		}
+
+		@Override
+		public byte[] encode( Bitmap image )
+		{
+			mEncoded++;
+			return super.encode( image );
+		}
+	}
+
+	@After
+	public void tearDown()
+	{
+		ImageEncoder.setEncoder( ImageEncoder.STANDARD );
+	}
+
+	@Test
+	public void testPresets()
+	{
+		assertSame( ImageEncoder.getEncoder(), ImageEncoder.STANDARD );
+		assertEquals( ImageEncoder.HIGH.getFormat(), Bitmap.CompressFormat.JPEG );
+		assertEquals( ImageEncoder.STANDARD.getFormat(), Bitmap.CompressFormat.JPEG );
+		assertEquals( ImageEncoder.COMPACT.getFormat(), Bitmap.CompressFormat.WEBP );
+		assertTrue( ImageEncoder.HIGH.getQuality() > ImageEncoder.STANDARD.getQuality() );
+
+		ImageEncoder.setEncoder( ImageEncoder.COMPACT );
+		assertSame( ImageEncoder.getEncoder(), ImageEncoder.COMPACT );
+	}
+
+	@Test
+	public void testNewImageUsesChosenEncoder()
+	{
+		CountingEncoder encoder = new CountingEncoder();
+		ImageEncoder.setEncoder( encoder );
+		Bitmap bitmap = Bitmap.createBitmap( 20, 10, Bitmap.Config.ARGB_8888 );
+		ImageMedia media = new ImageMedia();
+		media.setImageBitmap( bitmap );
+
+		assertEquals( encoder.mEncoded, 1 );
+		assertArrayEquals( media.getImageBytes(), new ImageEncoder( Bitmap.CompressFormat.PNG, 100 ).encode( bitmap ) );
+	}
+
+	@Test
+	public void testResizeDoesNotReencode()
+	{
+		CountingEncoder encoder = new CountingEncoder();
+		ImageEncoder.setEncoder( encoder );
+		ImageMedia media = new ImageMedia();
+		media.setImageBitmap( Bitmap.createBitmap( 20, 10, Bitmap.Config.ARGB_8888 ) );
+		byte[] stored = media.getImageBytes();
+
+		ArrayList<Media> mediaList = new ArrayList<Media>();
+		mediaList.add( media );
+		ImageCreator.resizeImage( 300, 0, mediaList );
+
+		assertEquals( media.getDisplaySize(), 300 );
+		assertEquals( encoder.mEncoded, 1 );
+		assertArrayEquals( media.getImageBytes(), stored );
+	}
+}
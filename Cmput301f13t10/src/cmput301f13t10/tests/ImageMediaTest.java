@@ -0,0 +1,149 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import cmput301f13t10.presenter.BitmapCache;
+import cmput301f13t10.presenter.ImageMedia;
+
+/**
+ * Test that an image being decoded on one thread isn't decoded again by
+ * another, and that waiting for it doesn't hold the media's lock
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class ImageMediaTest
+{
+	/**
+	 * Holds each decode until it is resumed by the test, and counts them
+	 */
+	private static class BlockingImageMedia extends ImageMedia
+	{
+		CountDownLatch mDecoding = new CountDownLatch( 1 );
+		CountDownLatch mResume = new CountDownLatch( 1 );
+		AtomicInteger mDecodes = new AtomicInteger();
+
+		BlockingImageMedia( byte[] bytes )
+		{
+			super( 1, bytes );
+		}
+
+		@Override
+		protected Bitmap decode( byte[] bytes )
+		{
+			mDecodes.incrementAndGet();
+			mDecoding.countDown();
+			try
+			{
+				mResume.await( 10, TimeUnit.SECONDS );
+			}
+			catch( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+			return super.decode( bytes );
+		}
+	}
+
+	/**
+	 * Gets the image on its own thread
+	 */
+	private static class Getter extends Thread
+	{
+		ImageMedia mImage;
+		Bitmap mBitmap;
+
+		Getter( ImageMedia image )
+		{
+			mImage = image;
+		}
+
+		@Override
+		public void run()
+		{
+			mBitmap = mImage.getImageBitmap();
+		}
+	}
+
+	@Before
+	public void setUp()
+	{
+		BitmapCache.getBitmapCache().clear();
+	}
+
+	@After
+	public void tearDown()
+	{
+		BitmapCache.getBitmapCache().clear();
+	}
+
+	@Test
+	public void testConcurrentGetsDecodeOnce() throws InterruptedException
+	{
+		BlockingImageMedia image = new BlockingImageMedia( ByteBuffer.allocate( 8 ).putInt( 10 ).putInt( 10 ).array() );
+		Getter first = new Getter( image );
+		first.start();
+		assertTrue( image.mDecoding.await( 10, TimeUnit.SECONDS ) );
+
+		Getter second = new Getter( image );
+		second.start();
+		// Wait for it to wait for the first decode
+		long deadline = System.currentTimeMillis() + 10000;
+		while( second.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline )
+			Thread.sleep( 1 );
+		assertEquals( second.getState(), Thread.State.WAITING );
+		// Neither the decode nor the wait for it holds the media's lock
+		synchronized( image )
+		{
+			assertEquals( image.mDecodes.get(), 1 );
+		}
+
+		image.mResume.countDown();
+		first.join( 10000 );
+		second.join( 10000 );
+		assertEquals( image.mDecodes.get(), 1 );
+		assertEquals( first.mBitmap.getWidth(), 10 );
+		assertSame( first.mBitmap, second.mBitmap );
+		assertSame( image.getImageBitmap(), first.mBitmap );
+	}
+}
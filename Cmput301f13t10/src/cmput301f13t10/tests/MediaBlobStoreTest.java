@@ -0,0 +1,246 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cmput301f13t10.model.MediaBlobStore;
+
+/**
+ * Test the MediaBlobStore
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class MediaBlobStoreTest
+{
+	private File mFile;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		mFile = File.createTempFile( "blobs", null );
+		mFile.delete();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		mFile.delete();
+	}
+
+	@Test
+	public void testPutAndGet() throws IOException
+	{
+		MediaBlobStore store = new MediaBlobStore( mFile );
+		String first = store.put( new byte[] { 1, 2, 3 } );
+		String second = store.put( new byte[] { 4, 5 } );
+		assertFalse( first.equals( second ) );
+
+		assertArrayEquals( store.getBytes( first ), new byte[] { 1, 2, 3 } );
+		ByteBuffer blob = store.get( second );
+		assertEquals( blob.remaining(), 2 );
+		assertEquals( blob.get(), 4 );
+		assertNull( store.get( "missing" ) );
+	}
+
+	@Test
+	public void testSameContentsStoredOnce() throws IOException
+	{
+		MediaBlobStore store = new MediaBlobStore( mFile );
+		String first = store.put( new byte[100] );
+		long length = mFile.length();
+		String second = store.put( new byte[100] );
+		assertEquals( first, second );
+		assertEquals( mFile.length(), length );
+	}
+
+	@Test
+	public void testReopen() throws IOException
+	{
+		MediaBlobStore store = new MediaBlobStore( mFile );
+		String id = store.put( new byte[] { 7, 8, 9 } );
+		// Read once so that the file is mapped before more is appended
+		store.getBytes( id );
+		String later = store.put( new byte[] { 10 } );
+		assertArrayEquals( store.getBytes( later ), new byte[] { 10 } );
+
+		MediaBlobStore reopened = new MediaBlobStore( mFile );
+		assertTrue( reopened.contains( id ) );
+		assertArrayEquals( reopened.getBytes( id ), new byte[] { 7, 8, 9 } );
+		assertArrayEquals( reopened.getBytes( later ), new byte[] { 10 } );
+	}
+
+	@Test
+	public void testPartialBlobIsDropped() throws IOException
+	{
+		MediaBlobStore store = new MediaBlobStore( mFile );
+		String id = store.put( new byte[] { 1, 2, 3 } );
+		long goodLength = mFile.length();
+		String partial = store.put( new byte[50] );
+
+		RandomAccessFile file = new RandomAccessFile( mFile, "rw" );
+		file.setLength( goodLength + 30 );
+		file.close();
+
+		MediaBlobStore reopened = new MediaBlobStore( mFile );
+		assertTrue( reopened.contains( id ) );
+		assertFalse( reopened.contains( partial ) );
+		assertEquals( mFile.length(), goodLength );
+	}
+
+	@Test
+	public void testCompactDropsUnreferencedBlobs() throws IOException
+	{
+		MediaBlobStore store = new MediaBlobStore( mFile );
+		String referenced = store.put( new byte[] { 1, 2, 3 } );
+		String unreferenced = store.put( new byte[2 * 1024 * 1024] );
+		long length = mFile.length();
+
+		// Blobs stored since the store was opened are always kept
+		MediaBlobStore reopened = new MediaBlobStore( mFile );
+		String recent = reopened.put( new byte[] { 4, 5 } );
+		Set<String> referencedIds = new HashSet<String>();
+		referencedIds.add( referenced );
+		assertTrue( reopened.compact( referencedIds ) );
+
+		assertTrue( mFile.length() < length );
+		assertFalse( reopened.contains( unreferenced ) );
+		assertArrayEquals( reopened.getBytes( referenced ), new byte[] { 1, 2, 3 } );
+		assertArrayEquals( reopened.getBytes( recent ), new byte[] { 4, 5 } );
+
+		MediaBlobStore compacted = new MediaBlobStore( mFile );
+		assertFalse( compacted.contains( unreferenced ) );
+		assertArrayEquals( compacted.getBytes( referenced ), new byte[] { 1, 2, 3 } );
+		assertArrayEquals( compacted.getBytes( recent ), new byte[] { 4, 5 } );
+	}
+
+	@Test
+	public void testBlobReadBeforeCompactionStaysValid() throws IOException
+	{
+		MediaBlobStore store = new MediaBlobStore( mFile );
+		store.put( new byte[2 * 1024 * 1024] );
+		store = new MediaBlobStore( mFile );
+		String id = store.put( new byte[] { 6, 7 } );
+		ByteBuffer blob = store.get( id );
+		assertTrue( store.compact( Collections.<String> emptySet() ) );
+		assertEquals( blob.get(), 6 );
+		assertEquals( blob.get(), 7 );
+	}
+
+	@Test
+	public void testLittleGarbageIsNotCompacted() throws IOException
+	{
+		MediaBlobStore store = new MediaBlobStore( mFile );
+		store.put( new byte[1000] );
+		long length = mFile.length();
+		store = new MediaBlobStore( mFile );
+		assertFalse( store.compact( Collections.<String> emptySet() ) );
+		assertEquals( mFile.length(), length );
+	}
+
+	@Test
+	public void testPutDuringCompaction() throws Exception
+	{
+		MediaBlobStore store = new MediaBlobStore( mFile );
+		final String referenced = store.put( new byte[] { 1, 2, 3 } );
+		final String unreferenced = store.put( new byte[2 * 1024 * 1024] );
+
+		// Hold the compaction in the middle of its copy
+		final CountDownLatch copying = new CountDownLatch( 1 );
+		final CountDownLatch resume = new CountDownLatch( 1 );
+		final MediaBlobStore reopened = new MediaBlobStore( mFile )
+		{
+			@Override
+			protected void copy( RandomAccessFile in, long offset, long length, DataOutputStream out ) throws IOException
+			{
+				copying.countDown();
+				try
+				{
+					resume.await( 10, TimeUnit.SECONDS );
+				}
+				catch( InterruptedException e )
+				{
+					throw new IOException( e.toString() );
+				}
+				super.copy( in, offset, length, out );
+			}
+		};
+		final boolean[] compacted = new boolean[1];
+		Thread thread = new Thread( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					compacted[0] = reopened.compact( Collections.singleton( referenced ) );
+				}
+				catch( IOException e )
+				{
+					e.printStackTrace();
+				}
+			}
+		} );
+		thread.start();
+		assertTrue( copying.await( 10, TimeUnit.SECONDS ) );
+
+		// The store isn't locked while the blobs are copied
+		String added = reopened.put( new byte[] { 4, 5 } );
+		assertEquals( reopened.put( new byte[2 * 1024 * 1024] ), unreferenced );
+		assertArrayEquals( reopened.getBytes( added ), new byte[] { 4, 5 } );
+		resume.countDown();
+		thread.join( 10000 );
+		assertTrue( compacted[0] );
+
+		MediaBlobStore replayed = new MediaBlobStore( mFile );
+		assertArrayEquals( replayed.getBytes( referenced ), new byte[] { 1, 2, 3 } );
+		assertArrayEquals( replayed.getBytes( added ), new byte[] { 4, 5 } );
+		assertEquals( replayed.getBytes( unreferenced ).length, 2 * 1024 * 1024 );
+	}
+}
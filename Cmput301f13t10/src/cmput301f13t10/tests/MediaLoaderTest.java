@@ -0,0 +1,148 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import android.view.View;
+import cmput301f13t10.presenter.MediaLoader;
+
+/**
+ * Test that media is prepared in the background and bound afterwards, that
+ * views are reused, and that a reused view isn't bound to its old media
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class MediaLoaderTest
+{
+	/**
+	 * Holds what is run until it is run by the test
+	 */
+	private static class QueueExecutor implements Executor
+	{
+		ArrayList<Runnable> mQueue = new ArrayList<Runnable>();
+
+		@Override
+		public void execute( Runnable runnable )
+		{
+			mQueue.add( runnable );
+		}
+
+		void runAll()
+		{
+			ArrayList<Runnable> queue = new ArrayList<Runnable>( mQueue );
+			mQueue.clear();
+			for( Runnable runnable : queue )
+				runnable.run();
+		}
+	}
+
+	private QueueExecutor mWorker;
+	private QueueExecutor mBinder;
+	private MediaLoader mLoader;
+
+	@Before
+	public void setUp()
+	{
+		mWorker = new QueueExecutor();
+		mBinder = new QueueExecutor();
+		mLoader = new MediaLoader( mWorker, mBinder );
+	}
+
+	@Test
+	public void testPreparedMediaIsBoundRightAway()
+	{
+		MockMedia media = new MockMedia();
+		View view = mLoader.getView( media, null, null );
+		assertEquals( media.getBindCount(), 1 );
+		assertEquals( view.getVisibility(), View.VISIBLE );
+		assertTrue( mWorker.mQueue.isEmpty() );
+	}
+
+	@Test
+	public void testMediaIsPreparedInBackground()
+	{
+		MockMedia media = new MockMedia();
+		media.setUnprepared();
+		View view = mLoader.getView( media, null, null );
+		assertEquals( view.getVisibility(), View.INVISIBLE );
+		assertEquals( media.getBindCount(), 0 );
+
+		mWorker.runAll();
+		assertTrue( media.isPrepared() );
+		assertEquals( media.getBindCount(), 0 );
+
+		mBinder.runAll();
+		assertEquals( media.getBindCount(), 1 );
+		assertEquals( view.getVisibility(), View.VISIBLE );
+	}
+
+	@Test
+	public void testViewsAreReused()
+	{
+		MockMedia first = new MockMedia();
+		MockMedia second = new MockMedia();
+		View view = mLoader.getView( first, null, null );
+		assertSame( mLoader.getView( second, view, null ), view );
+		assertSame( mLoader.getMedia( view ), second );
+
+		// A view of another class of media isn't reused
+		assertNotSame( mLoader.getView( new MockMedia()
+		{
+		}, view, null ), view );
+		assertNotSame( mLoader.getView( first, new View( null ), null ), view );
+	}
+
+	@Test
+	public void testReusedViewIsNotBoundToOldMedia()
+	{
+		MockMedia old = new MockMedia();
+		MockMedia current = new MockMedia();
+		old.setUnprepared();
+		View view = mLoader.getView( old, null, null );
+		mLoader.getView( current, view, null );
+		assertEquals( current.getBindCount(), 1 );
+
+		mWorker.runAll();
+		mBinder.runAll();
+		assertEquals( old.getBindCount(), 0 );
+		assertSame( mLoader.getMedia( view ), current );
+		assertEquals( view.getVisibility(), View.VISIBLE );
+	}
+}
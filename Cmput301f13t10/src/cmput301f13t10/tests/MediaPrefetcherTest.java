@@ -0,0 +1,166 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import cmput301f13t10.model.SectionModel;
+import cmput301f13t10.presenter.BitmapCache;
+import cmput301f13t10.presenter.ImageMedia;
+import cmput301f13t10.presenter.MediaPrefetcher;
+
+/**
+ * Test that the images of the next sections are decoded ahead of time, within
+ * the budget, and that a new prefetch replaces the old one
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class MediaPrefetcherTest
+{
+	/**
+	 * The size of a decoded 10x10 image
+	 */
+	private static final long IMAGE_BYTES = 10 * 10 * 4;
+
+	/**
+	 * Holds the decoding until it is run by the test
+	 */
+	private static class QueueExecutor implements Executor
+	{
+		ArrayList<Runnable> mQueue = new ArrayList<Runnable>();
+
+		@Override
+		public void execute( Runnable runnable )
+		{
+			mQueue.add( runnable );
+		}
+
+		void runAll()
+		{
+			for( Runnable runnable : mQueue )
+				runnable.run();
+			mQueue.clear();
+		}
+	}
+
+	private QueueExecutor mExecutor;
+
+	@Before
+	public void setUp()
+	{
+		mExecutor = new QueueExecutor();
+		BitmapCache.getBitmapCache().clear();
+	}
+
+	@After
+	public void tearDown()
+	{
+		BitmapCache.getBitmapCache().clear();
+	}
+
+	@Test
+	public void testNextSectionsAreDecoded()
+	{
+		ImageMedia first = newImage();
+		ImageMedia second = newImage();
+		MediaPrefetcher prefetcher = new MediaPrefetcher( mExecutor, 10 * IMAGE_BYTES );
+
+		prefetcher.prefetch( Arrays.asList( newSection( first ), newSection( second ) ) );
+		assertFalse( first.isPrepared() );
+		mExecutor.runAll();
+		assertTrue( first.isPrepared() );
+		assertTrue( second.isPrepared() );
+	}
+
+	@Test
+	public void testBudget()
+	{
+		ImageMedia first = newImage();
+		ImageMedia second = newImage();
+		ImageMedia third = newImage();
+		MediaPrefetcher prefetcher = new MediaPrefetcher( mExecutor, 2 * IMAGE_BYTES + 1 );
+		assertEquals( first.getDecodedSize(), IMAGE_BYTES );
+
+		prefetcher.prefetch( Arrays.asList( newSection( first, second ), newSection( third ) ) );
+		mExecutor.runAll();
+		assertTrue( first.isPrepared() );
+		assertTrue( second.isPrepared() );
+		assertFalse( third.isPrepared() );
+	}
+
+	@Test
+	public void testNewPrefetchReplacesOld()
+	{
+		ImageMedia old = newImage();
+		ImageMedia current = newImage();
+		MediaPrefetcher prefetcher = new MediaPrefetcher( mExecutor, 10 * IMAGE_BYTES );
+
+		prefetcher.prefetch( Arrays.asList( newSection( old ) ) );
+		prefetcher.prefetch( Arrays.asList( newSection( current ) ) );
+		mExecutor.runAll();
+		assertFalse( old.isPrepared() );
+		assertTrue( current.isPrepared() );
+
+		prefetcher.prefetch( Arrays.asList( newSection( old ) ) );
+		prefetcher.cancel();
+		mExecutor.runAll();
+		assertFalse( old.isPrepared() );
+	}
+
+	/**
+	 * Make an image that isn't decoded
+	 */
+	private ImageMedia newImage()
+	{
+		ImageMedia image = new ImageMedia();
+		image.setImageBitmap( Bitmap.createBitmap( 10, 10, Bitmap.Config.ARGB_8888 ) );
+		BitmapCache.getBitmapCache().clear();
+		return image;
+	}
+
+	private SectionModel newSection( ImageMedia... images )
+	{
+		SectionModel section = new SectionModel( "section" );
+		for( ImageMedia image : images )
+			section.add( image );
+		return section;
+	}
+}
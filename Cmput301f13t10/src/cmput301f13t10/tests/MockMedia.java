@@ -45,6 +45,16 @@ public class MockMedia implements Media
 
 	private int mId;
 
+	/**
+	 * If the media has been prepared, or doesn't need to be
+	 */
+	private boolean mPrepared = true;
+
+	/**
+	 * The number of times the media has been bound to a view
+	 */
+	private int mBindCount = 0;
+
 	public MockMedia()
 	{
 		mId = IdFactory.getIdManager( AppConstants.GENERATE_MEDIA_ID ).getNewId();
@@ -62,4 +72,41 @@ public class MockMedia implements Media
 		return null;
 	}
 
+	@Override
+	public boolean isPrepared()
+	{
+		return mPrepared;
+	}
+
+	@Override
+	public void prepare()
+	{
+		mPrepared = true;
+	}
+
+	@Override
+	public View createView( Context c )
+	{
+		return new View( c );
+	}
+
+	@Override
+	public void bindView( View view )
+	{
+		mBindCount++;
+	}
+
+	/**
+	 * Make the media need preparing before it is shown
+	 */
+	public void setUnprepared()
+	{
+		mPrepared = false;
+	}
+
+	public int getBindCount()
+	{
+		return mBindCount;
+	}
+
 }
@@ -0,0 +1,266 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cmput301f13t10.model.Callback;
+import cmput301f13t10.model.NetworkExecutor;
+import cmput301f13t10.model.RequestFuture;
+
+/**
+ * Test that requests to the database are run with bounded concurrency, and
+ * that their futures can be cancelled and time out
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class NetworkExecutorTest
+{
+	/**
+	 * Runs the callbacks on the thread that finished the request
+	 */
+	private static class DirectExecutor implements Executor
+	{
+		@Override
+		public void execute( Runnable runnable )
+		{
+			runnable.run();
+		}
+	}
+
+	/**
+	 * Keeps the result it is called with
+	 */
+	private static class ResultCallback<T> extends Callback<T>
+	{
+		CountDownLatch mCalled = new CountDownLatch( 1 );
+		T mResult;
+
+		@Override
+		public void callBack( T result )
+		{
+			mResult = result;
+			mCalled.countDown();
+		}
+
+		boolean await() throws InterruptedException
+		{
+			return mCalled.await( 5, TimeUnit.SECONDS );
+		}
+	}
+
+	/**
+	 * A request that waits until it is released or interrupted
+	 */
+	private static class BlockingRequest implements Callable<String>
+	{
+		CountDownLatch mStarted = new CountDownLatch( 1 );
+		CountDownLatch mRelease = new CountDownLatch( 1 );
+
+		@Override
+		public String call() throws Exception
+		{
+			mStarted.countDown();
+			mRelease.await();
+			return "done";
+		}
+	}
+
+	private NetworkExecutor mExecutor;
+
+	@Before
+	public void setUp()
+	{
+		mExecutor = new NetworkExecutor( 2, new DirectExecutor() );
+	}
+
+	@After
+	public void tearDown()
+	{
+		mExecutor.shutdown();
+	}
+
+	@Test
+	public void testResult() throws Exception
+	{
+		ResultCallback<Integer> callback = new ResultCallback<Integer>();
+		RequestFuture<Integer> future = mExecutor.submit( new Callable<Integer>()
+		{
+			@Override
+			public Integer call()
+			{
+				return 301;
+			}
+		}, callback );
+		assertTrue( callback.await() );
+		assertEquals( callback.mResult, Integer.valueOf( 301 ) );
+		assertEquals( future.get(), Integer.valueOf( 301 ) );
+		assertFalse( future.isFailed() );
+
+		// The finished request isn't kept until it would have timed out
+		assertEquals( mExecutor.getPendingTimeouts(), 0 );
+	}
+
+	@Test
+	public void testBoundedConcurrency() throws Exception
+	{
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		Callable<Integer> request = new Callable<Integer>()
+		{
+			@Override
+			public Integer call() throws Exception
+			{
+				int now = running.incrementAndGet();
+				synchronized( maxRunning )
+				{
+					maxRunning.set( Math.max( maxRunning.get(), now ) );
+				}
+				Thread.sleep( 20 );
+				running.decrementAndGet();
+				return now;
+			}
+		};
+
+		mExecutor.setConcurrency( 3 );
+		RequestFuture<?>[] futures = new RequestFuture<?>[20];
+		for( int i = 0; i < futures.length; i++ )
+			futures[i] = mExecutor.submit( request, null );
+		for( RequestFuture<?> future : futures )
+			future.get();
+		assertEquals( mExecutor.getConcurrency(), 3 );
+		assertTrue( maxRunning.get() <= 3 );
+		assertTrue( maxRunning.get() > 1 );
+	}
+
+	@Test
+	public void testTimeout() throws Exception
+	{
+		BlockingRequest request = new BlockingRequest();
+		ResultCallback<String> callback = new ResultCallback<String>();
+		RequestFuture<String> future = mExecutor.submit( request, callback, 50 );
+		assertTrue( callback.await() );
+		assertNull( callback.mResult );
+		assertTrue( future.isFailed() );
+		assertTrue( future.isCancelled() );
+	}
+
+	@Test
+	public void testTimeoutStartsWhenRunning() throws Exception
+	{
+		mExecutor.setConcurrency( 1 );
+		BlockingRequest first = new BlockingRequest();
+		mExecutor.submit( first, null, 0 );
+		assertTrue( first.mStarted.await( 5, TimeUnit.SECONDS ) );
+
+		// Waiting behind the first request doesn't count toward the timeout
+		ResultCallback<Integer> callback = new ResultCallback<Integer>();
+		RequestFuture<Integer> queued = mExecutor.submit( new Callable<Integer>()
+		{
+			@Override
+			public Integer call()
+			{
+				return 1;
+			}
+		}, callback, 50 );
+		Thread.sleep( 150 );
+		first.mRelease.countDown();
+		assertTrue( callback.await() );
+		assertEquals( callback.mResult, Integer.valueOf( 1 ) );
+		assertFalse( queued.isFailed() );
+	}
+
+	@Test
+	public void testCancelAfterResultIsIgnored() throws Exception
+	{
+		ResultCallback<String> callback = new ResultCallback<String>();
+		BlockingRequest request = new BlockingRequest();
+		RequestFuture<String> future = mExecutor.submit( request, callback );
+		request.mRelease.countDown();
+		assertTrue( callback.await() );
+		assertFalse( future.cancel( true ) );
+		assertFalse( future.isFailed() );
+		assertEquals( callback.mResult, "done" );
+	}
+
+	@Test
+	public void testCancel() throws Exception
+	{
+		BlockingRequest request = new BlockingRequest();
+		ResultCallback<String> callback = new ResultCallback<String>();
+		RequestFuture<String> future = mExecutor.submit( request, callback );
+		assertTrue( request.mStarted.await( 5, TimeUnit.SECONDS ) );
+		assertTrue( future.cancel( true ) );
+
+		// The cancelled request no longer takes up a thread
+		ResultCallback<Integer> next = new ResultCallback<Integer>();
+		mExecutor.setConcurrency( 1 );
+		mExecutor.submit( new Callable<Integer>()
+		{
+			@Override
+			public Integer call()
+			{
+				return 1;
+			}
+		}, next );
+		assertTrue( next.await() );
+		assertFalse( callback.mCalled.await( 100, TimeUnit.MILLISECONDS ) );
+		assertFalse( future.isFailed() );
+	}
+
+	@Test
+	public void testException() throws Exception
+	{
+		ResultCallback<String> callback = new ResultCallback<String>();
+		mExecutor.submit( new Callable<String>()
+		{
+			@Override
+			public String call()
+			{
+				throw new IllegalStateException( "no network" );
+			}
+		}, callback );
+		assertTrue( callback.await() );
+		assertNull( callback.mResult );
+	}
+}
@@ -0,0 +1,339 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cmput301f13t10.model.AdventureCache;
+import cmput301f13t10.model.AdventureModel;
+import cmput301f13t10.model.Outbox;
+
+/**
+ * Test the queue of adventures waiting to be published
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class OutboxTest
+{
+	/**
+	 * Records what is sent, and fails a given number of times first.
+	 * Adventures with a title in the refused or failing lists are always
+	 * refused or failed.
+	 */
+	private static class MockSender implements Outbox.Sender
+	{
+		int mFailures;
+		List<String> mSent = Collections.synchronizedList( new ArrayList<String>() );
+		List<Long> mAttempts = Collections.synchronizedList( new ArrayList<Long>() );
+		List<String> mRefused = Collections.synchronizedList( new ArrayList<String>() );
+		List<String> mFailing = Collections.synchronizedList( new ArrayList<String>() );
+		CountDownLatch mBlock = null;
+
+		MockSender( int failures )
+		{
+			mFailures = failures;
+		}
+
+		private synchronized boolean attempt()
+		{
+			mAttempts.add( System.nanoTime() );
+			if( mFailures == 0 )
+				return true;
+			mFailures--;
+			return false;
+		}
+
+		@Override
+		public int publish( AdventureModel adventure, AdventureModel snapshot )
+		{
+			if( mBlock != null )
+			{
+				try
+				{
+					mBlock.await();
+				}
+				catch( InterruptedException e )
+				{
+					return Outbox.RETRY;
+				}
+			}
+			if( mRefused.contains( snapshot.getTitle() ) )
+				return Outbox.REJECTED;
+			if( mFailing.contains( snapshot.getTitle() ) || !attempt() )
+				return Outbox.RETRY;
+			mSent.add( "publish " + snapshot.getTitle() );
+			return Outbox.SENT;
+		}
+
+		@Override
+		public int delete( int remoteId )
+		{
+			if( !attempt() )
+				return Outbox.RETRY;
+			mSent.add( "delete " + remoteId );
+			return Outbox.SENT;
+		}
+	}
+
+	private File mFile;
+	private List<Outbox> mOutboxes = new ArrayList<Outbox>();
+
+	@Before
+	public void setUp() throws IOException
+	{
+		mFile = File.createTempFile( "outbox", null );
+		mFile.delete();
+	}
+
+	@After
+	public void tearDown()
+	{
+		for( Outbox outbox : mOutboxes )
+			outbox.shutdown();
+		mFile.delete();
+	}
+
+	private Outbox createOutbox( MockSender sender )
+	{
+		Outbox outbox = new Outbox( mFile, sender, 20 );
+		mOutboxes.add( outbox );
+		return outbox;
+	}
+
+	private void waitUntilEmpty( Outbox outbox ) throws InterruptedException
+	{
+		long end = System.currentTimeMillis() + 5000;
+		while( outbox.size() > 0 && System.currentTimeMillis() < end )
+			Thread.sleep( 5 );
+		assertEquals( outbox.size(), 0 );
+	}
+
+	@Test
+	public void testCoalesce()
+	{
+		Outbox outbox = createOutbox( new MockSender( Integer.MAX_VALUE ) );
+		AdventureModel first = new AdventureModel( "first" );
+		AdventureModel second = new AdventureModel( "second" );
+		outbox.publish( first );
+		outbox.publish( second );
+		outbox.publish( first );
+		outbox.publish( first );
+		assertEquals( outbox.size(), 2 );
+	}
+
+	@Test
+	public void testRetryWithBackoff() throws InterruptedException
+	{
+		MockSender sender = new MockSender( 3 );
+		Outbox outbox = createOutbox( sender );
+		outbox.publish( new AdventureModel( "flaky" ) );
+		waitUntilEmpty( outbox );
+
+		assertEquals( sender.mSent, Collections.singletonList( "publish flaky" ) );
+		assertEquals( sender.mAttempts.size(), 4 );
+		// Each wait is at least twice as long as the one before: 20, 40, 80ms
+		for( int i = 1; i < 4; i++ )
+		{
+			long wait = TimeUnit.NANOSECONDS.toMillis( sender.mAttempts.get( i ) - sender.mAttempts.get( i - 1 ) );
+			assertTrue( wait >= 20 << ( i - 1 ) );
+		}
+	}
+
+	@Test
+	public void testDeleteCancelsPublish() throws InterruptedException
+	{
+		MockSender sender = new MockSender( 0 );
+		sender.mBlock = new CountDownLatch( 1 );
+		Outbox outbox = createOutbox( sender );
+
+		// The first publish is held up, so the others stay queued
+		outbox.publish( new AdventureModel( "held" ) );
+		AdventureModel adventure = new AdventureModel( "deleted" );
+		adventure.setRemoteId( 5 );
+		outbox.publish( adventure );
+		outbox.delete( adventure );
+		AdventureModel local = new AdventureModel( "never published" );
+		outbox.publish( local );
+		outbox.delete( local );
+		sender.mBlock.countDown();
+		waitUntilEmpty( outbox );
+
+		assertEquals( sender.mSent.size(), 2 );
+		assertEquals( sender.mSent.get( 0 ), "publish held" );
+		assertEquals( sender.mSent.get( 1 ), "delete 5" );
+	}
+
+	@Test
+	public void testChangedWhileSending() throws InterruptedException
+	{
+		MockSender sender = new MockSender( 0 );
+		sender.mBlock = new CountDownLatch( 1 );
+		Outbox outbox = createOutbox( sender );
+		AdventureModel adventure = new AdventureModel( "edited" );
+		outbox.publish( adventure );
+		Thread.sleep( 50 );
+
+		// Published again while the first publish is being sent
+		outbox.publish( adventure );
+		sender.mBlock.countDown();
+		waitUntilEmpty( outbox );
+		assertEquals( sender.mSent.size(), 2 );
+	}
+
+	@Test
+	public void testSendsAdventureAsPublished() throws InterruptedException
+	{
+		MockSender sender = new MockSender( 0 );
+		sender.mBlock = new CountDownLatch( 1 );
+		Outbox outbox = createOutbox( sender );
+		AdventureModel adventure = new AdventureModel( "as published" );
+		outbox.publish( adventure );
+
+		// Edits after publishing aren't sent until it is published again
+		adventure.setTitle( "edited" );
+		sender.mBlock.countDown();
+		waitUntilEmpty( outbox );
+		assertEquals( sender.mSent, Collections.singletonList( "publish as published" ) );
+
+		outbox.publish( adventure );
+		waitUntilEmpty( outbox );
+		assertEquals( sender.mSent.get( 1 ), "publish edited" );
+	}
+
+	@Test
+	public void testRefusedPublishIsParked() throws InterruptedException
+	{
+		MockSender sender = new MockSender( 0 );
+		sender.mRefused.add( "refused" );
+		sender.mBlock = new CountDownLatch( 1 );
+		Outbox outbox = createOutbox( sender );
+		AdventureModel refused = new AdventureModel( "refused" );
+		outbox.publish( refused );
+		outbox.publish( new AdventureModel( "after" ) );
+		sender.mBlock.countDown();
+
+		// The refused publish doesn't hold up the one after it
+		waitUntilEmpty( outbox );
+		assertEquals( sender.mSent, Collections.singletonList( "publish after" ) );
+		assertEquals( outbox.getParkedCount(), 1 );
+
+		// Publishing it again tries again
+		sender.mRefused.clear();
+		outbox.publish( refused );
+		waitUntilEmpty( outbox );
+		assertEquals( sender.mSent.get( 1 ), "publish refused" );
+		assertEquals( outbox.getParkedCount(), 0 );
+	}
+
+	@Test
+	public void testFailingPublishDoesNotBlockOthers() throws InterruptedException
+	{
+		MockSender sender = new MockSender( 0 );
+		sender.mFailing.add( "failing" );
+		Outbox outbox = new Outbox( mFile, sender, 1000 );
+		mOutboxes.add( outbox );
+		outbox.publish( new AdventureModel( "failing" ) );
+		AdventureModel deleted = new AdventureModel( "deleted" );
+		deleted.setRemoteId( 3 );
+		outbox.publish( new AdventureModel( "other" ) );
+		outbox.delete( deleted );
+
+		// Both are sent while the failing publish waits to be retried
+		long end = System.currentTimeMillis() + 5000;
+		while( outbox.size() > 1 && System.currentTimeMillis() < end )
+			Thread.sleep( 5 );
+		assertEquals( outbox.size(), 1 );
+		assertEquals( sender.mSent.size(), 2 );
+		assertEquals( sender.mSent.get( 0 ), "publish other" );
+		assertEquals( sender.mSent.get( 1 ), "delete 3" );
+	}
+
+	@Test
+	public void testKeepsFailingIsParked() throws InterruptedException
+	{
+		MockSender sender = new MockSender( 0 );
+		sender.mFailing.add( "failing" );
+		Outbox outbox = new Outbox( mFile, sender, 1 );
+		mOutboxes.add( outbox );
+		outbox.publish( new AdventureModel( "failing" ) );
+		waitUntilEmpty( outbox );
+		assertEquals( outbox.getParkedCount(), 1 );
+	}
+
+	@Test
+	public void testSaveReplacesFile()
+	{
+		MockSender sender = new MockSender( 0 );
+		sender.mBlock = new CountDownLatch( 1 );
+		Outbox outbox = createOutbox( sender );
+		outbox.publish( new AdventureModel( "first" ) );
+		outbox.publish( new AdventureModel( "second" ) );
+		assertTrue( mFile.exists() );
+		assertFalse( new File( mFile.getPath() + ".tmp" ).exists() );
+	}
+
+	@Test
+	public void testPersisted() throws InterruptedException
+	{
+		AdventureCache cache = new AdventureCache();
+		AdventureModel published = new AdventureModel( "published" );
+		cache.addAdventure( published );
+		AdventureModel deleted = new AdventureModel( "deleted" );
+		deleted.setRemoteId( 7 );
+
+		Outbox outbox = createOutbox( new MockSender( Integer.MAX_VALUE ) );
+		outbox.publish( published );
+		outbox.delete( deleted );
+		outbox.shutdown();
+
+		// The app is restarted
+		MockSender sender = new MockSender( 0 );
+		Outbox reopened = createOutbox( sender );
+		reopened.load( cache );
+		waitUntilEmpty( reopened );
+		assertEquals( sender.mSent.size(), 2 );
+		assertEquals( sender.mSent.get( 0 ), "publish published" );
+		assertEquals( sender.mSent.get( 1 ), "delete 7" );
+	}
+}
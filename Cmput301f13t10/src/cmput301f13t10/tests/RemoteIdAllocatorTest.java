@@ -0,0 +1,102 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import cmput301f13t10.model.RemoteIdAllocator;
+
+/**
+ * Test the leasing of remote ids
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class RemoteIdAllocatorTest
+{
+	@Test
+	public void testNoLease()
+	{
+		assertNull( new RemoteIdAllocator().nextId() );
+	}
+
+	@Test
+	public void testLeaseRunsOut()
+	{
+		RemoteIdAllocator allocator = new RemoteIdAllocator();
+		allocator.lease( 1 );
+		for( int i = 0; i < RemoteIdAllocator.BLOCK_SIZE; i++ )
+			assertEquals( allocator.nextId(), Integer.valueOf( RemoteIdAllocator.FIRST_ID + i ) );
+		assertNull( allocator.nextId() );
+	}
+
+	@Test
+	public void testBlocksDontOverlap()
+	{
+		// Each device leases a different block, since every lease gets a new
+		// version of the counter
+		Set<Integer> ids = new HashSet<Integer>();
+		for( long block = 1; block <= 100; block++ )
+		{
+			RemoteIdAllocator device = new RemoteIdAllocator();
+			device.lease( block );
+			Integer id;
+			while( ( id = device.nextId() ) != null )
+			{
+				assertTrue( id >= RemoteIdAllocator.FIRST_ID );
+				assertTrue( ids.add( id ) );
+			}
+		}
+		assertEquals( ids.size(), 100 * RemoteIdAllocator.BLOCK_SIZE );
+	}
+
+	@Test
+	public void testBadBlock()
+	{
+		RemoteIdAllocator allocator = new RemoteIdAllocator();
+		boolean thrown = false;
+		try
+		{
+			allocator.lease( Long.MAX_VALUE / 2 );
+		}
+		catch( IllegalArgumentException e )
+		{
+			thrown = true;
+		}
+		assertTrue( thrown );
+		assertNull( allocator.nextId() );
+	}
+}
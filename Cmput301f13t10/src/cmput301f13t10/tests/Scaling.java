@@ -0,0 +1,135 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that some work takes time in proportion to its size, rather than
+ * its square. Four times the size should take about four times as long; work
+ * that grows with the square of its size takes sixteen times as long.
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class Scaling
+{
+	/**
+	 * How many times each size is timed. The shortest time is used, which is
+	 * the one least disturbed by garbage collection and other threads.
+	 */
+	private static final int RUNS = 5;
+
+	/**
+	 * How many times each size is run before it is timed, so that the code
+	 * has been compiled by then
+	 */
+	private static final int WARM_UP_RUNS = 3;
+
+	/**
+	 * How many times the smaller size the larger size is. It is far enough
+	 * apart that linear and quadratic work can't be mistaken for each other
+	 * in a noisy run.
+	 */
+	private static final int SCALE = 4;
+
+	/**
+	 * How much longer the larger size may take. Linear work takes about four
+	 * times as long, and quadratic work sixteen times.
+	 */
+	private static final double MAX_RATIO = 8;
+
+	/**
+	 * Work that can be done at different sizes
+	 */
+	public static abstract class Workload
+	{
+		/**
+		 * Get ready to do the work, without being timed
+		 * 
+		 * @param size
+		 *            The size of the work
+		 */
+		protected void setUp( int size )
+		{
+		}
+
+		/**
+		 * Do the work. This is what is timed.
+		 * 
+		 * @param size
+		 *            The size of the work
+		 */
+		protected abstract void run( int size );
+	}
+
+	/**
+	 * Check that doing the work at four times the size doesn't take much more
+	 * than four times as long. Both sizes are run a few times first, and the
+	 * timed runs of each size are interleaved so that a slow patch affects
+	 * both alike.
+	 * 
+	 * @param what
+	 *            What the size counts, for the failure message
+	 * @param size
+	 *            The smaller size
+	 * @param workload
+	 *            The work to time
+	 */
+	public static void assertLinear( String what, int size, Workload workload )
+	{
+		for( int run = 0; run < WARM_UP_RUNS; run++ )
+		{
+			time( workload, size );
+			time( workload, size * SCALE );
+		}
+
+		long small = Long.MAX_VALUE;
+		long large = Long.MAX_VALUE;
+		for( int run = 0; run < RUNS; run++ )
+		{
+			small = Math.min( small, time( workload, size ) );
+			large = Math.min( large, time( workload, size * SCALE ) );
+		}
+		assertTrue( size + " " + what + " took " + small + "ns, " + size * SCALE + " took " + large + "ns", large < small * MAX_RATIO );
+	}
+
+	/**
+	 * @return How long one run of the work took, in nanoseconds
+	 */
+	private static long time( Workload workload, int size )
+	{
+		workload.setUp( size );
+		// So that collecting what earlier runs left behind isn't timed
+		System.gc();
+		long start = System.nanoTime();
+		workload.run( size );
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,192 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cmput301f13t10.model.SectionArray;
+import cmput301f13t10.model.SectionModel;
+import cmput301f13t10.model.SectionNotFoundException;
+
+/**
+ * Test that sections are found by id through the section array's index,
+ * including after the list of sections is changed directly
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class SectionArrayTest
+{
+	private SectionArray mArray;
+	private ArrayList<SectionModel> mSections;
+
+	@Before
+	public void setUp()
+	{
+		mArray = new SectionArray();
+		mSections = new ArrayList<SectionModel>();
+		for( int i = 0; i < 5; i++ )
+		{
+			SectionModel section = new SectionModel( "section " + i );
+			mSections.add( section );
+			mArray.addSection( section, null );
+		}
+	}
+
+	@Test
+	public void testGetSection() throws SectionNotFoundException
+	{
+		for( int i = 0; i < mSections.size(); i++ )
+		{
+			assertSame( mArray.getSection( mSections.get( i ).getId() ), mSections.get( i ) );
+			assertEquals( mArray.indexOf( mSections.get( i ) ), i );
+		}
+		assertNull( mArray.getSection( -5 ) );
+	}
+
+	@Test
+	public void testDeleteSection()
+	{
+		mArray.deleteSection( mSections.get( 1 ).getId() );
+		assertEquals( mArray.getSections().size(), 4 );
+		assertNull( mArray.getSection( mSections.get( 1 ).getId() ) );
+		// The sections after it are still found in their new places
+		for( int i = 2; i < mSections.size(); i++ )
+			assertSame( mArray.getSection( mSections.get( i ).getId() ), mSections.get( i ) );
+	}
+
+	/**
+	 * Deleting used to skip the section after each one it deleted
+	 */
+	@Test
+	public void testDeleteAdjacentDuplicates() throws SectionNotFoundException
+	{
+		SectionModel twice = mSections.get( 2 );
+		ArrayList<SectionModel> sections = new ArrayList<SectionModel>( mSections );
+		sections.add( 3, twice );
+		mArray.setSections( sections );
+		mArray.deleteSection( twice.getId() );
+		assertEquals( mArray.getSections().size(), 4 );
+		assertTrue( !mArray.getSections().contains( twice ) );
+		for( int i = 3; i < mSections.size(); i++ )
+			assertEquals( mArray.indexOf( mSections.get( i ) ), i - 1 );
+	}
+
+	@Test
+	public void testDuplicateIdFindsFirst() throws SectionNotFoundException
+	{
+		SectionModel first = mSections.get( 0 );
+		ArrayList<SectionModel> sections = new ArrayList<SectionModel>( mSections );
+		sections.add( first );
+		sections.add( 1, first );
+		mArray.setSections( sections );
+		mArray.deleteSection( mSections.get( 1 ).getId() );
+		assertEquals( mArray.indexOf( first ), 0 );
+		assertSame( mArray.getSection( mSections.get( 2 ).getId() ), mSections.get( 2 ) );
+	}
+
+	@Test( expected = UnsupportedOperationException.class )
+	public void testSectionsCannotBeChangedDirectly()
+	{
+		mArray.getSections().add( new SectionModel( "added" ) );
+	}
+
+	@Test
+	public void testSetSectionsCopies()
+	{
+		ArrayList<SectionModel> sections = new ArrayList<SectionModel>( mSections );
+		mArray.setSections( sections );
+		SectionModel added = new SectionModel( "added" );
+		sections.add( added );
+		assertNull( mArray.getSection( added.getId() ) );
+		assertEquals( mArray.getSections().size(), mSections.size() );
+	}
+
+	@Test
+	public void testSetSection()
+	{
+		SectionModel extra = new SectionModel( "extra" );
+		mArray.setSection( extra );
+		assertEquals( mArray.getSections().size(), 6 );
+		mArray.setSection( extra );
+		assertEquals( mArray.getSections().size(), 6 );
+		assertSame( mArray.getSection( extra.getId() ), extra );
+	}
+
+	/**
+	 * Test that finding every section of a big adventure takes time in
+	 * proportion to the number of sections, not its square, as it would if
+	 * the list was scanned for each section
+	 */
+	@Test
+	public void testLargeAdventure()
+	{
+		Scaling.assertLinear( "sections", 5000, new Scaling.Workload()
+		{
+			private ArrayList<SectionModel> mSections;
+			private SectionArray mLarge;
+
+			@Override
+			protected void setUp( int count )
+			{
+				mSections = new ArrayList<SectionModel>();
+				for( int i = 0; i < count; i++ )
+					mSections.add( new SectionModel( "section " + i ) );
+				mLarge = new SectionArray();
+			}
+
+			/**
+			 * Find every section a few times, then delete some from the
+			 * front, which moves every other section
+			 */
+			@Override
+			protected void run( int count )
+			{
+				mLarge.setSections( new ArrayList<SectionModel>( mSections ) );
+				for( int round = 0; round < 10; round++ )
+				{
+					for( SectionModel section : mSections )
+						assertSame( mLarge.getSection( section.getId() ), section );
+				}
+				for( int i = 0; i < 100; i++ )
+					mLarge.deleteSection( mSections.get( i ).getId() );
+				assertSame( mLarge.getSection( mSections.get( count - 1 ).getId() ), mSections.get( count - 1 ) );
+				assertEquals( mLarge.getSections().size(), count - 100 );
+			}
+		} );
+	}
+}
@@ -0,0 +1,223 @@
+/*
+Copyright (c) 2013, Brendan Cowan, Tyler Meen, Steven Gerdes, Braeden Soetaert, Aly-khan Jamal
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met: 
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer. 
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution. 
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+The views and conclusions contained in the software and documentation are those
+of the authors and should not be interpreted as representing official policies, 
+either expressed or implied, of the FreeBSD Project.
+ */
+package cmput301f13t10.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import cmput301f13t10.model.AdventureModel;
+import cmput301f13t10.model.ESClient;
+import cmput301f13t10.model.SectionModel;
+import cmput301f13t10.model.UploadState;
+import cmput301f13t10.presenter.ImageMedia;
+import cmput301f13t10.presenter.TextMedia;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Test that only the changed parts of an adventure are uploaded
+ * 
+ * @author Brendan Cowan
+ * 
+ */
+public class UploadStateTest
+{
+	private Gson mGson = ESClient.getClient().getGson();
+
+	private AdventureModel createAdventure()
+	{
+		AdventureModel adventure = new AdventureModel( "adventure" );
+		for( int i = 0; i < 3; i++ )
+		{
+			SectionModel section = new SectionModel( "section " + i );
+			TextMedia text = new TextMedia();
+			text.setText( "text " + i );
+			section.add( text );
+			adventure.addSection( section );
+		}
+		return adventure;
+	}
+
+	private JsonObject parse( String update )
+	{
+		return new JsonParser().parse( update ).getAsJsonObject();
+	}
+
+	@Test
+	public void testFirstUploadIsWhole() throws IOException
+	{
+		AdventureModel adventure = createAdventure();
+		JsonObject update = parse( new UploadState( adventure ).getUpdate( null, adventure, mGson ) );
+		assertTrue( update.get( "doc_as_upsert" ).getAsBoolean() );
+		assertEquals( update.getAsJsonObject( "doc" ).get( "mTitle" ).getAsString(), "adventure" );
+		assertEquals( update.getAsJsonObject( "doc" ).getAsJsonObject( "mSectionArray" ).getAsJsonArray( "mSections" ).size(), 4 );
+	}
+
+	@Test
+	public void testUnchanged() throws IOException
+	{
+		AdventureModel adventure = createAdventure();
+		UploadState uploaded = new UploadState( adventure );
+		UploadState state = new UploadState( adventure );
+		assertFalse( state.isChangedFrom( uploaded ) );
+		assertNull( state.getUpdate( uploaded, adventure, mGson ) );
+	}
+
+	@Test
+	public void testOnlyAddedMediaSent() throws IOException
+	{
+		AdventureModel adventure = createAdventure();
+		UploadState uploaded = new UploadState( adventure );
+
+		TextMedia text = new TextMedia();
+		text.setText( "an annotation" );
+		adventure.getSections().get( 2 ).getAnnotation().add( text );
+
+		UploadState state = new UploadState( adventure );
+		assertTrue( state.isChangedFrom( uploaded ) );
+		JsonObject update = parse( state.getUpdate( uploaded, adventure, mGson ) );
+		assertNull( update.get( "doc" ) );
+		assertEquals( update.get( "script" ).getAsString(), "ctx._source.mSectionArray.mSections[2].mAnnotation.mMedias += s2a0;" );
+		JsonObject params = update.getAsJsonObject( "params" );
+		assertEquals( params.entrySet().size(), 1 );
+		JsonObject media = params.getAsJsonObject( "s2a0" );
+		assertEquals( media.get( "type" ).getAsString(), TextMedia.class.getName() );
+		assertEquals( media.getAsJsonObject( "data" ).get( "mText" ).getAsString(), "an annotation" );
+	}
+
+	@Test
+	public void testAnnotationImageDoesNotResendSectionImages() throws IOException
+	{
+		AdventureModel adventure = createAdventure();
+		SectionModel section = adventure.getSections().get( 1 );
+		section.add( new ImageMedia( 1, new byte[20000] ) );
+		section.add( new ImageMedia( 2, new byte[20000] ) );
+		UploadState uploaded = new UploadState( adventure );
+
+		section.getAnnotation().add( new ImageMedia( 3, new byte[100] ) );
+		JsonObject update = parse( new UploadState( adventure ).getUpdate( uploaded, adventure, mGson ) );
+		assertEquals( update.get( "script" ).getAsString(), "ctx._source.mSectionArray.mSections[1].mAnnotation.mMedias += s1a0;" );
+		assertEquals( update.getAsJsonObject( "params" ).entrySet().size(), 1 );
+		assertEquals( update.getAsJsonObject( "params" ).getAsJsonObject( "s1a0" ).getAsJsonObject( "data" ).get( "mId" ).getAsInt(), 3 );
+	}
+
+	@Test
+	public void testChangedMediaReplacedInPlace() throws IOException
+	{
+		AdventureModel adventure = createAdventure();
+		UploadState uploaded = new UploadState( adventure );
+		( (TextMedia) adventure.getSections().get( 1 ).getMedia().get( 0 ) ).setText( "edited" );
+
+		JsonObject update = parse( new UploadState( adventure ).getUpdate( uploaded, adventure, mGson ) );
+		assertEquals( update.get( "script" ).getAsString(), "ctx._source.mSectionArray.mSections[1].mMedias[0] = s1m0;" );
+		assertEquals( update.getAsJsonObject( "params" ).getAsJsonObject( "s1m0" ).getAsJsonObject( "data" ).get( "mText" ).getAsString(), "edited" );
+	}
+
+	@Test
+	public void testRemovedMediaSendsSection() throws IOException
+	{
+		AdventureModel adventure = createAdventure();
+		UploadState uploaded = new UploadState( adventure );
+		adventure.getSections().get( 1 ).remove( 0 );
+
+		JsonObject update = parse( new UploadState( adventure ).getUpdate( uploaded, adventure, mGson ) );
+		assertEquals( update.get( "script" ).getAsString(), "ctx._source.mSectionArray.mSections[1] = s1;" );
+		assertEquals( update.getAsJsonObject( "params" ).getAsJsonObject( "s1" ).get( "mId" ).getAsInt(), adventure.getSections().get( 1 ).getId() );
+	}
+
+	@Test
+	public void testRenamedSectionSendsSection() throws IOException
+	{
+		AdventureModel adventure = createAdventure();
+		UploadState uploaded = new UploadState( adventure );
+		adventure.getSections().get( 3 ).setName( "renamed" );
+
+		JsonObject update = parse( new UploadState( adventure ).getUpdate( uploaded, adventure, mGson ) );
+		assertEquals( update.get( "script" ).getAsString(), "ctx._source.mSectionArray.mSections[3] = s3;" );
+		assertEquals( update.getAsJsonObject( "params" ).getAsJsonObject( "s3" ).get( "mName" ).getAsString(), "renamed" );
+	}
+
+	@Test
+	public void testSavedState() throws IOException
+	{
+		AdventureModel adventure = createAdventure();
+		UploadState uploaded = new UploadState( adventure );
+		uploaded.setVersion( 4 );
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		uploaded.write( new DataOutputStream( bytes ) );
+		UploadState read = UploadState.read( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+		assertEquals( read.getVersion(), 4 );
+		assertFalse( new UploadState( adventure ).isChangedFrom( read ) );
+
+		// The read state tells what changed just like the original
+		( (TextMedia) adventure.getSections().get( 2 ).getMedia().get( 0 ) ).setText( "edited" );
+		UploadState state = new UploadState( adventure );
+		assertEquals( state.getUpdate( read, adventure, mGson ), state.getUpdate( uploaded, adventure, mGson ) );
+	}
+
+	@Test
+	public void testTitleChange() throws IOException
+	{
+		AdventureModel adventure = createAdventure();
+		UploadState uploaded = new UploadState( adventure );
+		adventure.setTitle( "renamed" );
+
+		JsonObject update = parse( new UploadState( adventure ).getUpdate( uploaded, adventure, mGson ) );
+		assertEquals( update.getAsJsonObject( "params" ).get( "title" ).getAsString(), "renamed" );
+		assertEquals( update.getAsJsonObject( "params" ).entrySet().size(), 2 );
+	}
+
+	@Test
+	public void testAddedSectionSendsSections() throws IOException
+	{
+		AdventureModel adventure = createAdventure();
+		UploadState uploaded = new UploadState( adventure );
+		adventure.addSection( new SectionModel( "new" ) );
+
+		JsonObject update = parse( new UploadState( adventure ).getUpdate( uploaded, adventure, mGson ) );
+		assertNull( update.get( "script" ) );
+		assertNull( update.get( "doc_as_upsert" ) );
+		JsonObject doc = update.getAsJsonObject( "doc" );
+		assertEquals( doc.getAsJsonObject( "mSectionArray" ).getAsJsonArray( "mSections" ).size(), 5 );
+		assertNull( doc.get( "mLocalId" ) );
+	}
+}
@@ -49,6 +49,7 @@ import android.widget.Button;
 import android.widget.CheckBox;
 import android.widget.EditText;
 import android.widget.ListView;
+import cmput301f13t10.model.AdventureModel;
 import cmput301f13t10.model.Callback;
 import cmput301f13t10.presenter.AdventurePresenter;
 import cmput301f13t10.presenter.AppConstants;
@@ -314,11 +315,11 @@ public class AdventureEditView extends Activity implements DeletePromptDialogFra
 
 	public void onGetOnline( View view )
 	{
-		Callback callback = new Callback()
+		Callback<AdventureModel> callback = new Callback<AdventureModel>()
 		{
 
 			@Override
-			public void callBack( Object arg )
+			public void callBack( AdventureModel adventure )
 			{
 				loadSections();
 			}
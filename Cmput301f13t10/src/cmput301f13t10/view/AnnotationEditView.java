@@ -33,7 +33,6 @@ import java.util.ArrayList;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import android.support.v4.app.FragmentActivity;
@@ -323,10 +322,7 @@ public class AnnotationEditView extends FragmentActivity implements ChangeImageS
 		int mediaSize = mediaSize( dialog );
 		ChangeImageSizeDialogFragment imageResizeFragment = (ChangeImageSizeDialogFragment) dialog;
 		int mediaIndex = imageResizeFragment.getMediaIndex();
-		Bitmap oldBitmap = ( (ImageMedia) mMedia.get( mediaIndex ) ).getImageBitmap();
-		Bitmap newBitmap = Bitmap.createScaledBitmap( oldBitmap, mediaSize, mediaSize, true );
-
-		mPresenter.resizeBitmap( newBitmap, mediaIndex );
+		mPresenter.resizeImage( mediaSize, mediaIndex );
 
 		loadMedia();
 
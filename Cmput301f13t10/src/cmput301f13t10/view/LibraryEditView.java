@@ -29,7 +29,6 @@
 
 package cmput301f13t10.view;
 
-import java.io.FileNotFoundException;
 import java.io.Serializable;
 
 import android.app.Activity;
@@ -48,6 +47,7 @@ import android.widget.Button;
 import android.widget.ListView;
 import android.widget.SearchView;
 import cmput301f13t10.model.AdventureModel;
+import cmput301f13t10.model.Callback;
 import cmput301f13t10.presenter.AppConstants;
 import cmput301f13t10.presenter.LibraryPresenter;
 import cs.ualberta.cmput301f13t10.R;
@@ -110,7 +110,15 @@ public class LibraryEditView extends Activity implements Serializable, Updatable
 			public void onItemClick( AdapterView<?> parentAdapter, View view, int position, long id )
 			{
 				AdventureId = ( (AdventureModel) parentAdapter.getItemAtPosition( position ) ).getLocalId();
-				startAdventureEditViewId();
+				mPresenter.openAdventure( AdventureId, new Callback<AdventureModel>()
+				{
+					@Override
+					public void callBack( AdventureModel adventure )
+					{
+						if( adventure != null )
+							startAdventureEditViewId();
+					}
+				} );
 			}
 		} );
 
@@ -139,15 +147,7 @@ public class LibraryEditView extends Activity implements Serializable, Updatable
 	public void onPause()
 	{
 		super.onPause();
-		try
-		{
-			mPresenter.saveData( openFileOutput( AppConstants.FILE_NAME, 0 ) );
-		}
-		catch( FileNotFoundException e )
-		{
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		mPresenter.saveData();
 	}
 
 
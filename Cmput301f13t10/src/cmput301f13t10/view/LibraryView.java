@@ -45,6 +45,7 @@ import android.widget.Button;
 import android.widget.ListView;
 import android.widget.SearchView;
 import cmput301f13t10.model.AdventureModel;
+import cmput301f13t10.model.Callback;
 import cmput301f13t10.presenter.AppConstants;
 import cmput301f13t10.presenter.LibraryPresenter;
 import cs.ualberta.cmput301f13t10.R;
@@ -101,7 +102,7 @@ public class LibraryView extends Activity implements Serializable, SearchView.On
 				try
 				{
 					if( mPresenter.setRandomCurrentAdventure() )
-						startSectionReadView();
+						openCurrentAdventure();
 				}
 				catch( IllegalArgumentException e )
 				{
@@ -115,7 +116,23 @@ public class LibraryView extends Activity implements Serializable, SearchView.On
 			public void onItemClick( AdapterView<?> parentAdapter, View view, int position, long id )
 			{
 				mPresenter.setCurrentAdventure( ( (AdventureModel) parentAdapter.getItemAtPosition( position ) ).getLocalId() );
-				startSectionReadView();
+				openCurrentAdventure();
+			}
+		} );
+	}
+
+	/**
+	 * Load the current adventure, then start reading it
+	 */
+	private void openCurrentAdventure()
+	{
+		mPresenter.openAdventure( mPresenter.getCurrentAdventureId(), new Callback<AdventureModel>()
+		{
+			@Override
+			public void callBack( AdventureModel adventure )
+			{
+				if( adventure != null )
+					startSectionReadView();
 			}
 		} );
 	}
@@ -34,7 +34,6 @@ import android.annotation.TargetApi;
 import android.app.ActionBar;
 import android.app.Activity;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.os.Build;
 import android.os.Bundle;
@@ -54,6 +53,7 @@ import cmput301f13t10.presenter.AppConstants;
 import cmput301f13t10.presenter.ImageMedia;
 import cmput301f13t10.presenter.Logger;
 import cmput301f13t10.presenter.Media;
+import cmput301f13t10.presenter.MediaLoader;
 import cmput301f13t10.presenter.SectionPresenter;
 import cmput301f13t10.presenter.TextMedia;
 import cmput301f13t10.view.ChangeImageSizeDialogFragment.ChangeImageSizeDialogListener;
@@ -218,6 +218,9 @@ public class SectionEditView extends FragmentActivity implements UpdatableView,
 
 	/**
 	 * Set the input view group to contain all media in the current section.
+	 * The views already in the group are reused where they can be, and media
+	 * that isn't ready yet is shown once it has been prepared in the
+	 * background.
 	 * 
 	 * @param vg
 	 *            The view group that is to contain the media.
@@ -227,17 +230,25 @@ public class SectionEditView extends FragmentActivity implements UpdatableView,
 		try
 		{
 			ArrayList<Media> medias = mMedia;
-			vg.removeAllViews();
+			MediaLoader loader = MediaLoader.getLoader();
 			for( int i = 0; i < medias.size(); i++ )
 			{
-				View view = medias.get( i ).toView( this );
+				View recycled = vg.getChildAt( i );
+				View view = loader.getView( medias.get( i ), recycled, this );
 				view.setFocusable( true );
 				view.setId( i );
 
 				setMediaListener( medias, i, view );
 
-				vg.addView( view );
+				if( view != recycled )
+				{
+					if( recycled != null )
+						vg.removeViewAt( i );
+					vg.addView( view, i );
+				}
 			}
+			if( vg.getChildCount() > medias.size() )
+				vg.removeViews( medias.size(), vg.getChildCount() - medias.size() );
 		}
 		catch( NullPointerException e )
 		{
@@ -378,10 +389,7 @@ public class SectionEditView extends FragmentActivity implements UpdatableView,
 		int mediaSize = mediaSize( dialog );
 		ChangeImageSizeDialogFragment imageResizeFragment = (ChangeImageSizeDialogFragment) dialog;
 		int mediaIndex = imageResizeFragment.getMediaIndex();
-		Bitmap oldBitmap = ( (ImageMedia) mMedia.get( mediaIndex ) ).getImageBitmap();
-		Bitmap newBitmap = Bitmap.createScaledBitmap( oldBitmap, mediaSize, mediaSize, true );
-
-		mPresenter.resizeBitmap( newBitmap, mediaIndex );
+		mPresenter.resizeImage( mediaSize, mediaIndex );
 
 		loadMedia();
 
@@ -44,6 +44,7 @@ import android.widget.LinearLayout;
 import cmput301f13t10.presenter.AppConstants;
 import cmput301f13t10.presenter.Logger;
 import cmput301f13t10.presenter.Media;
+import cmput301f13t10.presenter.MediaLoader;
 import cmput301f13t10.presenter.SectionPresenter;
 import cs.ualberta.cmput301f13t10.R;
 
@@ -150,6 +151,9 @@ public class SectionReadView extends Activity implements UpdatableView, Serializ
 
 	/**
 	 * Set the input view group to contain all media in the current section.
+	 * The views of the previous section are reused where they can be, and
+	 * media that isn't ready yet is shown once it has been prepared in the
+	 * background.
 	 * 
 	 * @param vg
 	 *            The view group that is to contain the media.
@@ -159,14 +163,22 @@ public class SectionReadView extends Activity implements UpdatableView, Serializ
 		try
 		{
 			ArrayList<Media> medias = mPresenter.getMedia();
-			vg.removeAllViews();
-			for( Media m : medias )
+			MediaLoader loader = MediaLoader.getLoader();
+			for( int i = 0; i < medias.size(); i++ )
 			{
-				View view = m.toView( this );
+				View recycled = vg.getChildAt( i );
+				View view = loader.getView( medias.get( i ), recycled, this );
 				view.setFocusable( false );
 				view.setBackgroundColor( Color.TRANSPARENT );
-				vg.addView( view );
+				if( view != recycled )
+				{
+					if( recycled != null )
+						vg.removeViewAt( i );
+					vg.addView( view, i );
+				}
 			}
+			if( vg.getChildCount() > medias.size() )
+				vg.removeViews( medias.size(), vg.getChildCount() - medias.size() );
 		}
 		catch( NullPointerException e )
 		{